@@ -0,0 +1,81 @@
+-- ----------------------------
+-- V1: 消息表 / 归档表按 id 范围分区 (已有库升级用，新库直接执行 dev_sphere.sql)
+--
+-- 分区归档 (MessageArchiverTask) 使用 EXCHANGE PARTITION，要求两张表列、索引、分区边界完全一致，
+-- 未执行本脚本的库会一直走逐区间搬运 (两张表都已分区时才启用分区归档)
+--
+-- 注意:
+-- 1. 分区会重建整张表 (复制数据)，表较大时请在维护窗口执行，或使用 gh-ost / pt-online-schema-change
+-- 2. MySQL 分区表的唯一索引必须包含分区列，idx_server_msg_id 改为普通索引，
+--    server_msg_id 不再有数据库层面的唯一约束；重复消费由消费端幂等检查 (tempId / serverMsgId 回查) 兜底。
+--    升级后可用文末的查询巡检是否出现重复
+-- 3. 分区跨度须与 devsphere.im.partition.span 一致 (默认 5000000)，分区名为 p{上界}，最后一个分区为 pmax
+-- 4. 需要 MySQL 8.0 及以上 (递归 CTE)
+-- ----------------------------
+
+SET @span = 5000000;
+SET SESSION group_concat_max_len = 1048576;
+
+-- ----------------------------
+-- 1. 索引与列定义对齐
+-- ----------------------------
+ALTER TABLE `dev_sphere_message`
+  DROP INDEX `idx_server_msg_id`,
+  ADD INDEX `idx_server_msg_id`(`server_msg_id` ASC) USING BTREE;
+
+ALTER TABLE `dev_sphere_message_archive`
+  MODIFY COLUMN `server_msg_id` bigint NULL DEFAULT NULL COMMENT '唯一id，客户端可见',
+  MODIFY COLUMN `temp_id` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL COMMENT '客户端临时ID，用于幂等去重',
+  MODIFY COLUMN `type` int NULL DEFAULT 1 COMMENT '消息类型 1正常文本 2.撤回消息 3.图片 4.语音 5.视频 6.文件',
+  DROP INDEX `idx_server_msg_id`,
+  DROP INDEX `idx_room_id_create_time`,
+  ADD INDEX `idx_server_msg_id`(`server_msg_id` ASC) USING BTREE,
+  ADD INDEX `idx_from_uid`(`from_uid` ASC) USING BTREE,
+  ADD INDEX `idx_update_time`(`update_time` ASC) USING BTREE,
+  ADD INDEX `idx_room_id_id`(`room_id` ASC, `id` ASC) USING BTREE,
+  ADD INDEX `idx_temp_id`(`temp_id` ASC) USING BTREE,
+  COMMENT = '消息归档表(冷数据)，结构与分区边界须与消息表一致';
+
+-- ----------------------------
+-- 2. 计算分区边界: 两张表共用一套，覆盖现有最大 id 并多预留一个空分区
+-- ----------------------------
+SET @max_id = GREATEST(
+  (SELECT COALESCE(MAX(`id`), 0) FROM `dev_sphere_message`),
+  (SELECT COALESCE(MAX(`id`), 0) FROM `dev_sphere_message_archive`));
+
+SET @partitions = (
+  WITH RECURSIVE bounds(n) AS (
+    SELECT @span
+    UNION ALL
+    SELECT n + @span FROM bounds WHERE n <= @max_id + @span
+  )
+  SELECT GROUP_CONCAT(CONCAT('PARTITION `p', n, '` VALUES LESS THAN (', n, ')') ORDER BY n SEPARATOR ', ')
+  FROM bounds);
+
+-- ----------------------------
+-- 3. 分区
+-- ----------------------------
+SET @ddl = CONCAT('ALTER TABLE `dev_sphere_message` PARTITION BY RANGE (`id`) (',
+  @partitions, ', PARTITION `pmax` VALUES LESS THAN MAXVALUE)');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = CONCAT('ALTER TABLE `dev_sphere_message_archive` PARTITION BY RANGE (`id`) (',
+  @partitions, ', PARTITION `pmax` VALUES LESS THAN MAXVALUE)');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- ----------------------------
+-- 4. 校验: 两张表的分区边界应逐行一致
+-- ----------------------------
+SELECT `TABLE_NAME`, `PARTITION_NAME`, `PARTITION_DESCRIPTION`
+FROM `information_schema`.`PARTITIONS`
+WHERE `TABLE_SCHEMA` = DATABASE()
+  AND `TABLE_NAME` IN ('dev_sphere_message', 'dev_sphere_message_archive')
+ORDER BY `TABLE_NAME`, `PARTITION_ORDINAL_POSITION`;
+
+-- 巡检: server_msg_id 重复 (应为空)
+-- SELECT `server_msg_id`, COUNT(*) FROM `dev_sphere_message`
+-- WHERE `server_msg_id` IS NOT NULL GROUP BY `server_msg_id` HAVING COUNT(*) > 1;
@@ -39,6 +39,11 @@ export interface RoomQueryReq {
   roomId?: number // number 也可以，看你后端定义
 }
 
+export interface RoomCursorQueryReq {
+  cursor?: string | null
+  pageSize?: number
+}
+
 // 对应后端 RoomVo
 export interface RoomVo {
   id: number // 房间ID通常不大，可以是 number
@@ -143,6 +148,13 @@ export const chatService = {
     return request.post('/devSphere/chat/list/page/vo', params)
   },
 
+  /**
+   * 游标分页获取会话列表 (按活跃时间倒序)
+   */
+  async getRoomListByCursor(params: RoomCursorQueryReq): Promise<CursorPage<RoomVo>> {
+    return request.post('/devSphere/chat/list/cursor/vo', params)
+  },
+
   /**
    * 获取指定房间的历史消息
    */
@@ -271,13 +283,13 @@ export const chatService = {
   },
 
   /**
-   * 搜索聊天记录
+   * 搜索聊天记录 (游标分页，cursor 为上一页的 nextCursor)
    */
-  async searchHistory(roomId: number, keyword: string): Promise<ChatMessageResp[]> {
+  async searchHistory(roomId: number, keyword: string, cursor?: string): Promise<ChatMessageResp[]> {
     const res = await request.get('/devSphere/chat/history/search', {
-      params: { roomId, keyword }
+      params: { roomId, keyword, cursor }
     })
-    return (res as any) || []
+    return (res as any)?.records || []
   },
 
   /**
@@ -647,7 +647,7 @@ export const useChatStore = defineStore('chat', () => {
     if (isSessionListLoading.value) return
     isSessionListLoading.value = true
     try {
-      const res = await chatService.getRoomList({ page: 1, limit: 50 })
+      const res = await chatService.getRoomListByCursor({ pageSize: 50 })
       const newRooms = res.records.map((room) => mapRoomVoToConversation(room))
 
       // [重构] 直接更新 Map，保留现有对象引用
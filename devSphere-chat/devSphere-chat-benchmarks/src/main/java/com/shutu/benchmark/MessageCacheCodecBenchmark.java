@@ -0,0 +1,93 @@
+package com.shutu.benchmark;
+
+import com.shutu.manager.codec.BinaryMessageCacheCodec;
+import com.shutu.manager.codec.JsonMessageCacheCodec;
+import com.shutu.manager.codec.MessageCacheCodec;
+import com.shutu.model.entity.Message;
+import com.shutu.model.enums.chat.MessageStatusEnum;
+import com.shutu.model.enums.chat.MessageTypeEnum;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 房间消息缓存编解码基准测试
+ * 对比 JSON (Hutool) 与二进制编码在一页首屏历史 (21 条) 上的编解码开销，
+ * 并在启动时打印单条消息的编码体积
+ * 运行方式：java -jar target/benchmarks.jar MessageCacheCodecBenchmark，或直接执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCacheCodecBenchmark {
+
+    /**
+     * 首屏历史消息条数 (pageSize + 1)
+     */
+    private static final int PAGE_SIZE = 21;
+
+    @Param({"json", "binary"})
+    private String codecName;
+
+    private MessageCacheCodec codec;
+    private List<Message> messages;
+    private List<byte[]> encoded;
+
+    @Setup
+    public void setup() {
+        codec = JsonMessageCacheCodec.NAME.equals(codecName)
+                ? new JsonMessageCacheCodec()
+                : new BinaryMessageCacheCodec();
+        messages = new ArrayList<>(PAGE_SIZE);
+        encoded = new ArrayList<>(PAGE_SIZE);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Message message = new Message();
+            message.setId(1_000_000L + i);
+            message.setServerMsgId(1_861_234_567_890_123_456L + i);
+            message.setTempId("temp-" + now + "-" + i);
+            message.setRoomId(30_063L);
+            message.setFromUid(1_067_246_875_800_000_001L);
+            message.setContent("今天下午三点开会，记得带上上周的周报 #" + i);
+            message.setStatus(MessageStatusEnum.NORMAL.getStatus());
+            message.setType(MessageTypeEnum.TEXT.getType());
+            message.setCreateTime(new Date(now + i));
+            message.setUpdateTime(new Date(now + i));
+            messages.add(message);
+            encoded.add(codec.encode(message));
+        }
+        System.out.printf("%n[%s] 单条消息编码体积: %d bytes%n", codecName, encoded.get(0).length);
+    }
+
+    @Benchmark
+    public void encodePage(Blackhole bh) {
+        for (Message message : messages) {
+            bh.consume(codec.encode(message));
+        }
+    }
+
+    @Benchmark
+    public void decodePage(Blackhole bh) {
+        for (byte[] data : encoded) {
+            bh.consume(codec.decode(data));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MessageCacheCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,103 @@
+package com.shutu.benchmark;
+
+import com.shutu.benchmark.stub.StubUserFeignClient;
+import com.shutu.config.ImCacheProperties;
+import com.shutu.manager.UserProfileCache;
+import com.shutu.model.entity.Message;
+import com.shutu.model.enums.chat.MessageStatusEnum;
+import com.shutu.model.enums.chat.MessageTypeEnum;
+import com.shutu.model.enums.ws.WSReqTypeEnum;
+import com.shutu.model.vo.ws.response.ChatMessageResp;
+import com.shutu.model.vo.ws.response.WSBaseResp;
+import com.shutu.util.WsFrameUtils;
+import com.shutu.websocket.adapter.WSAdapter;
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 推送响应构建基准测试
+ * 消费端每条落库消息都会经过 WSAdapter.buildMessageResp (发送者资料取自本地缓存) 并序列化为 JSON 写入池化内存，
+ * 对应 MessageStreamListener.pushMessage 与 WsFrameUtils.encode
+ * 用户资料由进程内替身提供，缓存预热后测量的是命中路径
+ * 运行方式：java -jar target/benchmarks.jar MessageRespBenchmark，或直接执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageRespBenchmark {
+
+    private static final long FROM_UID = 1_067_246_875_800_000_001L;
+
+    /**
+     * 消息内容长度 (字符)
+     */
+    @Param({"32", "1024"})
+    private int contentLength;
+
+    private WSAdapter wsAdapter;
+    private Message message;
+    private String tempId;
+
+    @Setup
+    public void setup() {
+        UserProfileCache userProfileCache = new UserProfileCache(StubUserFeignClient.create(), new ImCacheProperties());
+        userProfileCache.init();
+        // 预热发送者资料，测量缓存命中路径
+        userProfileCache.get(FROM_UID);
+
+        wsAdapter = new WSAdapter();
+        Field field = ReflectionUtils.findField(WSAdapter.class, "userProfileCache");
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, wsAdapter, userProfileCache);
+
+        long now = System.currentTimeMillis();
+        message = new Message();
+        message.setId(1_000_000L);
+        message.setServerMsgId(1_861_234_567_890_123_456L);
+        message.setRoomId(30_063L);
+        message.setFromUid(FROM_UID);
+        message.setContent("消".repeat(contentLength));
+        message.setStatus(MessageStatusEnum.NORMAL.getStatus());
+        message.setType(MessageTypeEnum.TEXT.getType());
+        message.setCreateTime(new Date(now));
+        message.setUpdateTime(new Date(now));
+        tempId = "temp-" + now;
+    }
+
+    @Benchmark
+    public ChatMessageResp buildMessageResp() {
+        return wsAdapter.buildMessageResp(message, tempId);
+    }
+
+    @Benchmark
+    public int buildAndEncode() {
+        WSBaseResp<ChatMessageResp> wsResp = new WSBaseResp<>();
+        wsResp.setType(WSReqTypeEnum.CHAT.getType());
+        wsResp.setData(wsAdapter.buildMessageResp(message, tempId));
+        ByteBuf payload = WsFrameUtils.encode(wsResp);
+        try {
+            return payload.readableBytes();
+        } finally {
+            payload.release();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MessageRespBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
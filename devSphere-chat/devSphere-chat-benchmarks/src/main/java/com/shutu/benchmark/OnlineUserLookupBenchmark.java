@@ -0,0 +1,110 @@
+package com.shutu.benchmark;
+
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本机在线用户表查找基准测试
+ * 结构与 WebSocketServiceImpl.ONLINE_UID_MAP 一致 (uid -> 该用户的全部连接)，
+ * 推送路径 sendToUid 先 containsKey 判断是否本机在线，再 get 取连接列表
+ * 1. hit: 本机在线用户 (containsKey + get)
+ * 2. miss: 不在本机的用户 (containsKey 未命中，随后走路由)
+ * 运行方式：java -jar target/benchmarks.jar OnlineUserLookupBenchmark，或直接执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OnlineUserLookupBenchmark {
+
+    /**
+     * 查找键数量 (2 的幂，按位与取下标)
+     */
+    private static final int LOOKUP_KEYS = 1 << 16;
+
+    /**
+     * 本机在线用户数
+     */
+    @Param({"100000", "1000000"})
+    private int onlineUsers;
+
+    private ConcurrentHashMap<Long, CopyOnWriteArrayList<Channel>> onlineUidMap;
+    private Long[] hitKeys;
+    private Long[] missKeys;
+    private EmbeddedChannel channel;
+
+    @Setup
+    public void setup() {
+        // 所有用户共用一个连接，只关心表本身的查找开销
+        channel = new EmbeddedChannel();
+        onlineUidMap = new ConcurrentHashMap<>();
+        SplittableRandom random = new SplittableRandom(42);
+        Long[] uids = new Long[onlineUsers];
+        for (int i = 0; i < onlineUsers; i++) {
+            // 雪花ID量级的 uid
+            long uid;
+            do {
+                uid = 1_067_246_875_800_000_000L + random.nextLong(1L << 40);
+            } while (onlineUidMap.containsKey(uid));
+            uids[i] = uid;
+            onlineUidMap.computeIfAbsent(uid, k -> new CopyOnWriteArrayList<>()).add(channel);
+        }
+
+        hitKeys = new Long[LOOKUP_KEYS];
+        missKeys = new Long[LOOKUP_KEYS];
+        for (int i = 0; i < LOOKUP_KEYS; i++) {
+            // 装箱后的新对象，与推送时从消息中解析出的 uid 一致 (不与表中的键共享实例)
+            hitKeys[i] = Long.valueOf(uids[random.nextInt(onlineUsers)].longValue());
+            long miss;
+            do {
+                miss = 1_067_246_875_800_000_000L + random.nextLong(1L << 40);
+            } while (onlineUidMap.containsKey(miss));
+            missKeys[i] = miss;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index;
+
+        int next() {
+            return index++ & (LOOKUP_KEYS - 1);
+        }
+    }
+
+    @Benchmark
+    public List<Channel> hit(Cursor cursor) {
+        Long uid = hitKeys[cursor.next()];
+        return onlineUidMap.containsKey(uid) ? onlineUidMap.get(uid) : null;
+    }
+
+    @Benchmark
+    public boolean miss(Cursor cursor) {
+        return onlineUidMap.containsKey(missKeys[cursor.next()]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(OnlineUserLookupBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
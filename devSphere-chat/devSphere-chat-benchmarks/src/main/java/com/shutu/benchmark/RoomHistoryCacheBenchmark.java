@@ -0,0 +1,103 @@
+package com.shutu.benchmark;
+
+import com.shutu.benchmark.stub.InMemoryRedisTemplate;
+import com.shutu.config.ImCacheProperties;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.manager.RoomMessageCacheManager;
+import com.shutu.manager.codec.BinaryMessageCacheCodec;
+import com.shutu.manager.codec.JsonMessageCacheCodec;
+import com.shutu.manager.codec.MessageCacheCodec;
+import com.shutu.model.entity.Message;
+import com.shutu.model.enums.chat.MessageStatusEnum;
+import com.shutu.model.enums.chat.MessageTypeEnum;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 首屏历史消息缓存读取基准测试
+ * MessageServiceImpl.listMessageVoByPage 首页查询经 RoomMessageCacheManager.getLatest 读取 ZSet，
+ * 测量按首字节选择解码器、逐条解码、可见性过滤与新鲜度校验的开销
+ * (原先的解码后再排序已由 ZREVRANGE 的倒序结果取代)
+ * Redis 由进程内 ZSet 替身提供，不含网络往返
+ * 运行方式：java -jar target/benchmarks.jar RoomHistoryCacheBenchmark，或直接执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomHistoryCacheBenchmark {
+
+    private static final long ROOM_ID = 30_063L;
+
+    /**
+     * 首屏条数 (接口默认 pageSize)
+     */
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * 缓存中已有的数据编码
+     */
+    @Param({"json", "binary"})
+    private String codecName;
+
+    private RoomMessageCacheManager cacheManager;
+    private long latestMsgId;
+
+    @Setup
+    public void setup() {
+        ImCacheProperties cacheProperties = new ImCacheProperties();
+        cacheProperties.setCodec(codecName);
+        MessageCacheCodec codec = JsonMessageCacheCodec.NAME.equals(codecName)
+                ? new JsonMessageCacheCodec()
+                : new BinaryMessageCacheCodec();
+
+        InMemoryRedisTemplate redisTemplate = new InMemoryRedisTemplate();
+        byte[] key = (RedisKeyConstant.IM_ROOM_MSG_KEY + ROOM_ID).getBytes(StandardCharsets.UTF_8);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < cacheProperties.getRoomHistorySize(); i++) {
+            Message message = new Message();
+            message.setId(1_000_000L + i);
+            message.setServerMsgId(1_861_234_567_890_123_456L + i);
+            message.setTempId("temp-" + now + "-" + i);
+            message.setRoomId(ROOM_ID);
+            message.setFromUid(1_067_246_875_800_000_001L + i % 10);
+            message.setContent("今天下午三点开会，记得带上上周的周报 #" + i);
+            message.setStatus(MessageStatusEnum.NORMAL.getStatus());
+            message.setType(MessageTypeEnum.TEXT.getType());
+            message.setCreateTime(new Date(now + i));
+            message.setUpdateTime(new Date(now + i));
+            redisTemplate.zAdd(key, codec.encode(message), message.getId().doubleValue());
+            latestMsgId = message.getId();
+        }
+
+        // 与容器中的注入顺序一致
+        cacheManager = new RoomMessageCacheManager(redisTemplate, cacheProperties,
+                List.of(new BinaryMessageCacheCodec(), new JsonMessageCacheCodec()));
+        cacheManager.init();
+        if (cacheManager.getLatest(ROOM_ID, PAGE_SIZE, 0L, latestMsgId) == null) {
+            throw new IllegalStateException("缓存替身未命中，基准测试数据有误");
+        }
+    }
+
+    @Benchmark
+    public List<Message> getLatest() {
+        return cacheManager.getLatest(ROOM_ID, PAGE_SIZE, 0L, latestMsgId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RoomHistoryCacheBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
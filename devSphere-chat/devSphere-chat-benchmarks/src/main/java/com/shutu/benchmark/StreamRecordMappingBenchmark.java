@@ -0,0 +1,85 @@
+package com.shutu.benchmark;
+
+import com.shutu.common.listener.MessageStreamListener;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.model.enums.chat.MessageTypeEnum;
+import com.shutu.model.enums.chat.RoomTypeEnum;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息流记录映射基准测试
+ * 一批 Stream 记录 (字段与 WebSocketServiceImpl.sendMessage 写入的一致) 经 StreamMessage.of 解析，
+ * 再转换为待落库的 Message，对应 MessageStreamListener.onBatch 落库前的部分
+ * 房间ID解析需要查询数据库，不在测量范围内 (群聊消息的房间ID即 targetId，映射结果中为空)
+ * 运行方式：java -jar target/benchmarks.jar StreamRecordMappingBenchmark，或直接执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamRecordMappingBenchmark {
+
+    /**
+     * 单批记录数 (默认 devsphere.im.stream.batch-size)
+     */
+    @Param({"1", "100"})
+    private int batchSize;
+
+    private List<MapRecord<String, String, String>> records;
+
+    @Setup
+    public void setup() {
+        records = new ArrayList<>(batchSize);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < batchSize; i++) {
+            Map<String, String> value = new HashMap<>();
+            value.put("server_msg_id", String.valueOf(1_861_234_567_890_123_456L + i));
+            value.put("tempId", "temp-" + now + "-" + i);
+            value.put("fromUserId", String.valueOf(1_067_246_875_800_000_001L + i % 10));
+            value.put("content", "今天下午三点开会，记得带上上周的周报 #" + i);
+            value.put("type", String.valueOf(RoomTypeEnum.GROUP.getType()));
+            value.put("messageType", String.valueOf(MessageTypeEnum.TEXT.getType()));
+            value.put("createTime", String.valueOf(now + i));
+            value.put("targetId", "30063");
+            records.add(StreamRecords.newRecord()
+                    .in(RedisKeyConstant.IM_MESSAGE_STREAM_PREFIX + "0")
+                    .withId(RecordId.of(now, i))
+                    .ofMap(value));
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (MapRecord<String, String, String> record : records) {
+            bh.consume(MessageStreamListener.StreamMessage.of(record));
+        }
+    }
+
+    @Benchmark
+    public void parseAndMap(Blackhole bh) {
+        Date now = new Date();
+        for (MapRecord<String, String, String> record : records) {
+            bh.consume(MessageStreamListener.StreamMessage.of(record).toMessage(now));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(StreamRecordMappingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
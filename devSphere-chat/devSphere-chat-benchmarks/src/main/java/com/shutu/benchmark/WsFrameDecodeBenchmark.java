@@ -0,0 +1,102 @@
+package com.shutu.benchmark;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.shutu.model.enums.chat.MessageTypeEnum;
+import com.shutu.model.enums.chat.RoomTypeEnum;
+import com.shutu.model.enums.ws.WSReqTypeEnum;
+import com.shutu.model.vo.message.ChatMessageVo;
+import com.shutu.model.vo.ws.request.WSBaseReq;
+import com.shutu.websocket.Handler.WsFrameDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入站聊天帧解码基准测试 (帧 -> WSBaseReq -> ChatMessageVo)
+ * 1. json: 旧版文本协议，WsFrameDecoder 解析外层 WSBaseReq，WebSocketServiceImpl.sendMessage 再解析 data 中的 ChatMessageVo
+ * 2. binary: devsphere.bin.v1 子协议，WsFrameDecoder.decodeBinary 一次解析出两者
+ * 运行方式：java -jar target/benchmarks.jar WsFrameDecodeBenchmark，或直接执行 main 方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WsFrameDecodeBenchmark {
+
+    private static final long TARGET_ID = 30_063L;
+
+    /**
+     * 消息内容长度 (字符)
+     */
+    @Param({"32", "1024"})
+    private int contentLength;
+
+    private String textFrame;
+    private ByteBuf binaryFrame;
+
+    @Setup
+    public void setup() {
+        String content = "消".repeat(contentLength);
+        String tempId = "temp-" + System.currentTimeMillis();
+
+        ChatMessageVo chatMessage = new ChatMessageVo();
+        chatMessage.setType(RoomTypeEnum.GROUP.getType());
+        chatMessage.setMessageType(MessageTypeEnum.TEXT.getType());
+        chatMessage.setTempId(tempId);
+        chatMessage.setContent(content);
+        JSONObject req = new JSONObject();
+        req.set("type", WSReqTypeEnum.CHAT.getType());
+        req.set("userId", TARGET_ID);
+        req.set("data", JSONUtil.toJsonStr(chatMessage));
+        textFrame = req.toString();
+
+        byte[] tempIdBytes = tempId.getBytes(StandardCharsets.UTF_8);
+        byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+        binaryFrame = Unpooled.directBuffer(16 + tempIdBytes.length + contentBytes.length)
+                .writeByte(1)
+                .writeByte(WSReqTypeEnum.CHAT.getType())
+                .writeLong(TARGET_ID)
+                .writeByte(RoomTypeEnum.GROUP.getType())
+                .writeByte(MessageTypeEnum.TEXT.getType())
+                .writeShort(tempIdBytes.length)
+                .writeBytes(tempIdBytes)
+                .writeInt(contentBytes.length)
+                .writeBytes(contentBytes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        binaryFrame.release();
+    }
+
+    @Benchmark
+    public ChatMessageVo json() {
+        WSBaseReq req = JSONUtil.toBean(textFrame, WSBaseReq.class);
+        return req.getChatMessage() != null
+                ? req.getChatMessage()
+                : JSONUtil.toBean(req.getData(), ChatMessageVo.class);
+    }
+
+    @Benchmark
+    public ChatMessageVo binary() {
+        // duplicate 共享内容、独立读索引，每次从头解析
+        return WsFrameDecoder.decodeBinary(binaryFrame.duplicate()).getChatMessage();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(WsFrameDecodeBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
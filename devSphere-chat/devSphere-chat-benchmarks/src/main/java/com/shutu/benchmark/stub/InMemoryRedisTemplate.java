@@ -0,0 +1,86 @@
+package com.shutu.benchmark.stub;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内 Redis 替身
+ * 只实现基准测试用到的 ZSet 命令 (ZREVRANGE)，数据由 zAdd 预先写入，
+ * RedisCallback 拿到的是动态代理连接，其它命令直接抛出 UnsupportedOperationException
+ * 用于在不启动 Redis 的情况下测量调用方自身的解码 / 过滤开销
+ */
+public class InMemoryRedisTemplate extends StringRedisTemplate {
+
+    /**
+     * key -> (score -> member)，按 score 倒序
+     */
+    private final Map<ByteBuffer, NavigableMap<Double, byte[]>> zsets = new ConcurrentHashMap<>();
+
+    private final RedisConnection connection;
+
+    public InMemoryRedisTemplate() {
+        RedisZSetCommands zSetCommands = (RedisZSetCommands) Proxy.newProxyInstance(
+                RedisZSetCommands.class.getClassLoader(), new Class<?>[]{RedisZSetCommands.class},
+                (proxy, method, args) -> {
+                    if ("zRevRange".equals(method.getName()) && args.length == 3) {
+                        return zRevRange((byte[]) args[0], (Long) args[1], (Long) args[2]);
+                    }
+                    throw new UnsupportedOperationException("InMemoryRedisTemplate 不支持: " + method.getName());
+                });
+        connection = (RedisConnection) Proxy.newProxyInstance(
+                RedisConnection.class.getClassLoader(), new Class<?>[]{RedisConnection.class},
+                (proxy, method, args) -> {
+                    if ("zSetCommands".equals(method.getName())) {
+                        return zSetCommands;
+                    }
+                    if ("close".equals(method.getName())) {
+                        return null;
+                    }
+                    throw new UnsupportedOperationException("InMemoryRedisTemplate 不支持: " + method.getName());
+                });
+    }
+
+    /**
+     * 预置 ZSet 成员 (相同 score 覆盖)
+     */
+    public void zAdd(byte[] key, byte[] member, double score) {
+        zsets.computeIfAbsent(ByteBuffer.wrap(key), k -> new TreeMap<Double, byte[]>().descendingMap())
+                .put(score, member);
+    }
+
+    @Override
+    public <T> T execute(RedisCallback<T> action) {
+        return action.doInRedis(connection);
+    }
+
+    /**
+     * 与 Redis 一致: 按 score 倒序取 [start, end] (闭区间，end 为负数时从末尾计)
+     */
+    private Set<byte[]> zRevRange(byte[] key, long start, long end) {
+        NavigableMap<Double, byte[]> zset = zsets.get(ByteBuffer.wrap(key));
+        if (zset == null) {
+            return Collections.emptySet();
+        }
+        int size = zset.size();
+        long to = end < 0 ? size + end : Math.min(end, size - 1);
+        Set<byte[]> result = new LinkedHashSet<>();
+        long index = 0;
+        for (byte[] member : zset.values()) {
+            if (index > to) {
+                break;
+            }
+            if (index >= start) {
+                result.add(member);
+            }
+            index++;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package com.shutu.benchmark.stub;
+
+import com.shutu.commons.tools.utils.Result;
+import com.shutu.dto.SysUserDTO;
+import com.shutu.feign.UserFeignClient;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 进程内用户服务替身
+ * listByIds 按ID直接构造用户资料，不发起远程调用；其它接口抛出 UnsupportedOperationException
+ */
+public final class StubUserFeignClient {
+
+    private StubUserFeignClient() {
+
+    }
+
+    public static UserFeignClient create() {
+        return (UserFeignClient) Proxy.newProxyInstance(
+                UserFeignClient.class.getClassLoader(), new Class<?>[]{UserFeignClient.class},
+                (proxy, method, args) -> {
+                    if ("listByIds".equals(method.getName())) {
+                        @SuppressWarnings("unchecked")
+                        List<Long> ids = (List<Long>) args[0];
+                        List<SysUserDTO> users = new ArrayList<>(ids.size());
+                        for (Long id : ids) {
+                            users.add(user(id));
+                        }
+                        return new Result<List<SysUserDTO>>().ok(users);
+                    }
+                    if ("toString".equals(method.getName())) {
+                        return "StubUserFeignClient";
+                    }
+                    throw new UnsupportedOperationException("StubUserFeignClient 不支持: " + method.getName());
+                });
+    }
+
+    private static SysUserDTO user(Long id) {
+        SysUserDTO user = new SysUserDTO();
+        user.setId(id);
+        user.setUsername("user_" + id);
+        user.setHeadUrl("https://cdn.devsphere.com/avatar/" + id + ".png");
+        return user;
+    }
+}
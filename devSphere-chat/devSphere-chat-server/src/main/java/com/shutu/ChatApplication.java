@@ -5,10 +5,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @MapperScan("com.shutu.mapper")
 @EnableFeignClients(basePackages = { "com.shutu.service", "com.shutu.feign" })
 @Import(cn.hutool.extra.spring.SpringUtil.class)
+@EnableScheduling
 @SpringBootApplication(scanBasePackages = "com.shutu")
 public class ChatApplication {
 
@@ -0,0 +1,18 @@
+package com.shutu.common.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 用户在本节点的连接状态变化事件 (首个连接建立 / 最后一个连接断开)
+ */
+@Getter
+public class UserPresenceEvent extends ApplicationEvent {
+
+    private final Long uid;
+
+    public UserPresenceEvent(Object source, Long uid) {
+        super(source);
+        this.uid = uid;
+    }
+}
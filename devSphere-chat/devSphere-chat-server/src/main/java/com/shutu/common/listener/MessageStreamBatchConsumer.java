@@ -0,0 +1,278 @@
+package com.shutu.common.listener;
+
+import com.shutu.config.ImPresenceProperties;
+import com.shutu.config.ImStreamProperties;
+import com.shutu.config.NodeConfig;
+import com.shutu.config.RedisStreamConfig;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.manager.MessageStreamPartitioner;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 消息流分区消费者
+ * 负责：XREADGROUP 整批拉取 -> MessageStreamListener.onBatch 整批处理
+ * 1. 每个分区 (以及迁移中的旧消息流) 一个拉取线程，分区之间并行，分区内串行，保证同一房间的消息按写入顺序落库
+ * 2. 分区租约 (im:stream:lease:{stream}) 保证同一时刻每个分区只有一个节点在消费；
+ *    每个节点最多持有 ceil(分区数 / 存活节点数) 个租约，节点加入后多余的租约主动释放，宕机节点的租约过期后被接管
+ * 3. 获得租约后先认领原持有者闲置超过租约时长的未 ACK 消息，再从自己的 Pending List 开始补消费，之后读取新消息
+ * StreamMessageListenerContainer 只能逐条回调，批量模式下由本类接管主业务流的拉取
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageStreamBatchConsumer {
+
+    /**
+     * 存活节点数的刷新间隔 (毫秒)
+     */
+    private static final long NODE_COUNT_REFRESH_MILLIS = 5000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final MessageStreamListener messageStreamListener;
+    private final MessageStreamPartitioner partitioner;
+    private final NodeConfig nodeConfig;
+    private final ImStreamProperties streamProperties;
+    private final ImPresenceProperties presenceProperties;
+
+    private DefaultRedisScript<Long> leaseScript;
+    private DefaultRedisScript<Long> releaseScript;
+
+    private volatile boolean running;
+    private final List<Thread> workers = new ArrayList<>();
+
+    /**
+     * 本节点当前持有的租约数
+     */
+    private final AtomicInteger heldLeases = new AtomicInteger();
+
+    private volatile int aliveNodes = 1;
+    private volatile long aliveNodesRefreshedAt;
+
+    @PostConstruct
+    public void init() {
+        leaseScript = new DefaultRedisScript<>();
+        leaseScript.setResultType(Long.class);
+        leaseScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/stream_lease.lua")));
+        releaseScript = new DefaultRedisScript<>();
+        releaseScript.setResultType(Long.class);
+        releaseScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/release_lock.lua")));
+    }
+
+    /**
+     * 启动各分区的拉取线程 (消费者组创建之后调用)
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (String streamKey : partitioner.streamKeys()) {
+            Thread worker = new Thread(() -> pollLoop(streamKey), "im-stream-worker-" + streamKey);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("[Stream批量消费] 拉取线程已启动: consumer={}, streams={}, batchSize={}",
+                nodeConfig.getConsumerName(), workers.size(), streamProperties.getBatchSize());
+    }
+
+    /**
+     * 停止拉取线程，线程退出时释放各自持有的租约
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        workers.clear();
+    }
+
+    private void pollLoop(String streamKey) {
+        Consumer consumer = Consumer.from(RedisStreamConfig.IM_GROUP, nodeConfig.getConsumerName());
+        StreamReadOptions readOptions = StreamReadOptions.empty()
+                .count(streamProperties.getBatchSize())
+                .block(streamProperties.getPollTimeout());
+        String leaseKey = RedisKeyConstant.IM_STREAM_LEASE_PREFIX + streamKey;
+        boolean owned = false;
+        // 获得租约后先按 ID 顺序读自己的 Pending List (从 "0" 开始)，读空后切换为新消息 (">")
+        // 失败未 ACK 的记录仍留在 Pending List，由补偿任务重试，这里只向后推进
+        String drainFrom = null;
+
+        while (running) {
+            try {
+                boolean holding = holdLease(leaseKey, owned);
+                if (!holding) {
+                    if (owned) {
+                        owned = false;
+                        log.info("[Stream批量消费] 已让出分区: stream={}", streamKey);
+                    }
+                    sleep(streamProperties.getPollTimeout().toMillis());
+                    continue;
+                }
+                if (!owned) {
+                    owned = true;
+                    drainFrom = "0";
+                    log.info("[Stream批量消费] 已接管分区: stream={}", streamKey);
+                    claimOrphans(streamKey);
+                }
+
+                boolean draining = drainFrom != null;
+                ReadOffset readOffset = draining ? ReadOffset.from(drainFrom) : ReadOffset.lastConsumed();
+                List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                        .read(consumer, readOptions, StreamOffset.create(streamKey, readOffset));
+                if (records == null || records.isEmpty()) {
+                    drainFrom = null;
+                    continue;
+                }
+                if (draining) {
+                    drainFrom = records.get(records.size() - 1).getId().getValue();
+                }
+                // StringRedisTemplate 的 Hash 序列化器为 String，这里做一次泛型转换
+                @SuppressWarnings("unchecked")
+                List<MapRecord<String, String, String>> batch = (List<MapRecord<String, String, String>>) (Object) records;
+                // Pending List 中的记录是重投递，幂等检查必须回查数据库
+                messageStreamListener.onBatch(batch, draining);
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.error("[Stream批量消费] 拉取异常，1秒后重试: stream={}", streamKey, e);
+                sleep(1000);
+            }
+        }
+        if (owned) {
+            // 清除中断标记，否则释放租约的 Redis 调用会被中断
+            Thread.interrupted();
+            heldLeases.decrementAndGet();
+            releaseLease(leaseKey);
+        }
+        log.info("[Stream批量消费] 拉取线程已退出: stream={}", streamKey);
+    }
+
+    /**
+     * 获取或续期租约
+     * 已持有且超出公平份额时主动释放 (让给新加入的节点)，未持有且份额已满时不去竞争
+     *
+     * @param owned 本线程上一轮是否持有租约
+     * @return 本轮是否可以消费
+     */
+    private boolean holdLease(String leaseKey, boolean owned) {
+        int nodes = aliveNodes();
+        int fairShare = (partitioner.streamKeys().size() + nodes - 1) / nodes;
+        if (owned) {
+            // CAS 保证多个线程同时发现超额时只让出超出的部分
+            int held = heldLeases.get();
+            if (held > fairShare && heldLeases.compareAndSet(held, held - 1)) {
+                releaseLease(leaseKey);
+                return false;
+            }
+            if (!acquireLease(leaseKey)) {
+                heldLeases.decrementAndGet();
+                log.warn("[Stream批量消费] 租约已被其他节点持有: lease={}", leaseKey);
+                return false;
+            }
+            return true;
+        }
+        if (heldLeases.get() >= fairShare || !acquireLease(leaseKey)) {
+            return false;
+        }
+        heldLeases.incrementAndGet();
+        return true;
+    }
+
+    private boolean acquireLease(String leaseKey) {
+        Long acquired = redisTemplate.execute(leaseScript, Collections.singletonList(leaseKey),
+                nodeConfig.getConsumerName(), String.valueOf(streamProperties.getPartitionLeaseTtl().toMillis()));
+        return acquired != null && acquired == 1L;
+    }
+
+    private void releaseLease(String leaseKey) {
+        try {
+            redisTemplate.execute(releaseScript, Collections.singletonList(leaseKey), nodeConfig.getConsumerName());
+        } catch (Exception e) {
+            // 释放失败时租约自然过期
+            log.warn("[Stream批量消费] 释放租约失败: lease={}", leaseKey, e);
+        }
+    }
+
+    /**
+     * 认领其他消费者闲置超过租约时长的未 ACK 消息 (原持有者宕机或已让出分区)
+     * 认领后进入本消费者的 Pending List，随后从 "0" 开始读取时按 ID 顺序处理
+     */
+    private void claimOrphans(String streamKey) {
+        String self = nodeConfig.getConsumerName();
+        Range<String> range = Range.unbounded();
+        while (running) {
+            PendingMessages pending = redisTemplate.opsForStream().pending(
+                    streamKey, RedisStreamConfig.IM_GROUP, range, streamProperties.getBatchSize());
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<RecordId> orphans = new ArrayList<>();
+            for (PendingMessage message : pending) {
+                if (!self.equals(message.getConsumerName())
+                        && message.getElapsedTimeSinceLastDelivery().compareTo(streamProperties.getPartitionLeaseTtl()) >= 0) {
+                    orphans.add(message.getId());
+                }
+            }
+            if (!orphans.isEmpty()) {
+                redisTemplate.opsForStream().claim(streamKey, RedisStreamConfig.IM_GROUP, self,
+                        streamProperties.getPartitionLeaseTtl(), orphans.toArray(new RecordId[0]));
+                log.info("[Stream批量消费] 认领未确认消息: stream={}, count={}", streamKey, orphans.size());
+            }
+            if (pending.size() < streamProperties.getBatchSize()) {
+                return;
+            }
+            String lastId = pending.get(pending.size() - 1).getIdAsString();
+            range = Range.of(Range.Bound.exclusive(lastId), Range.Bound.unbounded());
+        }
+    }
+
+    /**
+     * 存活节点数 (取自在线状态心跳的节点 ZSet)，短时缓存
+     */
+    private int aliveNodes() {
+        long now = System.currentTimeMillis();
+        if (now - aliveNodesRefreshedAt < NODE_COUNT_REFRESH_MILLIS) {
+            return aliveNodes;
+        }
+        try {
+            Long count = redisTemplate.opsForZSet().count(RedisKeyConstant.IM_PRESENCE_NODES_KEY,
+                    now - presenceProperties.getNodeTtl().toMillis(), Double.MAX_VALUE);
+            aliveNodes = count == null ? 1 : (int) Math.max(1, count);
+        } catch (Exception e) {
+            log.warn("[Stream批量消费] 查询存活节点失败，沿用上次结果: {}", aliveNodes, e);
+        }
+        aliveNodesRefreshedAt = now;
+        return aliveNodes;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -4,6 +4,13 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.shutu.config.NodeConfig;
 import com.shutu.config.RedisStreamConfig;
+import com.shutu.manager.ConversationListManager;
+import com.shutu.manager.MessageFanoutEngine;
+import com.shutu.manager.MessageIdempotencyGate;
+import com.shutu.manager.RoomMessageCacheManager;
+import com.shutu.manager.UnreadCounterManager;
+import com.shutu.manager.metrics.ImPipelineMetrics;
+import com.shutu.manager.search.MessageIndexFeeder;
 import com.shutu.model.entity.Message;
 import com.shutu.model.entity.Room;
 import com.shutu.model.entity.RoomFriend;
@@ -18,7 +25,6 @@ import com.shutu.service.MessageService;
 import com.shutu.service.RoomFriendService;
 import com.shutu.service.RoomService;
 import com.shutu.service.UserRoomRelateService;
-import com.shutu.websocket.service.WebSocketService;
 import com.shutu.websocket.adapter.WSAdapter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,17 +33,20 @@ import org.springframework.data.redis.connection.stream.Consumer;
 import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.connection.stream.PendingMessage;
 import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.stream.StreamListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.support.TransactionTemplate;
-import java.util.List;
-import java.util.Map;
-import java.util.Date;
+import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * 消息日志消费者
  * 负责：Redis Stream -> MySQL -> WebSocket Push
+ * 支持两种消费方式：
+ * 1. onMessage: 逐条消费 (监听容器 / 补偿任务)
+ * 2. onBatch: 整批消费 (批量幂等、批量落库、批量 ACK)
  */
 @Slf4j
 @Component
@@ -48,11 +57,17 @@ public class MessageStreamListener implements StreamListener<String, MapRecord<S
     private final RoomService roomService;
     private final UserRoomRelateService userRoomRelateService;
     private final RoomFriendService roomFriendService;
-    private final WebSocketService webSocketService;
     private final WSAdapter wsAdapter;
     private final TransactionTemplate transactionTemplate;
     private final StringRedisTemplate redisTemplate;
     private final NodeConfig nodeConfig;
+    private final RoomMessageCacheManager roomMessageCacheManager;
+    private final UnreadCounterManager unreadCounterManager;
+    private final ConversationListManager conversationListManager;
+    private final MessageFanoutEngine messageFanoutEngine;
+    private final MessageIdempotencyGate idempotencyGate;
+    private final MessageIndexFeeder messageIndexFeeder;
+    private final ImPipelineMetrics pipelineMetrics;
 
     // 死信队列 Key
     private static final String DLQ_STREAM_KEY = "im:message:dlq";
@@ -61,67 +76,337 @@ public class MessageStreamListener implements StreamListener<String, MapRecord<S
 
     @Override
     public void onMessage(MapRecord<String, String, String> record) {
-        Map<String, String> value = record.getValue();
+        onMessage(record, false);
+    }
 
+    /**
+     * 逐条消费
+     *
+     * @param redelivery 是否为重投递 (补偿任务 / 批处理降级)，重投递时幂等检查必须回查数据库
+     */
+    public void onMessage(MapRecord<String, String, String> record, boolean redelivery) {
         // 1. 解析消息
-        String serverMsgIdStr = value.get("server_msg_id");
-        Long serverMsgId = serverMsgIdStr != null ? Long.valueOf(serverMsgIdStr) : null;
-        String tempId = value.get("tempId");
-        Long fromUserId = Long.valueOf(value.get("fromUserId"));
-        String content = value.get("content");
-        int type = Integer.parseInt(value.get("type"));
-        Long targetId = Long.valueOf(value.get("targetId"));
-        String msgTypeStr = value.get("messageType");
-        int messageType = msgTypeStr != null ? Integer.parseInt(msgTypeStr) : MessageTypeEnum.TEXT.getType();
+        StreamMessage msg = StreamMessage.of(record);
+        Long serverMsgId = msg.serverMsgId;
+        String tempId = msg.tempId;
+        Long fromUserId = msg.fromUserId;
+        String content = msg.content;
+        int type = msg.type;
+        Long targetId = msg.targetId;
+        int messageType = msg.messageType;
+        // 重投递的停留时间包含重试等待，不计入
+        if (!redelivery) {
+            recordDwell(msg);
+        }
 
         // 2. 幂等性检查
-        if (checkIdempotency(serverMsgId, tempId, type, record.getId())) {
+        long idempotencyStart = System.nanoTime();
+        boolean consumed = checkIdempotency(serverMsgId, tempId, record, redelivery);
+        pipelineMetrics.recordSince(ImPipelineMetrics.STAGE_IDEMPOTENCY, idempotencyStart);
+        if (consumed) {
+            pipelineMetrics.count(ImPipelineMetrics.RESULT_DUPLICATE, 1);
             return;
         }
 
-        log.info("[Stream消费] 收到消息: tempId={}, content={}, msgType={}", tempId, content, messageType);
+        log.debug("[Stream消费] 收到消息: tempId={}, msgType={}", tempId, messageType);
 
         try {
             // 3. 确定房间ID
             Long roomId = resolveRoomId(type, fromUserId, targetId);
             if (roomId == null) {
                 log.error("[Stream消费] 未找到房间ID，消息非法: tempId={}", tempId);
+                pipelineMetrics.count(ImPipelineMetrics.RESULT_INVALID, 1);
                 // 无法修复的业务错误，直接ACK
-                ackMessage(record.getId());
+                ackMessage(record);
                 return;
             }
 
             // 4. 数据库事务处理
+            long dbStart = System.nanoTime();
             Message savedMessage = saveMessageTransaction(roomId, fromUserId, targetId, content, messageType,
                     serverMsgId, tempId);
+            pipelineMetrics.recordSince(ImPipelineMetrics.STAGE_DB_TX, dbStart);
             if (savedMessage == null) {
                 return; // 事务失败或已处理
             }
 
-            // 5. 推送 WebSocket
-            pushMessage(savedMessage, tempId, type);
+            // 5. 已提交，先 ACK，之后的步骤失败不再触发重试
+            ackMessage(record);
+            pipelineMetrics.count(ImPipelineMetrics.RESULT_SAVED, 1);
 
-            // 6. 写入 Redis 缓存 (Write-Through)
-            writeToCache(roomId, savedMessage);
-
-            // 7. ACK 确认
-            ackMessage(record.getId());
+            // 6. 推送 WebSocket，写入 Redis 缓存 (Write-Through)，更新未读计数与会话列表，广播索引变更
+            afterCommit(List.of(savedMessage), Collections.singletonList(tempId));
 
         } catch (Exception e) {
             log.error("[Stream消费] 处理异常: tempId={}", tempId, e);
+            pipelineMetrics.count(ImPipelineMetrics.RESULT_FAILED, 1);
             // 8. 异常处理与 DLQ
             handleException(record);
         }
     }
 
+    /**
+     * 批量消费一次拉取到的全部记录
+     * 1. 批量幂等检查 (一次查询)
+     * 2. 批量解析私聊房间 (一次查询)
+     * 3. 单事务多行插入 + 按房间合并会话更新
+     * 4. 推送 + Pipeline 写缓存
+     * 5. 一次 XACK 确认整批
+     * 批处理在落库提交前失败时降级为逐条处理，由 onMessage 负责重试与死信；
+     * 提交后的推送与缓存等步骤失败只记录日志，已提交的消息不会被重放 (避免重复推送与重复计数)
+     * 一批记录必须来自同一个消息流 (分区)，整批按第一条记录的流 ACK
+     */
+    public void onBatch(List<MapRecord<String, String, String>> records) {
+        onBatch(records, false);
+    }
+
+    /**
+     * 批量消费
+     *
+     * @param redelivery 是否为 Pending List 中的重投递记录，重投递时幂等检查必须回查数据库
+     */
+    public void onBatch(List<MapRecord<String, String, String>> records, boolean redelivery) {
+        if (records.isEmpty()) {
+            return;
+        }
+        String streamKey = records.get(0).getStream();
+        List<RecordId> ackIds = new ArrayList<>(records.size());
+        List<StreamMessage> parsed = new ArrayList<>(records.size());
+        for (MapRecord<String, String, String> record : records) {
+            try {
+                StreamMessage msg = StreamMessage.of(record);
+                parsed.add(msg);
+                if (!redelivery) {
+                    recordDwell(msg);
+                }
+            } catch (Exception e) {
+                // 字段缺失或格式错误，重试也无法修复，直接ACK
+                log.error("[Stream批量消费] 消息格式非法，直接丢弃: id={}", record.getId(), e);
+                pipelineMetrics.count(ImPipelineMetrics.RESULT_INVALID, 1);
+                ackIds.add(record.getId());
+            }
+        }
+
+        try {
+            // 1. 批量幂等检查
+            long idempotencyStart = System.nanoTime();
+            List<StreamMessage> fresh = filterConsumed(parsed, ackIds, redelivery);
+            pipelineMetrics.recordSince(ImPipelineMetrics.STAGE_IDEMPOTENCY, idempotencyStart);
+            pipelineMetrics.count(ImPipelineMetrics.RESULT_DUPLICATE, parsed.size() - fresh.size());
+
+            // 2. 批量确定房间ID
+            List<StreamMessage> valid = resolveRoomIds(fresh, ackIds);
+            pipelineMetrics.count(ImPipelineMetrics.RESULT_INVALID, fresh.size() - valid.size());
+
+            if (!valid.isEmpty()) {
+                // 3. 批量落库
+                long dbStart = System.nanoTime();
+                List<Message> savedMessages = saveBatchTransaction(valid);
+                pipelineMetrics.recordSince(ImPipelineMetrics.STAGE_DB_TX, dbStart);
+
+                // 4. 已提交的记录立即加入待ACK列表，降级时不会再逐条重放
+                valid.forEach(msg -> ackIds.add(msg.recordId));
+                pipelineMetrics.count(ImPipelineMetrics.RESULT_SAVED, valid.size());
+
+                // 5. 推送 WebSocket，写入 Redis 缓存，更新未读计数与会话列表，广播索引变更
+                afterCommit(savedMessages, valid.stream().map(msg -> msg.tempId).collect(Collectors.toList()));
+            }
+            log.debug("[Stream批量消费] 批次处理完成: 拉取={}, 落库={}", records.size(), valid.size());
+        } catch (Exception e) {
+            log.error("[Stream批量消费] 批处理失败，降级为逐条处理: size={}", parsed.size(), e);
+            Set<RecordId> handled = new HashSet<>(ackIds);
+            for (StreamMessage msg : parsed) {
+                if (!handled.contains(msg.recordId)) {
+                    // 去重标记已在本批次写入，按重投递处理
+                    onMessage(msg.record, true);
+                }
+            }
+        } finally {
+            // 6. 一次性 ACK
+            ackMessages(streamKey, ackIds);
+        }
+    }
+
+    /**
+     * 批量幂等检查：先经 MessageIdempotencyGate 筛出可疑消息，
+     * 仅对可疑消息与缺少 tempId 的旧消息做一次查询，同时匹配 tempId 与 serverMsgId
+     * 已消费的消息重新推送并加入待ACK列表，批内重复的 tempId 只保留第一条
+     *
+     * @return 尚未消费的消息
+     */
+    private List<StreamMessage> filterConsumed(List<StreamMessage> messages, List<RecordId> ackIds, boolean redelivery) {
+        Map<String, String> tempIdRecords = new LinkedHashMap<>();
+        for (StreamMessage msg : messages) {
+            if (msg.tempId != null) {
+                tempIdRecords.putIfAbsent(msg.tempId, msg.recordId.getValue());
+            }
+        }
+        Set<String> suspects = idempotencyGate.mayBeConsumed(tempIdRecords, redelivery);
+
+        Set<String> tempIds = new HashSet<>();
+        Set<Long> serverMsgIds = new HashSet<>();
+        for (StreamMessage msg : messages) {
+            if (msg.tempId != null) {
+                if (suspects.contains(msg.tempId)) {
+                    tempIds.add(msg.tempId);
+                } else {
+                    continue;
+                }
+            }
+            if (msg.serverMsgId != null) {
+                serverMsgIds.add(msg.serverMsgId);
+            }
+        }
+
+        Map<String, Message> byTempId = new HashMap<>();
+        Map<Long, Message> byServerMsgId = new HashMap<>();
+        if (!tempIds.isEmpty() || !serverMsgIds.isEmpty()) {
+            List<Message> existedList = messageService.list(new LambdaQueryWrapper<Message>()
+                    .in(!tempIds.isEmpty(), Message::getTempId, tempIds)
+                    .or(!tempIds.isEmpty() && !serverMsgIds.isEmpty())
+                    .in(!serverMsgIds.isEmpty(), Message::getServerMsgId, serverMsgIds));
+            for (Message existed : existedList) {
+                if (existed.getTempId() != null) {
+                    byTempId.putIfAbsent(existed.getTempId(), existed);
+                }
+                if (existed.getServerMsgId() != null) {
+                    byServerMsgId.putIfAbsent(existed.getServerMsgId(), existed);
+                }
+            }
+        }
+
+        List<StreamMessage> fresh = new ArrayList<>(messages.size());
+        Set<String> seenTempIds = new HashSet<>();
+        for (StreamMessage msg : messages) {
+            Message existed = msg.tempId != null ? byTempId.get(msg.tempId) : null;
+            if (existed == null && msg.serverMsgId != null) {
+                existed = byServerMsgId.get(msg.serverMsgId);
+            }
+            if (existed != null) {
+                log.warn("[幂等检查] 消息已消费，执行跳过: tempId={}, messageId={}", msg.tempId, existed.getId());
+                pushMessage(existed, msg.tempId);
+                ackIds.add(msg.recordId);
+                continue;
+            }
+            if (msg.tempId != null && !seenTempIds.add(msg.tempId)) {
+                // 同一批次内的重复投递，由第一条负责落库与推送
+                log.warn("[幂等检查] 批内重复消息，执行跳过: tempId={}", msg.tempId);
+                ackIds.add(msg.recordId);
+                continue;
+            }
+            fresh.add(msg);
+        }
+        return fresh;
+    }
+
+    /**
+     * 批量确定房间ID：群聊直接取 targetId，私聊按 room_key 一次查询
+     * 找不到房间的消息属于无法修复的业务错误，直接加入待ACK列表
+     *
+     * @return 已确定房间的消息
+     */
+    private List<StreamMessage> resolveRoomIds(List<StreamMessage> messages, List<RecordId> ackIds) {
+        Set<String> roomKeys = messages.stream()
+                .filter(msg -> msg.type != RoomTypeEnum.GROUP.getType())
+                .map(msg -> buildRoomKey(msg.fromUserId, msg.targetId))
+                .collect(Collectors.toSet());
+
+        Map<String, Long> roomKeyMap = new HashMap<>();
+        if (!roomKeys.isEmpty()) {
+            List<RoomFriend> roomFriends = roomFriendService.list(new LambdaQueryWrapper<RoomFriend>()
+                    .in(RoomFriend::getRoomKey, roomKeys)
+                    .select(RoomFriend::getRoomKey, RoomFriend::getRoomId));
+            for (RoomFriend rf : roomFriends) {
+                roomKeyMap.put(rf.getRoomKey(), rf.getRoomId());
+            }
+        }
+
+        List<StreamMessage> valid = new ArrayList<>(messages.size());
+        for (StreamMessage msg : messages) {
+            msg.roomId = msg.type == RoomTypeEnum.GROUP.getType()
+                    ? msg.targetId
+                    : roomKeyMap.get(buildRoomKey(msg.fromUserId, msg.targetId));
+            if (msg.roomId == null) {
+                log.error("[Stream消费] 未找到房间ID，消息非法: tempId={}", msg.tempId);
+                ackIds.add(msg.recordId);
+                continue;
+            }
+            valid.add(msg);
+        }
+        return valid;
+    }
+
+    /**
+     * 批量事务：多行插入消息 + 按房间合并会话状态更新
+     * 同一房间内的多条消息只更新一次 last_msg_id / is_deleted，
+     * 同一发送者只更新一次已读位置
+     *
+     * @return 与入参顺序一致、已回填ID的消息
+     */
+    private List<Message> saveBatchTransaction(List<StreamMessage> batch) {
+        return transactionTemplate.execute(status -> {
+            try {
+                // 1. 多行插入消息主体
+                Date now = new Date();
+                List<Message> messages = new ArrayList<>(batch.size());
+                for (StreamMessage msg : batch) {
+                    messages.add(msg.toMessage(now));
+                }
+                messageService.insertBatch(messages);
+
+                // 按房间合并：最后一条消息 + 每个发送者的最大消息ID
+                Map<Long, Message> lastMessageMap = new LinkedHashMap<>();
+                Map<Long, Map<Long, Long>> senderReadMap = new LinkedHashMap<>();
+                for (Message message : messages) {
+                    lastMessageMap.put(message.getRoomId(), message);
+                    senderReadMap.computeIfAbsent(message.getRoomId(), k -> new HashMap<>())
+                            .merge(message.getFromUid(), message.getId(), Math::max);
+                }
+
+                // 2. 更新发送者已读位置
+                senderReadMap.forEach((roomId, senders) -> senders.forEach((uid, msgId) ->
+                        userRoomRelateService.update(new LambdaUpdateWrapper<UserRoomRelate>()
+                                .eq(UserRoomRelate::getUserId, uid)
+                                .eq(UserRoomRelate::getRoomId, roomId)
+                                .set(UserRoomRelate::getLatestReadMsgId, msgId))));
+
+                // 3. 激活被隐藏的会话
+                userRoomRelateService.update(new LambdaUpdateWrapper<UserRoomRelate>()
+                        .in(UserRoomRelate::getRoomId, lastMessageMap.keySet())
+                        .set(UserRoomRelate::getIsDeleted, 0));
+
+                // 4. 更新房间活跃时间
+                List<Room> rooms = lastMessageMap.values().stream().map(message -> {
+                    Room room = new Room();
+                    room.setId(message.getRoomId());
+                    room.setLastMsgId(message.getId());
+                    room.setActiveTime(message.getCreateTime());
+                    return room;
+                }).collect(Collectors.toList());
+                roomService.updateBatchById(rooms);
+
+                return messages;
+            } catch (Exception e) {
+                status.setRollbackOnly();
+                log.error("[事务失败] 批量落库失败: size={}", batch.size(), e);
+                throw e;
+            }
+        });
+    }
+
     /**
      * 幂等性检查
      * 优先使用 tempId (客户端防抖)，其次兼容 serverMsgId (旧数据)
+     * 带 tempId 的消息先经 MessageIdempotencyGate 判断，确定为首次消费时不再回查数据库
      * 
      * @return true 表示已处理过（幂等生效），false 表示未处理
      */
-    private boolean checkIdempotency(Long serverMsgId, String tempId, int type,
-            org.springframework.data.redis.connection.stream.RecordId recordId) {
+    private boolean checkIdempotency(Long serverMsgId, String tempId, MapRecord<String, String, String> record,
+            boolean redelivery) {
+        if (tempId != null && !idempotencyGate.mayBeConsumed(tempId, record.getId().getValue(), redelivery)) {
+            return false;
+        }
+
         // 1. 优先检查 tempId (最准确的客户端幂等)
         if (tempId != null) {
             Message existed = messageService.getOne(new LambdaQueryWrapper<Message>()
@@ -129,8 +414,8 @@ public class MessageStreamListener implements StreamListener<String, MapRecord<S
                     .last("limit 1"));
             if (existed != null) {
                 log.warn("[幂等检查] 此 tempId 已消费，执行跳过: tempId={}, messageId={}", tempId, existed.getId());
-                pushMessage(existed, tempId, type);
-                ackMessage(recordId);
+                pushMessage(existed, tempId);
+                ackMessage(record);
                 return true;
             }
         }
@@ -142,8 +427,8 @@ public class MessageStreamListener implements StreamListener<String, MapRecord<S
                     .last("limit 1"));
             if (existed != null) {
                 log.warn("[幂等检查] 此 serverMsgId 已消费，执行跳过: serverMsgId={}, messageId={}", serverMsgId, existed.getId());
-                pushMessage(existed, tempId, type);
-                ackMessage(recordId);
+                pushMessage(existed, tempId);
+                ackMessage(record);
                 return true;
             }
         }
@@ -203,31 +488,31 @@ public class MessageStreamListener implements StreamListener<String, MapRecord<S
     }
 
     /**
-     * 写入 Redis ZSet 缓存
+     * 批量确认消息 (单次 XACK)
      */
-    private void writeToCache(Long roomId, Message message) {
+    private void ackMessages(String streamKey, List<RecordId> recordIds) {
+        if (recordIds.isEmpty()) {
+            return;
+        }
         try {
-            String cacheKey = com.shutu.constant.RedisKeyConstant.IM_ROOM_MSG_KEY + roomId;
-            String json = cn.hutool.json.JSONUtil.toJsonStr(message);
-            // Add to ZSet
-            redisTemplate.opsForZSet().add(cacheKey, json, message.getId());
-            // 保留最新的 200 条
-            redisTemplate.opsForZSet().removeRange(cacheKey, 0, -201);
-            // 自动延期 7 天
-            redisTemplate.expire(cacheKey, java.time.Duration.ofDays(7));
+            redisTemplate.opsForStream().acknowledge(
+                    streamKey,
+                    RedisStreamConfig.IM_GROUP,
+                    recordIds.toArray(new RecordId[0]));
         } catch (Exception e) {
-            log.error("[Cache写入] 失败: roomId={}", roomId, e);
+            // ACK 失败的记录会留在 Pending List，由补偿任务重试，幂等检查保证不会重复落库
+            log.error("[Stream消费] 批量ACK失败: size={}", recordIds.size(), e);
         }
     }
 
     /**
-     * 确认消息 (ACK)
+     * 确认消息 (ACK)，记录来自哪个分区就在哪个分区确认
      */
-    private void ackMessage(org.springframework.data.redis.connection.stream.RecordId recordId) {
+    private void ackMessage(MapRecord<String, String, String> record) {
         redisTemplate.opsForStream().acknowledge(
-                RedisStreamConfig.IM_STREAM_KEY,
+                record.getStream(),
                 RedisStreamConfig.IM_GROUP,
-                recordId);
+                record.getId());
     }
 
     /**
@@ -247,13 +532,20 @@ public class MessageStreamListener implements StreamListener<String, MapRecord<S
         }
     }
 
+    /**
+     * 私聊房间 Key: 较小uid_较大uid (与 room_friend.room_key 一致)
+     */
+    private String buildRoomKey(Long fromUserId, Long targetId) {
+        return Math.min(fromUserId, targetId) + "_" + Math.max(fromUserId, targetId);
+    }
+
     /**
      * 异常处理与死信队列
      */
     private void handleException(MapRecord<String, String, String> record) {
         try {
             PendingMessages pendingMessages = redisTemplate.opsForStream().pending(
-                    RedisStreamConfig.IM_STREAM_KEY,
+                    record.getStream(),
                     Consumer.from(RedisStreamConfig.IM_GROUP, nodeConfig.getConsumerName()),
                     Range.just(record.getId().getValue()),
                     1L);
@@ -270,9 +562,10 @@ public class MessageStreamListener implements StreamListener<String, MapRecord<S
 
                 // 1. 写入死信队列
                 redisTemplate.opsForStream().add(DLQ_STREAM_KEY, record.getValue());
+                pipelineMetrics.count(ImPipelineMetrics.RESULT_DEAD_LETTER, 1);
 
                 // 2. ACK 原消息
-                ackMessage(record.getId());
+                ackMessage(record);
             } else {
                 log.info("[重试等待] 消息处理失败,当前次数: {}", deliveryCount);
             }
@@ -282,36 +575,117 @@ public class MessageStreamListener implements StreamListener<String, MapRecord<S
         }
     }
 
+    /**
+     * 落库提交后的步骤：推送、写缓存、未读计数、会话列表、索引广播
+     * 消息已提交并加入待ACK，任一步失败只记录日志、不影响后续步骤，也不抛出，
+     * 否则降级或重试会把已推送的消息再推一次、未读计数再加一次
+     * 缓存缺失由读路径回源修复
+     *
+     * @param tempIds 与 savedMessages 一一对应的客户端临时ID
+     */
+    private void afterCommit(List<Message> savedMessages, List<String> tempIds) {
+        for (int i = 0; i < savedMessages.size(); i++) {
+            pushMessage(savedMessages.get(i), tempIds.get(i));
+        }
+
+        long cacheStart = System.nanoTime();
+        runAfterCommit("写入缓存", () -> roomMessageCacheManager.appendAll(savedMessages));
+        runAfterCommit("更新未读计数", () -> unreadCounterManager.onMessagesSaved(savedMessages));
+        runAfterCommit("更新会话列表", () -> conversationListManager.touch(savedMessages));
+        runAfterCommit("广播索引变更", () -> messageIndexFeeder.publish(savedMessages));
+        pipelineMetrics.recordSince(ImPipelineMetrics.STAGE_CACHE_WRITE, cacheStart);
+    }
+
+    private void runAfterCommit(String step, Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            log.error("[Stream消费] 提交后{}失败，消息已落库不再重试", step, e);
+        }
+    }
+
     /**
      * 推送消息
      */
-    private void pushMessage(Message message, String tempId, int type) {
+    private void pushMessage(Message message, String tempId) {
+        long start = System.nanoTime();
         try {
             ChatMessageResp resp = wsAdapter.buildMessageResp(message, tempId);
             WSBaseResp<ChatMessageResp> wsResp = new WSBaseResp<>();
             wsResp.setType(WSReqTypeEnum.CHAT.getType());
             wsResp.setData(resp);
 
-            webSocketService.sendToUid(wsResp, message.getFromUid());
-
-            if (type == RoomTypeEnum.PRIVATE.getType()) {
-                List<UserRoomRelate> members = userRoomRelateService.list(new LambdaQueryWrapper<UserRoomRelate>()
-                        .eq(UserRoomRelate::getRoomId, message.getRoomId())
-                        .ne(UserRoomRelate::getUserId, message.getFromUid()));
-                for (UserRoomRelate member : members) {
-                    webSocketService.sendToUid(wsResp, member.getUserId());
-                }
-            } else {
-                List<UserRoomRelate> list = userRoomRelateService.list(new LambdaQueryWrapper<UserRoomRelate>()
-                        .eq(UserRoomRelate::getRoomId, message.getRoomId()));
-                list.forEach(relate -> {
-                    if (!relate.getUserId().equals(message.getFromUid())) {
-                        webSocketService.sendToUid(wsResp, relate.getUserId());
-                    }
-                });
-            }
+            // 私聊与群聊统一按房间成员扇出 (成员取自本地缓存，按节点合并路由)
+            messageFanoutEngine.pushToRoom(wsResp, message.getRoomId(), message.getFromUid());
         } catch (Exception e) {
             log.error("[推送消息] 失败: roomId={}", message.getRoomId(), e);
+        } finally {
+            pipelineMetrics.recordSince(ImPipelineMetrics.STAGE_PUSH_ENQUEUE, start);
+        }
+    }
+
+    /**
+     * 消息在流中的停留时间: 发送端写入时间 (createTime) 到开始消费
+     */
+    private void recordDwell(StreamMessage msg) {
+        if (msg.createTime != null) {
+            pipelineMetrics.recordMillis(ImPipelineMetrics.STAGE_STREAM_DWELL, System.currentTimeMillis() - msg.createTime);
+        }
+    }
+
+    /**
+     * Stream 记录解析结果
+     * 公开解析与转换方法，供基准测试 (devSphere-chat-benchmarks) 直接调用
+     */
+    public static class StreamMessage {
+        private MapRecord<String, String, String> record;
+        private RecordId recordId;
+        private Long serverMsgId;
+        private String tempId;
+        private Long fromUserId;
+        private String content;
+        private int type;
+        private Long targetId;
+        private int messageType;
+        private Long createTime;
+        private Long roomId;
+
+        public static StreamMessage of(MapRecord<String, String, String> record) {
+            Map<String, String> value = record.getValue();
+            StreamMessage msg = new StreamMessage();
+            msg.record = record;
+            msg.recordId = record.getId();
+            String serverMsgIdStr = value.get("server_msg_id");
+            msg.serverMsgId = serverMsgIdStr != null ? Long.valueOf(serverMsgIdStr) : null;
+            msg.tempId = value.get("tempId");
+            msg.fromUserId = Long.valueOf(value.get("fromUserId"));
+            msg.content = value.get("content");
+            msg.type = Integer.parseInt(value.get("type"));
+            msg.targetId = Long.valueOf(value.get("targetId"));
+            String msgTypeStr = value.get("messageType");
+            msg.messageType = msgTypeStr != null ? Integer.parseInt(msgTypeStr) : MessageTypeEnum.TEXT.getType();
+            String createTimeStr = value.get("createTime");
+            msg.createTime = createTimeStr != null ? Long.valueOf(createTimeStr) : null;
+            return msg;
+        }
+
+        /**
+         * 转换为待落库的消息实体 (roomId 需已解析)
+         *
+         * @param now 本批次统一的创建时间
+         */
+        public Message toMessage(Date now) {
+            Message message = new Message();
+            message.setRoomId(roomId);
+            message.setFromUid(fromUserId);
+            message.setContent(content);
+            message.setType(messageType);
+            message.setStatus(MessageStatusEnum.NORMAL.getStatus());
+            message.setServerMsgId(serverMsgId);
+            message.setTempId(tempId);
+            message.setCreateTime(now);
+            message.setUpdateTime(now);
+            return message;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,148 @@
+package com.shutu.common.listener;
+
+import com.shutu.config.ImRouteProperties;
+import com.shutu.config.NodeConfig;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.manager.route.RouteEnvelopeCodec;
+import com.shutu.websocket.service.WebSocketService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 节点路由流消费者 (devsphere.im.route.transport=stream 时由 RedisStreamConfig 启动)
+ * 负责：XREADGROUP 整批拉取本节点路由流 -> 解码信封 -> 推送本机连接 -> 一次 XACK
+ * 启动时先处理本消费者遗留的未 ACK 消息，再读取新消息；超过 staleAfter 的消息只 ACK 不推送
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NodeRouteStreamConsumer {
+
+    public static final String ROUTE_GROUP = "route-group";
+
+    private final StringRedisTemplate redisTemplate;
+    private final WebSocketService webSocketService;
+    private final NodeConfig nodeConfig;
+    private final ImRouteProperties routeProperties;
+
+    private volatile boolean running;
+    private Thread pollThread;
+
+    /**
+     * 创建消费者组并启动拉取线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        byte[] streamKey = streamKey();
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(streamKey, ROUTE_GROUP, ReadOffset.latest(), true));
+        } catch (Exception e) {
+            // Group 已存在是正常现象，忽略
+        }
+        running = true;
+        pollThread = new Thread(this::pollLoop, "im-route-stream-consumer");
+        pollThread.setDaemon(true);
+        pollThread.start();
+        log.info("[路由流] 拉取线程已启动: stream={}, consumer={}",
+                RedisKeyConstant.IM_ROUTE_STREAM_PREFIX + nodeConfig.getNodeId(), nodeConfig.getConsumerName());
+    }
+
+    /**
+     * 停止拉取线程
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (pollThread != null) {
+            pollThread.interrupt();
+            pollThread = null;
+        }
+    }
+
+    private void pollLoop() {
+        byte[] streamKey = streamKey();
+        Consumer consumer = Consumer.from(ROUTE_GROUP, nodeConfig.getConsumerName());
+        StreamReadOptions readOptions = StreamReadOptions.empty()
+                .count(routeProperties.getReadBatchSize())
+                .block(routeProperties.getPollTimeout());
+        // 先从 0 读取本消费者的 Pending 消息，读空后切换为只读新消息
+        ReadOffset offset = ReadOffset.from("0");
+
+        while (running) {
+            try {
+                StreamOffset<byte[]> streamOffset = StreamOffset.create(streamKey, offset);
+                List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                        connection.streamCommands().xReadGroup(consumer, readOptions, streamOffset));
+                if (records == null || records.isEmpty()) {
+                    offset = ReadOffset.lastConsumed();
+                    continue;
+                }
+                deliver(streamKey, records);
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.error("[路由流] 拉取异常，1秒后重试", e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        log.info("[路由流] 拉取线程已退出");
+    }
+
+    private void deliver(byte[] streamKey, List<ByteRecord> records) {
+        long staleBefore = System.currentTimeMillis() - routeProperties.getStaleAfter().toMillis();
+        List<RecordId> ackIds = new ArrayList<>(records.size());
+        int stale = 0;
+        for (ByteRecord record : records) {
+            ackIds.add(record.getId());
+            Long timestamp = record.getId().getTimestamp();
+            if (timestamp != null && timestamp < staleBefore) {
+                stale++;
+                continue;
+            }
+            Iterator<byte[]> values = record.getValue().values().iterator();
+            if (!values.hasNext()) {
+                continue;
+            }
+            try {
+                RouteEnvelopeCodec.Envelope envelope = RouteEnvelopeCodec.decode(values.next());
+                webSocketService.sendEncodedToLocalUids(envelope.getPayload(), envelope.getUids());
+            } catch (Exception e) {
+                // 推送失败不重试，消息已落库，客户端可重新拉取
+                log.error("[路由流] 路由消息处理失败: id={}", record.getId(), e);
+            }
+        }
+        if (stale > 0) {
+            log.warn("[路由流] 丢弃过期路由消息: count={}", stale);
+        }
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.streamCommands()
+                .xAck(streamKey, ROUTE_GROUP, ackIds.toArray(new RecordId[0])));
+    }
+
+    private byte[] streamKey() {
+        return (RedisKeyConstant.IM_ROUTE_STREAM_PREFIX + nodeConfig.getNodeId()).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,32 @@
+package com.shutu.common.listener;
+
+import com.shutu.manager.RoomMemberCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 房间成员变更监听器
+ * 负责接收成员变更广播，失效本节点的房间成员缓存
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RoomMemberChangedListener implements MessageListener {
+
+    private final RoomMemberCache roomMemberCache;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            roomMemberCache.evictLocal(Long.parseLong(body.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("[成员缓存] 变更消息无法解析: body={}", body);
+        }
+    }
+}
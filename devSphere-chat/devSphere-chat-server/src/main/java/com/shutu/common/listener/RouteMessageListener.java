@@ -30,10 +30,14 @@ public class RouteMessageListener implements MessageListener {
 
         try {
             RouteMessageDTO routeMsg = JSONUtil.toBean(body, RouteMessageDTO.class);
-            if (routeMsg != null && routeMsg.getTargetUid() != null) {
-                // 反序列化内部消息体
-                WSBaseResp wsResp = JSONUtil.toBean(routeMsg.getMessageJson(), WSBaseResp.class);
-
+            if (routeMsg == null) {
+                return;
+            }
+            // 反序列化内部消息体 (多个目标共用一次反序列化)
+            WSBaseResp wsResp = JSONUtil.toBean(routeMsg.getMessageJson(), WSBaseResp.class);
+            if (routeMsg.getTargetUids() != null) {
+                webSocketService.sendToLocalUids(wsResp, routeMsg.getTargetUids());
+            } else if (routeMsg.getTargetUid() != null) {
                 webSocketService.sendToLocalUid(wsResp, routeMsg.getTargetUid());
             }
         } catch (Exception e) {
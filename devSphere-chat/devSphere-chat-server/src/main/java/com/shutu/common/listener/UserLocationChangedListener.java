@@ -0,0 +1,37 @@
+package com.shutu.common.listener;
+
+import com.shutu.service.UserLocationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 用户位置变更监听器
+ * 负责接收上下线广播 (uid:nodeId 或 uid)，更新本节点的位置缓存
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserLocationChangedListener implements MessageListener {
+
+    private final UserLocationService userLocationService;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8).trim();
+        try {
+            int idx = body.indexOf(':');
+            if (idx < 0) {
+                userLocationService.onLocationChanged(Long.parseLong(body), null);
+            } else {
+                userLocationService.onLocationChanged(Long.parseLong(body.substring(0, idx)), body.substring(idx + 1));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("[用户位置] 变更消息无法解析: body={}", body);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.shutu.common.listener;
+
+import com.shutu.common.event.UserPresenceEvent;
+import com.shutu.service.PresenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用户在线状态监听器
+ * 连接建立/断开发生在 Netty IO 线程，位图更新与好友通知异步执行
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserPresenceListener {
+
+    private final PresenceService presenceService;
+
+    @Async
+    @EventListener(classes = UserPresenceEvent.class)
+    public void handlePresence(UserPresenceEvent event) {
+        try {
+            presenceService.refreshLocal(event.getUid());
+        } catch (Exception e) {
+            log.error("[在线状态] 更新失败: uid={}", event.getUid(), e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.shutu.common.listener;
+
+import cn.hutool.core.util.StrUtil;
+import com.shutu.manager.UserProfileCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 用户资料变更监听器
+ * 负责接收 auth 服务广播的用户资料变更，失效本地用户资料缓存
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserProfileChangedListener implements MessageListener {
+
+    private final UserProfileCache userProfileCache;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            List<Long> userIds = new ArrayList<>();
+            for (String id : StrUtil.split(body, ',', true, true)) {
+                userIds.add(Long.parseLong(id));
+            }
+            userProfileCache.invalidate(userIds);
+            log.debug("[用户缓存] 收到资料变更，已失效: {}", userIds);
+        } catch (Exception e) {
+            log.warn("[用户缓存] 变更消息无法解析，失效全部: body={}", body);
+            userProfileCache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 消息归档任务配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.archive")
+public class ImArchiveProperties {
+
+    /**
+     * 执行时间 (cron)
+     */
+    private String cron = "0 0 3 * * ?";
+
+    /**
+     * 主表保留时长，早于该时长的消息移入归档表
+     */
+    private Duration retention = Duration.ofDays(90);
+
+    /**
+     * 并行搬运的线程数，按 id 区间切分任务
+     */
+    private int workers = 4;
+
+    /**
+     * 每个区间 (一个事务) 覆盖的 id 跨度
+     */
+    private int chunkSize = 5000;
+
+    /**
+     * 每个线程处理完一个区间后的停顿，降低对主库与复制的压力
+     */
+    private Duration chunkPause = Duration.ofMillis(20);
+
+    /**
+     * 单次运行的最长时间，超时后保存检查点并退出，下次运行从检查点继续
+     */
+    private Duration maxDuration = Duration.ofHours(3);
+}
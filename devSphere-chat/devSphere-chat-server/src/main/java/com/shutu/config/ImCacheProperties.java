@@ -0,0 +1,64 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * IM 缓存配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.cache")
+public class ImCacheProperties {
+
+    /**
+     * 每个房间消息缓存 (ZSet) 保留的最新消息条数
+     */
+    private int roomHistorySize = 200;
+
+    /**
+     * 房间消息缓存过期时间，每次写入自动续期
+     */
+    private Duration roomHistoryTtl = Duration.ofDays(7);
+
+    /**
+     * 房间消息缓存写入编码: binary (默认) / json
+     * 读取时按首字节自动识别，切换后旧数据仍可读
+     */
+    private String codec = "binary";
+
+    /**
+     * 用户未读计数 (Hash) 的过期时间，过期后从 DB 重新对账
+     */
+    private Duration unreadTtl = Duration.ofDays(3);
+
+    /**
+     * 新消息更新未读数时，每个 Pipeline 最多发送的命令数 (每个成员一条)
+     * 大群拆成多个 Pipeline，避免单次缓冲过大
+     */
+    private int unreadPipelineBatch = 500;
+
+    /**
+     * 用户资料本地缓存的最大条数
+     */
+    private long userProfileMaxSize = 50_000;
+
+    /**
+     * 用户资料本地缓存的过期时间 (写入后计时)
+     * 资料变更由 Redis 广播主动失效，这里只是兜底
+     */
+    private Duration userProfileTtl = Duration.ofMinutes(30);
+
+    /**
+     * 房间成员本地缓存的最大房间数
+     */
+    private long roomMemberMaxSize = 20_000;
+
+    /**
+     * 房间成员本地缓存的过期时间，成员变动时通过广播主动失效
+     */
+    private Duration roomMemberTtl = Duration.ofMinutes(10);
+}
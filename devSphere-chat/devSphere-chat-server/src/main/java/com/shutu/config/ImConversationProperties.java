@@ -0,0 +1,41 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 会话列表配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.conversation")
+public class ImConversationProperties {
+
+    /**
+     * 是否由 Redis 会话列表提供分页，关闭时直接查 user_room_relate
+     */
+    private boolean enabled = true;
+
+    /**
+     * 用户会话列表 (ZSet) 过期时间，过期后下次读取从 DB 重建
+     */
+    private Duration listTtl = Duration.ofDays(7);
+
+    /**
+     * 房间摘要 (Hash) 过期时间
+     */
+    private Duration summaryTtl = Duration.ofDays(1);
+
+    /**
+     * 摘要中最后一条消息保留的最大字符数
+     */
+    private int snippetLength = 100;
+
+    /**
+     * 单页最大会话数
+     */
+    private int maxPageSize = 100;
+}
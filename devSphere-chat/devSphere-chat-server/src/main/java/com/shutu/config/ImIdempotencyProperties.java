@@ -0,0 +1,43 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * IM 消息幂等 (tempId 去重) 配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.idempotency")
+public class ImIdempotencyProperties {
+
+    /**
+     * 是否启用 布隆过滤器 + Redis SET NX 的幂等前置判断
+     * false: 每条消息都回查数据库 (旧逻辑)
+     */
+    private boolean enabled = true;
+
+    /**
+     * Redis 去重标记 (im:dedup:tempId:{tempId}) 的过期时间
+     * 应覆盖客户端重发窗口与 Pending 消息的最长重试时间
+     */
+    private Duration dedupTtl = Duration.ofMinutes(30);
+
+    /**
+     * 本地布隆过滤器单个窗口内预期的 tempId 数量
+     */
+    private long bloomExpectedInsertions = 1_000_000L;
+
+    /**
+     * 本地布隆过滤器期望误判率
+     */
+    private double bloomFpp = 0.01;
+
+    /**
+     * 本地布隆过滤器的滚动窗口，tempId 至少保留一个窗口
+     */
+    private Duration bloomWindow = Duration.ofMinutes(10);
+}
@@ -0,0 +1,43 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 用户位置 (uid -> 节点) 目录配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.location")
+public class ImLocationProperties {
+
+    /**
+     * Redis 位置信息 (im:location:{uid}) 的过期时间
+     * 需大于续期间隔的两倍，允许一次续期失败
+     */
+    private Duration ttl = Duration.ofSeconds(90);
+
+    /**
+     * 本节点在线用户位置的批量续期间隔，替代每次心跳单独 SET
+     */
+    private Duration renewInterval = Duration.ofSeconds(30);
+
+    /**
+     * 每个续期 Pipeline 包含的用户数
+     */
+    private int renewBatchSize = 1000;
+
+    /**
+     * 本地位置缓存的过期时间 (含离线结果)
+     * 上下线通过广播主动失效，这里只是兜底丢失的广播
+     */
+    private Duration cacheTtl = Duration.ofSeconds(5);
+
+    /**
+     * 本地位置缓存的最大条数
+     */
+    private long cacheMaxSize = 200_000;
+}
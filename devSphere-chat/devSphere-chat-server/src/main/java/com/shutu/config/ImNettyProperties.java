@@ -0,0 +1,78 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Netty WebSocket 服务配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.netty")
+public class ImNettyProperties {
+
+    /**
+     * WebSocket 监听端口
+     */
+    private int port = 9000;
+
+    /**
+     * 传输层实现: auto / io_uring / epoll / nio
+     * auto 按 io_uring -> epoll -> nio 顺序选择第一个可用的实现
+     * io_uring 需要额外引入 netty-incubator-transport-native-io_uring
+     */
+    private String transport = "auto";
+
+    /**
+     * Boss (accept) 线程数
+     * 开启 SO_REUSEPORT 时每个线程绑定一个独立的监听 socket
+     */
+    private int bossThreads = 1;
+
+    /**
+     * Worker (IO) 线程数，0 表示使用 Netty 默认值 (CPU 核数 * 2)
+     */
+    private int workerThreads = 0;
+
+    /**
+     * TCP 全连接队列大小 (SO_BACKLOG)
+     */
+    private int backlog = 1024;
+
+    /**
+     * 是否关闭 Nagle 算法，聊天帧小而频繁，默认开启 TCP_NODELAY
+     */
+    private boolean tcpNoDelay = true;
+
+    /**
+     * 是否开启 SO_REUSEPORT 多 acceptor (仅 epoll / io_uring 生效)
+     */
+    private boolean reusePort = true;
+
+    /**
+     * 是否使用池化内存分配器
+     * 池的大小等细节沿用 io.netty.allocator.* 系统属性
+     */
+    private boolean pooledAllocator = true;
+
+    /**
+     * 分配器是否优先使用直接内存
+     */
+    private boolean preferDirect = true;
+
+    /**
+     * 读空闲超时 (秒)，超时未收到任何数据 (含心跳) 即关闭连接
+     */
+    private int readerIdleSeconds = 50;
+
+    /**
+     * 握手请求 HTTP 聚合的最大长度
+     */
+    private int maxHttpContentLength = 8192;
+
+    /**
+     * 是否在 pipeline 中加入 LoggingHandler (仅建议开发环境开启)
+     */
+    private boolean wireLogging = false;
+}
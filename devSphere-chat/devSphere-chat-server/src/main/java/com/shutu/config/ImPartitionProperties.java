@@ -0,0 +1,42 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 消息表/归档表分区配置
+ * 两张表按 id 范围 (RANGE) 分区，边界一致，便于整分区交换
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.partition")
+public class ImPartitionProperties {
+
+    /**
+     * 是否按分区路由查询与维护分区 (表未分区时自动退化为整表查询与逐行归档)
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每个分区覆盖的 id 跨度
+     */
+    private long span = 5_000_000L;
+
+    /**
+     * 在当前写入位置之后预建的空分区数量
+     */
+    private int aheadPartitions = 2;
+
+    /**
+     * 归档表保留时长，整分区的消息都早于该时长时 DROP PARTITION (0 表示永久保留)
+     */
+    private Duration archiveRetention = Duration.ZERO;
+
+    /**
+     * 分区元数据的本地刷新间隔
+     */
+    private Duration refreshInterval = Duration.ofMinutes(5);
+}
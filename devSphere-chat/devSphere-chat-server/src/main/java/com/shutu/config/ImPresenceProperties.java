@@ -0,0 +1,41 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 在线状态 (Presence) 配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.presence")
+public class ImPresenceProperties {
+
+    /**
+     * 节点心跳间隔: 刷新节点存活时间与本节点位图的过期时间，并刷新存活节点列表
+     */
+    private Duration renewInterval = Duration.ofSeconds(10);
+
+    /**
+     * 节点存活超时，超过该时长未心跳的节点位图视为失效 (节点宕机后其用户自动离线)
+     */
+    private Duration nodeTtl = Duration.ofSeconds(30);
+
+    /**
+     * 用户上下线时是否向其好友推送在线状态变更
+     */
+    private boolean pushEvents = true;
+
+    /**
+     * uid -> 位图偏移量 本地缓存的最大条数 (映射分配后不再变化)
+     */
+    private long offsetCacheMaxSize = 500_000;
+
+    /**
+     * 批量查询时每条 BITFIELD 命令包含的最大偏移量数
+     */
+    private int queryBatchSize = 512;
+}
@@ -0,0 +1,43 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * IM 推送配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.push")
+public class ImPushProperties {
+
+    /**
+     * 推送模式
+     * event-loop: 直接提交到连接所属的 EventLoop，按连接背压 (默认)
+     * executor: 沿用 websocketExecutor 线程池推送
+     */
+    private String mode = "event-loop";
+
+    /**
+     * 写缓冲低水位 (字节)，回落到该值以下时连接重新可写
+     */
+    private int writeBufferLowWaterMark = 32 * 1024;
+
+    /**
+     * 写缓冲高水位 (字节)，超过后连接不可写，新帧进入连接的等待队列
+     */
+    private int writeBufferHighWaterMark = 64 * 1024;
+
+    /**
+     * 连接不可写时单连接最多排队的帧数
+     */
+    private int maxPendingFrames = 256;
+
+    /**
+     * 等待队列满时是否断开慢连接
+     * true: 断开 (客户端重连后通过历史消息接口补齐)
+     * false: 丢弃新帧并计数
+     */
+    private boolean disconnectSlowConsumer = true;
+}
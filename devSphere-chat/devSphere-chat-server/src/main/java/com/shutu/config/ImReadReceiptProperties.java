@@ -0,0 +1,36 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 已读回执配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.read-receipt")
+public class ImReadReceiptProperties {
+
+    /**
+     * 缓冲区刷盘间隔
+     */
+    private Duration flushInterval = Duration.ofMillis(300);
+
+    /**
+     * 单条 UPDATE ... CASE 合并的最大行数
+     */
+    private int flushBatchSize = 500;
+
+    /**
+     * 私聊中是否向对方推送已读回执
+     */
+    private boolean pushPrivate = true;
+
+    /**
+     * 已落库位置的本地缓存大小，未推进的已读直接丢弃
+     */
+    private long flushedCacheMaxSize = 200_000L;
+}
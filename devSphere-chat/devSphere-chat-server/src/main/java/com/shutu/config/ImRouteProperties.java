@@ -0,0 +1,53 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 跨节点路由配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.route")
+public class ImRouteProperties {
+
+    /**
+     * 路由传输方式
+     * pubsub: Redis Pub/Sub (默认)，即发即弃，节点重连期间的消息会丢失
+     * stream: 每个节点一个 Redis Stream (im:route:stream:{nodeId}) + 消费者组，批量写入/批量拉取，未 ACK 可恢复
+     */
+    private String transport = "pubsub";
+
+    /**
+     * 每个节点路由流的最大长度 (XADD MAXLEN ~)
+     */
+    private long streamMaxLen = 10_000;
+
+    /**
+     * 发送端每个 Pipeline 合并的最大 XADD 条数
+     */
+    private int sendBatchSize = 200;
+
+    /**
+     * 发送端待发送队列容量，满时丢弃并记录日志 (消息已落库，客户端可拉取)
+     */
+    private int sendQueueCapacity = 50_000;
+
+    /**
+     * 接收端每次 XREADGROUP 拉取的最大条数
+     */
+    private int readBatchSize = 200;
+
+    /**
+     * 接收端阻塞拉取的超时时间
+     */
+    private Duration pollTimeout = Duration.ofSeconds(1);
+
+    /**
+     * 超过该时长的路由消息不再推送 (节点长时间宕机恢复后，用户大多已重连到其他节点)
+     */
+    private Duration staleAfter = Duration.ofSeconds(60);
+}
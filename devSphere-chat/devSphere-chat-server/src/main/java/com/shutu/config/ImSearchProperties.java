@@ -0,0 +1,71 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 聊天记录全文索引配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.search")
+public class ImSearchProperties {
+
+    /**
+     * 是否启用本地全文索引，关闭或索引未就绪时退化为带 LIMIT 的 LIKE 查询
+     */
+    private boolean enabled = true;
+
+    /**
+     * 索引目录 (每个节点一份完整索引)
+     */
+    private String indexDir = "data/message-index";
+
+    /**
+     * 分片数，按房间ID哈希
+     */
+    private int shards = 8;
+
+    /**
+     * 索引变更流长度上限 (MAXLEN ~)，节点落后超过该长度时从数据库追平
+     */
+    private long streamMaxLen = 200_000L;
+
+    /**
+     * 每次拉取的索引变更条数
+     */
+    private int readBatchSize = 200;
+
+    /**
+     * 拉取阻塞时间
+     */
+    private Duration pollTimeout = Duration.ofSeconds(1);
+
+    /**
+     * 近实时刷新间隔，新消息在该时间后可被搜索到
+     */
+    private Duration refreshInterval = Duration.ofMillis(500);
+
+    /**
+     * 提交间隔，进程崩溃后从上次提交的位置重放
+     */
+    private Duration commitInterval = Duration.ofSeconds(30);
+
+    /**
+     * 从数据库重建时每批读取的行数
+     */
+    private int rebuildBatchSize = 2000;
+
+    /**
+     * 单页最大条数
+     */
+    private int maxPageSize = 50;
+
+    /**
+     * 每个分片的写缓冲 (MB)
+     */
+    private double ramBufferMb = 32;
+}
@@ -0,0 +1,117 @@
+package com.shutu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * IM 消息流 (Redis Stream) 消费配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "devsphere.im.stream")
+public class ImStreamProperties {
+
+    /**
+     * 是否启用批量消费模式
+     * true: 一次拉取整批记录，批量落库、批量 ACK
+     * false: 沿用监听容器逐条消费
+     */
+    private boolean batchEnabled = true;
+
+    /**
+     * 每次 XREADGROUP 拉取的最大条数
+     */
+    private int batchSize = 100;
+
+    /**
+     * 阻塞拉取的超时时间
+     */
+    private Duration pollTimeout = Duration.ofSeconds(1);
+
+    /**
+     * 消息流分区数，按房间哈希写入 im:message:stream:{k}，同一房间的消息始终落在同一分区
+     * 修改分区数会改变房间到分区的映射，需在各分区积压消费完后再调整
+     */
+    private int partitions = 8;
+
+    /**
+     * 是否继续消费旧的单一消息流 im:message:stream
+     * 滚动升级期间旧版本节点仍写入旧流，全部节点升级且旧流消费完后可关闭
+     */
+    private boolean legacyDrainEnabled = true;
+
+    /**
+     * 分区租约时长: 同一时刻每个分区只由一个节点消费，持有者每轮拉取时续期
+     * 节点宕机后其他节点最迟在该时长后接管分区，并认领其闲置超过该时长的未 ACK 消息
+     */
+    private Duration partitionLeaseTtl = Duration.ofSeconds(15);
+
+    /**
+     * 是否定时裁剪已消费的消息流与死信流
+     */
+    private boolean retentionEnabled = true;
+
+    /**
+     * 裁剪任务执行间隔
+     */
+    private Duration retentionInterval = Duration.ofMinutes(1);
+
+    /**
+     * 消息流最短保留时长: 即使已全部 ACK，也保留最近这段时间的记录，便于排查与补偿任务回读
+     */
+    private Duration retentionMinAge = Duration.ofMinutes(10);
+
+    /**
+     * 单个消息流 (分区) 的长度上限，写入时 MAXLEN ~ 与定时裁剪共用
+     * 安全阀: 消费长时间停滞时超出部分即使未 ACK 也会被裁掉，正常情况下不应触发
+     */
+    private long maxLen = 1_000_000;
+
+    /**
+     * 死信流保留时长，超过该时长且已被所有消费者组确认的记录被裁剪
+     */
+    private Duration dlqRetention = Duration.ofDays(7);
+
+    /**
+     * 死信流长度上限
+     */
+    private long dlqMaxLen = 100_000;
+
+    /**
+     * 补偿任务执行间隔: 认领闲置的未 ACK 消息并重新处理
+     */
+    private Duration recoveryInterval = Duration.ofSeconds(10);
+
+    /**
+     * 未 ACK 消息闲置超过该时长才会被认领 (XAUTOCLAIM min-idle-time)，应大于单批处理耗时
+     */
+    private Duration recoveryMinIdle = Duration.ofSeconds(60);
+
+    /**
+     * 已宕机 (心跳过期) 消费者的未 ACK 消息的认领闲置阈值，无需等满 recoveryMinIdle
+     */
+    private Duration deadConsumerMinIdle = Duration.ofSeconds(5);
+
+    /**
+     * 每次认领的条数，认领到的记录整批重新处理
+     */
+    private int recoveryBatchSize = 100;
+
+    /**
+     * 每个消息流每轮最多认领的条数，与执行间隔共同决定恢复吞吐
+     */
+    private int recoveryMaxPerRound = 5000;
+
+    /**
+     * 消费者心跳超时，超过该时长未心跳的消费者视为宕机
+     */
+    private Duration consumerTtl = Duration.ofSeconds(30);
+
+    /**
+     * 已宕机且没有未 ACK 消息的消费者，闲置超过该时长后从消费者组中删除
+     */
+    private Duration deadConsumerRemoveIdle = Duration.ofMinutes(10);
+}
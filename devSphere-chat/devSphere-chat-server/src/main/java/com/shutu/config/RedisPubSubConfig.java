@@ -1,11 +1,16 @@
 package com.shutu.config;
 
+import com.shutu.common.listener.RoomMemberChangedListener;
 import com.shutu.common.listener.RouteMessageListener;
+import com.shutu.common.listener.UserLocationChangedListener;
+import com.shutu.common.listener.UserProfileChangedListener;
+import com.shutu.commons.tools.redis.RedisKeys;
 import com.shutu.constant.RedisKeyConstant;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
@@ -20,6 +25,9 @@ public class RedisPubSubConfig {
 
     private final NodeConfig nodeConfig;
     private final RouteMessageListener routeMessageListener;
+    private final UserProfileChangedListener userProfileChangedListener;
+    private final RoomMemberChangedListener roomMemberChangedListener;
+    private final UserLocationChangedListener userLocationChangedListener;
 
     @Bean
     public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
@@ -32,6 +40,18 @@ public class RedisPubSubConfig {
         // 使用 MessageListenerAdapter 也可以，或者直接用实现类
         container.addMessageListener(routeMessageListener, new PatternTopic(topic));
 
+        // 监听用户资料变更广播，失效本地用户资料缓存
+        container.addMessageListener(userProfileChangedListener,
+                new ChannelTopic(RedisKeys.getUserProfileChangedTopic()));
+
+        // 监听房间成员变更广播，失效本地房间成员缓存
+        container.addMessageListener(roomMemberChangedListener,
+                new ChannelTopic(RedisKeyConstant.TOPIC_ROOM_MEMBER_CHANGED));
+
+        // 监听用户上下线广播，更新本地位置缓存
+        container.addMessageListener(userLocationChangedListener,
+                new ChannelTopic(RedisKeyConstant.TOPIC_LOCATION_CHANGED));
+
         System.out.println(">>> [Redis PubSub] Listening on topic: " + topic);
         return container;
     }
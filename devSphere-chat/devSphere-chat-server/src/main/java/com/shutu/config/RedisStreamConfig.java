@@ -1,7 +1,10 @@
 package com.shutu.config;
 
 import com.shutu.common.listener.DlqMessageListener; // [NEW] 引入 DLQ 监听器
+import com.shutu.common.listener.MessageStreamBatchConsumer;
 import com.shutu.common.listener.MessageStreamListener;
+import com.shutu.common.listener.NodeRouteStreamConsumer;
+import com.shutu.manager.MessageStreamPartitioner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
@@ -15,20 +18,23 @@ import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.stream.StreamMessageListenerContainer;
 import org.springframework.data.redis.stream.Subscription;
 
-import java.time.Duration;
-
 @Slf4j
 @Configuration
 @RequiredArgsConstructor
 public class RedisStreamConfig {
 
     private final MessageStreamListener messageStreamListener;
+    private final MessageStreamBatchConsumer messageStreamBatchConsumer;
     private final DlqMessageListener dlqMessageListener;
     private final StringRedisTemplate redisTemplate;
     private final NodeConfig nodeConfig;
+    private final ImStreamProperties streamProperties;
+    private final NodeRouteStreamConsumer nodeRouteStreamConsumer;
+    private final ImRouteProperties routeProperties;
+    private final MessageStreamPartitioner partitioner;
 
 
-    // 主业务定义
+    // 主业务定义 (旧的单一消息流，新消息按房间写入各分区 im:message:stream:{k}，见 MessageStreamPartitioner)
     public static final String IM_STREAM_KEY = "im:message:stream";
     public static final String IM_GROUP = "im-group";
 
@@ -36,18 +42,27 @@ public class RedisStreamConfig {
     public static final String DLQ_STREAM_KEY = "im:message:dlq";
     public static final String DLQ_GROUP = "dlq-group";
 
+    private static final String ROUTE_TRANSPORT_STREAM = "stream";
+
 
     @Bean
     public Subscription subscription(RedisConnectionFactory factory) {
-        // 1. 初始化消费者组 (主业务 + 死信)
-        createGroup(IM_STREAM_KEY, IM_GROUP);
+        // 1. 初始化消费者组 (主业务各分区 + 旧消息流 + 死信)
+        // 分区流的组从 0 开始，避免组创建前已写入的消息被跳过
+        for (String streamKey : partitioner.streamKeys()) {
+            if (IM_STREAM_KEY.equals(streamKey)) {
+                createGroup(streamKey, IM_GROUP);
+            } else {
+                createGroup(streamKey, ReadOffset.from("0"), IM_GROUP);
+            }
+        }
         createGroup(DLQ_STREAM_KEY, DLQ_GROUP);
 
         // 2. 配置监听容器选项
         StreamMessageListenerContainer.StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options = StreamMessageListenerContainer.StreamMessageListenerContainerOptions
                 .builder()
-                .pollTimeout(Duration.ofSeconds(1)) // 轮询超时
-                .batchSize(10) // 每次拉取条数
+                .pollTimeout(streamProperties.getPollTimeout()) // 轮询超时
+                .batchSize(streamProperties.getBatchSize()) // 每次拉取条数
                 .build();
 
         // 3. 创建容器
@@ -56,10 +71,18 @@ public class RedisStreamConfig {
 
         // 4. 注册监听器
         // 4.1 主业务监听器 (处理正常消息)
-        container.receive(
-                Consumer.from(IM_GROUP, nodeConfig.getConsumerName()),
-                StreamOffset.create(IM_STREAM_KEY, ReadOffset.lastConsumed()),
-                messageStreamListener);
+        // 批量模式下由 MessageStreamBatchConsumer 按分区租约整批拉取，容器只负责逐条模式
+        // 逐条模式下每个节点都订阅全部分区，不保证同一房间跨节点的顺序
+        if (streamProperties.isBatchEnabled()) {
+            messageStreamBatchConsumer.start();
+        } else {
+            for (String streamKey : partitioner.streamKeys()) {
+                container.receive(
+                        Consumer.from(IM_GROUP, nodeConfig.getConsumerName()),
+                        StreamOffset.create(streamKey, ReadOffset.lastConsumed()),
+                        messageStreamListener);
+            }
+        }
 
         // 4.2 死信队列监听器 (处理毒消息)
         // DLQ 的逻辑比较简单（只入库），也可以复用 container
@@ -68,6 +91,11 @@ public class RedisStreamConfig {
                 StreamOffset.create(DLQ_STREAM_KEY, ReadOffset.lastConsumed()),
                 dlqMessageListener);
 
+        // 4.3 跨节点路由流 (stream 传输模式下拉取本节点的路由流)
+        if (ROUTE_TRANSPORT_STREAM.equals(routeProperties.getTransport())) {
+            nodeRouteStreamConsumer.start();
+        }
+
         // 5. 启动容器
         container.start();
         return subscription;
@@ -88,4 +116,15 @@ public class RedisStreamConfig {
             // Group 已存在是正常现象，忽略
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 从指定位置创建消费者组 (流不存在时一并创建)
+     */
+    private void createGroup(String key, ReadOffset offset, String group) {
+        try {
+            redisTemplate.opsForStream().createGroup(key, offset, group);
+        } catch (Exception e) {
+            // Group 已存在是正常现象，忽略
+        }
+    }
+}
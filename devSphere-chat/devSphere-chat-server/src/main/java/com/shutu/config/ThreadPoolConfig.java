@@ -1,17 +1,23 @@
 package com.shutu.config;
 
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 线程池配置
  */
+@Slf4j
 @Configuration
 @EnableAsync
 public class ThreadPoolConfig implements AsyncConfigurer {
@@ -21,6 +27,15 @@ public class ThreadPoolConfig implements AsyncConfigurer {
      */
     public static final String WS_EXECUTOR = "websocketExecutor";
 
+    /**
+     * 拒绝告警的最小间隔，期间的拒绝只计数
+     */
+    private static final long REJECT_LOG_INTERVAL_MS = 10_000L;
+
+    private final LongAdder wsRejected = new LongAdder();
+    private final AtomicLong wsRejectLoggedAt = new AtomicLong();
+    private final AtomicLong wsRejectLoggedCount = new AtomicLong();
+
     @Bean(WS_EXECUTOR)
     public ThreadPoolTaskExecutor websocketExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
@@ -28,9 +43,37 @@ public class ThreadPoolConfig implements AsyncConfigurer {
         executor.setMaxPoolSize(16);
         executor.setQueueCapacity(1000);//支持同时推送1000人
         executor.setThreadNamePrefix("websocket-executor-");
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());//满了直接丢弃，默认为不重要消息推送
+        // 仅 devsphere.im.push.mode=executor 时使用；满了丢弃并告警，避免静默丢消息
+        executor.setRejectedExecutionHandler(websocketRejectHandler());
         executor.setThreadFactory(new MyThreadFactory(executor));
         executor.initialize();
         return executor;
     }
+
+    /**
+     * 拒绝计数，用于监控
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("websocketRejected", wsRejected.sum());
+        return stats;
+    }
+
+    /**
+     * 满了丢弃并计数，告警按 REJECT_LOG_INTERVAL_MS 限频，带上期间累计的丢弃数
+     */
+    private RejectedExecutionHandler websocketRejectHandler() {
+        return (task, pool) -> {
+            wsRejected.increment();
+            long now = System.currentTimeMillis();
+            long last = wsRejectLoggedAt.get();
+            if (now - last < REJECT_LOG_INTERVAL_MS || !wsRejectLoggedAt.compareAndSet(last, now)) {
+                return;
+            }
+            long total = wsRejected.sum();
+            long sinceLast = total - wsRejectLoggedCount.getAndSet(total);
+            log.warn("websocket推送线程池已满，丢弃推送任务: queueSize={}, 近{}秒丢弃={}, 累计丢弃={}",
+                    pool.getQueue().size(), REJECT_LOG_INTERVAL_MS / 1000, sinceLast, total);
+        };
+    }
 }
@@ -17,9 +17,119 @@ public interface RedisKeyConstant {
      */
     String TOPIC_NODE_ROUTE_PREFIX = "im:route:to:";
 
+    /**
+     * 节点路由流 Key (Stream，devsphere.im.route.transport=stream 时使用)
+     * 后缀: nodeId，字段 e: RouteEnvelopeCodec 编码的信封
+     */
+    String IM_ROUTE_STREAM_PREFIX = "im:route:stream:";
+
+    /**
+     * 用户位置变更广播 Topic
+     * 消息体: uid:nodeId (上线) 或 uid (下线)，各节点收到后更新本地位置缓存
+     */
+    String TOPIC_LOCATION_CHANGED = "im:location:changed";
+
     /**
      * 房间消息缓存 Key (ZSet)
      * 后缀: roomId
      */
     String IM_ROOM_MSG_KEY = "im:room:msg:";
+
+    /**
+     * 用户未读计数 Key (Hash)
+     * 后缀: uid, field: roomId, value: 未读条数
+     */
+    String IM_UNREAD_KEY = "im:unread:";
+
+    /**
+     * 房间成员数 Key (Hash)
+     * field: roomId, value: 成员数
+     */
+    String IM_ROOM_MEMBER_COUNT_KEY = "im:room:member:count";
+
+    /**
+     * 房间成员变更广播 Topic
+     * 消息体: roomId，各节点收到后失效本地成员缓存
+     */
+    String TOPIC_ROOM_MEMBER_CHANGED = "im:room:member:changed";
+
+    /**
+     * 消息幂等标记 Key (String, SET NX EX)
+     * 后缀: tempId, value: 首次消费的 Stream 记录ID
+     */
+    String IM_DEDUP_KEY = "im:dedup:tempId:";
+
+    /**
+     * 节点在线位图 Key (Bitmap)
+     * 后缀: nodeId，bit 偏移: IM_PRESENCE_OFFSET_KEY 中分配的偏移量，1 表示用户在该节点在线
+     */
+    String IM_PRESENCE_BITMAP_PREFIX = "im:presence:bitmap:";
+
+    /**
+     * 用户位图偏移量 Key (Hash)
+     * field: uid, value: 偏移量 (由 IM_PRESENCE_SEQ_KEY 顺序分配)
+     */
+    String IM_PRESENCE_OFFSET_KEY = "im:presence:offset";
+
+    /**
+     * 位图偏移量序列 Key (String)
+     */
+    String IM_PRESENCE_SEQ_KEY = "im:presence:seq";
+
+    /**
+     * 存活节点 Key (ZSet)
+     * member: nodeId, score: 最近一次心跳时间戳 (毫秒)
+     */
+    String IM_PRESENCE_NODES_KEY = "im:presence:nodes";
+
+    /**
+     * 消息归档任务锁 Key (String, SET NX EX)
+     * value: 持有锁的节点ID
+     */
+    String IM_ARCHIVE_LOCK_KEY = "im:archive:lock";
+
+    /**
+     * 消息归档检查点 Key (Hash)
+     * field: lastId (该 id 及之前的区间已归档), threshold (本轮截止时间戳), updateTime
+     * 本轮完整结束后删除，未完成时下次运行从检查点继续
+     */
+    String IM_ARCHIVE_CHECKPOINT_KEY = "im:archive:checkpoint";
+
+    /**
+     * 聊天记录索引变更流 Key (Stream)
+     * 消费者落库后写入一条 (field d: 变更列表 JSON)，每个节点独立 XREAD 维护本地索引
+     */
+    String IM_SEARCH_STREAM_KEY = "im:search:stream";
+
+    /**
+     * 用户会话列表 Key 前缀 (ZSet)
+     * 后缀: uid，member: roomId，score: 房间活跃时间 (毫秒)
+     * 从 DB 完整构建过的列表带一个分值为 -1 的完整标记 member，缺少标记时读取前先与 DB 合并
+     */
+    String IM_CONV_KEY = "im:conv:";
+
+    /**
+     * 房间摘要 Key 前缀 (Hash)
+     * 后缀: roomId，field: type / activeTime / lastMsgId / content / name / avatar / ownerId / uid1 / uid2
+     * 私聊的名称与头像取决于查看者，只缓存双方 UID，展示时再取对方资料
+     */
+    String IM_ROOM_SUMMARY_KEY = "im:room:summary:";
+
+    /**
+     * 消息流分区 Key 前缀 (Stream)
+     * 后缀: 分区号，私聊按 room_key、群聊按 roomId 哈希选择分区
+     */
+    String IM_MESSAGE_STREAM_PREFIX = "im:message:stream:";
+
+    /**
+     * 消息流分区租约 Key 前缀 (String)
+     * 后缀: 消息流 Key，value: 持有租约的消费者名
+     */
+    String IM_STREAM_LEASE_PREFIX = "im:stream:lease:";
+
+    /**
+     * 消息流消费者心跳 Key (ZSet)
+     * member: 消费者名 (nodeId:port)，score: 最近一次心跳时间戳 (毫秒)
+     */
+    String IM_STREAM_CONSUMERS_KEY = "im:stream:consumers";
 }
@@ -8,6 +8,7 @@ import com.shutu.commons.tools.validator.group.DefaultGroup;
 import com.shutu.model.dto.chat.CursorPage;
 import com.shutu.model.dto.chat.GroupCreateRequestDTO;
 import com.shutu.model.dto.chat.MessageQueryRequest;
+import com.shutu.model.dto.chat.RoomCursorQueryRequest;
 import com.shutu.model.dto.chat.SearchRequestDTO;
 import com.shutu.model.vo.friend.AddFriendVo;
 import com.shutu.model.vo.friend.FriendContentVo;
@@ -45,6 +46,18 @@ public class ChatController {
         return new Result<Page<RoomVo>>().ok(roomVoPage);
     }
 
+    /**
+     * 获取用户房间会话列表 (游标查询)
+     *
+     * @param request
+     * @return
+     */
+    @PostMapping("/list/cursor/vo")
+    public Result<CursorPage<RoomVo>> listRoomVoByCursor(@RequestBody RoomCursorQueryRequest request) {
+        CursorPage<RoomVo> page = roomService.listRoomVoByCursor(request);
+        return new Result<CursorPage<RoomVo>>().ok(page);
+    }
+
     /**
      * 获取用户房间消息列表 (游标查询)
      * 
@@ -136,9 +149,11 @@ public class ChatController {
      * 搜索聊天记录
      */
     @GetMapping("/history/search")
-    public Result<List<ChatMessageResp>> searchHistory(@RequestParam Long roomId, @RequestParam String keyword) {
-        List<ChatMessageResp> list = messageService.searchHistory(roomId, keyword);
-        return new Result<List<ChatMessageResp>>().ok(list);
+    public Result<CursorPage<ChatMessageResp>> searchHistory(@RequestParam Long roomId, @RequestParam String keyword,
+                                                             @RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer pageSize) {
+        CursorPage<ChatMessageResp> page = messageService.searchHistory(roomId, keyword, cursor, pageSize);
+        return new Result<CursorPage<ChatMessageResp>>().ok(page);
     }
 
     /**
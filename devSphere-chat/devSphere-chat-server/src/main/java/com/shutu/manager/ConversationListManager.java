@@ -0,0 +1,554 @@
+package com.shutu.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.shutu.commons.tools.exception.CommonException;
+import com.shutu.commons.tools.exception.ErrorCode;
+import com.shutu.config.ImConversationProperties;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.mapper.MessageMapper;
+import com.shutu.mapper.RoomFriendMapper;
+import com.shutu.mapper.RoomGroupMapper;
+import com.shutu.mapper.RoomMapper;
+import com.shutu.mapper.UserRoomRelateMapper;
+import com.shutu.model.dto.chat.CursorPage;
+import com.shutu.model.dto.chat.RoomSummaryDTO;
+import com.shutu.model.entity.Message;
+import com.shutu.model.entity.Room;
+import com.shutu.model.entity.RoomFriend;
+import com.shutu.model.entity.RoomGroup;
+import com.shutu.model.entity.UserRoomRelate;
+import com.shutu.model.enums.chat.RoomTypeEnum;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 会话列表引擎
+ * 1. 会话列表: im:conv:{uid} -> ZSet(roomId, 活跃时间毫秒)，消费者更新 room.last_msg_id 后由 conv_touch.lua 推进全部成员的分值
+ * 2. 房间摘要: im:room:summary:{roomId} -> Hash(类型/群名/群头像/最后一条消息摘要)，同一脚本随新消息更新
+ * 3. 游标分页: 游标为 "{分值}_{roomId}"，从游标分值开始 ZREVRANGEBYSCORE，同分值按 member 逆序跳过已返回的房间
+ * 4. 缺失时从 DB 重建: 列表为一次按用户查询 + 一次房间活跃时间查询，摘要按页批量查询后回填
+ * 5. 成员变动 (建群/邀请/退群/踢人/加删好友) 在事务提交后删除相关用户的列表，隐藏/删除会话直接 ZREM
+ * Redis 不可用或关闭时按同样的排序从 DB 计算分页
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationListManager {
+
+    /**
+     * 完整标记 member，分值 -1，排在所有房间之后且不在 [0, +inf] 的分值区间内
+     */
+    private static final String LOADED_MARKER = "#";
+
+    private static final String CURSOR_SEPARATOR = "_";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ImConversationProperties conversationProperties;
+    private final RoomMemberCache roomMemberCache;
+    private final RoomMapper roomMapper;
+    private final MessageMapper messageMapper;
+    private final RoomGroupMapper roomGroupMapper;
+    private final RoomFriendMapper roomFriendMapper;
+    private final UserRoomRelateMapper userRoomRelateMapper;
+
+    private DefaultRedisScript<Long> touchScript;
+    private DefaultRedisScript<Long> loadScript;
+
+    @PostConstruct
+    public void init() {
+        touchScript = new DefaultRedisScript<>();
+        touchScript.setResultType(Long.class);
+        touchScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/conv_touch.lua")));
+        loadScript = new DefaultRedisScript<>();
+        loadScript.setResultType(Long.class);
+        loadScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/conv_load.lua")));
+    }
+
+    /**
+     * 新消息落库后推进房间成员的会话列表与房间摘要
+     * 失败只记录日志，列表过期后会从 DB 重建
+     *
+     * @param messages 已落库的消息 (按ID升序)
+     */
+    public void touch(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            Map<Long, Message> lastMessages = new LinkedHashMap<>();
+            for (Message message : messages) {
+                lastMessages.merge(message.getRoomId(), message, (a, b) -> b.getId() > a.getId() ? b : a);
+            }
+            Map<Long, List<Long>> roomMembers = roomMemberCache.getMembers(lastMessages.keySet());
+            String ttl = String.valueOf(conversationProperties.getListTtl().getSeconds());
+
+            lastMessages.forEach((roomId, message) -> {
+                List<Long> memberIds = roomMembers.getOrDefault(roomId, Collections.emptyList());
+                List<String> keys = new ArrayList<>(memberIds.size() + 1);
+                keys.add(RedisKeyConstant.IM_ROOM_SUMMARY_KEY + roomId);
+                for (Long uid : memberIds) {
+                    keys.add(RedisKeyConstant.IM_CONV_KEY + uid);
+                }
+                redisTemplate.execute(touchScript, keys, String.valueOf(roomId),
+                        String.valueOf(score(message.getCreateTime())), String.valueOf(message.getId()),
+                        snippet(message.getContent()), ttl);
+            });
+        } catch (Exception e) {
+            log.error("[会话列表] 更新失败: size={}", messages.size(), e);
+        }
+    }
+
+    /**
+     * 事务内产生的消息 (建群/邀请/退群/踢人等系统消息)，提交后再推进会话列表
+     */
+    public void touchAfterCommit(Message message) {
+        afterCommit(() -> touch(List.of(message)));
+    }
+
+    /**
+     * 用户加入或离开房间后删除其会话列表，下次读取时从 DB 重建
+     */
+    public void evictUsers(Collection<Long> uids) {
+        if (uids.isEmpty()) {
+            return;
+        }
+        List<String> keys = uids.stream().map(uid -> RedisKeyConstant.IM_CONV_KEY + uid).collect(Collectors.toList());
+        afterCommit(() -> {
+            try {
+                redisTemplate.delete(keys);
+            } catch (Exception e) {
+                log.warn("[会话列表] 失效失败: uids={}, 错误={}", uids, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 隐藏或删除会话，从用户的会话列表中移除该房间
+     */
+    public void remove(Long uid, Long roomId) {
+        afterCommit(() -> {
+            try {
+                redisTemplate.opsForZSet().remove(RedisKeyConstant.IM_CONV_KEY + uid, String.valueOf(roomId));
+            } catch (Exception e) {
+                log.warn("[会话列表] 移除失败: 用户ID={}, 房间ID={}, 错误={}", uid, roomId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 群名/头像等变动后失效房间摘要
+     */
+    public void evictSummary(Long roomId) {
+        afterCommit(() -> {
+            try {
+                redisTemplate.delete(RedisKeyConstant.IM_ROOM_SUMMARY_KEY + roomId);
+            } catch (Exception e) {
+                log.warn("[会话列表] 摘要失效失败: 房间ID={}, 错误={}", roomId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 游标分页查询用户的会话，按活跃时间倒序
+     *
+     * @param cursor 上一页返回的 nextCursor，第一页传 null
+     * @return 本页房间ID
+     */
+    public CursorPage<Long> pageByCursor(Long uid, String cursor, int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, conversationProperties.getMaxPageSize()));
+        Position after = Position.parse(cursor);
+        List<Position> positions = null;
+        if (conversationProperties.isEnabled()) {
+            try {
+                positions = readAfter(ensureLoaded(uid), after, size + 1);
+            } catch (Exception e) {
+                log.warn("[会话列表] 读取缓存失败，降级查 DB: 用户ID={}, 错误={}", uid, e.getMessage());
+            }
+        }
+        if (positions == null) {
+            positions = loadPositions(uid).stream()
+                    .filter(position -> after == null || position.isAfter(after))
+                    .limit(size + 1)
+                    .collect(Collectors.toList());
+        }
+
+        CursorPage<Long> page = new CursorPage<>();
+        boolean hasMore = positions.size() > size;
+        if (hasMore) {
+            positions = positions.subList(0, size);
+        }
+        page.setRecords(positions.stream().map(position -> Long.valueOf(position.member)).collect(Collectors.toList()));
+        page.setHasMore(hasMore);
+        page.setNextCursor(hasMore ? positions.get(positions.size() - 1).format() : null);
+        return page;
+    }
+
+    /**
+     * 按页号分页查询用户的会话 (兼容旧接口)，按活跃时间倒序
+     *
+     * @return 本页房间ID与会话总数
+     */
+    public Page<Long> pageByIndex(Long uid, int current, int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, conversationProperties.getMaxPageSize()));
+        long start = (long) (Math.max(current, 1) - 1) * size;
+        Page<Long> page = new Page<>(current, size);
+        if (conversationProperties.isEnabled()) {
+            try {
+                String key = ensureLoaded(uid);
+                ZSetOperations<String, String> zSet = redisTemplate.opsForZSet();
+                Set<String> members = zSet.reverseRange(key, start, start + size - 1);
+                Long card = zSet.zCard(key);
+                page.setRecords(members == null ? Collections.emptyList() : members.stream()
+                        .filter(member -> !LOADED_MARKER.equals(member))
+                        .map(Long::valueOf)
+                        .collect(Collectors.toList()));
+                page.setTotal(card == null ? 0 : Math.max(card - 1, 0));
+                return page;
+            } catch (Exception e) {
+                log.warn("[会话列表] 读取缓存失败，降级查 DB: 用户ID={}, 错误={}", uid, e.getMessage());
+            }
+        }
+        List<Position> positions = loadPositions(uid);
+        page.setRecords(positions.stream()
+                .skip(start)
+                .limit(size)
+                .map(position -> Long.valueOf(position.member))
+                .collect(Collectors.toList()));
+        page.setTotal(positions.size());
+        return page;
+    }
+
+    /**
+     * 批量获取房间摘要，缺失的合并为一次批量构建并回填
+     *
+     * @return roomId -> 摘要 (房间不存在的不在结果中)
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Long, RoomSummaryDTO> getSummaries(Collection<Long> roomIds) {
+        Map<Long, RoomSummaryDTO> result = new HashMap<>();
+        if (roomIds.isEmpty()) {
+            return result;
+        }
+        List<Long> idList = new ArrayList<>(roomIds);
+        List<Long> missing = new ArrayList<>();
+        if (conversationProperties.isEnabled()) {
+            try {
+                List<Object> hashes = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Long roomId : idList) {
+                        connection.hashCommands().hGetAll(summaryKey(roomId));
+                    }
+                    return null;
+                });
+                for (int i = 0; i < idList.size(); i++) {
+                    Map<String, String> hash = (Map<String, String>) hashes.get(i);
+                    if (hash == null || hash.isEmpty()) {
+                        missing.add(idList.get(i));
+                    } else {
+                        result.put(idList.get(i), fromHash(idList.get(i), hash));
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("[会话列表] 读取摘要失败，降级查 DB: size={}, 错误={}", idList.size(), e.getMessage());
+                missing = idList;
+            }
+        } else {
+            missing = idList;
+        }
+
+        if (!missing.isEmpty()) {
+            Map<Long, RoomSummaryDTO> built = buildSummaries(missing);
+            result.putAll(built);
+            if (conversationProperties.isEnabled()) {
+                writeSummaries(built.values());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 确保用户的会话列表已从 DB 完整构建 (带完整标记)
+     */
+    private String ensureLoaded(Long uid) {
+        String key = RedisKeyConstant.IM_CONV_KEY + uid;
+        if (redisTemplate.opsForZSet().score(key, LOADED_MARKER) != null) {
+            return key;
+        }
+        List<Position> positions = loadPositions(uid);
+        List<String> args = new ArrayList<>(positions.size() * 2 + 2);
+        args.add(LOADED_MARKER);
+        args.add(String.valueOf(conversationProperties.getListTtl().getSeconds()));
+        for (Position position : positions) {
+            args.add(position.member);
+            args.add(String.valueOf(position.score));
+        }
+        redisTemplate.execute(loadScript, Collections.singletonList(key), args.toArray());
+        log.debug("[会话列表] 从 DB 重建: 用户ID={}, size={}", uid, positions.size());
+        return key;
+    }
+
+    /**
+     * 从游标之后读取最多 limit 个房间
+     * 同一毫秒活跃的房间按 member 逆序排列，游标分值处可能需要跳过若干已返回的房间
+     */
+    private List<Position> readAfter(String key, Position after, int limit) {
+        ZSetOperations<String, String> zSet = redisTemplate.opsForZSet();
+        double max = after == null ? Double.POSITIVE_INFINITY : after.score;
+        int batch = limit + 8;
+        List<Position> positions = new ArrayList<>(limit);
+        long offset = 0;
+        while (positions.size() < limit) {
+            Set<ZSetOperations.TypedTuple<String>> tuples = zSet.reverseRangeByScoreWithScores(key, 0, max,
+                    offset, batch);
+            if (tuples == null || tuples.isEmpty()) {
+                break;
+            }
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                Position position = new Position(tuple.getScore() == null ? 0 : tuple.getScore().longValue(),
+                        tuple.getValue());
+                if (after != null && !position.isAfter(after)) {
+                    continue;
+                }
+                positions.add(position);
+                if (positions.size() >= limit) {
+                    break;
+                }
+            }
+            if (tuples.size() < batch) {
+                break;
+            }
+            offset += tuples.size();
+        }
+        return positions;
+    }
+
+    /**
+     * 从 DB 计算用户的可见会话，按 (活跃时间, roomId 字符串) 倒序，与 ZSet 的排序一致
+     */
+    private List<Position> loadPositions(Long uid) {
+        List<Long> roomIds = userRoomRelateMapper.selectList(new LambdaQueryWrapper<UserRoomRelate>()
+                        .select(UserRoomRelate::getRoomId)
+                        .eq(UserRoomRelate::getUserId, uid)
+                        .ne(UserRoomRelate::getIsDeleted, 1))
+                .stream()
+                .map(UserRoomRelate::getRoomId)
+                .collect(Collectors.toList());
+        if (roomIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Room> rooms = roomMapper.selectList(new LambdaQueryWrapper<Room>()
+                .select(Room::getId, Room::getActiveTime, Room::getCreateTime)
+                .in(Room::getId, roomIds));
+        return rooms.stream()
+                .map(room -> new Position(score(room.getActiveTime() != null ? room.getActiveTime()
+                        : room.getCreateTime()), String.valueOf(room.getId())))
+                .sorted(Comparator.comparingLong((Position position) -> position.score)
+                        .thenComparing(position -> position.member)
+                        .reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 一次批量查询构建房间摘要: 房间 -> 最后一条消息 -> 群聊详情 / 私聊双方
+     */
+    private Map<Long, RoomSummaryDTO> buildSummaries(Collection<Long> roomIds) {
+        Map<Long, RoomSummaryDTO> result = new HashMap<>();
+        List<Room> rooms = roomMapper.selectBatchIds(roomIds);
+        if (rooms.isEmpty()) {
+            return result;
+        }
+        Set<Long> lastMsgIds = rooms.stream().map(Room::getLastMsgId).filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Message> messageMap = lastMsgIds.isEmpty() ? Collections.emptyMap()
+                : messageMapper.selectBatchIds(lastMsgIds).stream()
+                .collect(Collectors.toMap(Message::getId, Function.identity()));
+
+        Set<Long> groupRoomIds = new HashSet<>();
+        Set<Long> privateRoomIds = new HashSet<>();
+        for (Room room : rooms) {
+            if (Objects.equals(room.getType(), RoomTypeEnum.GROUP.getType())) {
+                groupRoomIds.add(room.getId());
+            } else {
+                privateRoomIds.add(room.getId());
+            }
+        }
+        Map<Long, RoomGroup> groupMap = groupRoomIds.isEmpty() ? Collections.emptyMap()
+                : roomGroupMapper.selectList(new LambdaQueryWrapper<RoomGroup>()
+                        .in(RoomGroup::getRoomId, groupRoomIds)).stream()
+                .collect(Collectors.toMap(RoomGroup::getRoomId, Function.identity(), (a, b) -> a));
+        Map<Long, RoomFriend> friendMap = privateRoomIds.isEmpty() ? Collections.emptyMap()
+                : roomFriendMapper.selectList(new LambdaQueryWrapper<RoomFriend>()
+                        .in(RoomFriend::getRoomId, privateRoomIds)).stream()
+                .collect(Collectors.toMap(RoomFriend::getRoomId, Function.identity(), (a, b) -> a));
+
+        for (Room room : rooms) {
+            RoomSummaryDTO summary = new RoomSummaryDTO();
+            summary.setRoomId(room.getId());
+            summary.setType(room.getType());
+            summary.setActiveTime(score(room.getActiveTime() != null ? room.getActiveTime() : room.getCreateTime()));
+            Message message = room.getLastMsgId() != null ? messageMap.get(room.getLastMsgId()) : null;
+            summary.setLastMsgId(message != null ? message.getId() : 0L);
+            summary.setContent(message != null ? snippet(message.getContent()) : null);
+            RoomGroup group = groupMap.get(room.getId());
+            if (group != null) {
+                summary.setName(group.getName());
+                summary.setAvatar(group.getAvatar());
+                summary.setOwnerId(group.getOwnerId());
+            }
+            RoomFriend friend = friendMap.get(room.getId());
+            if (friend != null) {
+                summary.setUid1(friend.getUid1());
+                summary.setUid2(friend.getUid2());
+            }
+            result.put(room.getId(), summary);
+        }
+        return result;
+    }
+
+    private void writeSummaries(Collection<RoomSummaryDTO> summaries) {
+        if (summaries.isEmpty()) {
+            return;
+        }
+        long ttlSeconds = conversationProperties.getSummaryTtl().getSeconds();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (RoomSummaryDTO summary : summaries) {
+                    byte[] key = summaryKey(summary.getRoomId());
+                    connection.hashCommands().hMSet(key, toHash(summary));
+                    connection.keyCommands().expire(key, ttlSeconds);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("[会话列表] 摘要回填失败: size={}, 错误={}", summaries.size(), e.getMessage());
+        }
+    }
+
+    private static Map<byte[], byte[]> toHash(RoomSummaryDTO summary) {
+        Map<byte[], byte[]> hash = new HashMap<>();
+        putField(hash, "type", summary.getType());
+        putField(hash, "activeTime", summary.getActiveTime());
+        putField(hash, "lastMsgId", summary.getLastMsgId());
+        putField(hash, "content", summary.getContent());
+        putField(hash, "name", summary.getName());
+        putField(hash, "avatar", summary.getAvatar());
+        putField(hash, "ownerId", summary.getOwnerId());
+        putField(hash, "uid1", summary.getUid1());
+        putField(hash, "uid2", summary.getUid2());
+        return hash;
+    }
+
+    private static void putField(Map<byte[], byte[]> hash, String field, Object value) {
+        if (value != null) {
+            hash.put(field.getBytes(StandardCharsets.UTF_8), String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static RoomSummaryDTO fromHash(Long roomId, Map<String, String> hash) {
+        RoomSummaryDTO summary = new RoomSummaryDTO();
+        summary.setRoomId(roomId);
+        summary.setType(hash.containsKey("type") ? Integer.valueOf(hash.get("type")) : null);
+        summary.setActiveTime(parseLong(hash.get("activeTime")));
+        summary.setLastMsgId(parseLong(hash.get("lastMsgId")));
+        summary.setContent(hash.get("content"));
+        summary.setName(hash.get("name"));
+        summary.setAvatar(hash.get("avatar"));
+        summary.setOwnerId(parseLong(hash.get("ownerId")));
+        summary.setUid1(parseLong(hash.get("uid1")));
+        summary.setUid2(parseLong(hash.get("uid2")));
+        return summary;
+    }
+
+    private static Long parseLong(String value) {
+        return value == null || value.isEmpty() ? null : Long.valueOf(value);
+    }
+
+    private static byte[] summaryKey(Long roomId) {
+        return (RedisKeyConstant.IM_ROOM_SUMMARY_KEY + roomId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long score(Date time) {
+        return time != null ? time.getTime() : 0L;
+    }
+
+    private String snippet(String content) {
+        if (content == null) {
+            return "";
+        }
+        int limit = conversationProperties.getSnippetLength();
+        if (content.codePointCount(0, content.length()) <= limit) {
+            return content;
+        }
+        return content.substring(0, content.offsetByCodePoints(0, limit));
+    }
+
+    /**
+     * 处于事务中时在提交后执行，避免其他线程在提交前按旧数据重建
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 会话在列表中的位置，同时作为游标
+     */
+    private static class Position {
+        private final long score;
+        private final String member;
+
+        private Position(long score, String member) {
+            this.score = score;
+            this.member = member;
+        }
+
+        /**
+         * 是否排在 other 之后 (分值更小，或分值相同且 member 字典序更小)
+         */
+        private boolean isAfter(Position other) {
+            return score < other.score || (score == other.score && member.compareTo(other.member) < 0);
+        }
+
+        private String format() {
+            return score + CURSOR_SEPARATOR + member;
+        }
+
+        private static Position parse(String cursor) {
+            if (cursor == null || cursor.isEmpty()) {
+                return null;
+            }
+            int index = cursor.indexOf(CURSOR_SEPARATOR);
+            if (index <= 0 || index == cursor.length() - 1) {
+                throw new CommonException("游标格式不合法", ErrorCode.BAD_REQUEST);
+            }
+            try {
+                return new Position(Long.parseLong(cursor.substring(0, index)), cursor.substring(index + 1));
+            } catch (NumberFormatException e) {
+                throw new CommonException("游标格式不合法", ErrorCode.BAD_REQUEST);
+            }
+        }
+    }
+}
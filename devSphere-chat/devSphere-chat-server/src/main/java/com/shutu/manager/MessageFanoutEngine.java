@@ -0,0 +1,90 @@
+package com.shutu.manager;
+
+import com.shutu.config.NodeConfig;
+import com.shutu.manager.route.NodeRouteTransport;
+import com.shutu.model.vo.ws.response.WSBaseResp;
+import com.shutu.service.UserLocationService;
+import com.shutu.websocket.service.WebSocketService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 消息扇出引擎
+ * 1. 房间成员取自本地缓存 (RoomMemberCache)
+ * 2. 本机在线用户直接推送
+ * 3. 其余用户一次 MGET 查位置，按节点分组
+ * 4. 消息体只序列化一次，每个目标节点一条携带 UID 列表的路由消息，由 NodeRouteTransport 发出
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageFanoutEngine {
+
+    private final RoomMemberCache roomMemberCache;
+    private final WebSocketService webSocketService;
+    private final UserLocationService userLocationService;
+    private final NodeRouteTransport nodeRouteTransport;
+    private final NodeConfig nodeConfig;
+
+    /**
+     * 推送给房间内所有成员 (含发送者的其他设备)
+     *
+     * @param wsResp  推送内容
+     * @param roomId  房间ID
+     * @param fromUid 发送者 (成员关系已解除时也保证回显给发送者)
+     */
+    public void pushToRoom(WSBaseResp<?> wsResp, Long roomId, Long fromUid) {
+        List<Long> members = roomMemberCache.getMembers(roomId);
+        Set<Long> targets = new LinkedHashSet<>(members.size() + 1);
+        if (fromUid != null) {
+            targets.add(fromUid);
+        }
+        targets.addAll(members);
+        pushToUids(wsResp, targets);
+    }
+
+    /**
+     * 推送给一组用户
+     */
+    public void pushToUids(WSBaseResp<?> wsResp, Collection<Long> uids) {
+        if (uids.isEmpty()) {
+            return;
+        }
+        // 1. 本机在线用户直接推送
+        List<Long> local = new ArrayList<>();
+        List<Long> remote = new ArrayList<>();
+        for (Long uid : uids) {
+            if (webSocketService.isLocalOnline(uid)) {
+                local.add(uid);
+            } else {
+                remote.add(uid);
+            }
+        }
+        if (!local.isEmpty()) {
+            webSocketService.sendToLocalUids(wsResp, local);
+        }
+        if (remote.isEmpty()) {
+            return;
+        }
+
+        // 2. 一次 MGET 查位置并按节点分组，离线与本机脏数据直接跳过
+        Map<Long, String> locations = userLocationService.getNodes(remote);
+        Map<String, List<Long>> nodeTargets = new HashMap<>();
+        String localNode = nodeConfig.getNodeId();
+        locations.forEach((uid, node) -> {
+            if (!localNode.equals(node)) {
+                nodeTargets.computeIfAbsent(node, k -> new ArrayList<>()).add(uid);
+            }
+        });
+        if (nodeTargets.isEmpty()) {
+            return;
+        }
+
+        // 3. 序列化一次，每个节点一条路由消息
+        nodeRouteTransport.send(wsResp, nodeTargets);
+        log.debug("[消息扇出] 本机={}, 远程节点={}, 远程用户={}", local.size(), nodeTargets.size(), locations.size());
+    }
+}
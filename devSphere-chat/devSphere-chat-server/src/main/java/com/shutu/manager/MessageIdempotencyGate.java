@@ -0,0 +1,109 @@
+package com.shutu.manager;
+
+import com.shutu.config.ImIdempotencyProperties;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.util.WindowedBloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 消息幂等前置判断 (tempId)
+ * 目的：正常路径上不再为每条消息回查 dev_sphere_message.temp_id (该列无索引)
+ * 判断顺序：
+ * 1. 重投递 (补偿任务 / 批处理降级) 一律视为可疑，必须回查数据库
+ * 2. 本地布隆过滤器命中 (本节点见过或误判) 视为可疑
+ * 3. 布隆未命中时执行 SET im:dedup:tempId:{tempId} NX EX，设置成功即为首次消费，跳过数据库；
+ *    设置失败说明其他节点或之前已处理过，视为可疑
+ * Redis 异常时全部视为可疑，退回数据库判断，保证不重复落库
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageIdempotencyGate {
+
+    private final StringRedisTemplate redisTemplate;
+    private final ImIdempotencyProperties properties;
+
+    private WindowedBloomFilter bloomFilter;
+
+    @PostConstruct
+    public void init() {
+        bloomFilter = new WindowedBloomFilter(properties.getBloomExpectedInsertions(),
+                properties.getBloomFpp(), properties.getBloomWindow().toMillis());
+    }
+
+    /**
+     * 单条判断
+     *
+     * @param tempId     客户端临时ID
+     * @param recordId   Stream 记录ID，作为标记值便于排查
+     * @param redelivery 是否为重投递
+     * @return true 表示可能已消费，需要回查数据库
+     */
+    public boolean mayBeConsumed(String tempId, String recordId, boolean redelivery) {
+        return !mayBeConsumed(Collections.singletonMap(tempId, recordId), redelivery).isEmpty();
+    }
+
+    /**
+     * 批量判断，布隆未命中的 tempId 通过一次 Pipeline 执行 SET NX EX
+     *
+     * @param tempIdRecords tempId -> Stream 记录ID (tempId 非空)
+     * @param redelivery    是否为重投递
+     * @return 可能已消费、需要回查数据库的 tempId
+     */
+    public Set<String> mayBeConsumed(Map<String, String> tempIdRecords, boolean redelivery) {
+        if (tempIdRecords.isEmpty()) {
+            return Collections.emptySet();
+        }
+        if (!properties.isEnabled() || redelivery) {
+            tempIdRecords.keySet().forEach(bloomFilter::put);
+            return new HashSet<>(tempIdRecords.keySet());
+        }
+
+        Set<String> suspects = new HashSet<>();
+        List<String> candidates = new ArrayList<>(tempIdRecords.size());
+        for (String tempId : tempIdRecords.keySet()) {
+            if (bloomFilter.mightContain(tempId)) {
+                suspects.add(tempId);
+            } else {
+                candidates.add(tempId);
+            }
+            bloomFilter.put(tempId);
+        }
+        if (candidates.isEmpty()) {
+            return suspects;
+        }
+
+        try {
+            Expiration expiration = Expiration.from(properties.getDedupTtl());
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String tempId : candidates) {
+                    connection.stringCommands().set(
+                            (RedisKeyConstant.IM_DEDUP_KEY + tempId).getBytes(StandardCharsets.UTF_8),
+                            tempIdRecords.get(tempId).getBytes(StandardCharsets.UTF_8),
+                            expiration,
+                            RedisStringCommands.SetOption.SET_IF_ABSENT);
+                }
+                return null;
+            });
+            for (int i = 0; i < candidates.size(); i++) {
+                if (!Boolean.TRUE.equals(results.get(i))) {
+                    suspects.add(candidates.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[幂等检查] Redis 去重标记写入失败，回退数据库检查: size={}", candidates.size(), e);
+            suspects.addAll(candidates);
+        }
+        return suspects;
+    }
+}
@@ -0,0 +1,127 @@
+package com.shutu.manager;
+
+import com.shutu.config.ImPartitionProperties;
+import com.shutu.mapper.MessagePartitionMapper;
+import com.shutu.model.dto.chat.MessagePartitionDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 消息分区路由
+ * 1. 消息表与归档表按 id 范围分区 (分区名 p{上界}，最后一个为 MAXVALUE 分区 pmax)，两张表边界一致
+ * 2. 本地缓存 information_schema 中的分区布局，定时刷新；维护任务改动分区后主动刷新
+ * 历史消息翻页不走路由：查询带 id 上下界，MySQL 自行裁剪分区
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessagePartitionRouter {
+
+    public static final String MESSAGE_TABLE = "dev_sphere_message";
+    public static final String ARCHIVE_TABLE = "dev_sphere_message_archive";
+    public static final String MAX_PARTITION = "pmax";
+
+    private static final String MAXVALUE = "MAXVALUE";
+    private static final Pattern PARTITION_NAME = Pattern.compile("^p\\w{1,63}$");
+
+    private final MessagePartitionMapper partitionMapper;
+    private final ImPartitionProperties partitionProperties;
+
+    /**
+     * 表名 -> 分区布局 (按 id 升序)，未分区的表为空列表
+     */
+    private volatile Map<String, List<Partition>> layouts = Collections.emptyMap();
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    /**
+     * 刷新分区布局
+     */
+    @Scheduled(fixedDelayString = "#{@imPartitionProperties.refreshInterval.toMillis()}")
+    public void refresh() {
+        if (!partitionProperties.isEnabled()) {
+            layouts = Collections.emptyMap();
+            return;
+        }
+        try {
+            Map<String, List<Partition>> loaded = new HashMap<>();
+            loaded.put(MESSAGE_TABLE, load(MESSAGE_TABLE));
+            loaded.put(ARCHIVE_TABLE, load(ARCHIVE_TABLE));
+            layouts = loaded;
+        } catch (Exception e) {
+            // 保留旧布局，查询出错时调用方会退化为整表查询
+            log.error("[消息分区] 分区布局刷新失败", e);
+        }
+    }
+
+    /**
+     * 表是否已按 id 范围分区
+     */
+    public boolean isPartitioned(String table) {
+        return !getLayout(table).isEmpty();
+    }
+
+    /**
+     * 分区布局，按 id 升序
+     */
+    public List<Partition> getLayout(String table) {
+        return layouts.getOrDefault(table, Collections.emptyList());
+    }
+
+    /**
+     * 按跨度对齐的分区名
+     */
+    public static String partitionName(long lessThan) {
+        return "p" + lessThan;
+    }
+
+    private List<Partition> load(String table) {
+        List<MessagePartitionDTO> rows = partitionMapper.selectPartitions(table);
+        List<Partition> layout = new ArrayList<>(rows.size());
+        long lower = 0;
+        for (MessagePartitionDTO row : rows) {
+            if (!PARTITION_NAME.matcher(row.getPartitionName()).matches()) {
+                // 分区名会拼接进 SQL，不符合命名规则的布局整体不用
+                log.warn("[消息分区] 分区名不合法，按未分区处理: table={}, partition={}", table, row.getPartitionName());
+                return Collections.emptyList();
+            }
+            long upper = MAXVALUE.equalsIgnoreCase(row.getDescription())
+                    ? Long.MAX_VALUE : Long.parseLong(row.getDescription());
+            long tableRows = row.getTableRows() == null ? 0 : row.getTableRows();
+            layout.add(new Partition(row.getPartitionName(), lower, upper, tableRows));
+            lower = upper;
+        }
+        return Collections.unmodifiableList(layout);
+    }
+
+    /**
+     * 单个分区: id ∈ [lower, upper)
+     * 已删除分区的范围并入下一个分区，lower 以当前布局为准
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Partition {
+        private final String name;
+        private final long lower;
+        private final long upper;
+        /**
+         * 估算行数
+         */
+        private final long rows;
+
+        public boolean isMaxValue() {
+            return upper == Long.MAX_VALUE;
+        }
+    }
+}
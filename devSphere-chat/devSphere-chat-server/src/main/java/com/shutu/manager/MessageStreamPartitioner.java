@@ -0,0 +1,67 @@
+package com.shutu.manager;
+
+import com.shutu.config.ImStreamProperties;
+import com.shutu.config.RedisStreamConfig;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.model.enums.chat.RoomTypeEnum;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 消息流分区路由
+ * 1. 主消息流拆分为 N 个分区 im:message:stream:{k}，同一房间的消息始终写入同一分区，分区内有序
+ * 2. 发送时还不知道私聊的 roomId，私聊按 room_key (较小uid_较大uid，与房间一一对应) 哈希，群聊按 roomId 哈希
+ * 3. 迁移期间旧的单一消息流也在消费列表中，直到关闭 legacyDrainEnabled
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageStreamPartitioner {
+
+    private final ImStreamProperties streamProperties;
+
+    /**
+     * 选择消息写入的分区流
+     *
+     * @param roomType   房间类型
+     * @param fromUserId 发送者
+     * @param targetId   私聊为对方 uid，群聊为 roomId
+     */
+    public String streamKey(int roomType, Long fromUserId, Long targetId) {
+        return partitionKey(partitionOf(roomType, fromUserId, targetId));
+    }
+
+    /**
+     * 计算分区号 (String.hashCode 由语言规范定义，各节点结果一致)
+     */
+    public int partitionOf(int roomType, Long fromUserId, Long targetId) {
+        String routeKey = roomType == RoomTypeEnum.GROUP.getType()
+                ? String.valueOf(targetId)
+                : Math.min(fromUserId, targetId) + "_" + Math.max(fromUserId, targetId);
+        return Math.floorMod(routeKey.hashCode(), partitionCount());
+    }
+
+    public String partitionKey(int partition) {
+        return RedisKeyConstant.IM_MESSAGE_STREAM_PREFIX + partition;
+    }
+
+    public int partitionCount() {
+        return Math.max(1, streamProperties.getPartitions());
+    }
+
+    /**
+     * 需要消费的全部消息流: 各分区 + 迁移中的旧消息流
+     */
+    public List<String> streamKeys() {
+        List<String> keys = new ArrayList<>(partitionCount() + 1);
+        for (int k = 0; k < partitionCount(); k++) {
+            keys.add(partitionKey(k));
+        }
+        if (streamProperties.isLegacyDrainEnabled()) {
+            keys.add(RedisStreamConfig.IM_STREAM_KEY);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,208 @@
+package com.shutu.manager;
+
+import com.baomidou.mybatisplus.extension.toolkit.Db;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shutu.config.ImReadReceiptProperties;
+import com.shutu.mapper.UserRoomRelateMapper;
+import com.shutu.model.entity.Room;
+import com.shutu.model.entity.UserRoomRelate;
+import com.shutu.model.enums.chat.RoomTypeEnum;
+import com.shutu.model.enums.ws.WSReqTypeEnum;
+import com.shutu.model.vo.ws.response.WSBaseResp;
+import com.shutu.model.vo.ws.response.WSReadReceiptResp;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 已读回执管道
+ * 1. 记录: (用户, 房间) -> 已读到的最大消息ID，写入本地无锁缓冲区，同一会话只保留最大值；
+ *    不超过已落库位置的记录直接丢弃，翻历史消息不再产生写入
+ * 2. 刷盘: 独立线程定时把缓冲区按批合并为一条 UPDATE ... CASE，只增不减；失败的记录放回缓冲区下一轮重试
+ *    (不使用 @Scheduled: 其单线程调度器会被归档等长任务阻塞，已读位置数小时不落库)
+ * 3. 刷盘后批量清零未读数，并在私聊中向对方推送已读回执
+ * 已读位置是最终一致的: 接口返回时尚未落库，正常下线时会刷完缓冲区，进程崩溃则丢失最近一个刷盘周期内的记录
+ * (客户端下次拉取消息时会重新上报)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReadReceiptManager {
+
+    private final UserRoomRelateMapper userRoomRelateMapper;
+    private final UnreadCounterManager unreadCounterManager;
+    private final RoomMemberCache roomMemberCache;
+    private final MessageFanoutEngine messageFanoutEngine;
+    private final ImReadReceiptProperties readReceiptProperties;
+
+    /**
+     * 待刷盘的已读位置
+     */
+    private final ConcurrentHashMap<ReadKey, Long> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 已落库的已读位置 (本节点视角)
+     */
+    private Cache<ReadKey, Long> flushed;
+
+    private ScheduledExecutorService flushScheduler;
+
+    @PostConstruct
+    public void init() {
+        flushed = Caffeine.newBuilder()
+                .maximumSize(readReceiptProperties.getFlushedCacheMaxSize())
+                .build();
+        long flushMillis = readReceiptProperties.getFlushInterval().toMillis();
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("im-read-receipt-"));
+        flushScheduler.scheduleWithFixedDelay(this::flushSafely, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录已读位置
+     */
+    public void record(Long userId, Long roomId, Long msgId) {
+        if (userId == null || roomId == null || msgId == null) {
+            return;
+        }
+        ReadKey key = new ReadKey(userId, roomId);
+        Long persisted = flushed.getIfPresent(key);
+        if (persisted != null && persisted >= msgId) {
+            return;
+        }
+        pending.merge(key, msgId, Math::max);
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // 吞掉异常，避免 ScheduledExecutorService 取消后续周期
+            log.error("[已读回执] 刷盘异常", e);
+        }
+    }
+
+    /**
+     * 刷盘
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int batchSize = Math.max(1, readReceiptProperties.getFlushBatchSize());
+        List<UserRoomRelate> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        for (Map.Entry<ReadKey, Long> entry : pending.entrySet()) {
+            ReadKey key = entry.getKey();
+            Long msgId = entry.getValue();
+            // 只在值未被并发推高时移除，推高的留到下一轮
+            pending.remove(key, msgId);
+            UserRoomRelate relate = new UserRoomRelate();
+            relate.setUserId(key.getUserId());
+            relate.setRoomId(key.getRoomId());
+            relate.setLatestReadMsgId(msgId);
+            batch.add(relate);
+            if (batch.size() >= batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    /**
+     * 下线前停止定时刷盘，等待进行中的一轮结束后把缓冲区剩余记录全部落库
+     */
+    @PreDestroy
+    public void shutdown() {
+        flushScheduler.shutdown();
+        try {
+            if (!flushScheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+                flushScheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!pending.isEmpty()) {
+            log.warn("[已读回执] 下线时仍有未落库的已读位置: size={}", pending.size());
+        }
+    }
+
+    private void write(List<UserRoomRelate> batch) {
+        try {
+            userRoomRelateMapper.updateLatestReadBatch(batch);
+        } catch (Exception e) {
+            log.warn("[已读回执] 批量更新失败，下一轮重试: size={}", batch.size(), e);
+            for (UserRoomRelate relate : batch) {
+                pending.merge(new ReadKey(relate.getUserId(), relate.getRoomId()), relate.getLatestReadMsgId(), Math::max);
+            }
+            return;
+        }
+        for (UserRoomRelate relate : batch) {
+            flushed.asMap().merge(new ReadKey(relate.getUserId(), relate.getRoomId()), relate.getLatestReadMsgId(), Math::max);
+        }
+        unreadCounterManager.resetAll(batch);
+        if (readReceiptProperties.isPushPrivate()) {
+            pushPrivateReceipts(batch);
+        }
+        log.debug("[已读回执] 批量更新完成: size={}", batch.size());
+    }
+
+    /**
+     * 私聊中向对方推送已读回执
+     */
+    private void pushPrivateReceipts(List<UserRoomRelate> batch) {
+        try {
+            Set<Long> roomIds = batch.stream().map(UserRoomRelate::getRoomId).collect(Collectors.toSet());
+            Set<Long> privateRoomIds = Db.lambdaQuery(Room.class)
+                    .select(Room::getId)
+                    .in(Room::getId, roomIds)
+                    .eq(Room::getType, RoomTypeEnum.PRIVATE.getType())
+                    .list()
+                    .stream()
+                    .map(Room::getId)
+                    .collect(Collectors.toSet());
+            if (privateRoomIds.isEmpty()) {
+                return;
+            }
+            Map<Long, List<Long>> members = roomMemberCache.getMembers(privateRoomIds);
+            for (UserRoomRelate relate : batch) {
+                if (!privateRoomIds.contains(relate.getRoomId())) {
+                    continue;
+                }
+                List<Long> peers = members.getOrDefault(relate.getRoomId(), Collections.emptyList()).stream()
+                        .filter(uid -> !uid.equals(relate.getUserId()))
+                        .collect(Collectors.toList());
+                if (peers.isEmpty()) {
+                    continue;
+                }
+                WSBaseResp<WSReadReceiptResp> wsResp = new WSBaseResp<>();
+                wsResp.setType(WSReqTypeEnum.READ_RECEIPT.getType());
+                wsResp.setData(new WSReadReceiptResp(relate.getRoomId(), relate.getUserId(), relate.getLatestReadMsgId()));
+                messageFanoutEngine.pushToUids(wsResp, peers);
+            }
+        } catch (Exception e) {
+            // 回执推送失败不影响已读落库，对方下次拉取会话时可见
+            log.warn("[已读回执] 回执推送失败: size={}", batch.size(), e);
+        }
+    }
+
+    @Value
+    private static class ReadKey {
+        Long userId;
+        Long roomId;
+    }
+}
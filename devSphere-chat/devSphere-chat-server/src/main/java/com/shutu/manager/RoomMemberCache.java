@@ -0,0 +1,120 @@
+package com.shutu.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.shutu.config.ImCacheProperties;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.mapper.UserRoomRelateMapper;
+import com.shutu.model.entity.UserRoomRelate;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 房间成员本地缓存
+ * 1. roomId -> 成员 UID 列表，消息推送与未读计数共用，避免每条消息都查 user_room_relate
+ * 2. 批量获取时未命中的房间合并为一次 IN 查询
+ * 3. 成员变动 (建群/邀请/踢人/退群/加删好友) 时调用 evict，通过 Redis 广播让所有节点失效
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RoomMemberCache {
+
+    private final UserRoomRelateMapper userRoomRelateMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final ImCacheProperties cacheProperties;
+
+    private LoadingCache<Long, List<Long>> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getRoomMemberMaxSize())
+                .expireAfterWrite(cacheProperties.getRoomMemberTtl().toMillis(), TimeUnit.MILLISECONDS)
+                .build(new CacheLoader<Long, List<Long>>() {
+                    @Override
+                    public List<Long> load(Long roomId) {
+                        return loadAll(Collections.singleton(roomId)).get(roomId);
+                    }
+
+                    @Override
+                    public Map<Long, List<Long>> loadAll(Set<? extends Long> roomIds) {
+                        return queryMembers(roomIds);
+                    }
+                });
+    }
+
+    /**
+     * 获取房间成员 UID 列表 (不可变)
+     */
+    public List<Long> getMembers(Long roomId) {
+        return cache.get(roomId);
+    }
+
+    /**
+     * 批量获取多个房间的成员
+     *
+     * @return roomId -> 成员 UID 列表
+     */
+    public Map<Long, List<Long>> getMembers(Collection<Long> roomIds) {
+        return cache.getAll(roomIds);
+    }
+
+    /**
+     * 房间成员发生变动，失效所有节点的本地缓存
+     * 处于事务中时在提交后执行，避免其他线程在提交前把旧成员重新加载进缓存
+     */
+    public void evict(Long roomId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictAndBroadcast(roomId);
+                }
+            });
+        } else {
+            evictAndBroadcast(roomId);
+        }
+    }
+
+    /**
+     * 仅失效本节点缓存 (收到广播时调用)
+     */
+    public void evictLocal(Long roomId) {
+        cache.invalidate(roomId);
+    }
+
+    private void evictAndBroadcast(Long roomId) {
+        cache.invalidate(roomId);
+        try {
+            redisTemplate.convertAndSend(RedisKeyConstant.TOPIC_ROOM_MEMBER_CHANGED, String.valueOf(roomId));
+        } catch (Exception e) {
+            // 广播失败时其他节点等待缓存过期
+            log.warn("[成员缓存] 变更广播失败: 房间ID={}, 错误={}", roomId, e.getMessage());
+        }
+    }
+
+    private Map<Long, List<Long>> queryMembers(Set<? extends Long> roomIds) {
+        List<UserRoomRelate> relates = userRoomRelateMapper.selectList(new LambdaQueryWrapper<UserRoomRelate>()
+                .select(UserRoomRelate::getRoomId, UserRoomRelate::getUserId)
+                .in(UserRoomRelate::getRoomId, roomIds));
+        Map<Long, List<Long>> members = relates.stream().collect(Collectors.groupingBy(UserRoomRelate::getRoomId,
+                Collectors.mapping(UserRoomRelate::getUserId, Collectors.toUnmodifiableList())));
+        // 没有成员的房间也缓存空列表，避免反复穿透
+        for (Long roomId : roomIds) {
+            members.putIfAbsent(roomId, Collections.emptyList());
+        }
+        return members;
+    }
+}
@@ -0,0 +1,266 @@
+package com.shutu.manager;
+
+import com.shutu.config.ImCacheProperties;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.manager.codec.MessageCacheCodec;
+import com.shutu.model.entity.Message;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 房间历史消息缓存
+ * 结构：im:room:msg:{roomId} -> ZSet(member=编码后的消息, score=消息ID)
+ * 追加在一个 Pipeline 内完成 ZADD + 裁剪 + 续期，只产生一次网络往返；读修复由 Lua 脚本原子替换
+ * 缓存保存的是房间的最新消息，与用户无关，用户的可见范围 (minMsgId) 只在读取时过滤
+ * 切换编码后同一条消息可能以两种格式各存一份 (score 相同)，读取时按消息ID去重，回填时替换回填范围内的成员
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RoomMessageCacheManager {
+
+    private final StringRedisTemplate redisTemplate;
+    private final ImCacheProperties cacheProperties;
+    private final List<MessageCacheCodec> codecs;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder staleCount = new LongAdder();
+
+    /**
+     * 写入使用的编码器
+     */
+    private MessageCacheCodec writeCodec;
+
+    private DefaultRedisScript<Long> rebuildScript;
+
+    @PostConstruct
+    public void init() {
+        rebuildScript = new DefaultRedisScript<>();
+        rebuildScript.setResultType(Long.class);
+        rebuildScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/room_cache_rebuild.lua")));
+        writeCodec = codecs.stream()
+                .filter(codec -> codec.name().equalsIgnoreCase(cacheProperties.getCodec()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "未知的消息缓存编码: devsphere.im.cache.codec=" + cacheProperties.getCodec()));
+        log.info("[Redis缓存] 房间消息缓存编码: {}", writeCodec.name());
+    }
+
+    /**
+     * 追加单条消息 (Write-Through)
+     */
+    public void append(Message message) {
+        appendAll(Collections.singletonList(message));
+    }
+
+    /**
+     * 追加一批消息，可跨多个房间
+     * 所有房间的 ZADD + 裁剪 + 续期在同一个 Pipeline 中完成
+     */
+    public void appendAll(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Message>> roomMessages = messages.stream()
+                .collect(Collectors.groupingBy(Message::getRoomId, LinkedHashMap::new, Collectors.toList()));
+        try {
+            writePipelined(roomMessages);
+        } catch (Exception e) {
+            log.error("[Cache写入] 失败: rooms={}", roomMessages.keySet(), e);
+        }
+    }
+
+    /**
+     * 读修复：用 DB 查询结果回填房间缓存
+     * 一个脚本内删除回填范围内的旧成员 (含以旧编码存储的重复成员) 并写入，期间不会丢失并发追加的新消息
+     *
+     * @param messages 房间最新的消息 (不按用户可见范围过滤)
+     */
+    public void rebuild(Long roomId, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        long maxId = messages.stream().mapToLong(Message::getId).max().getAsLong();
+        List<byte[]> args = new ArrayList<>(messages.size() * 2 + 3);
+        args.add(bytes(maxId));
+        args.add(bytes(cacheProperties.getRoomHistorySize()));
+        args.add(bytes(cacheProperties.getRoomHistoryTtl().getSeconds()));
+        for (Message message : messages) {
+            args.add(bytes(message.getId()));
+            args.add(writeCodec.encode(message));
+        }
+        try {
+            redisTemplate.execute(rebuildScript, RedisSerializer.byteArray(), null,
+                    Collections.singletonList(RedisKeyConstant.IM_ROOM_MSG_KEY + roomId), args.toArray());
+            log.info("[Redis缓存] 缓存已回填: 房间ID={}, 条数={}", roomId, messages.size());
+        } catch (Exception e) {
+            log.error("[Redis缓存] 回填失败: 房间ID={}", roomId, e);
+        }
+    }
+
+    /**
+     * 房间内已有消息被修改 (撤回) 后失效房间缓存，事务提交后执行，下次读取时回填
+     */
+    public void evict(Long roomId) {
+        Runnable action = () -> {
+            try {
+                redisTemplate.delete(RedisKeyConstant.IM_ROOM_MSG_KEY + roomId);
+            } catch (Exception e) {
+                log.warn("[Redis缓存] 失效失败: 房间ID={}, 错误={}", roomId, e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 读取房间最新的 size + 1 条消息 (多取一条用于判断 hasMore)
+     *
+     * @param minMsgId       用户可见的最小消息ID (不含)
+     * @param latestDbMsgId  DB 中房间的最新消息ID，用于新鲜度校验
+     * @return 按ID倒序的消息；未命中、不完整或陈旧时返回 null
+     */
+    public List<Message> getLatest(Long roomId, int size, Long minMsgId, Long latestDbMsgId) {
+        try {
+            byte[] cacheKey = key(roomId);
+            // 倒序取最新的 N+1 条，ZREVRANGE 已按 score(消息ID) 倒序返回，无需再排序
+            Set<byte[]> members = redisTemplate.execute(
+                    (RedisCallback<Set<byte[]>>) connection -> connection.zSetCommands().zRevRange(cacheKey, 0, size));
+
+            if (members == null || members.size() < (size + 1)) {
+                // 缓存条数不足，说明缓存不可靠，强制走DB
+                missCount.increment();
+                log.debug("[Redis缓存] 未命中或数据不完整: 房间ID={}, 期望条数={}, 实际条数={}", roomId, size + 1,
+                        (members == null ? 0 : members.size()));
+                return null;
+            }
+
+            List<Message> cachedMessages = new ArrayList<>(members.size());
+            int distinct = 0;
+            Long previousId = null;
+            for (byte[] member : members) {
+                Message msg = decode(member);
+                // score 即消息ID，同一条消息的两种编码相邻，跳过后者
+                if (msg.getId().equals(previousId)) {
+                    continue;
+                }
+                previousId = msg.getId();
+                distinct++;
+                if (msg.getId() > minMsgId) {
+                    cachedMessages.add(msg);
+                }
+            }
+
+            if (distinct < size + 1) {
+                // 去重后条数不足 (切换编码后的重复成员)，按未命中处理，由读修复替换整个房间缓存
+                missCount.increment();
+                log.debug("[Redis缓存] 去重后数据不完整: 房间ID={}, 期望条数={}, 实际条数={}", roomId, size + 1, distinct);
+                return null;
+            }
+
+            if (cachedMessages.isEmpty()) {
+                missCount.increment();
+                return null;
+            }
+
+            // 如果 DB 里的最新消息 ID 比 缓存里最新的消息 ID 还要大，说明缓存漏了最新的消息
+            if (latestDbMsgId != null) {
+                Long latestCacheId = cachedMessages.get(0).getId();
+                if (latestDbMsgId > latestCacheId) {
+                    staleCount.increment();
+                    log.warn("[Redis缓存] 数据陈旧 (Stale Cache): 房间ID={}, DB最新ID={}, 缓存最新ID={}",
+                            roomId, latestDbMsgId, latestCacheId);
+                    return null; // 降级查 DB
+                }
+            }
+
+            hitCount.increment();
+            log.debug("[Redis缓存] 命中成功: 房间ID={}, 条数={}", roomId, cachedMessages.size());
+            return cachedMessages;
+
+        } catch (Exception e) {
+            missCount.increment();
+            log.error("[Redis缓存] 读取异常: 房间ID={}", roomId, e);
+            return null; // 异常降级
+        }
+    }
+
+    /**
+     * 缓存命中统计 (hit / miss / stale)
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hit", hitCount.sum());
+        stats.put("miss", missCount.sum());
+        stats.put("stale", staleCount.sum());
+        return stats;
+    }
+
+    /**
+     * 单次 Pipeline 写入：每个房间一条多成员 ZADD + ZREMRANGEBYRANK + EXPIRE
+     */
+    private void writePipelined(Map<Long, List<Message>> roomMessages) {
+        int keep = cacheProperties.getRoomHistorySize();
+        long ttlSeconds = cacheProperties.getRoomHistoryTtl().getSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            roomMessages.forEach((roomId, list) -> {
+                byte[] cacheKey = key(roomId);
+                Set<Tuple> tuples = new LinkedHashSet<>(list.size());
+                for (Message message : list) {
+                    tuples.add(new DefaultTuple(writeCodec.encode(message), message.getId().doubleValue()));
+                }
+                connection.zSetCommands().zAdd(cacheKey, tuples);
+                // 只保留最新的 N 条
+                connection.zSetCommands().zRemRange(cacheKey, 0, -(keep + 1));
+                connection.keyCommands().expire(cacheKey, ttlSeconds);
+            });
+            return null;
+        });
+    }
+
+    /**
+     * 按首字节选择解码器，兼容不同编码写入的历史数据
+     */
+    private Message decode(byte[] member) {
+        for (MessageCacheCodec codec : codecs) {
+            if (codec.canDecode(member)) {
+                return codec.decode(member);
+            }
+        }
+        throw new IllegalStateException("无法识别的消息缓存格式");
+    }
+
+    private static byte[] bytes(long value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] key(Long roomId) {
+        return (RedisKeyConstant.IM_ROOM_MSG_KEY + roomId).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,377 @@
+package com.shutu.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.shutu.config.ImCacheProperties;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.mapper.MessageMapper;
+import com.shutu.mapper.UserRoomRelateMapper;
+import com.shutu.model.entity.Message;
+import com.shutu.model.entity.UserRoomRelate;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 未读数与成员数计数器
+ * 1. 未读数: im:unread:{uid} -> Hash(roomId -> 未读条数)，由消息消费者增量维护，已读时清零
+ * 2. 成员数: im:room:member:count -> Hash(roomId -> 成员数)，成员变动时失效
+ * 计数缺失时按 DB 对账 (一次分组查询) 并回填
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UnreadCounterManager {
+
+    private final StringRedisTemplate redisTemplate;
+    private final MessageMapper messageMapper;
+    private final UserRoomRelateMapper userRoomRelateMapper;
+    private final ImCacheProperties cacheProperties;
+    private final RoomMemberCache roomMemberCache;
+
+    private DefaultRedisScript<Long> updateUnreadScript;
+    private byte[] updateUnreadScriptBody;
+
+    @PostConstruct
+    public void init() {
+        updateUnreadScript = new DefaultRedisScript<>();
+        updateUnreadScript.setResultType(Long.class);
+        updateUnreadScript
+                .setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/update_unread.lua")));
+        updateUnreadScriptBody = updateUnreadScript.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 新消息落库后更新房间成员的未读数
+     * 非发送者: 未读数 + 本批次条数 (仅在计数已初始化时)
+     * 发送者: 未读数 = 其最后一条消息之后的条数
+     * 每个成员的 Key 单独执行脚本 (Redis Cluster 下不跨槽)，按 unreadPipelineBatch 分批 Pipeline 发送
+     *
+     * @param messages 已落库的消息 (按ID升序)
+     */
+    public void onMessagesSaved(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            Map<Long, List<Message>> roomMessages = messages.stream()
+                    .collect(Collectors.groupingBy(Message::getRoomId, LinkedHashMap::new, Collectors.toList()));
+            Map<Long, List<Long>> roomMembers = roomMemberCache.getMembers(roomMessages.keySet());
+            byte[] ttl = String.valueOf(cacheProperties.getUnreadTtl().getSeconds()).getBytes(StandardCharsets.UTF_8);
+
+            // 每个成员一条单 Key 脚本调用: [key, roomId, ttl, op]
+            List<byte[][]> updates = new ArrayList<>();
+            roomMessages.forEach((roomId, list) -> {
+                List<Long> memberIds = roomMembers.getOrDefault(roomId, Collections.emptyList());
+                if (memberIds.isEmpty()) {
+                    return;
+                }
+                // 发送者最后一条消息之后还有几条
+                Map<Long, Integer> senderUnread = new HashMap<>();
+                for (int i = 0; i < list.size(); i++) {
+                    senderUnread.put(list.get(i).getFromUid(), list.size() - 1 - i);
+                }
+
+                byte[] field = String.valueOf(roomId).getBytes(StandardCharsets.UTF_8);
+                byte[] increment = ("+" + list.size()).getBytes(StandardCharsets.UTF_8);
+                for (Long uid : memberIds) {
+                    Integer unread = senderUnread.get(uid);
+                    updates.add(new byte[][]{
+                            (RedisKeyConstant.IM_UNREAD_KEY + uid).getBytes(StandardCharsets.UTF_8),
+                            field,
+                            ttl,
+                            unread != null ? ("=" + unread).getBytes(StandardCharsets.UTF_8) : increment});
+                }
+            });
+
+            int batchSize = Math.max(1, cacheProperties.getUnreadPipelineBatch());
+            for (int from = 0; from < updates.size(); from += batchSize) {
+                updateUnreadPipelined(updates.subList(from, Math.min(from + batchSize, updates.size())));
+            }
+        } catch (Exception e) {
+            // 计数异常不影响消息主流程，计数过期后会从 DB 重新对账
+            log.error("[未读计数] 更新失败: size={}", messages.size(), e);
+        }
+    }
+
+    /**
+     * 事务内产生的消息 (建群/邀请/退群/踢人等系统消息)，提交后再更新未读数，回滚时不计数
+     */
+    public void onMessagesSavedAfterCommit(List<Message> messages) {
+        afterCommit(() -> onMessagesSaved(messages));
+    }
+
+    /**
+     * 一个 Pipeline 发送一组单 Key 的 EVALSHA
+     * 脚本未缓存的节点 (重启 / SCRIPT FLUSH / 集群新节点) 返回 NOSCRIPT，只对这些命令改用 EVAL 重发，
+     * 其余命令已执行，整体重发会重复累加
+     */
+    private void updateUnreadPipelined(List<byte[][]> updates) {
+        try {
+            executeUpdateUnread(updates, false);
+        } catch (RedisPipelineException e) {
+            List<Object> results = e.getPipelineResult();
+            List<byte[][]> retry = new ArrayList<>();
+            int failed = 0;
+            for (int i = 0; i < results.size() && i < updates.size(); i++) {
+                if (results.get(i) instanceof Exception ex) {
+                    if (isNoScript(ex)) {
+                        retry.add(updates.get(i));
+                    } else {
+                        failed++;
+                    }
+                }
+            }
+            if (failed > 0) {
+                log.warn("[未读计数] 部分更新失败: 失败={}, 总数={}", failed, updates.size());
+            }
+            if (!retry.isEmpty()) {
+                executeUpdateUnread(retry, true);
+            }
+        } catch (Exception e) {
+            log.error("[未读计数] 批量更新失败: size={}", updates.size(), e);
+        }
+    }
+
+    private void executeUpdateUnread(List<byte[][]> updates, boolean eval) {
+        String sha = updateUnreadScript.getSha1();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (byte[][] keyAndArgs : updates) {
+                if (eval) {
+                    connection.scriptingCommands().eval(updateUnreadScriptBody, ReturnType.INTEGER, 1, keyAndArgs);
+                } else {
+                    connection.scriptingCommands().evalSha(sha, ReturnType.INTEGER, 1, keyAndArgs);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 清零某用户在某房间的未读数
+     */
+    public void reset(Long userId, Long roomId) {
+        try {
+            String key = RedisKeyConstant.IM_UNREAD_KEY + userId;
+            redisTemplate.opsForHash().put(key, String.valueOf(roomId), "0");
+            redisTemplate.expire(key, cacheProperties.getUnreadTtl());
+        } catch (Exception e) {
+            log.warn("[未读计数] 清零失败: 用户ID={}, 房间ID={}, 错误={}", userId, roomId, e.getMessage());
+        }
+    }
+
+    /**
+     * 批量清零未读数，一次 Pipeline
+     *
+     * @param relates userId / roomId
+     */
+    public void resetAll(Collection<UserRoomRelate> relates) {
+        if (relates.isEmpty()) {
+            return;
+        }
+        byte[] zero = "0".getBytes(StandardCharsets.UTF_8);
+        long ttlSeconds = cacheProperties.getUnreadTtl().getSeconds();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (UserRoomRelate relate : relates) {
+                    byte[] key = (RedisKeyConstant.IM_UNREAD_KEY + relate.getUserId()).getBytes(StandardCharsets.UTF_8);
+                    connection.hashCommands().hSet(key,
+                            String.valueOf(relate.getRoomId()).getBytes(StandardCharsets.UTF_8), zero);
+                    connection.keyCommands().expire(key, ttlSeconds);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("[未读计数] 批量清零失败: size={}, 错误={}", relates.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 批量获取用户在多个房间的未读数
+     * 缓存缺失的房间先按 (user_id, room_id) 取已读位置，再通过一次分组 COUNT 从 DB 对账并回填
+     *
+     * @param userId  用户ID
+     * @param roomIds 房间ID
+     * @return roomId -> 未读数
+     */
+    public Map<Long, Integer> getUnreadCounts(Long userId, Collection<Long> roomIds) {
+        Map<Long, Integer> result = new HashMap<>();
+        if (roomIds.isEmpty()) {
+            return result;
+        }
+        String key = RedisKeyConstant.IM_UNREAD_KEY + userId;
+        List<Long> idList = new ArrayList<>(roomIds);
+        List<Long> missing = new ArrayList<>();
+        try {
+            List<Object> fields = idList.stream().map(id -> (Object) String.valueOf(id)).collect(Collectors.toList());
+            List<Object> values = redisTemplate.opsForHash().multiGet(key, fields);
+            for (int i = 0; i < idList.size(); i++) {
+                Object value = values.get(i);
+                if (value != null) {
+                    result.put(idList.get(i), Integer.parseInt(value.toString()));
+                } else {
+                    missing.add(idList.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[未读计数] 读取缓存失败，降级查 DB: 用户ID={}, 错误={}", userId, e.getMessage());
+            missing = idList;
+        }
+
+        if (!missing.isEmpty()) {
+            List<UserRoomRelate> relates = userRoomRelateMapper.selectList(new LambdaQueryWrapper<UserRoomRelate>()
+                    .select(UserRoomRelate::getRoomId, UserRoomRelate::getLatestReadMsgId)
+                    .eq(UserRoomRelate::getUserId, userId)
+                    .in(UserRoomRelate::getRoomId, missing));
+            if (!relates.isEmpty()) {
+                Map<Long, Integer> reconciled = countUnreadFromDb(relates);
+                result.putAll(reconciled);
+                writeHash(key, reconciled, cacheProperties.getUnreadTtl().getSeconds());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量获取房间成员数，缺失时一次分组 COUNT 回填
+     *
+     * @return roomId -> 成员数
+     */
+    public Map<Long, Integer> getMemberCounts(Collection<Long> roomIds) {
+        Map<Long, Integer> result = new HashMap<>();
+        if (roomIds.isEmpty()) {
+            return result;
+        }
+        List<Long> idList = new ArrayList<>(roomIds);
+        List<Long> missing = new ArrayList<>();
+        try {
+            List<Object> fields = idList.stream().map(id -> (Object) String.valueOf(id)).collect(Collectors.toList());
+            List<Object> values = redisTemplate.opsForHash().multiGet(RedisKeyConstant.IM_ROOM_MEMBER_COUNT_KEY, fields);
+            for (int i = 0; i < idList.size(); i++) {
+                Object value = values.get(i);
+                if (value != null) {
+                    result.put(idList.get(i), Integer.parseInt(value.toString()));
+                } else {
+                    missing.add(idList.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("[成员计数] 读取缓存失败，降级查 DB: 错误={}", e.getMessage());
+            missing = idList;
+        }
+
+        if (!missing.isEmpty()) {
+            Map<Long, Integer> counts = new HashMap<>();
+            List<Map<String, Object>> rows = userRoomRelateMapper.selectMaps(new QueryWrapper<UserRoomRelate>()
+                    .select("room_id", "COUNT(*) AS cnt")
+                    .in("room_id", missing)
+                    .groupBy("room_id"));
+            for (Map<String, Object> row : rows) {
+                counts.put(((Number) row.get("room_id")).longValue(), ((Number) row.get("cnt")).intValue());
+            }
+            for (Long roomId : missing) {
+                counts.putIfAbsent(roomId, 0);
+            }
+            result.putAll(counts);
+            writeHash(RedisKeyConstant.IM_ROOM_MEMBER_COUNT_KEY, counts, -1);
+        }
+        return result;
+    }
+
+    /**
+     * 成员变动 (建群/邀请/踢人/退群) 后失效房间成员数，事务提交后执行
+     */
+    public void evictMemberCount(Long roomId) {
+        afterCommit(() -> {
+            try {
+                redisTemplate.opsForHash().delete(RedisKeyConstant.IM_ROOM_MEMBER_COUNT_KEY, String.valueOf(roomId));
+            } catch (Exception e) {
+                log.warn("[成员计数] 失效失败: 房间ID={}, 错误={}", roomId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 一次分组查询统计多个房间的未读数
+     * SELECT room_id, COUNT(*) FROM message WHERE (room_id = ? AND id > ?) OR ... GROUP BY room_id
+     */
+    private Map<Long, Integer> countUnreadFromDb(List<UserRoomRelate> relates) {
+        Map<Long, Integer> counts = new HashMap<>();
+        QueryWrapper<Message> wrapper = new QueryWrapper<Message>()
+                .select("room_id", "COUNT(*) AS cnt")
+                .and(w -> relates.forEach(relate -> w.or(q -> q
+                        .eq("room_id", relate.getRoomId())
+                        .gt("id", relate.getLatestReadMsgId() != null ? relate.getLatestReadMsgId() : 0L))))
+                .groupBy("room_id");
+        for (Map<String, Object> row : messageMapper.selectMaps(wrapper)) {
+            counts.put(((Number) row.get("room_id")).longValue(), ((Number) row.get("cnt")).intValue());
+        }
+        for (UserRoomRelate relate : relates) {
+            counts.putIfAbsent(relate.getRoomId(), 0);
+        }
+        return counts;
+    }
+
+    /**
+     * Pipeline 回填 Hash，ttlSeconds < 0 表示不过期
+     */
+    private void writeHash(String key, Map<Long, Integer> values, long ttlSeconds) {
+        if (values.isEmpty()) {
+            return;
+        }
+        try {
+            byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+            Map<byte[], byte[]> hash = new HashMap<>();
+            values.forEach((field, value) -> hash.put(String.valueOf(field).getBytes(StandardCharsets.UTF_8),
+                    String.valueOf(value).getBytes(StandardCharsets.UTF_8)));
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.hashCommands().hMSet(rawKey, hash);
+                if (ttlSeconds > 0) {
+                    connection.keyCommands().expire(rawKey, ttlSeconds);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("[计数回填] 失败: key={}, 错误={}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 有事务时在提交后执行，否则立即执行
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.shutu.manager;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.shutu.commons.security.user.UserDetail;
+import com.shutu.commons.tools.utils.Result;
+import com.shutu.config.ImCacheProperties;
+import com.shutu.dto.SysUserDTO;
+import com.shutu.feign.UserFeignClient;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户资料本地缓存 (shutu-auth 的近端缓存)
+ * 1. 容量上限 + 写入后过期，由 Caffeine 淘汰
+ * 2. 同一用户的并发加载合并为一次远程调用
+ * 3. 批量查询时未命中的用户合并为一次 listByIds
+ * 加载在调用线程上同步执行，FeignConfig 才能从当前请求透传 token；
+ * 单个查询走白名单接口 getById，消息推送等无请求上下文的线程也能加载，
+ * 批量查询在无请求上下文时同样逐个走 getById (listByIds 需要 token)
+ * 4. auth 服务更新用户后通过 Redis 广播失效 (见 UserProfileChangedListener)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserProfileCache {
+
+    /**
+     * 单次 listByIds 的最大用户数，避免请求体过大
+     */
+    private static final int LOAD_BATCH_SIZE = 200;
+
+    private final UserFeignClient userFeignClient;
+    private final ImCacheProperties cacheProperties;
+
+    private LoadingCache<Long, SysUserDTO> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getUserProfileMaxSize())
+                .expireAfterWrite(cacheProperties.getUserProfileTtl().toMillis(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build(new CacheLoader<Long, SysUserDTO>() {
+                    @Override
+                    public SysUserDTO load(Long userId) {
+                        return fetchOne(userId);
+                    }
+
+                    @Override
+                    public Map<Long, SysUserDTO> loadAll(Set<? extends Long> userIds) {
+                        return fetch(userIds);
+                    }
+                });
+    }
+
+    /**
+     * 获取单个用户资料
+     *
+     * @return 用户不存在或远程调用失败时返回 null
+     */
+    public SysUserDTO get(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        try {
+            return cache.get(userId);
+        } catch (Exception e) {
+            log.warn("[用户缓存] 获取用户资料失败: 用户ID={}, 错误={}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 批量获取用户资料，未命中部分合并为一次远程调用
+     *
+     * @return userId -> 用户资料 (不存在或加载失败的用户不在结果中)
+     */
+    public Map<Long, SysUserDTO> getAll(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Set<Long> ids = new HashSet<>(userIds);
+        ids.remove(null);
+        try {
+            Map<Long, SysUserDTO> result = cache.getAll(ids);
+            Map<Long, SysUserDTO> present = new HashMap<>(result.size());
+            result.forEach((id, user) -> {
+                if (user != null) {
+                    present.put(id, user);
+                }
+            });
+            return present;
+        } catch (Exception e) {
+            log.warn("[用户缓存] 批量获取用户资料失败: size={}, 错误={}", ids.size(), e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 失效指定用户
+     */
+    public void invalidate(Collection<Long> userIds) {
+        cache.invalidateAll(userIds);
+    }
+
+    /**
+     * 失效全部 (广播消息无法解析时兜底)
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 缓存统计，用于监控
+     */
+    public Map<String, Object> getStats() {
+        com.github.benmanes.caffeine.cache.stats.CacheStats stats = cache.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", cache.estimatedSize());
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("loadFailureCount", stats.loadFailureCount());
+        map.put("evictionCount", stats.evictionCount());
+        return map;
+    }
+
+    /**
+     * 远程加载单个用户 (白名单接口，不依赖请求上下文)
+     *
+     * @return 用户不存在时返回 null (不缓存)
+     */
+    private SysUserDTO fetchOne(Long userId) {
+        Result<UserDetail> result = userFeignClient.getById(userId);
+        if (result == null) {
+            throw new IllegalStateException("用户服务返回为空");
+        }
+        UserDetail user = result.getData();
+        if (user == null) {
+            return null;
+        }
+        SysUserDTO dto = new SysUserDTO();
+        dto.setId(user.getId());
+        dto.setUsername(user.getUsername());
+        dto.setRealName(user.getRealName());
+        dto.setHeadUrl(user.getHeadUrl());
+        dto.setGender(user.getGender());
+        dto.setEmail(user.getEmail());
+        dto.setMobile(user.getMobile());
+        dto.setDeptId(user.getDeptId());
+        dto.setStatus(user.getStatus());
+        dto.setSuperAdmin(user.getSuperAdmin());
+        return dto;
+    }
+
+    /**
+     * 远程批量加载，按 LOAD_BATCH_SIZE 分片
+     * 无请求上下文 (拿不到 token) 时逐个走 getById
+     * 远程失败时抛出异常，使本次加载不被缓存
+     */
+    private Map<Long, SysUserDTO> fetch(Set<? extends Long> userIds) {
+        if (RequestContextHolder.getRequestAttributes() == null) {
+            Map<Long, SysUserDTO> loaded = new HashMap<>(userIds.size());
+            for (Long userId : userIds) {
+                SysUserDTO user = fetchOne(userId);
+                if (user != null) {
+                    loaded.put(userId, user);
+                }
+            }
+            return loaded;
+        }
+        List<Long> idList = new ArrayList<>(userIds);
+        Map<Long, SysUserDTO> loaded = new HashMap<>(idList.size());
+        for (int i = 0; i < idList.size(); i += LOAD_BATCH_SIZE) {
+            List<Long> sub = idList.subList(i, Math.min(i + LOAD_BATCH_SIZE, idList.size()));
+            Result<List<SysUserDTO>> result = userFeignClient.listByIds(new ArrayList<>(sub));
+            if (result == null || result.getData() == null) {
+                throw new IllegalStateException("用户服务返回为空");
+            }
+            for (SysUserDTO user : result.getData()) {
+                loaded.put(user.getId(), user);
+            }
+        }
+        log.debug("[用户缓存] 远程加载用户资料: 请求={}, 返回={}", idList.size(), loaded.size());
+        return loaded;
+    }
+}
@@ -0,0 +1,210 @@
+package com.shutu.manager.codec;
+
+import com.shutu.model.entity.Message;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * 二进制编解码器 (定长布局 + 变长整数)
+ * <pre>
+ * [version:1B][flags:2B][id][roomId][fromUid]
+ * [serverMsgId]?[replyMsgId]?[gapCount]?[status]?[type]?[createTime]?[updateTime]?[tempId]?[content]?
+ * </pre>
+ * 整数使用无符号 varint，字符串为 varint 长度 + UTF-8 字节，带 ? 的字段由 flags 对应位标识是否存在。
+ * 不写字段名，避免 JSON 在 Redis 中重复存储 key；extra 字段不在聊天链路中使用，不参与缓存。
+ */
+@Component
+public class BinaryMessageCacheCodec implements MessageCacheCodec {
+
+    public static final String NAME = "binary";
+
+    /**
+     * 格式版本号，调整布局时递增，并保留旧版本的解码分支
+     */
+    public static final byte VERSION_1 = 1;
+
+    private static final int F_SERVER_MSG_ID = 1;
+    private static final int F_REPLY_MSG_ID = 1 << 1;
+    private static final int F_GAP_COUNT = 1 << 2;
+    private static final int F_STATUS = 1 << 3;
+    private static final int F_TYPE = 1 << 4;
+    private static final int F_CREATE_TIME = 1 << 5;
+    private static final int F_UPDATE_TIME = 1 << 6;
+    private static final int F_TEMP_ID = 1 << 7;
+    private static final int F_CONTENT = 1 << 8;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        int flags = 0;
+        flags |= message.getServerMsgId() != null ? F_SERVER_MSG_ID : 0;
+        flags |= message.getReplyMsgId() != null ? F_REPLY_MSG_ID : 0;
+        flags |= message.getGapCount() != null ? F_GAP_COUNT : 0;
+        flags |= message.getStatus() != null ? F_STATUS : 0;
+        flags |= message.getType() != null ? F_TYPE : 0;
+        flags |= message.getCreateTime() != null ? F_CREATE_TIME : 0;
+        flags |= message.getUpdateTime() != null ? F_UPDATE_TIME : 0;
+        flags |= message.getTempId() != null ? F_TEMP_ID : 0;
+        flags |= message.getContent() != null ? F_CONTENT : 0;
+
+        Writer out = new Writer(64 + (message.getContent() != null ? message.getContent().length() * 3 : 0));
+        out.writeByte(VERSION_1);
+        out.writeByte(flags >>> 8);
+        out.writeByte(flags);
+        out.writeVarLong(nullToZero(message.getId()));
+        out.writeVarLong(nullToZero(message.getRoomId()));
+        out.writeVarLong(nullToZero(message.getFromUid()));
+        if ((flags & F_SERVER_MSG_ID) != 0) {
+            out.writeVarLong(message.getServerMsgId());
+        }
+        if ((flags & F_REPLY_MSG_ID) != 0) {
+            out.writeVarLong(message.getReplyMsgId());
+        }
+        if ((flags & F_GAP_COUNT) != 0) {
+            out.writeVarLong(message.getGapCount());
+        }
+        if ((flags & F_STATUS) != 0) {
+            out.writeVarLong(message.getStatus());
+        }
+        if ((flags & F_TYPE) != 0) {
+            out.writeVarLong(message.getType());
+        }
+        if ((flags & F_CREATE_TIME) != 0) {
+            out.writeVarLong(message.getCreateTime().getTime());
+        }
+        if ((flags & F_UPDATE_TIME) != 0) {
+            out.writeVarLong(message.getUpdateTime().getTime());
+        }
+        if ((flags & F_TEMP_ID) != 0) {
+            out.writeString(message.getTempId());
+        }
+        if ((flags & F_CONTENT) != 0) {
+            out.writeString(message.getContent());
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Message decode(byte[] data) {
+        Reader in = new Reader(data);
+        byte version = (byte) in.readByte();
+        if (version != VERSION_1) {
+            throw new IllegalArgumentException("不支持的消息缓存版本: " + version);
+        }
+        int flags = (in.readByte() << 8) | in.readByte();
+
+        Message message = new Message();
+        message.setId(in.readVarLong());
+        message.setRoomId(in.readVarLong());
+        message.setFromUid(in.readVarLong());
+        if ((flags & F_SERVER_MSG_ID) != 0) {
+            message.setServerMsgId(in.readVarLong());
+        }
+        if ((flags & F_REPLY_MSG_ID) != 0) {
+            message.setReplyMsgId(in.readVarLong());
+        }
+        if ((flags & F_GAP_COUNT) != 0) {
+            message.setGapCount((int) in.readVarLong());
+        }
+        if ((flags & F_STATUS) != 0) {
+            message.setStatus((int) in.readVarLong());
+        }
+        if ((flags & F_TYPE) != 0) {
+            message.setType((int) in.readVarLong());
+        }
+        if ((flags & F_CREATE_TIME) != 0) {
+            message.setCreateTime(new Date(in.readVarLong()));
+        }
+        if ((flags & F_UPDATE_TIME) != 0) {
+            message.setUpdateTime(new Date(in.readVarLong()));
+        }
+        if ((flags & F_TEMP_ID) != 0) {
+            message.setTempId(in.readString());
+        }
+        if ((flags & F_CONTENT) != 0) {
+            message.setContent(in.readString());
+        }
+        return message;
+    }
+
+    @Override
+    public boolean canDecode(byte[] data) {
+        return data.length > 0 && data[0] == VERSION_1;
+    }
+
+    private static long nullToZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    /**
+     * 写缓冲区
+     */
+    private static final class Writer extends ByteArrayOutputStream {
+
+        private Writer(int size) {
+            super(size);
+        }
+
+        private void writeByte(int b) {
+            write(b);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * 读游标
+     */
+    private static final class Reader {
+
+        private final byte[] data;
+        private int pos;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private int readByte() {
+            return data[pos++] & 0xFF;
+        }
+
+        private long readVarLong() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+        }
+
+        private String readString() {
+            int length = (int) readVarLong();
+            String value = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+    }
+}
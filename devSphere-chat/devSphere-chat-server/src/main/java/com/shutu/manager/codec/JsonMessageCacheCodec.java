@@ -0,0 +1,37 @@
+package com.shutu.manager.codec;
+
+import cn.hutool.json.JSONUtil;
+import com.shutu.model.entity.Message;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON 编解码器 (旧格式)
+ * 基于 Hutool JSONUtil，与历史缓存数据保持兼容
+ */
+@Component
+public class JsonMessageCacheCodec implements MessageCacheCodec {
+
+    public static final String NAME = "json";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        return JSONUtil.toJsonStr(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Message decode(byte[] data) {
+        return JSONUtil.toBean(new String(data, StandardCharsets.UTF_8), Message.class);
+    }
+
+    @Override
+    public boolean canDecode(byte[] data) {
+        return data.length > 0 && data[0] == '{';
+    }
+}
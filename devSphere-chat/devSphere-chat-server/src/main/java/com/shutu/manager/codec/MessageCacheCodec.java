@@ -0,0 +1,31 @@
+package com.shutu.manager.codec;
+
+import com.shutu.model.entity.Message;
+
+/**
+ * 房间消息缓存编解码器
+ * 负责 Message 与 ZSet 成员字节之间的互相转换，由 RoomMessageCacheManager 按配置选择写入格式，
+ * 读取时按首字节识别格式，保证切换编码后旧缓存仍可读
+ */
+public interface MessageCacheCodec {
+
+    /**
+     * 编码器名称，对应配置项 devsphere.im.cache.codec
+     */
+    String name();
+
+    /**
+     * 编码
+     */
+    byte[] encode(Message message);
+
+    /**
+     * 解码
+     */
+    Message decode(byte[] data);
+
+    /**
+     * 是否能解码该数据 (通过首字节识别)
+     */
+    boolean canDecode(byte[] data);
+}
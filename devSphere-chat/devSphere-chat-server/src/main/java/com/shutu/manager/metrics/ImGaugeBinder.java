@@ -0,0 +1,128 @@
+package com.shutu.manager.metrics;
+
+import com.shutu.config.RedisStreamConfig;
+import com.shutu.config.ThreadPoolConfig;
+import com.shutu.manager.MessageStreamPartitioner;
+import com.shutu.manager.RoomMessageCacheManager;
+import com.shutu.manager.UserProfileCache;
+import com.shutu.manager.route.StreamRouteTransport;
+import com.shutu.task.MessageArchiverTask;
+import com.shutu.task.MessageRetryTask;
+import com.shutu.task.MessageStreamRetentionTask;
+import com.shutu.websocket.WsPushDispatcher;
+import com.shutu.websocket.service.WebSocketService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * IM 运行状态指标 (Gauge)
+ * 1. 本机连接数与在线用户数
+ * 2. 各消息流 (分区 / 旧消息流 / 死信流) 的长度、未 ACK 数与内存占用，取自裁剪任务最近一次检查的结果
+ * 3. 推送线程池与路由流发送队列的深度，以及推送线程池的拒绝数
+ * 4. 已有的 getStats 统计 (推送、缓存命中、归档、补偿、裁剪) 统一注册为 im.component.stat{component, name}
+ */
+@Component
+@RequiredArgsConstructor
+public class ImGaugeBinder implements MeterBinder {
+
+    private final WebSocketService webSocketService;
+    private final MessageStreamPartitioner partitioner;
+    private final MessageStreamRetentionTask retentionTask;
+    private final MessageRetryTask retryTask;
+    private final MessageArchiverTask archiverTask;
+    private final WsPushDispatcher wsPushDispatcher;
+    private final RoomMessageCacheManager roomMessageCacheManager;
+    private final UserProfileCache userProfileCache;
+    private final ObjectProvider<StreamRouteTransport> streamRouteTransport;
+    private final ThreadPoolConfig threadPoolConfig;
+    @Qualifier(ThreadPoolConfig.WS_EXECUTOR)
+    private final ThreadPoolTaskExecutor websocketExecutor;
+
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        gauge(registry, "im.ws.connections", Collections.emptyList(),
+                s -> webSocketService.getLocalStats().getOrDefault("connections", 0L));
+        gauge(registry, "im.ws.online.users", Collections.emptyList(),
+                s -> webSocketService.getLocalStats().getOrDefault("onlineUsers", 0L));
+
+        Set<String> streamKeys = new LinkedHashSet<>(partitioner.streamKeys());
+        streamKeys.add(RedisStreamConfig.IM_STREAM_KEY);
+        streamKeys.add(RedisStreamConfig.DLQ_STREAM_KEY);
+        for (String streamKey : streamKeys) {
+            List<Tag> tags = List.of(Tag.of("stream", streamKey));
+            gauge(registry, "im.stream.length", tags, s -> retentionTask.getLength(streamKey));
+            gauge(registry, "im.stream.pending", tags, s -> retentionTask.getPending(streamKey));
+            gauge(registry, "im.stream.memory.bytes", tags, s -> retentionTask.getMemoryBytes(streamKey));
+        }
+
+        gauge(registry, "im.executor.queue", List.of(Tag.of("name", "websocket")),
+                s -> websocketExecutor.getQueueSize());
+        StreamRouteTransport routeTransport = streamRouteTransport.getIfAvailable();
+        if (routeTransport != null) {
+            gauge(registry, "im.executor.queue", List.of(Tag.of("name", "route_stream")),
+                    s -> routeTransport.getQueueSize());
+        }
+
+        stats(registry, "push", wsPushDispatcher::getStats);
+        stats(registry, "executor", threadPoolConfig::getStats);
+        stats(registry, "room_cache", roomMessageCacheManager::getStats);
+        stats(registry, "user_profile_cache", userProfileCache::getStats);
+        stats(registry, "archive", archiverTask::getStats);
+        stats(registry, "stream_retry", retryTask::getStats);
+        stats(registry, "stream_retention", retentionTask::getStats);
+    }
+
+    /**
+     * 当前各指标值，key 为 名称{标签}
+     */
+    public Map<String, Double> snapshot() {
+        Map<String, Double> result = new TreeMap<>();
+        for (Gauge gauge : gauges) {
+            StringBuilder key = new StringBuilder(gauge.getId().getName());
+            List<Tag> tags = gauge.getId().getTags();
+            if (!tags.isEmpty()) {
+                key.append('{');
+                for (int i = 0; i < tags.size(); i++) {
+                    key.append(i == 0 ? "" : ",").append(tags.get(i).getKey()).append('=').append(tags.get(i).getValue());
+                }
+                key.append('}');
+            }
+            result.put(key.toString(), gauge.value());
+        }
+        return result;
+    }
+
+    /**
+     * 把 getStats 返回的数值项逐项注册为 Gauge (以绑定时已有的 key 为准)
+     */
+    private void stats(MeterRegistry registry, String component, Supplier<? extends Map<String, ?>> supplier) {
+        for (Map.Entry<String, ?> entry : supplier.get().entrySet()) {
+            if (!(entry.getValue() instanceof Number)) {
+                continue;
+            }
+            String name = entry.getKey();
+            gauge(registry, "im.component.stat", List.of(Tag.of("component", component), Tag.of("name", name)), s -> {
+                Object value = supplier.get().get(name);
+                return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+            });
+        }
+    }
+
+    private void gauge(MeterRegistry registry, String name, List<Tag> tags, ToDoubleFunction<Object> value) {
+        gauges.add(Gauge.builder(name, this, value).tags(tags).register(registry));
+    }
+}
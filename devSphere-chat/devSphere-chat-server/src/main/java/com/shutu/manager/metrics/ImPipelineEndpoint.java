@@ -0,0 +1,32 @@
+package com.shutu.manager.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 消息链路汇总端点: GET /actuator/impipeline
+ * 各阶段的次数、平均值、最大值与 p50 / p99 (毫秒)，消息处理结果计数，以及连接数、消息流积压、队列深度等指标
+ * 需在 management.endpoints.web.exposure.include 中加入 impipeline
+ */
+@Component
+@RequiredArgsConstructor
+@Endpoint(id = "impipeline")
+public class ImPipelineEndpoint {
+
+    private final ImPipelineMetrics pipelineMetrics;
+    private final ImGaugeBinder gaugeBinder;
+
+    @ReadOperation
+    public Map<String, Object> summary() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("stages", pipelineMetrics.summary());
+        result.put("results", pipelineMetrics.results());
+        result.put("gauges", gaugeBinder.snapshot());
+        return result;
+    }
+}
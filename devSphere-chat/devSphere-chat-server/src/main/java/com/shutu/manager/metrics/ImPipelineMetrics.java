@@ -0,0 +1,125 @@
+package com.shutu.manager.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息链路各阶段耗时与计数
+ * 1. 耗时统一记为 im.pipeline.stage{stage=...}，客户端计算 p50 / p99，同时发布直方图供 Prometheus 聚合
+ * 2. 消息处理结果记为 im.pipeline.messages{result=...}
+ * 发送端: xadd；消费端: stream_dwell (入流到开始消费) -> idempotency -> db_tx -> cache_write -> push_enqueue；
+ * 推送端: push_flush (提交到 EventLoop 到实际写出)
+ */
+@Component
+public class ImPipelineMetrics {
+
+    public static final String TIMER_NAME = "im.pipeline.stage";
+    public static final String COUNTER_NAME = "im.pipeline.messages";
+
+    public static final String STAGE_XADD = "xadd";
+    public static final String STAGE_STREAM_DWELL = "stream_dwell";
+    public static final String STAGE_IDEMPOTENCY = "idempotency";
+    public static final String STAGE_DB_TX = "db_tx";
+    public static final String STAGE_CACHE_WRITE = "cache_write";
+    public static final String STAGE_PUSH_ENQUEUE = "push_enqueue";
+    public static final String STAGE_PUSH_FLUSH = "push_flush";
+
+    public static final String RESULT_SENT = "sent";
+    public static final String RESULT_SEND_FAILED = "send_failed";
+    public static final String RESULT_SAVED = "saved";
+    public static final String RESULT_DUPLICATE = "duplicate";
+    public static final String RESULT_INVALID = "invalid";
+    public static final String RESULT_FAILED = "failed";
+    public static final String RESULT_DEAD_LETTER = "dead_letter";
+
+    /**
+     * 各阶段按链路顺序排列，汇总端点按此顺序输出
+     */
+    private static final List<String> STAGES = List.of(STAGE_XADD, STAGE_STREAM_DWELL, STAGE_IDEMPOTENCY,
+            STAGE_DB_TX, STAGE_CACHE_WRITE, STAGE_PUSH_ENQUEUE, STAGE_PUSH_FLUSH);
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new LinkedHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public ImPipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (String stage : STAGES) {
+            timers.put(stage, Timer.builder(TIMER_NAME)
+                    .description("IM 消息链路各阶段耗时")
+                    .tag("stage", stage)
+                    .publishPercentiles(0.5, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+
+    /**
+     * 记录从 startNanos (System.nanoTime) 到现在的耗时
+     */
+    public void recordSince(String stage, long startNanos) {
+        timers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录毫秒耗时 (跨进程的时间差，如消息在流中的停留时间)，负值 (时钟偏差) 忽略
+     */
+    public void recordMillis(String stage, long millis) {
+        if (millis >= 0) {
+            timers.get(stage).record(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void count(String result, long amount) {
+        if (amount > 0) {
+            counters.computeIfAbsent(result, r -> Counter.builder(COUNTER_NAME)
+                    .description("IM 消息处理结果计数")
+                    .tag("result", r)
+                    .register(registry)).increment(amount);
+        }
+    }
+
+    /**
+     * 各阶段耗时汇总 (毫秒)，分位值为最近一个统计窗口内的估算
+     */
+    public Map<String, Map<String, Object>> summary() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        timers.forEach((stage, timer) -> {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("count", snapshot.count());
+            item.put("meanMs", round(snapshot.mean(TimeUnit.MILLISECONDS)));
+            item.put("maxMs", round(snapshot.max(TimeUnit.MILLISECONDS)));
+            for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                item.put("p" + Math.round(percentile.percentile() * 100) + "Ms",
+                        round(percentile.value(TimeUnit.MILLISECONDS)));
+            }
+            result.put(stage, item);
+        });
+        return result;
+    }
+
+    /**
+     * 消息处理结果计数
+     */
+    public Map<String, Long> results() {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, counter) -> result.put(name, (long) counter.count()));
+        return result;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
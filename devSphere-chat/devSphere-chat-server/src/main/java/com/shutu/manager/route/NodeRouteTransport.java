@@ -0,0 +1,21 @@
+package com.shutu.manager.route;
+
+import com.shutu.model.vo.ws.response.WSBaseResp;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨节点路由传输
+ * 由 devsphere.im.route.transport 选择实现: pubsub / stream
+ */
+public interface NodeRouteTransport {
+
+    /**
+     * 将同一条推送转发给其他节点上的用户
+     *
+     * @param wsResp      推送内容 (只序列化一次)
+     * @param nodeTargets 节点ID -> 该节点上的目标用户
+     */
+    void send(WSBaseResp<?> wsResp, Map<String, List<Long>> nodeTargets);
+}
@@ -0,0 +1,49 @@
+package com.shutu.manager.route;
+
+import cn.hutool.json.JSONUtil;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.model.dto.chat.RouteMessageDTO;
+import com.shutu.model.vo.ws.response.WSBaseResp;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pub/Sub 路由传输 (默认)
+ * 每个目标节点 PUBLISH 一条携带 UID 列表的 RouteMessageDTO，由 RouteMessageListener 接收 (Pipeline 一次发出)
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "devsphere.im.route", name = "transport", havingValue = "pubsub", matchIfMissing = true)
+public class PubSubRouteTransport implements NodeRouteTransport {
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public void send(WSBaseResp<?> wsResp, Map<String, List<Long>> nodeTargets) {
+        if (nodeTargets.isEmpty()) {
+            return;
+        }
+        String messageJson = JSONUtil.toJsonStr(wsResp);
+        Map<byte[], byte[]> publishes = new LinkedHashMap<>(nodeTargets.size());
+        nodeTargets.forEach((node, targetUids) -> {
+            RouteMessageDTO routeMsg = RouteMessageDTO.builder()
+                    .targetUids(targetUids)
+                    .messageJson(messageJson)
+                    .build();
+            publishes.put((RedisKeyConstant.TOPIC_NODE_ROUTE_PREFIX + node).getBytes(StandardCharsets.UTF_8),
+                    JSONUtil.toJsonStr(routeMsg).getBytes(StandardCharsets.UTF_8));
+        });
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            publishes.forEach(connection::publish);
+            return null;
+        });
+    }
+}
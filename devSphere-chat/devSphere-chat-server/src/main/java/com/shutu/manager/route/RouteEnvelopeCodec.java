@@ -0,0 +1,79 @@
+package com.shutu.manager.route;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 路由流信封编解码 (单层二进制，替代 RouteMessageDTO 内嵌 JSON 字符串的双重编码)
+ * <pre>
+ * [version:1B][uidCount:4B][uid:8B * uidCount][payload: 剩余字节，UTF-8 JSON 格式的 WSBaseResp]
+ * </pre>
+ * payload 在接收端不再反序列化，直接作为 WebSocket 文本帧写出
+ */
+public class RouteEnvelopeCodec {
+
+    public static final byte VERSION_1 = 1;
+
+    /**
+     * version + uidCount
+     */
+    private static final int HEADER_LENGTH = 1 + 4;
+
+    private RouteEnvelopeCodec() {
+
+    }
+
+    public static byte[] encode(List<Long> uids, byte[] payload) {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_LENGTH + uids.size() * 8 + payload.length);
+        buf.put(VERSION_1);
+        buf.putInt(uids.size());
+        for (Long uid : uids) {
+            buf.putLong(uid);
+        }
+        buf.put(payload);
+        return buf.array();
+    }
+
+    public static Envelope decode(byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH) {
+            throw new IllegalArgumentException("路由信封不完整: " + bytes.length);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        byte version = buf.get();
+        if (version != VERSION_1) {
+            throw new IllegalArgumentException("不支持的路由信封版本: " + version);
+        }
+        int count = buf.getInt();
+        if (count < 0 || count > buf.remaining() / 8) {
+            throw new IllegalArgumentException("路由信封长度非法: " + count);
+        }
+        List<Long> uids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            uids.add(buf.getLong());
+        }
+        return new Envelope(uids, Arrays.copyOfRange(bytes, buf.position(), bytes.length));
+    }
+
+    /**
+     * 解码结果
+     */
+    public static class Envelope {
+        private final List<Long> uids;
+        private final byte[] payload;
+
+        private Envelope(List<Long> uids, byte[] payload) {
+            this.uids = uids;
+            this.payload = payload;
+        }
+
+        public List<Long> getUids() {
+            return uids;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.shutu.manager.route;
+
+import cn.hutool.json.JSONUtil;
+import com.shutu.config.ImRouteProperties;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.model.vo.ws.response.WSBaseResp;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis Stream 路由传输
+ * 1. 每个节点一个路由流 im:route:stream:{nodeId}，由目标节点的 NodeRouteStreamConsumer 通过消费者组拉取
+ * 2. 调用方只负责编码入队，发送线程把队列中积累的消息合并为一个 Pipeline 批量 XADD
+ *    (空闲时阻塞等待第一条，不额外增加延迟)
+ * 3. XADD 携带 MAXLEN ~ 限制流长度
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "devsphere.im.route", name = "transport", havingValue = "stream")
+public class StreamRouteTransport implements NodeRouteTransport {
+
+    /**
+     * 信封字段名
+     */
+    public static final byte[] ENVELOPE_FIELD = "e".getBytes(StandardCharsets.UTF_8);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ImRouteProperties routeProperties;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private BlockingQueue<PendingRoute> queue;
+    private volatile boolean running;
+    private Thread sendThread;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(routeProperties.getSendQueueCapacity());
+        running = true;
+        sendThread = new Thread(this::sendLoop, "im-route-stream-sender");
+        sendThread.setDaemon(true);
+        sendThread.start();
+        log.info("[路由流] 发送线程已启动: batchSize={}, maxLen={}",
+                routeProperties.getSendBatchSize(), routeProperties.getStreamMaxLen());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (sendThread != null) {
+            sendThread.interrupt();
+            sendThread = null;
+        }
+        // 尽量发出剩余消息
+        List<PendingRoute> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest);
+        }
+    }
+
+    @Override
+    public void send(WSBaseResp<?> wsResp, Map<String, List<Long>> nodeTargets) {
+        if (nodeTargets.isEmpty()) {
+            return;
+        }
+        byte[] payload = JSONUtil.toJsonStr(wsResp).getBytes(StandardCharsets.UTF_8);
+        nodeTargets.forEach((node, uids) -> {
+            PendingRoute route = new PendingRoute(
+                    (RedisKeyConstant.IM_ROUTE_STREAM_PREFIX + node).getBytes(StandardCharsets.UTF_8),
+                    RouteEnvelopeCodec.encode(uids, payload));
+            if (!queue.offer(route)) {
+                dropped.increment();
+                log.warn("[路由流] 发送队列已满，丢弃路由消息: node={}, uids={}", node, uids.size());
+            }
+        });
+    }
+
+    /**
+     * 发送计数，用于监控
+     */
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 发送队列当前深度
+     */
+    public int getQueueSize() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    private void sendLoop() {
+        int batchSize = routeProperties.getSendBatchSize();
+        List<PendingRoute> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingRoute first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("[路由流] 发送异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+        log.info("[路由流] 发送线程已退出");
+    }
+
+    private void flush(List<PendingRoute> batch) {
+        RedisStreamCommands.XAddOptions options = RedisStreamCommands.XAddOptions
+                .maxlen(routeProperties.getStreamMaxLen())
+                .approximateTrimming(true);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (PendingRoute route : batch) {
+                    connection.streamCommands().xAdd(
+                            StreamRecords.rawBytes(Collections.singletonMap(ENVELOPE_FIELD, route.envelope))
+                                    .withStreamKey(route.streamKey),
+                            options);
+                }
+                return null;
+            });
+            sent.add(batch.size());
+        } catch (Exception e) {
+            dropped.add(batch.size());
+            log.error("[路由流] 批量 XADD 失败: size={}", batch.size(), e);
+        }
+    }
+
+    private static class PendingRoute {
+        private final byte[] streamKey;
+        private final byte[] envelope;
+
+        private PendingRoute(byte[] streamKey, byte[] envelope) {
+            this.streamKey = streamKey;
+            this.envelope = envelope;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.shutu.manager.search;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.cjk.CJKBigramFilter;
+import org.apache.lucene.analysis.cjk.CJKWidthFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+
+/**
+ * 消息内容分词器
+ * StandardTokenizer 将中日韩文字切成单字，再由 CJKBigramFilter 组合为二元组，英文与数字按词切分并转小写
+ * 1. 索引时同时输出单字与二元组 (二元组叠放在首字位置)，单字关键词也能命中
+ * 2. 查询时只输出二元组 (孤立的单字仍输出单字)，按短语匹配相邻二元组，效果等同子串匹配
+ */
+public class MessageContentAnalyzer extends Analyzer {
+
+    private final boolean outputUnigrams;
+
+    private MessageContentAnalyzer(boolean outputUnigrams) {
+        this.outputUnigrams = outputUnigrams;
+    }
+
+    public static MessageContentAnalyzer forIndex() {
+        return new MessageContentAnalyzer(true);
+    }
+
+    public static MessageContentAnalyzer forQuery() {
+        return new MessageContentAnalyzer(false);
+    }
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        StandardTokenizer tokenizer = new StandardTokenizer();
+        TokenStream stream = new CJKWidthFilter(tokenizer);
+        stream = new LowerCaseFilter(stream);
+        stream = new CJKBigramFilter(stream, CJKBigramFilter.HAN | CJKBigramFilter.HIRAGANA
+                | CJKBigramFilter.KATAKANA | CJKBigramFilter.HANGUL, outputUnigrams);
+        return new TokenStreamComponents(tokenizer, stream);
+    }
+
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new LowerCaseFilter(new CJKWidthFilter(in));
+    }
+}
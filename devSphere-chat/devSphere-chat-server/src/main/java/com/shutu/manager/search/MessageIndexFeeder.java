@@ -0,0 +1,356 @@
+package com.shutu.manager.search;
+
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.shutu.config.ImSearchProperties;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.mapper.MessageArchiveMapper;
+import com.shutu.mapper.MessageMapper;
+import com.shutu.model.dto.chat.MessageIndexDTO;
+import com.shutu.model.entity.Message;
+import com.shutu.model.entity.MessageArchive;
+import com.shutu.model.enums.chat.MessageTypeEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 聊天记录索引同步
+ * 1. 写入: MessageStreamListener 落库后把本批文本消息写入一条 im:search:stream (撤回写入删除)，XADD 携带 MAXLEN ~
+ * 2. 消费: 每个节点一个线程独立 XREAD (不用消费者组，各节点都要全量)，写入本地索引，
+ *    按 refreshInterval 近实时刷新，按 commitInterval 提交并把流位置记入 commitData
+ * 3. 启动: 上次提交的流位置仍在流内时直接重放；否则 (首次启动、落后太多、分片数变化)
+ *    先记下流尾，再从数据库 (归档表 + 主表) 按 id 追平或全量重建，之后从流尾继续
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageIndexFeeder {
+
+    private static final byte[] CHANGES_FIELD = "d".getBytes(StandardCharsets.UTF_8);
+    private static final String COMMIT_STREAM_ID = "streamId";
+    private static final String COMMIT_MAX_ID = "maxId";
+    private static final String COMMIT_SHARDS = "shards";
+
+    private final StringRedisTemplate redisTemplate;
+    private final MessageSearchIndex searchIndex;
+    private final ImSearchProperties searchProperties;
+    private final MessageMapper messageMapper;
+    private final MessageArchiveMapper messageArchiveMapper;
+
+    private volatile boolean running;
+    private Thread feedThread;
+
+    /**
+     * 以下字段只由同步线程读写
+     */
+    private String lastStreamId = "0-0";
+    private long maxIndexedId;
+
+    @PostConstruct
+    public void start() {
+        if (!searchProperties.isEnabled()) {
+            return;
+        }
+        running = true;
+        feedThread = new Thread(this::feedLoop, "im-search-indexer");
+        feedThread.setDaemon(true);
+        feedThread.start();
+    }
+
+    /**
+     * 只通过 running 停止，不中断同步线程：
+     * Lucene 的 FSDirectory 用可中断通道写文件，中断会让提交抛出 ClosedByInterruptException 并关闭 IndexWriter，
+     * 下次启动只能重放或重建。阻塞读最多等待 pollTimeout 后即可看到停止标记
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (feedThread != null) {
+            // 等待同步线程完成最后一次提交
+            feedThread.join(searchProperties.getPollTimeout().toMillis() + 5000);
+            feedThread = null;
+        }
+    }
+
+    /**
+     * 广播新落库的文本消息 (消费者落库后调用)
+     */
+    public void publish(List<Message> messages) {
+        if (!searchProperties.isEnabled() || messages.isEmpty()) {
+            return;
+        }
+        List<MessageIndexDTO> changes = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (MessageTypeEnum.TEXT.getType().equals(message.getType()) && message.getContent() != null) {
+                changes.add(new MessageIndexDTO(message.getId(), message.getRoomId(), message.getContent(), false));
+            }
+        }
+        if (!changes.isEmpty()) {
+            publishChanges(changes);
+        }
+    }
+
+    /**
+     * 广播删除 (撤回)
+     */
+    public void publishDelete(Long messageId, Long roomId) {
+        if (!searchProperties.isEnabled()) {
+            return;
+        }
+        publishChanges(Collections.singletonList(new MessageIndexDTO(messageId, roomId, null, true)));
+    }
+
+    private void publishChanges(List<MessageIndexDTO> changes) {
+        byte[] streamKey = RedisKeyConstant.IM_SEARCH_STREAM_KEY.getBytes(StandardCharsets.UTF_8);
+        byte[] value = JSONUtil.toJsonStr(changes).getBytes(StandardCharsets.UTF_8);
+        RedisStreamCommands.XAddOptions options = RedisStreamCommands.XAddOptions
+                .maxlen(searchProperties.getStreamMaxLen())
+                .approximateTrimming(true);
+        try {
+            redisTemplate.execute((RedisCallback<RecordId>) connection -> connection.streamCommands().xAdd(
+                    StreamRecords.rawBytes(Collections.singletonMap(CHANGES_FIELD, value)).withStreamKey(streamKey),
+                    options));
+        } catch (Exception e) {
+            // 不影响消息投递；丢失的变更在节点下次从数据库追平时补上
+            log.warn("[消息索引] 变更广播失败: size={}", changes.size(), e);
+        }
+    }
+
+    private void feedLoop() {
+        while (running && !searchIndex.isReady()) {
+            try {
+                catchUp();
+            } catch (Exception e) {
+                log.error("[消息索引] 启动追平失败，5秒后重试", e);
+                sleepQuietly(5000);
+            }
+        }
+
+        StreamReadOptions readOptions = StreamReadOptions.empty()
+                .count(searchProperties.getReadBatchSize())
+                .block(searchProperties.getPollTimeout());
+        long refreshMillis = searchProperties.getRefreshInterval().toMillis();
+        long commitMillis = searchProperties.getCommitInterval().toMillis();
+        long lastRefresh = System.currentTimeMillis();
+        long lastCommit = lastRefresh;
+        boolean dirty = false;
+        boolean uncommitted = false;
+
+        while (running) {
+            try {
+                List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(readOptions,
+                        StreamOffset.create(RedisKeyConstant.IM_SEARCH_STREAM_KEY, ReadOffset.from(lastStreamId)));
+                if (records != null && !records.isEmpty()) {
+                    for (MapRecord<String, Object, Object> record : records) {
+                        applyRecord(record);
+                        lastStreamId = record.getId().getValue();
+                    }
+                    dirty = true;
+                    uncommitted = true;
+                }
+                long now = System.currentTimeMillis();
+                if (dirty && now - lastRefresh >= refreshMillis) {
+                    searchIndex.refresh();
+                    lastRefresh = now;
+                    dirty = false;
+                }
+                if (uncommitted && now - lastCommit >= commitMillis) {
+                    commit();
+                    lastCommit = now;
+                    uncommitted = false;
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.error("[消息索引] 同步异常，1秒后重试", e);
+                sleepQuietly(1000);
+            }
+        }
+        if (searchIndex.isReady()) {
+            try {
+                // 清除中断标记，否则提交写文件时会被中断
+                Thread.interrupted();
+                commit();
+            } catch (Exception e) {
+                log.error("[消息索引] 退出前提交失败", e);
+            }
+        }
+        log.info("[消息索引] 同步线程已退出");
+    }
+
+    private void applyRecord(MapRecord<String, Object, Object> record) {
+        Object value = record.getValue().get("d");
+        if (value == null) {
+            return;
+        }
+        try {
+            List<MessageIndexDTO> changes = JSONUtil.toList(value.toString(), MessageIndexDTO.class);
+            searchIndex.apply(changes);
+            for (MessageIndexDTO change : changes) {
+                if (!change.isDeleted()) {
+                    maxIndexedId = Math.max(maxIndexedId, change.getId());
+                }
+            }
+        } catch (Exception e) {
+            // 单条变更无法解析时跳过，不阻塞后续
+            log.error("[消息索引] 变更处理失败: id={}", record.getId(), e);
+        }
+    }
+
+    /**
+     * 启动追平: 能从流重放则重放，否则从数据库追平 (索引为空时即全量重建)
+     */
+    private void catchUp() throws Exception {
+        Map<String, String> commitData = searchIndex.getCommitData();
+        String shards = String.valueOf(searchIndex.getShardCount());
+        String savedStreamId = commitData.get(COMMIT_STREAM_ID);
+        maxIndexedId = Long.parseLong(commitData.getOrDefault(COMMIT_MAX_ID, "0"));
+        if (!commitData.isEmpty() && !shards.equals(commitData.get(COMMIT_SHARDS))) {
+            log.warn("[消息索引] 分片数变化 ({} -> {})，全量重建", commitData.get(COMMIT_SHARDS), shards);
+            savedStreamId = null;
+            maxIndexedId = 0;
+        }
+
+        if (savedStreamId != null && streamCovers(savedStreamId)) {
+            lastStreamId = savedStreamId;
+            log.info("[消息索引] 从上次提交位置重放: streamId={}, maxId={}", savedStreamId, maxIndexedId);
+        } else {
+            // 先记下流尾，数据库扫描期间新增的变更稍后从流重放 (重复写入安全)
+            String tail = streamTail();
+            long start = System.currentTimeMillis();
+            if (maxIndexedId == 0) {
+                searchIndex.deleteAll();
+            }
+            long fromId = maxIndexedId;
+            long rows = rebuildFromArchive(fromId) + rebuildFromMessage(fromId);
+            if (!running) {
+                // 中途停止，不提交，下次启动重新追平
+                return;
+            }
+            lastStreamId = tail;
+            commit();
+            log.info("[消息索引] 从数据库{}完成: fromId={}, rows={}, 耗时 {} ms",
+                    fromId == 0 ? "重建" : "追平", fromId, rows, System.currentTimeMillis() - start);
+        }
+        searchIndex.refresh();
+        searchIndex.setReady(true);
+    }
+
+    private long rebuildFromArchive(long fromId) throws Exception {
+        long lastId = fromId;
+        long rows = 0;
+        while (running) {
+            List<MessageArchive> batch = messageArchiveMapper.selectList(new LambdaQueryWrapper<MessageArchive>()
+                    .select(MessageArchive::getId, MessageArchive::getRoomId, MessageArchive::getContent,
+                            MessageArchive::getType)
+                    .gt(MessageArchive::getId, lastId)
+                    .orderByAsc(MessageArchive::getId)
+                    .last("LIMIT " + searchProperties.getRebuildBatchSize()));
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<MessageIndexDTO> changes = new ArrayList<>(batch.size());
+            for (MessageArchive archive : batch) {
+                changes.add(toChange(archive.getId(), archive.getRoomId(), archive.getContent(), archive.getType()));
+            }
+            searchIndex.apply(changes);
+            lastId = batch.get(batch.size() - 1).getId();
+            rows += batch.size();
+        }
+        maxIndexedId = Math.max(maxIndexedId, lastId);
+        return rows;
+    }
+
+    private long rebuildFromMessage(long fromId) throws Exception {
+        long lastId = fromId;
+        long rows = 0;
+        while (running) {
+            List<Message> batch = messageMapper.selectList(new LambdaQueryWrapper<Message>()
+                    .select(Message::getId, Message::getRoomId, Message::getContent, Message::getType)
+                    .gt(Message::getId, lastId)
+                    .orderByAsc(Message::getId)
+                    .last("LIMIT " + searchProperties.getRebuildBatchSize()));
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<MessageIndexDTO> changes = new ArrayList<>(batch.size());
+            for (Message message : batch) {
+                changes.add(toChange(message.getId(), message.getRoomId(), message.getContent(), message.getType()));
+            }
+            searchIndex.apply(changes);
+            lastId = batch.get(batch.size() - 1).getId();
+            rows += batch.size();
+        }
+        maxIndexedId = Math.max(maxIndexedId, lastId);
+        return rows;
+    }
+
+    /**
+     * 非文本 (含已撤回) 的消息按删除处理，追平时顺带清掉错过的撤回
+     */
+    private MessageIndexDTO toChange(Long id, Long roomId, String content, Integer type) {
+        boolean text = MessageTypeEnum.TEXT.getType().equals(type);
+        return new MessageIndexDTO(id, roomId, text ? content : null, !text);
+    }
+
+    private void commit() throws Exception {
+        Map<String, String> commitData = new HashMap<>();
+        commitData.put(COMMIT_STREAM_ID, lastStreamId);
+        commitData.put(COMMIT_MAX_ID, String.valueOf(maxIndexedId));
+        commitData.put(COMMIT_SHARDS, String.valueOf(searchIndex.getShardCount()));
+        searchIndex.commit(commitData);
+    }
+
+    /**
+     * 流中最早的一条不晚于 savedStreamId 时，之后的变更都还在流内
+     */
+    private boolean streamCovers(String savedStreamId) {
+        List<MapRecord<String, Object, Object>> first = redisTemplate.opsForStream()
+                .range(RedisKeyConstant.IM_SEARCH_STREAM_KEY, Range.unbounded(), Limit.limit().count(1));
+        return first != null && !first.isEmpty() && compareIds(first.get(0).getId(), RecordId.of(savedStreamId)) <= 0;
+    }
+
+    private String streamTail() {
+        List<MapRecord<String, Object, Object>> last = redisTemplate.opsForStream()
+                .reverseRange(RedisKeyConstant.IM_SEARCH_STREAM_KEY, Range.unbounded(), Limit.limit().count(1));
+        return last == null || last.isEmpty() ? "0-0" : last.get(0).getId().getValue();
+    }
+
+    private static int compareIds(RecordId a, RecordId b) {
+        int byTime = Long.compare(a.getTimestamp(), b.getTimestamp());
+        return byTime != 0 ? byTime : Long.compare(a.getSequence(), b.getSequence());
+    }
+
+    /**
+     * 分段休眠，停止时尽快返回
+     */
+    private void sleepQuietly(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        try {
+            long remaining;
+            while (running && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                Thread.sleep(Math.min(remaining, 100));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.shutu.manager.search;
+
+import com.shutu.config.ImSearchProperties;
+import com.shutu.model.dto.chat.MessageIndexDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * 聊天记录本地全文索引 (Lucene)
+ * 1. 每个节点一份完整索引，按房间ID哈希分为多个分片，一次搜索只打开一个分片
+ * 2. 文档只索引不存储内容: id (更新键) / room (过滤) / id_point (游标区间) / id_sort (按 id 倒序)，
+ *    命中后按 id 回表，撤回与删除以数据库为准
+ * 3. 写入由 MessageIndexFeeder 单线程驱动，搜索通过 SearcherManager 近实时可见
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageSearchIndex {
+
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_ID_POINT = "id_point";
+    private static final String FIELD_ID_SORT = "id_sort";
+    private static final String FIELD_ROOM = "room";
+    private static final String FIELD_CONTENT = "content";
+
+    private static final Sort SORT_BY_ID_DESC = new Sort(new SortField(FIELD_ID_SORT, SortField.Type.LONG, true));
+
+    private final ImSearchProperties searchProperties;
+
+    private final Analyzer queryAnalyzer = MessageContentAnalyzer.forQuery();
+    private Shard[] shards;
+
+    /**
+     * 启动追平 (或重建) 完成前为 false，此时搜索退化为数据库查询
+     */
+    private volatile boolean ready;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!searchProperties.isEnabled()) {
+            return;
+        }
+        int count = Math.max(1, searchProperties.getShards());
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(Paths.get(searchProperties.getIndexDir(), "shard-" + i), searchProperties.getRamBufferMb());
+        }
+        log.info("[消息索引] 索引已打开: dir={}, shards={}", searchProperties.getIndexDir(), count);
+    }
+
+    @PreDestroy
+    public void close() {
+        ready = false;
+        if (shards == null) {
+            return;
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                log.error("[消息索引] 分片关闭失败", e);
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * 写入一批变更，同一消息以 id 覆盖，重复写入安全
+     */
+    public void apply(Collection<MessageIndexDTO> changes) throws IOException {
+        for (MessageIndexDTO change : changes) {
+            IndexWriter writer = shardOf(change.getRoomId()).writer;
+            Term key = new Term(FIELD_ID, String.valueOf(change.getId()));
+            if (change.isDeleted() || change.getContent() == null || change.getContent().isEmpty()) {
+                writer.deleteDocuments(key);
+                continue;
+            }
+            Document doc = new Document();
+            doc.add(new StringField(FIELD_ID, String.valueOf(change.getId()), Field.Store.NO));
+            doc.add(new LongPoint(FIELD_ID_POINT, change.getId()));
+            doc.add(new NumericDocValuesField(FIELD_ID_SORT, change.getId()));
+            doc.add(new StringField(FIELD_ROOM, String.valueOf(change.getRoomId()), Field.Store.NO));
+            doc.add(new TextField(FIELD_CONTENT, change.getContent(), Field.Store.NO));
+            writer.updateDocument(key, doc);
+        }
+    }
+
+    /**
+     * 删除同一房间的若干文档 (回表时发现已撤回或已不存在)
+     */
+    public void delete(Long roomId, Collection<Long> ids) {
+        if (shards == null || ids.isEmpty()) {
+            return;
+        }
+        Term[] terms = ids.stream().map(id -> new Term(FIELD_ID, String.valueOf(id))).toArray(Term[]::new);
+        try {
+            shardOf(roomId).writer.deleteDocuments(terms);
+        } catch (IOException e) {
+            log.warn("[消息索引] 删除失败: roomId={}, ids={}", roomId, ids, e);
+        }
+    }
+
+    /**
+     * 清空全部分片 (重建前调用)
+     */
+    public void deleteAll() throws IOException {
+        for (Shard shard : shards) {
+            shard.writer.deleteAll();
+        }
+    }
+
+    /**
+     * 搜索房间内 id ∈ (minIdExclusive, cursorExclusive) 的消息，按 id 倒序
+     *
+     * @param cursorExclusive 为 null 时不限上界
+     * @return 命中的消息ID
+     */
+    public List<Long> search(Long roomId, String keyword, long minIdExclusive, Long cursorExclusive, int limit)
+            throws IOException {
+        Query contentQuery = new QueryBuilder(queryAnalyzer).createPhraseQuery(FIELD_CONTENT, keyword);
+        if (contentQuery == null) {
+            // 关键词全是停用符号
+            return Collections.emptyList();
+        }
+        long upper = cursorExclusive != null ? cursorExclusive - 1 : Long.MAX_VALUE;
+        if (upper <= minIdExclusive) {
+            return Collections.emptyList();
+        }
+        Query query = new BooleanQuery.Builder()
+                .add(contentQuery, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(FIELD_ROOM, String.valueOf(roomId))), BooleanClause.Occur.FILTER)
+                .add(LongPoint.newRangeQuery(FIELD_ID_POINT, minIdExclusive + 1, upper), BooleanClause.Occur.FILTER)
+                .build();
+
+        SearcherManager manager = shardOf(roomId).searcherManager;
+        IndexSearcher searcher = manager.acquire();
+        try {
+            TopFieldDocs topDocs = searcher.search(query, limit, SORT_BY_ID_DESC);
+            List<Long> ids = new ArrayList<>(topDocs.scoreDocs.length);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                ids.add((Long) ((FieldDoc) scoreDoc).fields[0]);
+            }
+            return ids;
+        } finally {
+            manager.release(searcher);
+        }
+    }
+
+    /**
+     * 近实时刷新，使已写入的变更可被搜索
+     */
+    public void refresh() {
+        for (Shard shard : shards) {
+            try {
+                shard.searcherManager.maybeRefresh();
+            } catch (IOException e) {
+                log.warn("[消息索引] 刷新失败", e);
+            }
+        }
+    }
+
+    /**
+     * 提交全部分片，commitData 记录重放位置，各分片写入同一份
+     * 倒序提交、第一个分片最后提交: 中途崩溃时第一个分片上的位置一定不晚于其他分片
+     */
+    public void commit(Map<String, String> commitData) throws IOException {
+        for (int i = shards.length - 1; i >= 0; i--) {
+            shards[i].writer.setLiveCommitData(new HashMap<>(commitData).entrySet());
+            shards[i].writer.commit();
+        }
+    }
+
+    /**
+     * 上次提交的 commitData (以最后提交的第一个分片为准)
+     */
+    public Map<String, String> getCommitData() {
+        Map<String, String> data = new HashMap<>();
+        Iterable<Map.Entry<String, String>> live = shards[0].writer.getLiveCommitData();
+        if (live != null) {
+            live.forEach(entry -> data.put(entry.getKey(), entry.getValue()));
+        }
+        return data;
+    }
+
+    public int getShardCount() {
+        return shards == null ? 0 : shards.length;
+    }
+
+    private Shard shardOf(Long roomId) {
+        return shards[Math.floorMod(Long.hashCode(roomId), shards.length)];
+    }
+
+    private static class Shard {
+        private final Directory directory;
+        private final IndexWriter writer;
+        private final SearcherManager searcherManager;
+
+        private Shard(Path path, double ramBufferMb) throws IOException {
+            IndexWriterConfig config = new IndexWriterConfig(MessageContentAnalyzer.forIndex())
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                    .setRAMBufferSizeMB(ramBufferMb);
+            this.directory = FSDirectory.open(path);
+            this.writer = new IndexWriter(directory, config);
+            this.searcherManager = new SearcherManager(writer, null);
+        }
+
+        private void close() throws IOException {
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        }
+    }
+}
@@ -3,10 +3,28 @@ package com.shutu.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.shutu.model.entity.MessageArchive;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
 
 /**
  * 消息归档表 Mapper 接口
  */
 @Mapper
 public interface MessageArchiveMapper extends BaseMapper<MessageArchive> {
+
+    /**
+     * 在数据库内将 id 区间内早于截止时间的消息复制到归档表 (INSERT IGNORE ... SELECT，重复执行安全)
+     *
+     * @return 插入行数
+     */
+    int copyFromMessage(@Param("fromId") long fromId, @Param("toId") long toId, @Param("before") Date before);
+
+    /**
+     * 将结构相同的表整体复制到归档表 (INSERT IGNORE，重复执行安全)，用于恢复遗留的分区中转表
+     *
+     * @return 插入行数
+     */
+    int copyFromTable(@Param("table") String table);
 }
@@ -2,11 +2,49 @@ package com.shutu.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.shutu.model.entity.Message;
 import org.apache.ibatis.annotations.Mapper;
-import org.springframework.jmx.export.annotation.ManagedNotification;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
 
 @Mapper
 public interface MessageMapper extends BaseMapper<Message> {
 
+    /**
+     * 多行插入消息 (INSERT ... VALUES (...),(...))
+     * 自增主键按插入顺序回填到每个实体
+     *
+     * @param messages 消息列表
+     * @return 影响行数
+     */
+    int insertBatch(List<Message> messages);
+
+    /**
+     * 删除 id 区间内早于截止时间的消息 (已复制到归档表)
+     *
+     * @return 删除行数
+     */
+    int deleteArchived(@Param("fromId") long fromId, @Param("toId") long toId, @Param("before") Date before);
+
+    /**
+     * 早于截止时间的最大消息ID (走 idx_create_time)
+     */
+    Long selectMaxIdBefore(@Param("before") Date before);
+
+    /**
+     * 主表最大消息ID
+     */
+    Long selectMaxId();
+
+    /**
+     * 主表最小消息ID
+     */
+    Long selectMinId();
+
+    /**
+     * 主表最早的消息时间，用于计算归档滞后
+     */
+    Date selectMinCreateTime();
 }
 
 
@@ -0,0 +1,65 @@
+package com.shutu.mapper;
+
+import com.shutu.model.dto.chat.MessagePartitionDTO;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 消息表/归档表分区维护 Mapper
+ * 表名与分区名只来自常量和 information_schema，不接受外部输入
+ */
+@Mapper
+public interface MessagePartitionMapper {
+
+    /**
+     * 按顺序列出表的分区，未分区的表返回空列表
+     */
+    List<MessagePartitionDTO> selectPartitions(@Param("table") String table);
+
+    /**
+     * 将 MAXVALUE 分区拆出一个新分区 (MAXVALUE 分区为空时只改元数据)
+     */
+    int splitMaxPartition(@Param("table") String table, @Param("maxPartition") String maxPartition,
+                          @Param("partition") String partition, @Param("lessThan") long lessThan);
+
+    /**
+     * 分区中是否有数据
+     */
+    Integer selectAnyInPartition(@Param("table") String table, @Param("partition") String partition);
+
+    /**
+     * 分区中不早于截止时间的消息数 (走分区内的 idx_create_time)
+     */
+    long countSinceInPartition(@Param("table") String table, @Param("partition") String partition,
+                               @Param("before") Date before);
+
+    /**
+     * 分区中最新的消息时间
+     */
+    Date selectMaxCreateTimeInPartition(@Param("table") String table, @Param("partition") String partition);
+
+    /**
+     * 创建与分区表结构相同的非分区中转表
+     */
+    int createExchangeTable(@Param("table") String table, @Param("exchangeTable") String exchangeTable);
+
+    int removePartitioning(@Param("exchangeTable") String exchangeTable);
+
+    /**
+     * 分区与中转表交换数据，只改元数据
+     */
+    int exchangePartition(@Param("table") String table, @Param("partition") String partition,
+                          @Param("exchangeTable") String exchangeTable);
+
+    int dropPartition(@Param("table") String table, @Param("partition") String partition);
+
+    int dropTable(@Param("table") String table);
+
+    /**
+     * 表是否存在 (中转表遗留检查)
+     */
+    Integer selectTableExists(@Param("table") String table);
+}
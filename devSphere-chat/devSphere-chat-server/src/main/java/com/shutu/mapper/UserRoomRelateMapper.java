@@ -3,10 +3,20 @@ package com.shutu.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.shutu.model.entity.UserRoomRelate;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 @Mapper
 public interface UserRoomRelateMapper extends BaseMapper<UserRoomRelate> {
 
+    /**
+     * 批量推进已读位置 (单条 UPDATE ... CASE)，只增不减
+     *
+     * @param relates userId / roomId / latestReadMsgId
+     * @return 影响行数
+     */
+    int updateLatestReadBatch(@Param("list") List<UserRoomRelate> relates);
 }
 
 
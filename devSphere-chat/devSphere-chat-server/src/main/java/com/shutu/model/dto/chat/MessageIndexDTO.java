@@ -0,0 +1,36 @@
+package com.shutu.model.dto.chat;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 聊天记录索引变更 (经 im:search:stream 广播到各节点)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageIndexDTO implements Serializable {
+
+    /**
+     * 消息ID
+     */
+    private Long id;
+
+    /**
+     * 房间ID，用于选择分片
+     */
+    private Long roomId;
+
+    /**
+     * 消息内容，删除时为空
+     */
+    private String content;
+
+    /**
+     * 是否为删除 (撤回)
+     */
+    private boolean deleted;
+}
@@ -0,0 +1,27 @@
+package com.shutu.model.dto.chat;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 消息表分区元数据 (来自 information_schema.PARTITIONS)
+ */
+@Data
+public class MessagePartitionDTO implements Serializable {
+
+    /**
+     * 分区名
+     */
+    private String partitionName;
+
+    /**
+     * 分区上界 (VALUES LESS THAN 的值，MAXVALUE 分区为 "MAXVALUE")
+     */
+    private String description;
+
+    /**
+     * 估算行数
+     */
+    private Long tableRows;
+}
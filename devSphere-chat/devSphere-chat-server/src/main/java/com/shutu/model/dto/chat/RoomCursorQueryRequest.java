@@ -0,0 +1,17 @@
+package com.shutu.model.dto.chat;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * 会话列表游标查询请求
+ */
+@Data
+public class RoomCursorQueryRequest {
+
+    @Schema(description = "游标。上一页返回的 nextCursor，第一页不传或传null。")
+    private String cursor;
+
+    @Schema(description = "每页大小，默认20")
+    private Integer pageSize = 20;
+}
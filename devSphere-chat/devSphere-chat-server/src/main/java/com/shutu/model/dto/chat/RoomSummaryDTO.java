@@ -0,0 +1,56 @@
+package com.shutu.model.dto.chat;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 房间摘要 (缓存于 im:room:summary:{roomId})，与查看者无关的会话列表展示字段
+ */
+@Data
+public class RoomSummaryDTO implements Serializable {
+
+    private Long roomId;
+
+    /**
+     * 房间类型 1群聊 2私聊
+     */
+    private Integer type;
+
+    /**
+     * 活跃时间 (毫秒)
+     */
+    private Long activeTime;
+
+    /**
+     * 最后一条消息ID，没有消息时为 0
+     */
+    private Long lastMsgId;
+
+    /**
+     * 最后一条消息摘要 (已截断)
+     */
+    private String content;
+
+    /**
+     * 群名称 (仅群聊)
+     */
+    private String name;
+
+    /**
+     * 群头像 (仅群聊)
+     */
+    private String avatar;
+
+    /**
+     * 群主ID (仅群聊)
+     */
+    private Long ownerId;
+
+    /**
+     * 私聊双方 UID (仅私聊)
+     */
+    private Long uid1;
+
+    private Long uid2;
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * 跨节点路由消息传输对象
@@ -22,6 +23,11 @@ public class RouteMessageDTO implements Serializable {
      */
     private Long targetUid;
 
+    /**
+     * 目标用户 ID 列表 (群消息按节点合并时使用，与 targetUid 二选一)
+     */
+    private List<Long> targetUids;
+
     /**
      * 要推送的消息内容 (JSON 格式的 WSBaseResp)
      */
@@ -18,7 +18,9 @@ public enum WSReqTypeEnum {
     ERROR(5, "错误通知"),
     ACK(6, "消息确认"),
     RTC_SIGNAL(10, "RTC信令"),
-    AI_INTERVIEW(11, "AI面试");
+    AI_INTERVIEW(11, "AI面试"),
+    PRESENCE(12, "在线状态变更"),
+    READ_RECEIPT(13, "已读回执");
 
     private final Integer type;
     private final String desc;
@@ -26,4 +26,9 @@ public class FriendVo {
      * 名字
      */
     private String name;
+
+    /**
+     * 是否在线
+     */
+    private Boolean online = false;
 }
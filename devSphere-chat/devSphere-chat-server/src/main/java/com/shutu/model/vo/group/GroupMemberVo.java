@@ -18,4 +18,7 @@ public class GroupMemberVo {
 
     @Schema(description = "是否为群主 (0=否, 1=是)")
     private Integer isOwner = 0;
+
+    @Schema(description = "是否在线")
+    private Boolean online = false;
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.shutu.model.vo.ws.request;
 
 import com.shutu.model.enums.ws.WSReqTypeEnum;
+import com.shutu.model.vo.message.ChatMessageVo;
 import lombok.Data;
 
 /**
@@ -26,4 +27,9 @@ public class WSBaseReq {
      * 每个请求包具体的数据，类型不同结果不同
      */
     private String data;
+
+    /**
+     * 二进制子协议下由解码器直接解析出的聊天内容，JSON 协议下为空 (从 data 解析)
+     */
+    private transient ChatMessageVo chatMessage;
 }
@@ -0,0 +1,29 @@
+package com.shutu.model.vo.ws.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 在线状态变更通知 (推送给好友)
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WSPresenceResp {
+
+    /**
+     * 状态变更的用户ID
+     */
+    private Long uid;
+
+    /**
+     * 是否在线
+     */
+    private Boolean online;
+
+    /**
+     * 变更时间戳 (毫秒)
+     */
+    private Long ts;
+}
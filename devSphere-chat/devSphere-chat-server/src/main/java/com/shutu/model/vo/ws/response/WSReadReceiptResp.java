@@ -0,0 +1,29 @@
+package com.shutu.model.vo.ws.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 已读回执通知 (私聊中推送给对方)
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WSReadReceiptResp {
+
+    /**
+     * 房间ID
+     */
+    private Long roomId;
+
+    /**
+     * 已读的用户ID
+     */
+    private Long uid;
+
+    /**
+     * 已读到的消息ID
+     */
+    private Long msgId;
+}
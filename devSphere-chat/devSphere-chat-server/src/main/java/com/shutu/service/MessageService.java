@@ -24,11 +24,13 @@ public interface MessageService extends IService<Message> {
     /**
      * 搜索聊天记录
      * 
-     * @param roomId  房间ID
-     * @param keyword 关键词
-     * @return 消息列表
+     * @param roomId   房间ID
+     * @param keyword  关键词
+     * @param cursor   游标 (上一页最后一条消息ID)，首页为 null
+     * @param pageSize 每页条数
+     * @return 按消息ID倒序的分页结果
      */
-    List<ChatMessageResp> searchHistory(Long roomId, String keyword);
+    CursorPage<ChatMessageResp> searchHistory(Long roomId, String keyword, String cursor, Integer pageSize);
 
     /**
      * 撤回消息
@@ -36,4 +38,12 @@ public interface MessageService extends IService<Message> {
      * @param messageId 消息ID
      */
     void recallMessage(Long messageId);
+
+    /**
+     * 多行插入消息，自增ID按顺序回填
+     *
+     * @param messages 消息列表
+     * @return 影响行数
+     */
+    int insertBatch(List<Message> messages);
 }
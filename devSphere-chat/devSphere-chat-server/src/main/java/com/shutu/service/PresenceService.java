@@ -0,0 +1,34 @@
+package com.shutu.service;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * 在线状态服务接口
+ * 每个节点在 Redis 中维护自己的在线位图，集群在线状态为所有存活节点位图的并集
+ */
+public interface PresenceService {
+
+    /**
+     * 按本节点的实际连接情况更新该用户在本节点位图中的状态，
+     * 集群范围内上线/下线时通知其好友
+     *
+     * @param uid 用户ID
+     */
+    void refreshLocal(Long uid);
+
+    /**
+     * 用户是否在线 (任一节点)
+     *
+     * @param uid 用户ID
+     */
+    boolean isOnline(Long uid);
+
+    /**
+     * 批量查询在线用户
+     *
+     * @param uids 用户ID集合
+     * @return 其中在线的用户
+     */
+    Set<Long> getOnlineUids(Collection<Long> uids);
+}
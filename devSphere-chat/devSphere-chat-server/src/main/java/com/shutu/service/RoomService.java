@@ -2,7 +2,9 @@ package com.shutu.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.shutu.model.dto.chat.CursorPage;
 import com.shutu.model.dto.chat.GroupCreateRequestDTO;
+import com.shutu.model.dto.chat.RoomCursorQueryRequest;
 import com.shutu.model.dto.chat.RoomQueryRequest;
 import com.shutu.model.dto.friend.FriendQueryRequest;
 import com.shutu.model.dto.group.GroupInviteRequestDTO;
@@ -28,6 +30,14 @@ public interface RoomService extends IService<Room> {
      */
     Page<RoomVo> listRoomVoByPage(RoomQueryRequest roomQueryRequest);
 
+    /**
+     * 游标分页列出会话
+     *
+     * @param request 游标与页大小
+     * @return {@link CursorPage}<{@link RoomVo}>
+     */
+    CursorPage<RoomVo> listRoomVoByCursor(RoomCursorQueryRequest request);
+
     /**
      * 列出好友内容 vo
      *
@@ -1,5 +1,8 @@
 package com.shutu.service;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * 用户位置服务接口
  * 负责在 Redis 中维护 UserID 到 NodeID 的映射关系，用于定位用户所在的服务器节点
@@ -7,7 +10,7 @@ package com.shutu.service;
 public interface UserLocationService {
 
     /**
-     * 注册用户位置（上线/心跳）
+     * 注册用户位置（上线），续期由实现类批量完成
      * 
      * @param uid 用户ID
      */
@@ -20,6 +23,13 @@ public interface UserLocationService {
      */
     void remove(Long uid);
 
+    /**
+     * 心跳兜底续期，批量续期停滞时单独续期该用户的位置
+     *
+     * @param uid 用户ID
+     */
+    void touch(Long uid);
+
     /**
      * 获取用户所在的节点 ID
      * 
@@ -28,6 +38,14 @@ public interface UserLocationService {
      */
     String getNode(Long uid);
 
+    /**
+     * 批量获取用户所在的节点 ID (本地缓存未命中的合并为一次 MGET)
+     *
+     * @param uids 用户ID集合
+     * @return uid -> 节点ID，离线用户不在结果中
+     */
+    Map<Long, String> getNodes(Collection<Long> uids);
+
     /**
      * 判断是否是本机
      * 
@@ -35,4 +53,12 @@ public interface UserLocationService {
      * @return true if local
      */
     boolean isLocal(String targetNodeId);
+
+    /**
+     * 处理位置变更广播，更新本地位置缓存
+     *
+     * @param uid    用户ID
+     * @param nodeId 新的节点ID，null 表示下线
+     */
+    void onLocationChanged(Long uid, String nodeId);
 }
@@ -2,6 +2,7 @@ package com.shutu.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.ListUtil;
+import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.baomidou.mybatisplus.extension.toolkit.Db;
@@ -9,10 +10,13 @@ import com.shutu.commons.security.user.SecurityUser;
 import com.shutu.commons.security.user.UserDetail;
 import com.shutu.commons.tools.exception.CommonException;
 import com.shutu.commons.tools.exception.ErrorCode;
-import com.shutu.commons.tools.utils.Result;
-import com.shutu.commons.tools.utils.SpringContextUtils;
-import com.shutu.dto.SysUserDTO;
-import com.shutu.feign.UserFeignClient;
+import com.shutu.config.ImSearchProperties;
+import com.shutu.manager.ConversationListManager;
+import com.shutu.manager.ReadReceiptManager;
+import com.shutu.manager.RoomMessageCacheManager;
+import com.shutu.manager.UserProfileCache;
+import com.shutu.manager.search.MessageIndexFeeder;
+import com.shutu.manager.search.MessageSearchIndex;
 import com.shutu.mapper.MessageMapper;
 import com.shutu.model.dto.chat.CursorPage;
 import com.shutu.model.dto.chat.MessageQueryRequest;
@@ -20,6 +24,7 @@ import com.shutu.model.entity.Message;
 import com.shutu.model.entity.MessageArchive;
 import com.shutu.model.entity.Room;
 import com.shutu.model.entity.UserRoomRelate;
+import com.shutu.model.enums.chat.MessageTypeEnum;
 import com.shutu.model.vo.ws.response.ChatMessageResp;
 import com.shutu.service.MessageArchiveService;
 import com.shutu.service.MessageService;
@@ -27,16 +32,11 @@ import com.shutu.service.UserRoomRelateService;
 import com.shutu.websocket.adapter.WSAdapter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
 import java.util.stream.Collectors;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import com.shutu.config.NodeConfig;
-import com.shutu.constant.RedisKeyConstant;
-import cn.hutool.json.JSONUtil;
 
 @Service
 @Slf4j
@@ -46,8 +46,14 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message>
 
     private final WSAdapter wsAdapter;
     private final UserRoomRelateService userRoomRelateService;
-    private final StringRedisTemplate redisTemplate;
     private final MessageArchiveService messageArchiveService;
+    private final RoomMessageCacheManager roomMessageCacheManager;
+    private final UserProfileCache userProfileCache;
+    private final ReadReceiptManager readReceiptManager;
+    private final MessageSearchIndex messageSearchIndex;
+    private final MessageIndexFeeder messageIndexFeeder;
+    private final ConversationListManager conversationListManager;
+    private final ImSearchProperties searchProperties;
 
     @Override
     public CursorPage<ChatMessageResp> listMessageVoByPage(MessageQueryRequest messageQueryRequest) {
@@ -67,29 +73,34 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message>
         Long loginUserId = SecurityUser.getUserId();
         Long minMsgId = getMinMsgId(roomId, loginUserId);
 
-        // 2. 异步更新已读状态
-        updateReadStatusAsync(roomId, loginUserId);
-
         // 获取房间最新消息ID，用于缓存新鲜度校验,避免缓存和数据库的不一致性
         Room room = Db.lambdaQuery(Room.class).select(Room::getLastMsgId)
                 .eq(Room::getId, roomId).one();
         Long latestMessageId = (room != null) ? room.getLastMsgId() : null;
 
+        // 2. 记录已读位置 (写入缓冲区，由 ReadReceiptManager 合并刷盘)
+        readReceiptManager.record(loginUserId, roomId, latestMessageId);
+
         List<Message> messageList = null;
         int fetchSize = size + 1;
 
         // 3. 尝试从 Redis 缓存读取 (仅限首页查询)
         if (cursor == null) {
-            messageList = tryGetFromCache(roomId, size, minMsgId, latestMessageId);
+            messageList = roomMessageCacheManager.getLatest(roomId, size, minMsgId, latestMessageId);
         }
 
         // 4. 如果缓存未命中或不足，降级查 DB
         if (messageList == null) {
-            messageList = queryFromDb(roomId, minMsgId, cursor, fetchSize);
-
-            // 5. 触发 Read-Repair (仅限首页查询且有数据时)
-            if (cursor == null && !messageList.isEmpty()) {
-                rebuildCacheAsync(roomId, messageList);
+            if (cursor == null) {
+                // 5. 首页按房间查询最新消息 (不带用户可见范围) 并触发 Read-Repair，可见范围只在返回前过滤
+                // 被过滤掉的一定是最旧的几条，此时可见消息已全部在列表中，hasMore 判断不受影响
+                List<Message> latest = queryFromDb(roomId, 0L, null, fetchSize);
+                roomMessageCacheManager.rebuild(roomId, latest);
+                messageList = latest.stream()
+                        .filter(message -> message.getId() > minMsgId)
+                        .collect(Collectors.toList());
+            } else {
+                messageList = queryFromDb(roomId, minMsgId, cursor, fetchSize);
             }
         }
 
@@ -117,28 +128,105 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message>
      * 将用户在某个会话中的消息标记为已读
      */
     @Override
-    @Transactional
     public void markConversationAsRead(Long roomId) {
         Long loginUserId = SecurityUser.getUserId();
-        updateReadStatusAsync(roomId, loginUserId);
+        Room room = Db.lambdaQuery(Room.class).select(Room::getLastMsgId)
+                .eq(Room::getId, roomId).one();
+        readReceiptManager.record(loginUserId, roomId, room != null ? room.getLastMsgId() : null);
     }
 
+    /**
+     * 搜索聊天记录，按消息 id 倒序游标分页
+     * 本地全文索引就绪时走索引 (覆盖归档消息)，命中后按 id 回表；否则退化为带 LIMIT 的 LIKE 查询
+     */
     @Override
-    public List<ChatMessageResp> searchHistory(Long roomId, String keyword) {
+    public CursorPage<ChatMessageResp> searchHistory(Long roomId, String keyword, String cursor, Integer pageSize) {
+        CursorPage<ChatMessageResp> page = new CursorPage<>();
+        page.setRecords(Collections.emptyList());
+        page.setHasMore(false);
+        if (roomId == null || StrUtil.isBlank(keyword)) {
+            return page;
+        }
+        Long cursorId = null;
+        if (cursor != null) {
+            try {
+                cursorId = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                log.warn("[消息搜索] 游标无效: {}", cursor);
+                return page;
+            }
+        }
+        int size = Math.min(pageSize != null && pageSize > 0 ? pageSize : 20, searchProperties.getMaxPageSize());
         Long userId = SecurityUser.getUserId();
         Long minMsgId = getMinMsgId(roomId, userId);
 
-        List<Message> list = this.list(new LambdaQueryWrapper<Message>()
-                .eq(Message::getRoomId, roomId)
-                .gt(Message::getId, minMsgId)
-                .like(Message::getContent, keyword)
-                .orderByDesc(Message::getId));
+        // 多取一条判断是否还有下一页
+        List<Long> hitIds = searchIds(roomId, keyword.trim(), minMsgId, cursorId, size + 1);
+        boolean hasMore = hitIds.size() > size;
+        List<Long> pageIds = hasMore ? hitIds.subList(0, size) : hitIds;
+        if (pageIds.isEmpty()) {
+            return page;
+        }
 
-        if (list.isEmpty()) {
-            return Collections.emptyList();
+        page.setRecords(convertMessagesToVos(loadSearchHits(roomId, pageIds)));
+        page.setHasMore(hasMore);
+        // 游标取自命中 id 而非回表结果，回表过滤掉的消息不影响翻页
+        page.setNextCursor(hasMore ? String.valueOf(pageIds.get(pageIds.size() - 1)) : null);
+        return page;
+    }
+
+    private List<Long> searchIds(Long roomId, String keyword, Long minMsgId, Long cursorId, int limit) {
+        if (messageSearchIndex.isReady()) {
+            try {
+                return messageSearchIndex.search(roomId, keyword, minMsgId, cursorId, limit);
+            } catch (Exception e) {
+                log.error("[消息搜索] 索引查询失败，退化为数据库查询: 房间ID={}", roomId, e);
+            }
         }
+        return this.list(new LambdaQueryWrapper<Message>()
+                        .select(Message::getId)
+                        .eq(Message::getRoomId, roomId)
+                        .gt(Message::getId, minMsgId)
+                        .lt(cursorId != null, Message::getId, cursorId)
+                        .like(Message::getContent, keyword)
+                        .orderByDesc(Message::getId)
+                        .last("LIMIT " + limit))
+                .stream()
+                .map(Message::getId)
+                .collect(Collectors.toList());
+    }
 
-        return convertMessagesToVos(list);
+    /**
+     * 按 id 回表 (主表 -> 归档表)，保持 id 倒序
+     * 已撤回或已不存在的消息从结果中去掉，并从本地索引删除
+     */
+    private List<Message> loadSearchHits(Long roomId, List<Long> ids) {
+        Map<Long, Message> loaded = new HashMap<>(ids.size());
+        this.listByIds(ids).forEach(message -> loaded.put(message.getId(), message));
+        List<Long> missing = ids.stream().filter(id -> !loaded.containsKey(id)).collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            messageArchiveService.listByIds(missing).forEach(archive -> {
+                Message message = new Message();
+                BeanUtil.copyProperties(archive, message);
+                loaded.put(message.getId(), message);
+            });
+        }
+
+        List<Message> hits = new ArrayList<>(ids.size());
+        List<Long> stale = new ArrayList<>();
+        for (Long id : ids) {
+            Message message = loaded.get(id);
+            if (message == null || !roomId.equals(message.getRoomId())
+                    || !MessageTypeEnum.TEXT.getType().equals(message.getType())) {
+                stale.add(id);
+            } else {
+                hits.add(message);
+            }
+        }
+        if (!stale.isEmpty()) {
+            messageSearchIndex.delete(roomId, stale);
+        }
+        return hits;
     }
 
     @Override
@@ -161,9 +249,21 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message>
         }
 
         // 修改消息类型为撤回
-        message.setType(com.shutu.model.enums.chat.MessageTypeEnum.RECALL.getType());
+        message.setType(MessageTypeEnum.RECALL.getType());
         message.setContent("撤回了一条消息");
         this.updateById(message);
+        messageIndexFeeder.publishDelete(message.getId(), message.getRoomId());
+        // 房间消息缓存与会话列表摘要可能缓存了被撤回的原文，提交后失效，下次读取从 DB 回填
+        roomMessageCacheManager.evict(message.getRoomId());
+        conversationListManager.evictSummary(message.getRoomId());
+    }
+
+    @Override
+    public int insertBatch(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        return baseMapper.insertBatch(messages);
     }
 
     /**
@@ -176,75 +276,6 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message>
         return (relate != null && relate.getMinMsgId() != null) ? relate.getMinMsgId() : 0L;
     }
 
-    /**
-     * 更新用户已读状态
-     */
-    @Async
-    protected void updateReadStatusAsync(Long roomId, Long userId) {
-        try {
-            Room room = Db.lambdaQuery(Room.class).select(Room::getLastMsgId)
-                    .eq(Room::getId, roomId).one();
-            Long latestMessageId = (room != null) ? room.getLastMsgId() : null;
-            if (latestMessageId != null) {
-                userRoomRelateService.lambdaUpdate()
-                        .eq(UserRoomRelate::getRoomId, roomId)
-                        .eq(UserRoomRelate::getUserId, userId)
-                        .set(UserRoomRelate::getLatestReadMsgId, latestMessageId)
-                        .update();
-            }
-        } catch (Exception e) {
-            log.warn("[已读状态] 更新失败: 房间ID={}, 用户ID={}, 错误={}", roomId, userId, e.getMessage());
-        }
-    }
-
-    /**
-     * 尝试从 Redis ZSet 读取缓存
-     * 
-     * @return 如果命中且完整，返回 List；否则返回 null
-     */
-    private List<Message> tryGetFromCache(Long roomId, int size, Long minMsgId, Long latestDbMsgId) {
-        try {
-            String cacheKey = RedisKeyConstant.IM_ROOM_MSG_KEY + roomId;
-            // 倒序取最新的 N+1 条
-            Set<String> jsonSet = redisTemplate.opsForZSet().reverseRange(cacheKey, 0, size);
-
-            if (jsonSet == null || jsonSet.size() < (size + 1)) {
-                // 缓存条数不足，说明缓存不可靠，强制走DB
-                log.info("[Redis缓存] 命中但数据不完整: 房间ID={}, 期望条数={}, 实际条数={}", roomId, size + 1,
-                        (jsonSet == null ? 0 : jsonSet.size()));
-                return null;
-            }
-
-            List<Message> cachedMessages = jsonSet.stream()
-                    .map(json -> JSONUtil.toBean(json, Message.class))
-                    .filter(msg -> msg.getId() > minMsgId)
-                    .sorted((a, b) -> Long.compare(b.getId(), a.getId())) // 倒序
-                    .collect(Collectors.toList());
-
-            if (cachedMessages.isEmpty()) {
-                return null;
-            }
-
-            // 如果 DB 里的最新消息 ID 比 缓存里最新的消息 ID 还要大，说明缓存漏了最新的消息
-            if (latestDbMsgId != null) {
-                Long latestCacheId = cachedMessages.get(0).getId();
-                if (latestDbMsgId > latestCacheId) {
-                    log.warn("[Redis缓存] 数据陈旧 (Stale Cache): 房间ID={}, DB最新ID={}, 缓存最新ID={}",
-                            roomId, latestDbMsgId, latestCacheId);
-                    return null; // 降级查 DB
-                }
-            }
-
-            log.debug("[Redis缓存] 命中成功: 房间ID={}, 条数={}", roomId, cachedMessages.size());
-            return cachedMessages;
-
-        } catch (Exception e) {
-            log.error("[Redis缓存] 读取异常: 房间ID={}", roomId, e);
-            return null; // 异常降级
-        }
-    }
-
-
     /**
      * 从数据库查询消息 (支持冷热分离路由)
      * 策略：优先查主表，数据不足时自动“穿透”到归档表补齐
@@ -289,21 +320,12 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message>
 
     /**
      * 查询归档表 (冷数据)
+     * 单条查询带 id 上下界 (minMsgId, cursor)，归档表已分区时由 MySQL 裁剪分区，分区内走 idx_room_id_id
      */
     private List<Message> queryFromArchive(Long roomId, Long minMsgId, String cursor, int limit) {
         try {
-            LambdaQueryWrapper<MessageArchive> wrapper = new LambdaQueryWrapper<MessageArchive>()
-                    .eq(MessageArchive::getRoomId, roomId)
-                    .gt(MessageArchive::getId, minMsgId);
-
-            if (cursor != null) {
-                wrapper.lt(MessageArchive::getId, Long.parseLong(cursor));
-            }
-
-            wrapper.orderByDesc(com.shutu.model.entity.MessageArchive::getId);
-            wrapper.last("LIMIT " + limit);
-
-            List<MessageArchive> archives = messageArchiveService.list(wrapper);
+            Long cursorId = cursor != null ? Long.parseLong(cursor) : null;
+            List<MessageArchive> archives = queryArchiveTable(roomId, minMsgId, cursorId, limit);
             if (archives.isEmpty()) {
                 return Collections.emptyList();
             }
@@ -323,22 +345,18 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message>
         }
     }
 
-    /**
-     * 异步回填缓存 (Read-Repair)
-     */
-    private void rebuildCacheAsync(Long roomId, List<Message> messages) {
-        // 这里可以直接同步执行，或者丢到线程池。目前量小先同步。
-        try {
-            String cacheKey = RedisKeyConstant.IM_ROOM_MSG_KEY + roomId;
-            for (Message msg : messages) {
-                String json = JSONUtil.toJsonStr(msg);
-                redisTemplate.opsForZSet().add(cacheKey, json, msg.getId());
-            }
-            redisTemplate.expire(cacheKey, java.time.Duration.ofDays(7));
-            log.info("[Redis缓存] 缓存已回填: 房间ID={}, 条数={}", roomId, messages.size());
-        } catch (Exception e) {
-            log.error("[Redis缓存] 回填失败: 房间ID={}", roomId, e);
+    private List<MessageArchive> queryArchiveTable(Long roomId, Long minMsgId, Long cursorId, int limit) {
+        LambdaQueryWrapper<MessageArchive> wrapper = new LambdaQueryWrapper<MessageArchive>()
+                .eq(MessageArchive::getRoomId, roomId)
+                .gt(MessageArchive::getId, minMsgId);
+
+        if (cursorId != null) {
+            wrapper.lt(MessageArchive::getId, cursorId);
         }
+
+        wrapper.orderByDesc(MessageArchive::getId);
+        wrapper.last("LIMIT " + limit);
+        return messageArchiveService.list(wrapper);
     }
 
     /**
@@ -353,27 +371,15 @@ public class MessageServiceImpl extends ServiceImpl<MessageMapper, Message>
                 .map(Message::getFromUid)
                 .collect(Collectors.toSet());
 
+        // 本地缓存批量获取，未命中部分合并为一次远程调用
         Map<Long, UserDetail> userDetailMap = new HashMap<>();
-        if (!userIds.isEmpty()) {
-            try {
-                // 远程调用用户服务
-                Result<List<SysUserDTO>> userResult = SpringContextUtils
-                        .getBean(UserFeignClient.class)
-                        .listByIds(new ArrayList<>(userIds));
-
-                if (userResult.getData() != null) {
-                    for (SysUserDTO dto : userResult.getData()) {
-                        UserDetail userDetail = new UserDetail();
-                        userDetail.setId(dto.getId());
-                        userDetail.setUsername(dto.getUsername());
-                        userDetail.setHeadUrl(dto.getHeadUrl());
-                        userDetailMap.put(dto.getId(), userDetail);
-                    }
-                }
-            } catch (Exception e) {
-                log.error("[用户服务] 批量获取用户信息失败", e);
-            }
-        }
+        userProfileCache.getAll(userIds).forEach((id, dto) -> {
+            UserDetail userDetail = new UserDetail();
+            userDetail.setId(dto.getId());
+            userDetail.setUsername(dto.getUsername());
+            userDetail.setHeadUrl(dto.getHeadUrl());
+            userDetailMap.put(id, userDetail);
+        });
 
         return messages.stream()
                 .map(msg -> wsAdapter.buildBatchMessageResp(msg, userDetailMap))
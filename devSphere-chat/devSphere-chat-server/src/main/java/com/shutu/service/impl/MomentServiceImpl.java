@@ -5,7 +5,6 @@ import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.shutu.commons.tools.utils.Result;
 import com.shutu.mapper.MomentCommentMapper;
 import com.shutu.mapper.MomentLikeMapper;
 import com.shutu.mapper.MomentPostMapper;
@@ -21,7 +20,7 @@ import com.shutu.model.vo.moment.UserVo;
 import com.shutu.service.MomentService;
 import com.shutu.service.RoomFriendService;
 import com.shutu.dto.SysUserDTO;
-import com.shutu.feign.UserFeignClient;
+import com.shutu.manager.UserProfileCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -37,7 +36,7 @@ public class MomentServiceImpl implements MomentService {
     private final RoomFriendService roomFriendService;
     private final ObjectMapper objectMapper;
     private final MomentCommentMapper commentMapper;
-    private final UserFeignClient userFeignClient;
+    private final UserProfileCache userProfileCache;
 
     @Override
     @Transactional
@@ -82,30 +81,12 @@ public class MomentServiceImpl implements MomentService {
         Page<MomentPost> res = postMapper.selectPage(pg, qw);
         List<MomentPost> records = res.getRecords();
 
-        // Batch fetch user info via Feign
+        // Batch fetch user info via local profile cache
         Set<Long> userIdSet = new HashSet<>();
         for (MomentPost p : records) {
             userIdSet.add(p.getUserId());
         }
-        List<Long> idsList = new ArrayList<>(userIdSet);
-        // simple batch size of 20
-        Map<Long, SysUserDTO> userMap = new HashMap<>();
-        int batchSize = 20;
-        for (int i = 0; i < idsList.size(); i += batchSize) {
-            int end = Math.min(i + batchSize, idsList.size());
-            List<Long> sub = idsList.subList(i, end);
-            try {
-                Result<List<SysUserDTO>> listResult = userFeignClient.listByIds(sub);
-                List<SysUserDTO> data = listResult.getData();
-                if (data != null) {
-                    for (SysUserDTO u : data) {
-                        userMap.put(u.getId(), u);
-                    }
-                }
-            } catch (Exception e) {
-                // fallback: ignore and continue
-            }
-        }
+        Map<Long, SysUserDTO> userMap = userProfileCache.getAll(userIdSet);
 
         List<MomentResp> list = new ArrayList<>();
         for (MomentPost p : records) {
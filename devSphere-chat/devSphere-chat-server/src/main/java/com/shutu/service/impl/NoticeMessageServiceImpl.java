@@ -7,9 +7,9 @@ import com.shutu.commons.security.user.SecurityUser;
 import com.shutu.commons.security.user.UserDetail;
 import com.shutu.commons.tools.exception.CommonException;
 import com.shutu.commons.tools.exception.ErrorCode;
-import com.shutu.commons.tools.utils.Result;
 import com.shutu.model.vo.ws.response.WSBaseResp;
-import com.shutu.feign.UserFeignClient;
+import com.shutu.dto.SysUserDTO;
+import com.shutu.manager.UserProfileCache;
 import com.shutu.mapper.NoticeMessageMapper;
 import com.shutu.model.dto.chat.MessageNoticeUpdateRequest;
 import com.shutu.model.dto.friend.FriendAddRequest;
@@ -32,6 +32,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import static com.shutu.commons.tools.constant.Constant.USER_KEY;
@@ -43,7 +44,7 @@ public class NoticeMessageServiceImpl extends ServiceImpl<NoticeMessageMapper, N
         implements NoticeMessageService {
 
     @Resource
-    private UserFeignClient userFeignClient;
+    private UserProfileCache userProfileCache;
     @Resource
     private WebSocketService webSocketService;
     // 确保 UserFriendRelateService 已注入
@@ -128,11 +129,18 @@ public class NoticeMessageServiceImpl extends ServiceImpl<NoticeMessageMapper, N
                 .eq(NoticeMessage::getToUserId, SecurityUser.getUserId())
                 .orderByDesc(NoticeMessage::getCreateTime));
 
+        // 一次性批量获取发送者资料，避免逐条远程调用
+        Map<Long, SysUserDTO> userMap = userProfileCache.getAll(noticeMessageList.stream()
+                .map(NoticeMessage::getUserId)
+                .collect(Collectors.toSet()));
+
         return noticeMessageList.stream().map(item -> {
             NoticeMessageVo noticeMessageVo = new NoticeMessageVo();
             BeanUtils.copyProperties(item, noticeMessageVo);
-            Result<UserDetail> userDetailResult = userFeignClient.getById(item.getUserId());
-            UserDetail user = userDetailResult.getData();
+            SysUserDTO user = userMap.get(item.getUserId());
+            if (user == null) {
+                return noticeMessageVo;
+            }
             noticeMessageVo.setAvatar(user.getHeadUrl());
             noticeMessageVo.setName(user.getUsername());
 
@@ -0,0 +1,286 @@
+package com.shutu.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shutu.config.ImPresenceProperties;
+import com.shutu.config.NodeConfig;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.manager.MessageFanoutEngine;
+import com.shutu.model.entity.UserFriendRelate;
+import com.shutu.model.enums.chat.FriendSearchTypeEnum;
+import com.shutu.model.enums.ws.WSReqTypeEnum;
+import com.shutu.model.vo.ws.response.WSBaseResp;
+import com.shutu.model.vo.ws.response.WSPresenceResp;
+import com.shutu.service.PresenceService;
+import com.shutu.service.UserFriendRelateService;
+import com.shutu.websocket.service.WebSocketService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 在线状态服务实现类
+ * 1. 用户ID为雪花ID，无法直接作为位图偏移，首次上线时按序分配一个紧凑的偏移量 (im:presence:offset)
+ * 2. 每个节点只维护自己的位图 im:presence:bitmap:{nodeId}，上下线时增量 SETBIT，
+ *    多端登录在不同节点时互不覆盖；节点宕机后位图随心跳过期自动失效
+ * 3. 批量查询: 偏移量走本地缓存 (未命中一次 HMGET)，对每个存活节点的位图执行 BITFIELD GET，Pipeline 一次发出
+ * 4. 节点心跳在独立线程中执行，不占用 @Scheduled 的单线程调度器 (归档等长任务阻塞期间节点会被判定下线，
+ *    其上所有用户显示离线，消息流分区租约的均分也随之失真)
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PresenceServiceImpl implements PresenceService {
+
+    private static final BitFieldSubCommands.BitFieldType BIT = BitFieldSubCommands.BitFieldType.unsigned(1);
+
+    private final StringRedisTemplate redisTemplate;
+    private final NodeConfig nodeConfig;
+    private final ImPresenceProperties presenceProperties;
+    private final WebSocketService webSocketService;
+    private final MessageFanoutEngine messageFanoutEngine;
+    private final UserFriendRelateService userFriendRelateService;
+
+    private DefaultRedisScript<Long> offsetScript;
+
+    /**
+     * uid -> 位图偏移量，分配后不再变化
+     */
+    private Cache<Long, Long> offsetCache;
+
+    /**
+     * 其他存活节点 (由心跳任务刷新)
+     */
+    private volatile List<String> otherNodes = Collections.emptyList();
+
+    private ScheduledExecutorService heartbeatScheduler;
+
+    @PostConstruct
+    public void init() {
+        offsetScript = new DefaultRedisScript<>();
+        offsetScript.setResultType(Long.class);
+        offsetScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/presence_offset.lua")));
+        offsetCache = Caffeine.newBuilder()
+                .maximumSize(presenceProperties.getOffsetCacheMaxSize())
+                .build();
+
+        // 节点重启: 清掉上次运行遗留的位图，本节点的连接会在建立时重新置位
+        redisTemplate.delete(localBitmapKey());
+        heartbeat();
+
+        long renewMillis = presenceProperties.getRenewInterval().toMillis();
+        heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(
+                new CustomizableThreadFactory("im-presence-heartbeat-"));
+        heartbeatScheduler.scheduleWithFixedDelay(this::heartbeat, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        heartbeatScheduler.shutdownNow();
+    }
+
+    @Override
+    public void refreshLocal(Long uid) {
+        boolean online = webSocketService.isLocalOnline(uid);
+        Long offset = online ? allocateOffset(uid) : getOffsets(Collections.singleton(uid)).get(uid);
+        if (offset == null) {
+            return;
+        }
+        Boolean previous = redisTemplate.opsForValue().setBit(localBitmapKey(), offset, online);
+        if (Boolean.valueOf(online).equals(previous) || !presenceProperties.isPushEvents()) {
+            return;
+        }
+        // 本节点状态发生变化，且其他节点上都不在线时，才是集群范围的上线/下线
+        if (!queryOnline(otherNodes, Collections.singletonMap(uid, offset)).isEmpty()) {
+            return;
+        }
+        notifyFriends(uid, online);
+    }
+
+    @Override
+    public boolean isOnline(Long uid) {
+        return !getOnlineUids(Collections.singleton(uid)).isEmpty();
+    }
+
+    @Override
+    public Set<Long> getOnlineUids(Collection<Long> uids) {
+        if (uids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<Long> result = new HashSet<>();
+        Map<Long, Long> offsets = new HashMap<>();
+        for (Long uid : uids) {
+            // 本机在线直接判定，无需访问 Redis
+            if (webSocketService.isLocalOnline(uid)) {
+                result.add(uid);
+            } else {
+                offsets.put(uid, null);
+            }
+        }
+        if (offsets.isEmpty()) {
+            return result;
+        }
+        // 从未上线过的用户没有偏移量，必然离线
+        offsets = getOffsets(offsets.keySet());
+        if (!offsets.isEmpty()) {
+            result.addAll(queryOnline(otherNodes, offsets));
+        }
+        return result;
+    }
+
+    /**
+     * 节点心跳: 刷新本节点存活时间与位图过期时间，并刷新其他存活节点列表
+     */
+    public void heartbeat() {
+        try {
+            long now = System.currentTimeMillis();
+            long ttlMillis = presenceProperties.getNodeTtl().toMillis();
+            String nodeId = nodeConfig.getNodeId();
+            byte[] nodesKey = RedisKeyConstant.IM_PRESENCE_NODES_KEY.getBytes(StandardCharsets.UTF_8);
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.zSetCommands().zAdd(nodesKey, now, nodeId.getBytes(StandardCharsets.UTF_8));
+                connection.keyCommands().pExpire(localBitmapKey().getBytes(StandardCharsets.UTF_8), ttlMillis);
+                // 清理长时间未心跳的节点
+                connection.zSetCommands().zRemRangeByScore(nodesKey, 0, now - ttlMillis * 10);
+                connection.zSetCommands().zRangeByScore(nodesKey, now - ttlMillis, Double.MAX_VALUE);
+                return null;
+            });
+            @SuppressWarnings("unchecked")
+            Collection<String> alive = (Collection<String>) results.get(3);
+            otherNodes = alive == null ? Collections.emptyList() : alive.stream()
+                    .filter(node -> !nodeId.equals(node))
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            log.error("[在线状态] 节点心跳失败", e);
+        }
+    }
+
+    /**
+     * 在给定节点的位图中查询，返回任一节点上在线的用户
+     */
+    private Set<Long> queryOnline(List<String> nodes, Map<Long, Long> offsets) {
+        if (nodes.isEmpty() || offsets.isEmpty()) {
+            return Collections.emptySet();
+        }
+        List<Long> uidList = new ArrayList<>(offsets.keySet());
+        List<BitFieldSubCommands> commands = new ArrayList<>();
+        int batchSize = presenceProperties.getQueryBatchSize();
+        for (int from = 0; from < uidList.size(); from += batchSize) {
+            BitFieldSubCommands command = BitFieldSubCommands.create();
+            for (Long uid : uidList.subList(from, Math.min(from + batchSize, uidList.size()))) {
+                command = command.get(BIT).valueAt(offsets.get(uid));
+            }
+            commands.add(command);
+        }
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String node : nodes) {
+                byte[] key = (RedisKeyConstant.IM_PRESENCE_BITMAP_PREFIX + node).getBytes(StandardCharsets.UTF_8);
+                for (BitFieldSubCommands command : commands) {
+                    connection.stringCommands().bitField(key, command);
+                }
+            }
+            return null;
+        });
+
+        Set<Long> online = new HashSet<>();
+        for (int n = 0; n < nodes.size(); n++) {
+            for (int c = 0; c < commands.size(); c++) {
+                @SuppressWarnings("unchecked")
+                List<Long> bits = (List<Long>) results.get(n * commands.size() + c);
+                if (bits == null) {
+                    continue;
+                }
+                for (int i = 0; i < bits.size(); i++) {
+                    if (bits.get(i) != null && bits.get(i) == 1L) {
+                        online.add(uidList.get(c * batchSize + i));
+                    }
+                }
+            }
+        }
+        return online;
+    }
+
+    /**
+     * 获取已分配的偏移量，本地缓存未命中的合并为一次 HMGET
+     *
+     * @return uid -> 偏移量，从未上线过的用户不在结果中
+     */
+    private Map<Long, Long> getOffsets(Collection<Long> uids) {
+        Map<Long, Long> result = new HashMap<>(offsetCache.getAllPresent(uids));
+        List<Object> misses = uids.stream()
+                .filter(uid -> !result.containsKey(uid))
+                .map(String::valueOf)
+                .collect(Collectors.toList());
+        if (misses.isEmpty()) {
+            return result;
+        }
+        List<Object> values = redisTemplate.opsForHash().multiGet(RedisKeyConstant.IM_PRESENCE_OFFSET_KEY, misses);
+        for (int i = 0; i < misses.size(); i++) {
+            Object value = values.get(i);
+            if (value != null) {
+                Long uid = Long.valueOf((String) misses.get(i));
+                Long offset = Long.valueOf(value.toString());
+                offsetCache.put(uid, offset);
+                result.put(uid, offset);
+            }
+        }
+        return result;
+    }
+
+    private Long allocateOffset(Long uid) {
+        Long offset = offsetCache.getIfPresent(uid);
+        if (offset != null) {
+            return offset;
+        }
+        offset = redisTemplate.execute(offsetScript,
+                Arrays.asList(RedisKeyConstant.IM_PRESENCE_OFFSET_KEY, RedisKeyConstant.IM_PRESENCE_SEQ_KEY),
+                String.valueOf(uid));
+        if (offset != null) {
+            offsetCache.put(uid, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * 推送在线状态变更给好友 (离线好友由扇出引擎跳过)
+     */
+    private void notifyFriends(Long uid, boolean online) {
+        List<Long> friendIds = userFriendRelateService.list(new LambdaQueryWrapper<UserFriendRelate>()
+                        .eq(UserFriendRelate::getUserId, uid)
+                        .eq(UserFriendRelate::getRelateType, FriendSearchTypeEnum.FRIEND.getType())
+                        .select(UserFriendRelate::getRelateId))
+                .stream()
+                .map(UserFriendRelate::getRelateId)
+                .collect(Collectors.toList());
+        if (friendIds.isEmpty()) {
+            return;
+        }
+        WSBaseResp<WSPresenceResp> wsResp = new WSBaseResp<>();
+        wsResp.setType(WSReqTypeEnum.PRESENCE.getType());
+        wsResp.setData(new WSPresenceResp(uid, online, System.currentTimeMillis()));
+        messageFanoutEngine.pushToUids(wsResp, friendIds);
+        log.debug("[在线状态] 通知好友: uid={}, online={}, friends={}", uid, online, friendIds.size());
+    }
+
+    private String localBitmapKey() {
+        return RedisKeyConstant.IM_PRESENCE_BITMAP_PREFIX + nodeConfig.getNodeId();
+    }
+}
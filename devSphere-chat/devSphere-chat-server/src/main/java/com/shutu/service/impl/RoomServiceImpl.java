@@ -10,8 +10,12 @@ import com.shutu.commons.security.user.UserDetail;
 import com.shutu.commons.tools.exception.CommonException;
 import com.shutu.commons.tools.exception.ErrorCode;
 import com.shutu.commons.tools.utils.Result;
+import com.shutu.manager.ConversationListManager;
 import com.shutu.manager.FriendSearchStrategy;
+import com.shutu.model.dto.chat.CursorPage;
 import com.shutu.model.dto.chat.GroupCreateRequestDTO;
+import com.shutu.model.dto.chat.RoomCursorQueryRequest;
+import com.shutu.model.dto.chat.RoomSummaryDTO;
 import com.shutu.model.dto.group.GroupInviteRequestDTO;
 import com.shutu.model.dto.group.GroupKickRequestDTO;
 import com.shutu.model.dto.group.GroupUpdateRequestDTO;
@@ -22,6 +26,9 @@ import com.shutu.model.vo.group.GroupMemberVo;
 import com.shutu.dto.SysUserDTO;
 import com.shutu.feign.UserFeignClient;
 import com.shutu.manager.FriendSearchFacade;
+import com.shutu.manager.RoomMemberCache;
+import com.shutu.manager.UnreadCounterManager;
+import com.shutu.manager.UserProfileCache;
 import com.shutu.mapper.RoomMapper;
 import com.shutu.model.dto.chat.RoomQueryRequest;
 import com.shutu.model.dto.friend.FriendQueryRequest;
@@ -29,8 +36,10 @@ import com.shutu.model.enums.chat.FriendTargetTypeEnum;
 import com.shutu.model.enums.chat.RoomTypeEnum;
 import com.shutu.model.vo.friend.AddFriendVo;
 import com.shutu.model.vo.friend.FriendContentVo;
+import com.shutu.model.enums.chat.FriendSearchTypeEnum;
 import com.shutu.model.vo.room.RoomVo;
 import com.shutu.service.MessageService;
+import com.shutu.service.PresenceService;
 import com.shutu.service.RoomFriendService;
 import com.shutu.service.RoomGroupService;
 import com.shutu.service.UserFriendRelateService;
@@ -54,176 +63,111 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
     private final UserFriendRelateService userFriendRelateService;
     private final FriendSearchFacade friendSearchFacade;
     private final UserFeignClient userFeignClient;
+    private final UnreadCounterManager unreadCounterManager;
+    private final UserProfileCache userProfileCache;
+    private final RoomMemberCache roomMemberCache;
+    private final PresenceService presenceService;
+    private final ConversationListManager conversationListManager;
     // Spring会自动识别并注入所有实现
     private final List<FriendSearchStrategy> friendSearchStrategies;
 
     /**
      * 分页查询所有房间信息
+     * 房间顺序来自会话列表 (Redis ZSet)，展示字段来自房间摘要缓存
      * 
      * @param roomQueryRequest 房间查询请求
      * @return
      */
     @Override
     public Page<RoomVo> listRoomVoByPage(RoomQueryRequest roomQueryRequest) {
-        int size = roomQueryRequest.getPageSize();
-        int current = roomQueryRequest.getCurrent();
         // 当前登陆用户id
         Long loginUserId = SecurityUser.getUserId();
 
-        // 1、查询用户下的房间
-        Page<UserRoomRelate> page = userRoomRelateService.page(new Page<>(current, size),
-                new LambdaQueryWrapper<UserRoomRelate>().eq(UserRoomRelate::getUserId, loginUserId)
-                        .ne(UserRoomRelate::getIsDeleted, 1)
-                        .orderByDesc(UserRoomRelate::getUpdateTime));
-        List<UserRoomRelate> userRoomRelateList = page.getRecords();
-
-        if (userRoomRelateList.isEmpty()) {
-            return new Page<>(current, size, 0);
-        }
-
-        // 收集 RoomID
-        Set<Long> roomIds = userRoomRelateList.stream()
-                .map(UserRoomRelate::getRoomId)
-                .collect(Collectors.toSet());
-
-        // 2、批量查询房间信息
-        List<Room> roomList = this.listByIds(roomIds);
-        Map<Long, Room> roomMap = roomList.stream()
-                .collect(Collectors.toMap(Room::getId, java.util.function.Function.identity()));
+        Page<Long> page = conversationListManager.pageByIndex(loginUserId, roomQueryRequest.getCurrent(),
+                roomQueryRequest.getPageSize());
+        Page<RoomVo> resultPage = new Page<>(page.getCurrent(), page.getSize(), page.getTotal());
+        resultPage.setRecords(toRoomVos(loginUserId, page.getRecords()));
+        return resultPage;
+    }
 
-        // 3、批量查询最后一条消息
-        Set<Long> lastMsgIds = roomList.stream()
-                .map(Room::getLastMsgId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+    /**
+     * 游标分页查询会话列表，按活跃时间倒序
+     */
+    @Override
+    public CursorPage<RoomVo> listRoomVoByCursor(RoomCursorQueryRequest request) {
+        Long loginUserId = SecurityUser.getUserId();
+        int pageSize = request.getPageSize() != null ? request.getPageSize() : 20;
+
+        CursorPage<Long> page = conversationListManager.pageByCursor(loginUserId, request.getCursor(), pageSize);
+        CursorPage<RoomVo> result = new CursorPage<>();
+        result.setRecords(toRoomVos(loginUserId, page.getRecords()));
+        result.setNextCursor(page.getNextCursor());
+        result.setHasMore(page.getHasMore());
+        return result;
+    }
 
-        Map<Long, Message> messageMap = new HashMap<>();
-        if (!lastMsgIds.isEmpty()) {
-            List<Message> messages = messageService.listByIds(lastMsgIds);
-            messageMap = messages.stream()
-                    .collect(Collectors.toMap(Message::getId, java.util.function.Function.identity()));
+    /**
+     * 组装会话列表项
+     * 1. 房间摘要 (缓存，缺失时一次批量构建)
+     * 2. 私聊对方资料 (本地缓存)
+     * 3. 未读数与群成员数 (Redis 计数，缺失时一次分组查询回填)
+     */
+    private List<RoomVo> toRoomVos(Long loginUserId, List<Long> roomIds) {
+        if (roomIds.isEmpty()) {
+            return new ArrayList<>();
         }
+        Map<Long, RoomSummaryDTO> summaries = conversationListManager.getSummaries(roomIds);
 
-        // 4、批量查询群聊信息
-        Map<Long, RoomGroup> roomGroupMap = new HashMap<>();
-
-        // 5、批量查询私聊信息
-        Map<Long, RoomFriend> roomFriendMap = new HashMap<>();
-
-        // 分类房间ID
         Set<Long> groupRoomIds = new HashSet<>();
-        Set<Long> privateRoomIds = new HashSet<>();
-
-        for (Room room : roomList) {
-            if (Objects.equals(room.getType(), RoomTypeEnum.GROUP.getType())) {
-                groupRoomIds.add(room.getId());
-            } else {
-                privateRoomIds.add(room.getId());
-            }
-        }
-
-        // 批量查群
-        if (!groupRoomIds.isEmpty()) {
-            List<RoomGroup> groups = roomGroupService.list(new LambdaQueryWrapper<RoomGroup>()
-                    .in(RoomGroup::getRoomId, groupRoomIds));
-            roomGroupMap = groups.stream()
-                    .collect(Collectors.toMap(RoomGroup::getRoomId, java.util.function.Function.identity()));
-        }
-
-        // 批量查私聊
-        Map<Long, UserDetail> userDetailMap = new HashMap<>();
-        if (!privateRoomIds.isEmpty()) {
-            List<RoomFriend> friends = roomFriendService.list(new LambdaQueryWrapper<RoomFriend>()
-                    .in(RoomFriend::getRoomId, privateRoomIds));
-            roomFriendMap = friends.stream()
-                    .collect(Collectors.toMap(RoomFriend::getRoomId, java.util.function.Function.identity()));
-
-            Set<Long> friendUserIds = friends.stream()
-                    .map(f -> Objects.equals(f.getUid1(), loginUserId) ? f.getUid2() : f.getUid1())
-                    .collect(Collectors.toSet());
-
-            if (!friendUserIds.isEmpty()) {
-                try {
-                    com.shutu.commons.tools.utils.Result<List<SysUserDTO>> result = userFeignClient
-                            .listByIds(new ArrayList<>(friendUserIds));
-                    if (result.getData() != null) {
-                        for (SysUserDTO dto : result.getData()) {
-                            UserDetail u = new UserDetail();
-                            u.setId(dto.getId());
-                            u.setUsername(dto.getUsername());
-                            u.setHeadUrl(dto.getHeadUrl());
-                            userDetailMap.put(dto.getId(), u);
-                        }
-                    }
-                } catch (Exception e) {
-                    // 忽略异常，保持列表加载
-                }
+        Set<Long> friendUserIds = new HashSet<>();
+        for (RoomSummaryDTO summary : summaries.values()) {
+            if (Objects.equals(summary.getType(), RoomTypeEnum.GROUP.getType())) {
+                groupRoomIds.add(summary.getRoomId());
+            } else if (summary.getUid1() != null) {
+                friendUserIds.add(peerOf(summary, loginUserId));
             }
         }
+        Map<Long, SysUserDTO> userMap = friendUserIds.isEmpty() ? Collections.emptyMap()
+                : userProfileCache.getAll(friendUserIds);
+        Map<Long, Integer> unreadMap = unreadCounterManager.getUnreadCounts(loginUserId, roomIds);
+        Map<Long, Integer> memberCountMap = unreadCounterManager.getMemberCounts(groupRoomIds);
 
         // 组装结果
-        List<RoomVo> roomVoList = new ArrayList<>();
-        for (UserRoomRelate relate : userRoomRelateList) {
-            Long roomId = relate.getRoomId();
-            Room room = roomMap.get(roomId);
-            if (room == null)
+        List<RoomVo> roomVoList = new ArrayList<>(roomIds.size());
+        for (Long roomId : roomIds) {
+            RoomSummaryDTO summary = summaries.get(roomId);
+            if (summary == null)
                 continue;
 
             RoomVo roomVo = new RoomVo();
             roomVo.setId(roomId);
-            roomVo.setType(room.getType());
-            roomVo.setActiveTime(room.getActiveTime());
-
-            // 消息内容
-            Message msg = messageMap.get(room.getLastMsgId());
-            if (msg != null) {
-                roomVo.setContent(msg.getContent());
-            } else {
-                roomVo.setContent("暂无消息");
-            }
-
-            // 未读数
-            if (relate.getLatestReadMsgId() != null) {
-                long count = messageService.count(new LambdaQueryWrapper<Message>()
-                        .eq(Message::getRoomId, roomId)
-                        .gt(Message::getId, relate.getLatestReadMsgId()));
-                roomVo.setUnreadNum((int) count);
-            } else {
-                long count = messageService.count(new LambdaQueryWrapper<Message>()
-                        .eq(Message::getRoomId, roomId));
-                roomVo.setUnreadNum((int) count);
-            }
+            roomVo.setType(summary.getType());
+            roomVo.setActiveTime(summary.getActiveTime() != null ? new Date(summary.getActiveTime()) : null);
+            roomVo.setContent(summary.getContent() != null ? summary.getContent() : "暂无消息");
+            roomVo.setUnreadNum(unreadMap.getOrDefault(roomId, 0));
 
             // 填充详情
-            if (Objects.equals(room.getType(), RoomTypeEnum.GROUP.getType())) {
-                RoomGroup group = roomGroupMap.get(roomId);
-                if (group != null) {
-                    roomVo.setAvatar(group.getAvatar());
-                    roomVo.setRoomName(group.getName());
-                    roomVo.setUserId(group.getOwnerId());
-                }
-                // 成员数
-                long count = userRoomRelateService
-                        .count(new LambdaQueryWrapper<UserRoomRelate>().eq(UserRoomRelate::getRoomId, roomId));
-                roomVo.setMemberCount((int) count);
-            } else {
-                RoomFriend friend = roomFriendMap.get(roomId);
-                if (friend != null) {
-                    Long friendId = Objects.equals(friend.getUid1(), loginUserId) ? friend.getUid2() : friend.getUid1();
-                    UserDetail user = userDetailMap.get(friendId);
-                    if (user != null) {
-                        roomVo.setAvatar(user.getHeadUrl());
-                        roomVo.setRoomName(user.getUsername());
-                    }
-                    roomVo.setUserId(friendId);
+            if (Objects.equals(summary.getType(), RoomTypeEnum.GROUP.getType())) {
+                roomVo.setAvatar(summary.getAvatar());
+                roomVo.setRoomName(summary.getName());
+                roomVo.setUserId(summary.getOwnerId());
+                roomVo.setMemberCount(memberCountMap.getOrDefault(roomId, 0));
+            } else if (summary.getUid1() != null) {
+                Long friendId = peerOf(summary, loginUserId);
+                SysUserDTO user = userMap.get(friendId);
+                if (user != null) {
+                    roomVo.setAvatar(user.getHeadUrl());
+                    roomVo.setRoomName(user.getUsername());
                 }
+                roomVo.setUserId(friendId);
             }
             roomVoList.add(roomVo);
         }
+        return roomVoList;
+    }
 
-        Page<RoomVo> resultPage = new Page<>(current, size, page.getTotal());
-        resultPage.setRecords(roomVoList);
-        return resultPage;
+    private static Long peerOf(RoomSummaryDTO summary, Long loginUserId) {
+        return Objects.equals(summary.getUid1(), loginUserId) ? summary.getUid2() : summary.getUid1();
     }
 
     @Override
@@ -246,6 +190,16 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
             FriendContentVo friendContentVo = friendSearchFacade.searchAll(item, roomTypeMap.get(item));
             friendContentVos.add(friendContentVo);
         });
+
+        // 好友在线状态 (一次批量查询)
+        List<Long> friendIds = roomTypeMap.getOrDefault(FriendSearchTypeEnum.FRIEND.getType(), Collections.emptyList());
+        if (!friendIds.isEmpty()) {
+            Set<Long> onlineUids = presenceService.getOnlineUids(friendIds);
+            friendContentVos.stream()
+                    .filter(vo -> FriendSearchTypeEnum.FRIEND.getType().equals(vo.getType()) && vo.getContent() != null)
+                    .flatMap(vo -> vo.getContent().stream())
+                    .forEach(friend -> friend.setOnline(onlineUids.contains(friend.getUid())));
+        }
         return friendContentVos;
     }
 
@@ -404,6 +358,10 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
         initialMessage.setContent(ownerName + " 创建了群聊");
         initialMessage.setType(MessageTypeEnum.TEXT.getType()); // 1 = 正常文本
         messageService.save(initialMessage);
+        roomMemberCache.evict(newRoomId);
+        unreadCounterManager.evictMemberCount(newRoomId);
+        unreadCounterManager.onMessagesSavedAfterCommit(List.of(initialMessage));
+        conversationListManager.evictUsers(memberIds);
 
         // 6. 回填房间的最后活跃时间和消息ID
         // (确保 messageService.save 后 initialMessage 能拿到 ID 和 createTime)
@@ -490,12 +448,12 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
             return new ArrayList<>();
         }
 
-        // 4. 批量查询用户信息
-        Result<List<SysUserDTO>> listResult = userFeignClient.listByIds(memberIds);
-        List<SysUserDTO> users = listResult.getData();
+        // 4. 批量查询用户信息 (本地缓存) 与在线状态
+        Map<Long, SysUserDTO> userMap = userProfileCache.getAll(memberIds);
+        Set<Long> onlineUids = presenceService.getOnlineUids(memberIds);
 
         // 5. 组装VO
-        return users.stream().map(user -> {
+        return memberIds.stream().map(userMap::get).filter(Objects::nonNull).map(user -> {
             GroupMemberVo memberVo = new GroupMemberVo();
             memberVo.setUid(user.getId());
             memberVo.setUsername(user.getRealName()); // 优先使用真实姓名
@@ -503,6 +461,7 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
             if (user.getId().equals(roomGroup.getOwnerId())) {
                 memberVo.setIsOwner(1); // 标记群主
             }
+            memberVo.setOnline(onlineUids.contains(user.getId()));
             return memberVo;
         }).collect(Collectors.toList());
     }
@@ -534,6 +493,7 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
         }
 
         roomGroupService.updateById(roomGroup);
+        conversationListManager.evictSummary(roomId);
     }
 
     /**
@@ -549,6 +509,7 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
         if (!updated) {
             throw new CommonException("操作失败", ErrorCode.DATA_NOT_EXIST);
         }
+        conversationListManager.remove(userId, roomId);
     }
 
     /**
@@ -570,6 +531,7 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
         if (!updated) {
             throw new CommonException("操作失败", ErrorCode.DATA_NOT_EXIST);
         }
+        conversationListManager.remove(userId, roomId);
     }
 
     /**
@@ -634,11 +596,10 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
             if (roomFriend != null) {
                 Long friendId = Objects.equals(roomFriend.getUid1(), userId) ? roomFriend.getUid2()
                         : roomFriend.getUid1();
-                com.shutu.commons.tools.utils.Result<com.shutu.commons.security.user.UserDetail> res = userFeignClient
-                        .getById(friendId);
-                if (res.getData() != null) {
-                    roomVo.setAvatar(res.getData().getHeadUrl());
-                    roomVo.setRoomName(res.getData().getUsername());
+                SysUserDTO friendUser = userProfileCache.get(friendId);
+                if (friendUser != null) {
+                    roomVo.setAvatar(friendUser.getHeadUrl());
+                    roomVo.setRoomName(friendUser.getUsername());
                 }
                 roomVo.setUserId(friendId);
             }
@@ -686,6 +647,11 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
         msg.setType(MessageTypeEnum.TEXT.getType()); // 或者系统消息类型
         msg.setContent(username + " 退出了群聊");
         messageService.save(msg);
+        roomMemberCache.evict(roomId);
+        unreadCounterManager.evictMemberCount(roomId);
+        unreadCounterManager.onMessagesSavedAfterCommit(List.of(msg));
+        conversationListManager.evictUsers(List.of(userId));
+        conversationListManager.touchAfterCommit(msg);
 
         // 更新房间最后活跃时间
         Room room = this.getById(roomId);
@@ -799,6 +765,11 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
         msg.setType(MessageTypeEnum.TEXT.getType());
         msg.setContent(username + " 邀请 " + invitedNames + " 加入群聊");
         messageService.save(msg);
+        roomMemberCache.evict(roomId);
+        unreadCounterManager.evictMemberCount(roomId);
+        unreadCounterManager.onMessagesSavedAfterCommit(List.of(msg));
+        conversationListManager.evictUsers(newUserIds);
+        conversationListManager.touchAfterCommit(msg);
 
         // 更新房间活跃时间
         Room room = this.getById(roomId);
@@ -862,6 +833,11 @@ public class RoomServiceImpl extends ServiceImpl<RoomMapper, Room>
         msg.setType(MessageTypeEnum.TEXT.getType());
         msg.setContent(username + " 将 " + targetName + " 移出了群聊");
         messageService.save(msg);
+        roomMemberCache.evict(roomId);
+        unreadCounterManager.evictMemberCount(roomId);
+        unreadCounterManager.onMessagesSavedAfterCommit(List.of(msg));
+        conversationListManager.evictUsers(List.of(targetUid));
+        conversationListManager.touchAfterCommit(msg);
 
         // 更新房间活跃时间
         Room room = this.getById(roomId);
@@ -6,6 +6,8 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.shutu.commons.security.user.SecurityUser;
 import com.shutu.commons.tools.exception.CommonException;
 import com.shutu.commons.tools.exception.ErrorCode;
+import com.shutu.manager.ConversationListManager;
+import com.shutu.manager.RoomMemberCache;
 import com.shutu.mapper.RoomMapper;
 import com.shutu.mapper.UserFriendRelateMapper;
 import com.shutu.model.dto.friend.FriendDeleteDTO;
@@ -33,6 +35,8 @@ public class UserFriendRelateServiceImpl extends ServiceImpl<UserFriendRelateMap
     private final RoomMapper roomMapper;
     private final RoomFriendService roomFriendService;
     private final UserRoomRelateService userRoomRelateService;
+    private final RoomMemberCache roomMemberCache;
+    private final ConversationListManager conversationListManager;
 
     /**
      * 创建好友关系
@@ -102,6 +106,8 @@ public class UserFriendRelateServiceImpl extends ServiceImpl<UserFriendRelateMap
         userRoomRelate2.setUserId(uid2);
         userRoomRelate2.setRoomId(roomIdToUse);
         userRoomRelateService.saveBatch(Arrays.asList(userRoomRelate1, userRoomRelate2));
+        roomMemberCache.evict(roomIdToUse);
+        conversationListManager.evictUsers(Arrays.asList(uid1, uid2));
     }
 
     /**
@@ -167,6 +173,9 @@ public class UserFriendRelateServiceImpl extends ServiceImpl<UserFriendRelateMap
                     .eq(UserRoomRelate::getRoomId, roomId)
                     .in(UserRoomRelate::getUserId, loginUserId, friendId)
             );
+            roomMemberCache.evict(roomId);
+            conversationListManager.evictUsers(Arrays.asList(loginUserId, friendId));
+            conversationListManager.evictSummary(roomId);
 
             // 4. 物理删除 Room
             roomMapper.deleteById(roomId);
@@ -1,23 +1,41 @@
 package com.shutu.service.impl;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.shutu.config.ImLocationProperties;
 import com.shutu.config.NodeConfig;
 import com.shutu.constant.RedisKeyConstant;
 import com.shutu.service.UserLocationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
-import java.util.Collections;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 用户位置服务实现类
  * 负责在 Redis 中维护 UserID 到 NodeID 的映射关系
+ * 1. 查询: 本节点在线用户直接判定为本机；其余走短 TTL 本地缓存 (含离线结果)，未命中合并为一次 MGET
+ * 2. 上下线: 写 Redis 后广播 im:location:changed，各节点更新本地缓存
+ * 3. 续期: 心跳不再单独 SET，由独立线程按批 Pipeline 续期本节点全部在线用户
+ *    (不使用 @Scheduled: 其单线程调度器会被归档等长任务阻塞，位置过期后跨节点投递静默中断)；
+ *    批量续期停滞超过两个周期时，心跳退回为逐个用户续期
  */
 @Slf4j
 @Service
@@ -26,11 +44,28 @@ public class UserLocationServiceImpl implements UserLocationService {
 
     private final StringRedisTemplate redisTemplate;
     private final NodeConfig nodeConfig;
+    private final ImLocationProperties locationProperties;
 
     private DefaultRedisScript<Long> removeScript;
 
-    // 位置信息过期时间 (秒)，略大于心跳间隔
-    private static final long LOCATION_EXPIRE = 60;
+    /**
+     * 离线占位，缓存 "查过但不在线" 的结果
+     */
+    private static final String OFFLINE = "";
+
+    /**
+     * 本节点在线的用户
+     */
+    private final Set<Long> localUids = ConcurrentHashMap.newKeySet();
+
+    private LoadingCache<Long, String> locationCache;
+
+    private ScheduledExecutorService renewScheduler;
+
+    /**
+     * 最近一次批量续期完成的时间，心跳据此判断是否需要兜底续期
+     */
+    private volatile long lastRenewMillis = System.currentTimeMillis();
 
     @PostConstruct
     public void init() {
@@ -38,16 +73,42 @@ public class UserLocationServiceImpl implements UserLocationService {
         removeScript.setResultType(Long.class);
         removeScript
                 .setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/remove_user_location.lua")));
+
+        locationCache = Caffeine.newBuilder()
+                .maximumSize(locationProperties.getCacheMaxSize())
+                .expireAfterWrite(locationProperties.getCacheTtl().toMillis(), TimeUnit.MILLISECONDS)
+                .build(new CacheLoader<Long, String>() {
+                    @Override
+                    public String load(Long uid) {
+                        return loadAll(Collections.singleton(uid)).get(uid);
+                    }
+
+                    @Override
+                    public Map<Long, String> loadAll(Set<? extends Long> uids) {
+                        return queryNodes(uids);
+                    }
+                });
+
+        long renewMillis = locationProperties.getRenewInterval().toMillis();
+        renewScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("im-location-renew-"));
+        renewScheduler.scheduleWithFixedDelay(this::renewLocalLocations, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        renewScheduler.shutdownNow();
     }
 
     /**
-     * 注册用户位置（上线/心跳）
+     * 注册用户位置（上线）
      */
     @Override
     public void register(Long uid) {
+        localUids.add(uid);
         String key = RedisKeyConstant.KEY_USER_LOCATION + uid;
         // 绑定当前节点 ID
-        redisTemplate.opsForValue().set(key, nodeConfig.getNodeId(), LOCATION_EXPIRE, TimeUnit.SECONDS);
+        redisTemplate.opsForValue().set(key, nodeConfig.getNodeId(), locationProperties.getTtl());
+        publishChange(uid + ":" + nodeConfig.getNodeId());
     }
 
     /**
@@ -55,11 +116,31 @@ public class UserLocationServiceImpl implements UserLocationService {
      */
     @Override
     public void remove(Long uid) {
+        localUids.remove(uid);
         String key = RedisKeyConstant.KEY_USER_LOCATION + uid;
         String currentNodeId = nodeConfig.getNodeId();
 
-        // 使用 Lua 脚本保证原子性
-        redisTemplate.execute(removeScript, Collections.singletonList(key), currentNodeId);
+        // 使用 Lua 脚本保证原子性，只有位置仍指向本节点时才删除并广播
+        Long removed = redisTemplate.execute(removeScript, Collections.singletonList(key), currentNodeId);
+        if (removed != null && removed > 0) {
+            publishChange(String.valueOf(uid));
+        }
+    }
+
+    /**
+     * 心跳兜底续期: 批量续期正常时不写 Redis；停滞超过两个周期 (线程异常或 Redis 抖动) 时单独续期该用户
+     */
+    @Override
+    public void touch(Long uid) {
+        if (System.currentTimeMillis() - lastRenewMillis <= locationProperties.getRenewInterval().toMillis() * 2) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(RedisKeyConstant.KEY_USER_LOCATION + uid, nodeConfig.getNodeId(),
+                    locationProperties.getTtl());
+        } catch (Exception e) {
+            log.warn("[用户位置] 心跳续期失败: uid={}", uid, e);
+        }
     }
 
     /**
@@ -67,8 +148,39 @@ public class UserLocationServiceImpl implements UserLocationService {
      */
     @Override
     public String getNode(Long uid) {
-        String key = RedisKeyConstant.KEY_USER_LOCATION + uid;
-        return redisTemplate.opsForValue().get(key);
+        if (localUids.contains(uid)) {
+            return nodeConfig.getNodeId();
+        }
+        String node = locationCache.get(uid);
+        return OFFLINE.equals(node) ? null : node;
+    }
+
+    /**
+     * 批量获取用户所在的节点 ID
+     * 本地缓存未命中的用户合并为一次 MGET
+     */
+    @Override
+    public Map<Long, String> getNodes(Collection<Long> uids) {
+        if (uids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, String> result = new HashMap<>(uids.size());
+        List<Long> remote = new ArrayList<>(uids.size());
+        for (Long uid : uids) {
+            if (localUids.contains(uid)) {
+                result.put(uid, nodeConfig.getNodeId());
+            } else {
+                remote.add(uid);
+            }
+        }
+        if (!remote.isEmpty()) {
+            locationCache.getAll(remote).forEach((uid, node) -> {
+                if (!OFFLINE.equals(node)) {
+                    result.put(uid, node);
+                }
+            });
+        }
+        return result;
     }
 
     /**
@@ -78,4 +190,103 @@ public class UserLocationServiceImpl implements UserLocationService {
     public boolean isLocal(String targetNodeId) {
         return nodeConfig.getNodeId().equals(targetNodeId);
     }
+
+    /**
+     * 其他节点广播的位置变更，更新本地缓存
+     */
+    @Override
+    public void onLocationChanged(Long uid, String nodeId) {
+        if (nodeId == null) {
+            locationCache.put(uid, OFFLINE);
+        } else {
+            locationCache.put(uid, nodeId);
+        }
+    }
+
+    /**
+     * 批量续期本节点在线用户的位置信息
+     * 每 renewBatchSize 个用户一次 Pipeline，用 SET EX 而非 EXPIRE，Redis 丢失数据后可自愈
+     */
+    public void renewLocalLocations() {
+        try {
+            doRenewLocalLocations();
+        } catch (Exception e) {
+            // 吞掉异常，避免 ScheduledExecutorService 取消后续周期
+            log.error("[用户位置] 批量续期异常", e);
+        }
+    }
+
+    private void doRenewLocalLocations() {
+        if (localUids.isEmpty()) {
+            lastRenewMillis = System.currentTimeMillis();
+            return;
+        }
+        byte[] node = nodeConfig.getNodeId().getBytes(StandardCharsets.UTF_8);
+        Expiration expiration = Expiration.from(locationProperties.getTtl());
+        List<Long> batch = new ArrayList<>(locationProperties.getRenewBatchSize());
+        int renewed = 0;
+        boolean failed = false;
+        for (Long uid : localUids) {
+            batch.add(uid);
+            if (batch.size() >= locationProperties.getRenewBatchSize()) {
+                int count = renewBatch(batch, node, expiration);
+                renewed += count;
+                failed |= count == 0;
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            int count = renewBatch(batch, node, expiration);
+            renewed += count;
+            failed |= count == 0;
+        }
+        if (!failed) {
+            lastRenewMillis = System.currentTimeMillis();
+        }
+        log.debug("[用户位置] 批量续期完成: node={}, count={}", nodeConfig.getNodeId(), renewed);
+    }
+
+    private int renewBatch(List<Long> uids, byte[] node, Expiration expiration) {
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long uid : uids) {
+                    connection.stringCommands().set(
+                            (RedisKeyConstant.KEY_USER_LOCATION + uid).getBytes(StandardCharsets.UTF_8),
+                            node, expiration, RedisStringCommands.SetOption.UPSERT);
+                }
+                return null;
+            });
+            return uids.size();
+        } catch (Exception e) {
+            log.error("[用户位置] 批量续期失败: size={}", uids.size(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * MGET 查询用户位置，离线用户以占位值返回，同样进入缓存
+     */
+    private Map<Long, String> queryNodes(Collection<? extends Long> uids) {
+        List<Long> uidList = new ArrayList<>(uids);
+        List<String> keys = new ArrayList<>(uidList.size());
+        for (Long uid : uidList) {
+            keys.add(RedisKeyConstant.KEY_USER_LOCATION + uid);
+        }
+        List<String> nodes = redisTemplate.opsForValue().multiGet(keys);
+        Map<Long, String> result = new HashMap<>(uidList.size());
+        for (int i = 0; i < uidList.size(); i++) {
+            String node = nodes != null ? nodes.get(i) : null;
+            result.put(uidList.get(i), node != null ? node : OFFLINE);
+        }
+        return result;
+    }
+
+    private void publishChange(String body) {
+        try {
+            redisTemplate.convertAndSend(RedisKeyConstant.TOPIC_LOCATION_CHANGED, body);
+        } catch (Exception e) {
+            // 广播失败时其他节点依赖本地缓存过期兜底
+            log.warn("[用户位置] 变更广播失败: body={}", body, e);
+        }
+    }
 }
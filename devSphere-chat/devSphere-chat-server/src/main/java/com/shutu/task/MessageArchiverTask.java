@@ -1,101 +1,529 @@
 package com.shutu.task;
 
-import cn.hutool.core.bean.BeanUtil;
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.date.DateUtil;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.shutu.model.entity.Message;
-import com.shutu.model.entity.MessageArchive;
-import com.shutu.service.MessageArchiveService;
-import com.shutu.service.MessageService;
+import com.shutu.config.ImArchiveProperties;
+import com.shutu.config.ImPartitionProperties;
+import com.shutu.config.NodeConfig;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.manager.MessagePartitionRouter;
+import com.shutu.mapper.MessageArchiveMapper;
+import com.shutu.mapper.MessageMapper;
+import com.shutu.mapper.MessagePartitionMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Date;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 消息归档任务
  * 职责：按天将旧消息搬运到归档表，保持主表轻量高效
+ * 1. Redis 锁保证集群内只有一个节点执行；定时方法只负责抢锁并把本轮提交到独立线程，立即返回，
+ *    避免长达数小时的归档阻塞 @Scheduled 的单线程调度器 (读回执刷盘、消息流裁剪等都依赖它)
+ * 2. 两张表都已按 id 范围分区时，以分区为单位搬运:
+ *    - 预建后续空分区
+ *    - 整个分区都早于截止时间时，经中转表两次 EXCHANGE PARTITION 移入归档表，再 DROP 主表分区，不逐行删除
+ *    - 每个分区 (及分区内的每个复制区间) 开始前检查截止时间并续期锁，超时或锁已丢失即停止，下次运行继续
+ *    - 归档表超过保留时长的分区直接 DROP
+ * 3. 未分区时逐区间搬运: 先取早于截止时间的最大 id，再把 [起点, 最大id] 切成固定跨度的区间，
+ *    多线程并行领取，每个区间一个事务 INSERT IGNORE ... SELECT 复制 + 按 id 区间 DELETE；
+ *    已连续完成的区间写入检查点，超时或异常退出后下次从检查点继续
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class MessageArchiverTask {
 
-    private final MessageService messageService;
-    private final MessageArchiveService messageArchiveService;
+    /**
+     * 分区交换用的中转表
+     */
+    private static final String EXCHANGE_TABLE = "dev_sphere_message_exchange";
+
+    private final MessageMapper messageMapper;
+    private final MessageArchiveMapper messageArchiveMapper;
+    private final MessagePartitionMapper partitionMapper;
+    private final MessagePartitionRouter partitionRouter;
+    private final ImPartitionProperties partitionProperties;
     private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final NodeConfig nodeConfig;
+    private final ImArchiveProperties archiveProperties;
 
-    // 归档阈值：3个月
-    private static final int ARCHIVE_MONTHS = 3;
-    // 单批搬运数量
-    private static final int BATCH_SIZE = 1000;
+    private DefaultRedisScript<Long> releaseLockScript;
+    private DefaultRedisScript<Long> renewLockScript;
 
     /**
-     * 定时任务：每天凌晨 3:00 执行
-     * 逻辑：扫描 -> 复制 -> 删除 (事务保证)
+     * 执行归档的独立线程，同一时间只有一轮
      */
-    @Scheduled(cron = "0 0 3 * * ?")
-    public void archiveOldMessages() {
-        log.info("[消息归档] 任务启动...");
-        Date thresholdDate = DateUtil.offsetMonth(new Date(), -ARCHIVE_MONTHS);
-        log.info("[消息归档] 归档截止时间: {}", DateUtil.formatDateTime(thresholdDate));
-
-        long totalArchived = 0;
-        while (true) {
-            // 1. 扫描待归档消息 (主表)
-            List<Message> oldMessages = messageService.list(new LambdaQueryWrapper<Message>()
-                    .lt(Message::getCreateTime, thresholdDate)
-                    .last("LIMIT " + BATCH_SIZE));
-
-            if (CollUtil.isEmpty(oldMessages)) {
-                log.info("[消息归档] 扫描完毕，无更多过期消息");
-                break;
-            }
+    private ExecutorService runner;
 
-            // 2. 转换为归档实体
-            List<MessageArchive> archiveList = oldMessages.stream()
-                    .map(msg -> {
-                        MessageArchive archive = new MessageArchive();
-                        BeanUtil.copyProperties(msg, archive);
-                        return archive;
-                    }).collect(Collectors.toList());
+    // 运行指标
+    private final LongAdder totalRows = new LongAdder();
+    private final LongAdder totalChunks = new LongAdder();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile long lastRunRows;
+    private volatile long lastRunMillis;
+    private volatile long lastRunRowsPerSecond;
+    private volatile long lagSeconds;
+
+    @PostConstruct
+    public void init() {
+        releaseLockScript = new DefaultRedisScript<>();
+        releaseLockScript.setResultType(Long.class);
+        releaseLockScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/release_lock.lua")));
+        renewLockScript = new DefaultRedisScript<>();
+        renewLockScript.setResultType(Long.class);
+        renewLockScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/renew_lock.lua")));
+        runner = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("im-archiver-runner-"));
+    }
 
-            // 3. 事务执行：搬运 + 清理
-            boolean success = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+    @PreDestroy
+    public void destroy() {
+        // 中断本轮，区间搬运在下一个区间前停止，锁在 finally 中释放
+        runner.shutdownNow();
+    }
+
+    /**
+     * 定时任务：默认每天凌晨 3:00 执行
+     * 抢到锁后提交到独立线程执行，调度线程立即返回
+     */
+    @Scheduled(cron = "#{@imArchiveProperties.cron}")
+    public void archiveOldMessages() {
+        if (running.get()) {
+            log.info("[消息归档] 上一轮仍在执行，跳过");
+            return;
+        }
+        String lockValue = nodeConfig.getNodeId();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(RedisKeyConstant.IM_ARCHIVE_LOCK_KEY, lockValue,
+                archiveProperties.getMaxDuration().plusMinutes(10));
+        if (!Boolean.TRUE.equals(locked)) {
+            log.info("[消息归档] 其他节点正在执行，跳过");
+            return;
+        }
+        running.set(true);
+        try {
+            runner.execute(() -> {
                 try {
-                    // 插入归档表
-                    messageArchiveService.saveBatch(archiveList);
-                    // 删除主表
-                    List<Long> ids = oldMessages.stream().map(Message::getId).collect(Collectors.toList());
-                    messageService.removeByIds(ids);
-                    return true;
+                    runArchive();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("[消息归档] 任务被中断");
                 } catch (Exception e) {
-                    log.error("[消息归档] 批次处理失败", e);
-                    status.setRollbackOnly();
-                    return false;
+                    log.error("[消息归档] 任务异常终止", e);
+                } finally {
+                    running.set(false);
+                    releaseLock(lockValue);
                 }
-            }));
+            });
+        } catch (RejectedExecutionException e) {
+            // 应用正在关闭
+            running.set(false);
+            releaseLock(lockValue);
+        }
+    }
+
+    private void releaseLock(String lockValue) {
+        try {
+            redisTemplate.execute(releaseLockScript,
+                    Collections.singletonList(RedisKeyConstant.IM_ARCHIVE_LOCK_KEY), lockValue);
+        } catch (Exception e) {
+            // 释放失败时锁按 TTL 过期
+            log.warn("[消息归档] 释放锁失败", e);
+        }
+    }
+
+    private void runArchive() throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        Date threshold = new Date(startTime - archiveProperties.getRetention().toMillis());
+        log.info("[消息归档] 任务启动，归档截止时间: {}", DateUtil.formatDateTime(threshold));
+
+        partitionRouter.refresh();
+        if (partitionRouter.isPartitioned(MessagePartitionRouter.MESSAGE_TABLE)
+                && partitionRouter.isPartitioned(MessagePartitionRouter.ARCHIVE_TABLE)) {
+            try {
+                runPartitionArchive(startTime, threshold);
+            } finally {
+                partitionRouter.refresh();
+            }
+            return;
+        }
+
+        // 1. 确定 id 区间: [主表最小id 或 检查点, 早于截止时间的最大id]
+        Long maxId = messageMapper.selectMaxIdBefore(threshold);
+        Long minId = messageMapper.selectMinId();
+        if (maxId == null || minId == null) {
+            log.info("[消息归档] 无过期消息");
+            finishRun(startTime, 0, threshold);
+            redisTemplate.delete(RedisKeyConstant.IM_ARCHIVE_CHECKPOINT_KEY);
+            return;
+        }
+        long startId = minId;
+        Object checkpoint = redisTemplate.opsForHash().get(RedisKeyConstant.IM_ARCHIVE_CHECKPOINT_KEY, "lastId");
+        if (checkpoint != null) {
+            startId = Math.max(startId, Long.parseLong(checkpoint.toString()) + 1);
+            log.info("[消息归档] 从检查点继续: lastId={}", checkpoint);
+        }
+        if (startId > maxId) {
+            finishRun(startTime, 0, threshold);
+            redisTemplate.delete(RedisKeyConstant.IM_ARCHIVE_CHECKPOINT_KEY);
+            return;
+        }
+
+        // 2. 多线程领取区间并搬运
+        int workers = Math.max(1, archiveProperties.getWorkers());
+        int chunkSize = Math.max(1, archiveProperties.getChunkSize());
+        long deadline = startTime + archiveProperties.getMaxDuration().toMillis();
+        AtomicLong nextId = new AtomicLong(startId);
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        LongAdder runRows = new LongAdder();
+        CheckpointTracker tracker = new CheckpointTracker(startId - 1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("im-archiver-"));
+        for (int i = 0; i < workers; i++) {
+            pool.execute(() -> {
+                while (!aborted.get() && System.currentTimeMillis() < deadline) {
+                    long fromId = nextId.getAndAdd(chunkSize);
+                    if (fromId > maxId) {
+                        return;
+                    }
+                    long toId = Math.min(fromId + chunkSize - 1, maxId);
+                    try {
+                        int rows = moveChunk(fromId, toId, threshold);
+                        runRows.add(rows);
+                        totalRows.add(rows);
+                        totalChunks.increment();
+                        Long watermark = tracker.complete(fromId, toId);
+                        if (watermark != null) {
+                            // 加锁并校验仍是最新值，避免较旧的检查点覆盖较新的
+                            synchronized (tracker) {
+                                if (watermark == tracker.getWatermark()) {
+                                    saveCheckpoint(watermark, threshold);
+                                }
+                            }
+                        }
+                    } catch (Exception e) {
+                        // 已完成的区间保留在检查点之前，下次运行重试失败的区间
+                        log.error("[消息归档] 区间处理失败，停止本轮: [{}, {}]", fromId, toId, e);
+                        aborted.set(true);
+                        return;
+                    }
+                    pause();
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(archiveProperties.getMaxDuration().toMillis() + 60_000, TimeUnit.MILLISECONDS)) {
+                aborted.set(true);
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            // 应用关闭: 通知搬运线程停止，已完成的区间保留在检查点中
+            aborted.set(true);
+            pool.shutdownNow();
+            throw e;
+        }
+
+        // 3. 全部完成则清除检查点，否则保留供下次继续
+        if (tracker.getWatermark() >= maxId) {
+            redisTemplate.delete(RedisKeyConstant.IM_ARCHIVE_CHECKPOINT_KEY);
+        } else {
+            log.warn("[消息归档] 本轮未完成 (超时或异常)，检查点: lastId={}, 目标: {}", tracker.getWatermark(), maxId);
+        }
+        finishRun(startTime, runRows.sum(), threshold);
+    }
+
+    /**
+     * 分区模式: 预建分区 -> 整分区移入归档表 -> 删除归档表过期分区
+     */
+    private void runPartitionArchive(long startTime, Date threshold) {
+        long deadline = startTime + archiveProperties.getMaxDuration().toMillis();
+        recoverExchangeTable();
+
+        Long currentMaxId = messageMapper.selectMaxId();
+        ensureAheadPartitions(MessagePartitionRouter.MESSAGE_TABLE, currentMaxId);
+        ensureAheadPartitions(MessagePartitionRouter.ARCHIVE_TABLE, currentMaxId);
+        partitionRouter.refresh();
+
+        long rows = 0;
+        Long maxIdBefore = messageMapper.selectMaxIdBefore(threshold);
+        if (maxIdBefore != null) {
+            for (MessagePartitionRouter.Partition partition : partitionRouter.getLayout(MessagePartitionRouter.MESSAGE_TABLE)) {
+                // 分区按 id 升序，遇到尚未整体过期的分区即停止
+                if (partition.isMaxValue() || partition.getUpper() - 1 > maxIdBefore || !continueRun(deadline)) {
+                    break;
+                }
+                if (partitionMapper.countSinceInPartition(MessagePartitionRouter.MESSAGE_TABLE,
+                        partition.getName(), threshold) > 0) {
+                    log.warn("[消息归档] 分区内仍有未过期消息，暂不归档: partition={}", partition.getName());
+                    break;
+                }
+                if (!archivePartition(partition, threshold, deadline)) {
+                    log.warn("[消息归档] 分区复制未完成 (超时或锁丢失)，下次继续: partition={}", partition.getName());
+                    break;
+                }
+                rows += partition.getRows();
+                totalRows.add(partition.getRows());
+                totalChunks.increment();
+            }
+        }
+
+        dropExpiredArchivePartitions();
+        finishRun(startTime, rows, threshold);
+    }
+
+    /**
+     * 将主表一个整体过期的分区移入归档表
+     * 归档表对应分区为空时两次交换只改元数据；否则 (分区化之前逐行归档过) 先在库内复制，再 DROP 主表分区
+     * 复制按区间进行，每个区间前检查截止时间并续期锁；中途停止时不删除主表分区，复制为 INSERT IGNORE，下次重跑无副作用
+     *
+     * @return false 表示因超时或锁丢失未完成
+     */
+    private boolean archivePartition(MessagePartitionRouter.Partition partition, Date threshold, long deadline) {
+        String archivePartition = findPartition(MessagePartitionRouter.ARCHIVE_TABLE, partition.getUpper());
+        if (archivePartition != null
+                && partitionMapper.selectAnyInPartition(MessagePartitionRouter.ARCHIVE_TABLE, archivePartition) == null) {
+            partitionMapper.dropTable(EXCHANGE_TABLE);
+            partitionMapper.createExchangeTable(MessagePartitionRouter.MESSAGE_TABLE, EXCHANGE_TABLE);
+            partitionMapper.removePartitioning(EXCHANGE_TABLE);
+            // 主表分区 -> 中转表 -> 归档表分区 (归档表的空分区换回中转表)
+            partitionMapper.exchangePartition(MessagePartitionRouter.MESSAGE_TABLE, partition.getName(), EXCHANGE_TABLE);
+            partitionMapper.exchangePartition(MessagePartitionRouter.ARCHIVE_TABLE, archivePartition, EXCHANGE_TABLE);
+            partitionMapper.dropPartition(MessagePartitionRouter.MESSAGE_TABLE, partition.getName());
+            partitionMapper.dropTable(EXCHANGE_TABLE);
+            log.info("[消息归档] 分区交换完成: partition={}, 估算行数={}", partition.getName(), partition.getRows());
+            return true;
+        }
+
+        // 已删除分区的范围并入当前分区，从主表实际最小 id 开始复制
+        Long minId = messageMapper.selectMinId();
+        long startId = Math.max(partition.getLower(), minId == null ? 0 : minId);
+        long chunkSize = Math.max(1, archiveProperties.getChunkSize());
+        for (long fromId = startId; fromId < partition.getUpper(); fromId += chunkSize) {
+            if (!continueRun(deadline)) {
+                return false;
+            }
+            messageArchiveMapper.copyFromMessage(fromId, Math.min(fromId + chunkSize, partition.getUpper()) - 1, threshold);
+            pause();
+        }
+        if (!continueRun(deadline)) {
+            return false;
+        }
+        partitionMapper.dropPartition(MessagePartitionRouter.MESSAGE_TABLE, partition.getName());
+        log.info("[消息归档] 分区复制后删除: partition={}, 估算行数={}", partition.getName(), partition.getRows());
+        return true;
+    }
 
-            if (success) {
-                totalArchived += oldMessages.size();
-                log.info("[消息归档] 已成功迁移 {} 条消息...", totalArchived);
-            } else {
-                log.error("[消息归档] 事务回滚，任务异常终止");
+    /**
+     * 是否继续下一步: 未超过截止时间、未被中断，且锁仍由本节点持有 (同时续期到截止时间之后 10 分钟)
+     * 锁已过期或被其他节点持有时停止，避免两个节点同时交换 / 删除分区
+     */
+    private boolean continueRun(long deadline) {
+        long now = System.currentTimeMillis();
+        if (now >= deadline || Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+        long ttlMillis = deadline - now + TimeUnit.MINUTES.toMillis(10);
+        try {
+            Long renewed = redisTemplate.execute(renewLockScript,
+                    Collections.singletonList(RedisKeyConstant.IM_ARCHIVE_LOCK_KEY),
+                    nodeConfig.getNodeId(), String.valueOf(ttlMillis));
+            if (renewed == null || renewed == 0) {
+                log.error("[消息归档] 锁已丢失，停止本轮");
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("[消息归档] 续期锁失败，停止本轮", e);
+            return false;
+        }
+    }
+
+    /**
+     * 上次交换中途失败时，数据可能停留在中转表，先补回归档表
+     */
+    private void recoverExchangeTable() {
+        if (partitionMapper.selectTableExists(EXCHANGE_TABLE) == null) {
+            return;
+        }
+        int recovered = messageArchiveMapper.copyFromTable(EXCHANGE_TABLE);
+        partitionMapper.dropTable(EXCHANGE_TABLE);
+        log.warn("[消息归档] 发现遗留中转表，已补回归档表: rows={}", recovered);
+    }
+
+    /**
+     * 保证当前写入位置之后至少有 aheadPartitions 个空分区
+     * 从 MAXVALUE 分区拆出新分区；MAXVALUE 分区为空时只改元数据
+     */
+    private void ensureAheadPartitions(String table, Long currentMaxId) {
+        List<MessagePartitionRouter.Partition> layout = partitionRouter.getLayout(table);
+        if (layout.isEmpty() || !layout.get(layout.size() - 1).isMaxValue()) {
+            log.warn("[消息归档] 表缺少 MAXVALUE 分区，跳过预建: table={}", table);
+            return;
+        }
+        long span = partitionProperties.getSpan();
+        long current = currentMaxId == null ? 0 : currentMaxId;
+        long highest = layout.size() > 1 ? layout.get(layout.size() - 2).getUpper() : 0;
+        int ahead = 0;
+        for (MessagePartitionRouter.Partition partition : layout) {
+            if (!partition.isMaxValue() && partition.getLower() > current) {
+                ahead++;
+            }
+        }
+        if (highest <= current) {
+            log.warn("[消息归档] 消息已写入 MAXVALUE 分区，拆分需要搬运数据: table={}", table);
+        }
+        while (ahead < partitionProperties.getAheadPartitions()) {
+            long lessThan = (Math.max(highest, current) / span + 1) * span;
+            partitionMapper.splitMaxPartition(table, MessagePartitionRouter.MAX_PARTITION,
+                    MessagePartitionRouter.partitionName(lessThan), lessThan);
+            log.info("[消息归档] 新建分区: table={}, partition={}", table, MessagePartitionRouter.partitionName(lessThan));
+            // 下界不超过当前写入位置的分区是正在写入的分区，不计入预建数量
+            if (highest > current) {
+                ahead++;
+            }
+            highest = lessThan;
+        }
+    }
+
+    /**
+     * 删除归档表中整体超过保留时长的分区
+     */
+    private void dropExpiredArchivePartitions() {
+        if (partitionProperties.getArchiveRetention().isZero()) {
+            return;
+        }
+        Date expireBefore = new Date(System.currentTimeMillis() - partitionProperties.getArchiveRetention().toMillis());
+        for (MessagePartitionRouter.Partition partition : partitionRouter.getLayout(MessagePartitionRouter.ARCHIVE_TABLE)) {
+            if (partition.isMaxValue()) {
                 break;
             }
+            Date newest = partitionMapper.selectMaxCreateTimeInPartition(MessagePartitionRouter.ARCHIVE_TABLE,
+                    partition.getName());
+            if (newest == null) {
+                continue;
+            }
+            if (!newest.before(expireBefore)) {
+                break;
+            }
+            partitionMapper.dropPartition(MessagePartitionRouter.ARCHIVE_TABLE, partition.getName());
+            log.info("[消息归档] 删除过期归档分区: partition={}, 最新消息时间={}",
+                    partition.getName(), DateUtil.formatDateTime(newest));
+        }
+    }
 
-            // 避免长时间占用 CPU 和 IO，每批次稍作休眠
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException ignored) {
+    private String findPartition(String table, long upper) {
+        for (MessagePartitionRouter.Partition partition : partitionRouter.getLayout(table)) {
+            if (partition.getUpper() == upper) {
+                return partition.getName();
             }
         }
-        log.info("[消息归档] 任务结束，本次共归档: {} 条", totalArchived);
+        return null;
+    }
+
+    /**
+     * 单个区间: 复制到归档表 + 删除主表，同一事务
+     */
+    private int moveChunk(long fromId, long toId, Date threshold) {
+        Integer moved = transactionTemplate.execute(status -> {
+            messageArchiveMapper.copyFromMessage(fromId, toId, threshold);
+            return messageMapper.deleteArchived(fromId, toId, threshold);
+        });
+        return moved == null ? 0 : moved;
+    }
+
+    private void saveCheckpoint(long lastId, Date threshold) {
+        Map<String, String> checkpoint = new HashMap<>();
+        checkpoint.put("lastId", String.valueOf(lastId));
+        checkpoint.put("threshold", String.valueOf(threshold.getTime()));
+        checkpoint.put("updateTime", String.valueOf(System.currentTimeMillis()));
+        try {
+            redisTemplate.opsForHash().putAll(RedisKeyConstant.IM_ARCHIVE_CHECKPOINT_KEY, checkpoint);
+        } catch (Exception e) {
+            // 检查点丢失只会导致下次从主表最小id重新扫描，不影响正确性
+            log.warn("[消息归档] 检查点保存失败: lastId={}", lastId, e);
+        }
+    }
+
+    private void finishRun(long startTime, long rows, Date threshold) {
+        lastRunRows = rows;
+        lastRunMillis = System.currentTimeMillis() - startTime;
+        lastRunRowsPerSecond = lastRunMillis > 0 ? rows * 1000 / lastRunMillis : rows;
+        // 滞后: 主表中最早的消息比截止时间早多久 (0 表示已追平)
+        Date oldest = messageMapper.selectMinCreateTime();
+        lagSeconds = oldest == null ? 0 : Math.max(0, (threshold.getTime() - oldest.getTime()) / 1000);
+        log.info("[消息归档] 任务结束，本次共归档: {} 条，耗时 {} ms，{} 条/秒，滞后 {} 秒",
+                rows, lastRunMillis, lastRunRowsPerSecond, lagSeconds);
+    }
+
+    private void pause() {
+        long pauseMillis = archiveProperties.getChunkPause().toMillis();
+        if (pauseMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 归档指标，用于监控
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("running", running.get() ? 1L : 0L);
+        stats.put("totalRows", totalRows.sum());
+        stats.put("totalChunks", totalChunks.sum());
+        stats.put("lastRunRows", lastRunRows);
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("lastRunRowsPerSecond", lastRunRowsPerSecond);
+        stats.put("lagSeconds", lagSeconds);
+        return stats;
+    }
+
+    /**
+     * 检查点推进: 区间乱序完成，只有从起点开始连续完成的部分才能写入检查点
+     */
+    private static class CheckpointTracker {
+        private long watermark;
+        private final TreeMap<Long, Long> completed = new TreeMap<>();
+
+        private CheckpointTracker(long watermark) {
+            this.watermark = watermark;
+        }
+
+        /**
+         * @return 推进后的检查点，未推进时返回 null
+         */
+        private synchronized Long complete(long fromId, long toId) {
+            completed.put(fromId, toId);
+            long before = watermark;
+            while (!completed.isEmpty() && completed.firstKey() == watermark + 1) {
+                watermark = completed.pollFirstEntry().getValue();
+            }
+            return watermark != before ? watermark : null;
+        }
+
+        private synchronized long getWatermark() {
+            return watermark;
+        }
     }
 }
@@ -1,81 +1,273 @@
 package com.shutu.task;
 
 import com.shutu.common.listener.MessageStreamListener;
+import com.shutu.config.ImStreamProperties;
 import com.shutu.config.NodeConfig;
 import com.shutu.config.RedisStreamConfig;
+import com.shutu.constant.RedisKeyConstant;
+import com.shutu.manager.MessageStreamPartitioner;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.domain.Range;
 import org.springframework.data.redis.connection.stream.*;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Component;
-import java.time.Duration;
-import java.util.List;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Redis Stream 消息补偿任务
- * 负责处理 Pending List 中超时未 ACK 的消息（实现重试机制）
+ * 负责处理 Pending List 中超时未 ACK 的消息（实现重试机制），不限于本节点的消费者
+ * 1. 消费者心跳: 每个节点定时把自己的消费者名写入 im:stream:consumers，超时未心跳的消费者视为宕机
+ * 2. 宕机消费者: XINFO CONSUMERS 找出其未 ACK 消息，按较短的闲置阈值 XCLAIM 到本节点，
+ *    没有未 ACK 消息且闲置足够久的宕机消费者从消费者组删除
+ * 3. 其余超时消息: XAUTOCLAIM 按游标扫描整个消费者组，认领闲置超过阈值的消息
+ * 4. 认领到的记录整批交给 MessageStreamListener.onBatch 按重投递处理 (幂等检查回查数据库，失败降级逐条并计入死信)
+ * 多个节点同时执行时，XCLAIM / XAUTOCLAIM 会重置闲置时间，同一条消息不会被重复认领
+ * 心跳与补偿在独立线程中执行，不占用 @Scheduled 的单线程调度器
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class MessageRetryTask {
 
+    private static final String CURSOR_START = "0-0";
+
     private final StringRedisTemplate redisTemplate;
     private final MessageStreamListener messageStreamListener; // 复用消息处理逻辑
     private final NodeConfig nodeConfig; // 注入配置类以获取动态消费者名
+    private final MessageStreamPartitioner partitioner;
+    private final ImStreamProperties streamProperties;
+
+    private DefaultRedisScript<List> autoClaimScript;
+    private ScheduledExecutorService scheduler;
+
+    // 运行指标
+    private final LongAdder totalClaimed = new LongAdder();
+    private final LongAdder deadConsumerClaimed = new LongAdder();
+    private final LongAdder removedConsumers = new LongAdder();
+    private volatile long lastRoundClaimed;
+    private volatile long lastRoundMillis;
+
+    @PostConstruct
+    public void init() {
+        autoClaimScript = new DefaultRedisScript<>();
+        autoClaimScript.setResultType(List.class);
+        autoClaimScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/stream_autoclaim.lua")));
+
+        scheduler = Executors.newScheduledThreadPool(2, new CustomizableThreadFactory("im-stream-recovery-"));
+        long heartbeatMillis = Math.max(1000, streamProperties.getConsumerTtl().toMillis() / 3);
+        long recoveryMillis = streamProperties.getRecoveryInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::retryPendingMessages, recoveryMillis, recoveryMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+        try {
+            // 正常下线时移除心跳，其他节点无需等待超时即可接管
+            redisTemplate.opsForZSet().remove(RedisKeyConstant.IM_STREAM_CONSUMERS_KEY, nodeConfig.getConsumerName());
+        } catch (Exception e) {
+            log.warn("[消息补偿] 移除消费者心跳失败", e);
+        }
+    }
 
     /**
-     * 每 30 秒执行一次，检查处理超时的消息
+     * 消费者心跳，并清理长时间未心跳的记录
      */
-    @Scheduled(fixedRate = 30000)
-    public void retryPendingMessages() {
+    private void heartbeat() {
         try {
-            // 1. 查询 Pending List 中，已读取超过 60 秒还没 ACK 的消息
-            // 命令等同于: XPENDING im:message:stream im-group - + 10
-            PendingMessages pendingMessages = redisTemplate.opsForStream().pending(
-                    RedisStreamConfig.IM_STREAM_KEY,
-                    Consumer.from(RedisStreamConfig.IM_GROUP, nodeConfig.getConsumerName()),
-                    Range.unbounded(),
-                    10L // 每次只取 10 条，防止积压过多
-            );
-
-            if (pendingMessages.isEmpty()) {
-                return;
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().add(RedisKeyConstant.IM_STREAM_CONSUMERS_KEY, nodeConfig.getConsumerName(), now);
+            redisTemplate.opsForZSet().removeRangeByScore(RedisKeyConstant.IM_STREAM_CONSUMERS_KEY,
+                    0, now - streamProperties.getConsumerTtl().toMillis() * 10);
+        } catch (Exception e) {
+            log.error("[消息补偿] 消费者心跳失败", e);
+        }
+    }
+
+    /**
+     * 检查各分区 (以及迁移中的旧消息流) 的超时消息
+     */
+    public void retryPendingMessages() {
+        long start = System.currentTimeMillis();
+        long claimed = 0;
+        Set<String> aliveConsumers = aliveConsumers();
+        for (String streamKey : partitioner.streamKeys()) {
+            try {
+                claimed += recoverDeadConsumers(streamKey, aliveConsumers);
+                claimed += autoClaim(streamKey);
+            } catch (Exception e) {
+                log.error("重试任务执行异常: stream={}", streamKey, e);
             }
+        }
+        lastRoundClaimed = claimed;
+        lastRoundMillis = System.currentTimeMillis() - start;
+        if (claimed > 0) {
+            log.info("[消息补偿] 本轮认领并重新处理: count={}, cost={}ms", claimed, lastRoundMillis);
+        }
+    }
 
-            for (PendingMessage pendingMessage : pendingMessages) {
-                // 如果消息空闲时间（IdleTime）小于 60秒，说明还在正常处理中，跳过
-                if (pendingMessage.getElapsedTimeSinceLastDelivery().getSeconds() < 60) {
-                    continue;
+    /**
+     * 认领宕机消费者的未 ACK 消息，并删除已无未 ACK 消息的宕机消费者
+     *
+     * @return 认领条数
+     */
+    private long recoverDeadConsumers(String streamKey, Set<String> aliveConsumers) {
+        // 心跳列表为空通常是 Redis 数据丢失，此时无法判断存活，交给 XAUTOCLAIM 按正常阈值处理
+        if (aliveConsumers.isEmpty()) {
+            return 0;
+        }
+        long claimed = 0;
+        StreamInfo.XInfoConsumers consumers = redisTemplate.opsForStream()
+                .consumers(streamKey, RedisStreamConfig.IM_GROUP);
+        for (int i = 0; i < consumers.size(); i++) {
+            StreamInfo.XInfoConsumer consumer = consumers.get(i);
+            String name = consumer.consumerName();
+            if (aliveConsumers.contains(name) || name.equals(nodeConfig.getConsumerName())) {
+                continue;
+            }
+            if (consumer.pendingCount() == 0) {
+                if (consumer.idleTimeMs() >= streamProperties.getDeadConsumerRemoveIdle().toMillis()) {
+                    redisTemplate.opsForStream().deleteConsumer(streamKey,
+                            Consumer.from(RedisStreamConfig.IM_GROUP, name));
+                    removedConsumers.increment();
+                    log.info("[消息补偿] 删除已下线的消费者: stream={}, consumer={}", streamKey, name);
                 }
+                continue;
+            }
+            long count = claimFromDeadConsumer(streamKey, name, streamProperties.getRecoveryMaxPerRound() - claimed);
+            if (count > 0) {
+                log.warn("[消息补偿] 接管已下线消费者的未确认消息: stream={}, consumer={}, count={}", streamKey, name, count);
+            }
+            claimed += count;
+            deadConsumerClaimed.add(count);
+            if (claimed >= streamProperties.getRecoveryMaxPerRound()) {
+                break;
+            }
+        }
+        return claimed;
+    }
 
-                String recordId = pendingMessage.getIdAsString();
-                log.info("发现超时未确认消息，准备重试: id={}, deliveryCount={}",
-                        recordId, pendingMessage.getTotalDeliveryCount());
-
-                // 2. 获取消息详情（XCLAIM 或者 XRANGE）
-                // 这里使用 XCLAIM 改变归属（即使是自己抢自己，也能起到重新读取的作用并重置 IdleTime）
-                List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().claim(
-                        RedisStreamConfig.IM_STREAM_KEY,
-                        RedisStreamConfig.IM_GROUP,
-                        nodeConfig.getConsumerName(), // 重新归属给自己
-                        Duration.ofSeconds(60), // 只有闲置超过60秒的才抢
-                        RecordId.of(recordId));
-
-                if (records != null && !records.isEmpty()) {
-                    // 3. 再次调用监听器的逻辑进行处理
-                    // 需要双重强转来绕过泛型检查：MapRecord<String,Object,Object> -> Object ->
-                    // MapRecord<String,String,String>
-                    @SuppressWarnings("unchecked")
-                    MapRecord<String, String, String> record = (MapRecord<String, String, String>) (Object) records
-                            .get(0);
-                    messageStreamListener.onMessage(record);
-                }
+    private long claimFromDeadConsumer(String streamKey, String deadConsumer, long budget) {
+        long claimed = 0;
+        while (claimed < budget) {
+            PendingMessages pending = redisTemplate.opsForStream().pending(streamKey,
+                    Consumer.from(RedisStreamConfig.IM_GROUP, deadConsumer), Range.unbounded(),
+                    Math.min(streamProperties.getRecoveryBatchSize(), budget - claimed));
+            if (pending.isEmpty()) {
+                break;
+            }
+            RecordId[] ids = new RecordId[pending.size()];
+            for (int i = 0; i < pending.size(); i++) {
+                ids[i] = pending.get(i).getId();
+            }
+            List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().claim(streamKey,
+                    RedisStreamConfig.IM_GROUP, nodeConfig.getConsumerName(),
+                    streamProperties.getDeadConsumerMinIdle(), ids);
+            if (records == null || records.isEmpty()) {
+                // 均未达到闲置阈值 (可能仍在处理)，下一轮再试
+                break;
+            }
+            // StringRedisTemplate 的 Hash 序列化器为 String，这里做一次泛型转换
+            @SuppressWarnings("unchecked")
+            List<MapRecord<String, String, String>> batch = (List<MapRecord<String, String, String>>) (Object) records;
+            messageStreamListener.onBatch(batch, true);
+            claimed += batch.size();
+            totalClaimed.add(batch.size());
+        }
+        return claimed;
+    }
+
+    /**
+     * XAUTOCLAIM 从头扫描消费者组的 Pending List，每次认领一批闲置超时的消息并整批重新处理
+     *
+     * @return 认领条数
+     */
+    @SuppressWarnings("unchecked")
+    private long autoClaim(String streamKey) {
+        long claimed = 0;
+        String cursor = CURSOR_START;
+        String minIdle = String.valueOf(streamProperties.getRecoveryMinIdle().toMillis());
+        do {
+            int count = (int) Math.min(streamProperties.getRecoveryBatchSize(),
+                    streamProperties.getRecoveryMaxPerRound() - claimed);
+            if (count <= 0) {
+                break;
+            }
+            List<Object> result = redisTemplate.execute(autoClaimScript, Collections.singletonList(streamKey),
+                    RedisStreamConfig.IM_GROUP, nodeConfig.getConsumerName(), minIdle, cursor, String.valueOf(count));
+            if (result == null || result.size() < 2) {
+                break;
+            }
+            cursor = String.valueOf(result.get(0));
+            List<MapRecord<String, String, String>> batch = toRecords(streamKey, (List<Object>) result.get(1));
+            if (!batch.isEmpty()) {
+                messageStreamListener.onBatch(batch, true);
+                claimed += batch.size();
+                totalClaimed.add(batch.size());
             }
+        } while (!CURSOR_START.equals(cursor));
+        return claimed;
+    }
+
+    /**
+     * 解析 XAUTOCLAIM 返回的记录，已被裁剪的记录 (无内容) 跳过
+     */
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, String, String>> toRecords(String streamKey, List<Object> entries) {
+        List<MapRecord<String, String, String>> records = new ArrayList<>(entries.size());
+        for (Object entry : entries) {
+            if (!(entry instanceof List) || ((List<Object>) entry).size() < 2
+                    || !(((List<Object>) entry).get(1) instanceof List)) {
+                continue;
+            }
+            List<Object> idAndFields = (List<Object>) entry;
+            List<Object> fields = (List<Object>) idAndFields.get(1);
+            Map<String, String> value = new LinkedHashMap<>(fields.size());
+            for (int i = 0; i + 1 < fields.size(); i += 2) {
+                value.put(String.valueOf(fields.get(i)), String.valueOf(fields.get(i + 1)));
+            }
+            records.add(StreamRecords.newRecord()
+                    .in(streamKey)
+                    .withId(RecordId.of(String.valueOf(idAndFields.get(0))))
+                    .ofMap(value));
+        }
+        return records;
+    }
+
+    private Set<String> aliveConsumers() {
+        try {
+            Set<String> alive = redisTemplate.opsForZSet().rangeByScore(RedisKeyConstant.IM_STREAM_CONSUMERS_KEY,
+                    System.currentTimeMillis() - streamProperties.getConsumerTtl().toMillis(), Double.MAX_VALUE);
+            return alive == null ? Collections.emptySet() : alive;
         } catch (Exception e) {
-            log.error("重试任务执行异常", e);
+            log.error("[消息补偿] 查询消费者心跳失败", e);
+            return Collections.emptySet();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 补偿指标，用于监控
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("totalClaimed", totalClaimed.sum());
+        stats.put("deadConsumerClaimed", deadConsumerClaimed.sum());
+        stats.put("removedConsumers", removedConsumers.sum());
+        stats.put("lastRoundClaimed", lastRoundClaimed);
+        stats.put("lastRoundMillis", lastRoundMillis);
+        return stats;
+    }
+}
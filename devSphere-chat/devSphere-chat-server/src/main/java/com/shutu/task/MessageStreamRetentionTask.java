@@ -0,0 +1,199 @@
+package com.shutu.task;
+
+import com.shutu.config.ImStreamProperties;
+import com.shutu.config.RedisStreamConfig;
+import com.shutu.manager.MessageStreamPartitioner;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息流裁剪任务
+ * 消息落库并 ACK 后仍留在 Stream 中，不裁剪时 Redis 内存随消息总量线性增长
+ * 1. XINFO GROUPS 取每个消费者组的 last-delivered-id，有未 ACK 消息时取 XPENDING 汇总中的最小 ID，
+ *    所有组中最小者即安全点，安全点之前的记录已被所有组确认
+ * 2. 安全点再与最短保留时长取较小值，XTRIM MINID ~ 近似裁剪 (按整个节点回收，开销低)
+ * 3. 长度仍超过上限时按 MAXLEN ~ 裁剪作为安全阀，并告警
+ * 4. 覆盖各分区、旧消息流与死信流；裁剪是幂等的，各节点独立执行，无需加锁
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageStreamRetentionTask {
+
+    private final StringRedisTemplate redisTemplate;
+    private final MessageStreamPartitioner partitioner;
+    private final ImStreamProperties streamProperties;
+
+    private DefaultRedisScript<List> trimScript;
+
+    // 运行指标
+    private final LongAdder totalTrimmed = new LongAdder();
+    private final LongAdder totalCapped = new LongAdder();
+    private final Map<String, StreamState> states = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        trimScript = new DefaultRedisScript<>();
+        trimScript.setResultType(List.class);
+        trimScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/stream_trim.lua")));
+    }
+
+    @Scheduled(fixedDelayString = "#{@imStreamProperties.retentionInterval.toMillis()}")
+    public void trim() {
+        if (!streamProperties.isRetentionEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Set<String> streamKeys = new LinkedHashSet<>(partitioner.streamKeys());
+        // 关闭旧流消费后旧流仍需裁剪，直到为空
+        streamKeys.add(RedisStreamConfig.IM_STREAM_KEY);
+        for (String streamKey : streamKeys) {
+            trim(streamKey, now - streamProperties.getRetentionMinAge().toMillis(), streamProperties.getMaxLen());
+        }
+        trim(RedisStreamConfig.DLQ_STREAM_KEY, now - streamProperties.getDlqRetention().toMillis(),
+                streamProperties.getDlqMaxLen());
+    }
+
+    private void trim(String streamKey, long retainAfterMillis, long maxLen) {
+        try {
+            RecordId[] oldestPending = new RecordId[1];
+            long[] pendingCount = new long[1];
+            RecordId safePoint = safePoint(streamKey, oldestPending, pendingCount);
+            RecordId retainPoint = RecordId.of(retainAfterMillis, 0);
+            // 没有消费者组时无法判断是否已消费，只按长度上限裁剪
+            String minId = safePoint == null ? "" : min(safePoint, retainPoint).getValue();
+
+            List<?> result = redisTemplate.execute(trimScript, Collections.singletonList(streamKey),
+                    minId, String.valueOf(maxLen));
+            if (result == null || result.size() < 4) {
+                return;
+            }
+            long trimmed = toLong(result.get(0));
+            long capped = toLong(result.get(1));
+            long length = toLong(result.get(2));
+            long memoryBytes = toLong(result.get(3));
+            totalTrimmed.add(trimmed);
+            totalCapped.add(capped);
+            if (capped > 0) {
+                log.warn("[消息流裁剪] 长度超过上限，已裁剪未确认的记录: stream={}, capped={}, maxLen={}, safePoint={}",
+                        streamKey, capped, maxLen, safePoint);
+            } else if (trimmed > 0) {
+                log.debug("[消息流裁剪] stream={}, trimmed={}, length={}, minId={}", streamKey, trimmed, length, minId);
+            }
+
+            StreamState state = states.computeIfAbsent(streamKey, k -> new StreamState());
+            state.length = length;
+            state.pending = pendingCount[0];
+            state.memoryBytes = memoryBytes < 0 ? null : memoryBytes;
+            // 最早未确认记录的等待时长，持续增大说明某个消费者组停滞，裁剪也随之停滞
+            state.pendingLagMillis = oldestPending[0] == null
+                    ? 0 : Math.max(0, System.currentTimeMillis() - oldestPending[0].getTimestamp());
+        } catch (Exception e) {
+            log.error("[消息流裁剪] 裁剪失败: stream={}", streamKey, e);
+        }
+    }
+
+    /**
+     * 所有消费者组都已确认的位置: 每组取最小未 ACK ID，没有未 ACK 时取 last-delivered-id，再取各组最小值
+     *
+     * @param oldestPending 输出: 各组中最早的未 ACK ID，没有时为 null
+     * @param pendingCount  输出: 各组未 ACK 消息数之和
+     * @return 没有消费者组时为 null
+     */
+    private RecordId safePoint(String streamKey, RecordId[] oldestPending, long[] pendingCount) {
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(streamKey))) {
+            return null;
+        }
+        StreamInfo.XInfoGroups groups = redisTemplate.opsForStream().groups(streamKey);
+        RecordId safePoint = null;
+        for (int i = 0; i < groups.size(); i++) {
+            StreamInfo.XInfoGroup group = groups.get(i);
+            RecordId groupPoint = RecordId.of(group.lastDeliveredId());
+            pendingCount[0] += group.pendingCount();
+            if (group.pendingCount() > 0) {
+                PendingMessagesSummary summary = redisTemplate.opsForStream().pending(streamKey, group.groupName());
+                if (summary != null && summary.minMessageId() != null) {
+                    RecordId minPending = RecordId.of(summary.minMessageId());
+                    groupPoint = min(groupPoint, minPending);
+                    oldestPending[0] = oldestPending[0] == null ? minPending : min(oldestPending[0], minPending);
+                }
+            }
+            safePoint = safePoint == null ? groupPoint : min(safePoint, groupPoint);
+        }
+        return safePoint;
+    }
+
+    private static RecordId min(RecordId a, RecordId b) {
+        if (a.getTimestamp() != b.getTimestamp()) {
+            return a.getTimestamp() < b.getTimestamp() ? a : b;
+        }
+        return a.getSequence() <= b.getSequence() ? a : b;
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    /**
+     * 最近一次检查时的消息流长度，尚未检查过时为 0
+     */
+    public long getLength(String streamKey) {
+        StreamState state = states.get(streamKey);
+        return state == null ? 0 : state.length;
+    }
+
+    /**
+     * 最近一次检查时各消费者组的未 ACK 消息数之和
+     */
+    public long getPending(String streamKey) {
+        StreamState state = states.get(streamKey);
+        return state == null ? 0 : state.pending;
+    }
+
+    /**
+     * 最近一次检查时的内存占用 (字节)，不可用时为 0
+     */
+    public long getMemoryBytes(String streamKey) {
+        StreamState state = states.get(streamKey);
+        return state == null || state.memoryBytes == null ? 0 : state.memoryBytes;
+    }
+
+    /**
+     * 裁剪指标，用于监控 (各消息流的长度、内存占用与最早未确认记录的等待时长)
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("totalTrimmed", totalTrimmed.sum());
+        stats.put("totalCapped", totalCapped.sum());
+        new TreeMap<>(states).forEach((streamKey, state) -> {
+            stats.put(streamKey + ".length", state.length);
+            stats.put(streamKey + ".pending", state.pending);
+            if (state.memoryBytes != null) {
+                stats.put(streamKey + ".memoryBytes", state.memoryBytes);
+            }
+            stats.put(streamKey + ".pendingLagMillis", state.pendingLagMillis);
+        });
+        return stats;
+    }
+
+    private static class StreamState {
+        private volatile long length;
+        private volatile long pending;
+        private volatile Long memoryBytes;
+        private volatile long pendingLagMillis;
+    }
+}
@@ -0,0 +1,147 @@
+package com.shutu.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 按时间窗口滚动的布隆过滤器 (线程安全)
+ * 维护当前与上一窗口两代位图，查询时两代任一命中即视为可能存在；
+ * 每过一个窗口丢弃上一代，因此元素至少保留一个窗口、至多两个窗口
+ * (空闲超过两个窗口后再访问，两代一起丢弃)
+ */
+public class WindowedBloomFilter {
+
+    private final int bitSize;
+    private final int hashCount;
+    private final long windowMillis;
+    private final LongSupplier clock;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * @param expectedInsertions 单个窗口内预期写入的元素数
+     * @param fpp                期望误判率 (0, 1)
+     * @param windowMillis       窗口长度 (毫秒)
+     */
+    public WindowedBloomFilter(long expectedInsertions, double fpp, long windowMillis) {
+        this(expectedInsertions, fpp, windowMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock 当前时间 (毫秒)，测试时可替换
+     */
+    WindowedBloomFilter(long expectedInsertions, double fpp, long windowMillis, LongSupplier clock) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1 || windowMillis <= 0) {
+            throw new IllegalArgumentException("布隆过滤器参数非法");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.bitSize = (int) Math.min(Math.max(bits, 64), Integer.MAX_VALUE - 63);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+        this.current = new Generation(bitSize, clock.getAsLong());
+        this.previous = new Generation(bitSize, 0);
+    }
+
+    /**
+     * 写入元素
+     */
+    public void put(String value) {
+        long hash = hash64(value);
+        Generation gen = rotateIfNeeded();
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            gen.set(index(h1 + i * h2));
+        }
+    }
+
+    /**
+     * 是否可能存在 (false 表示两个窗口内一定没有写入过)
+     */
+    public boolean mightContain(String value) {
+        long hash = hash64(value);
+        Generation cur = rotateIfNeeded();
+        Generation prev = previous;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return contains(cur, h1, h2) || contains(prev, h1, h2);
+    }
+
+    private boolean contains(Generation gen, int h1, int h2) {
+        for (int i = 1; i <= hashCount; i++) {
+            if (!gen.get(index(h1 + i * h2))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(int combined) {
+        return (combined & Integer.MAX_VALUE) % bitSize;
+    }
+
+    private Generation rotateIfNeeded() {
+        Generation gen = current;
+        long now = clock.getAsLong();
+        if (now - gen.createdAt < windowMillis) {
+            return gen;
+        }
+        synchronized (this) {
+            gen = current;
+            if (now - gen.createdAt >= windowMillis) {
+                // 当前代已超过两个窗口，其中元素也应一并过期
+                previous = now - gen.createdAt < 2 * windowMillis ? gen : new Generation(bitSize, 0);
+                gen = new Generation(bitSize, now);
+                current = gen;
+            }
+            return gen;
+        }
+    }
+
+    /**
+     * 64 位 FNV-1a + 尾部混淆 (murmur3 fmix64)
+     */
+    private static long hash64(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static class Generation {
+        private final AtomicLongArray words;
+        private final long createdAt;
+
+        private Generation(int bitSize, long createdAt) {
+            this.words = new AtomicLongArray((bitSize + 63) >>> 6);
+            this.createdAt = createdAt;
+        }
+
+        private void set(int bit) {
+            int word = bit >>> 6;
+            long mask = 1L << (bit & 63);
+            long old;
+            do {
+                old = words.get(word);
+                if ((old & mask) != 0) {
+                    return;
+                }
+            } while (!words.compareAndSet(word, old, old | mask));
+        }
+
+        private boolean get(int bit) {
+            return (words.get(bit >>> 6) & (1L << (bit & 63))) != 0;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.shutu.util;
+
+import cn.hutool.json.JSONUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+
+/**
+ * WebSocket 帧工具
+ * 同一条推送只序列化一次到池化直接内存，多个连接共享同一块内存写出
+ */
+public class WsFrameUtils {
+
+    private WsFrameUtils() {
+
+    }
+
+    /**
+     * 将推送内容序列化为 UTF-8 JSON，写入池化直接内存
+     * 调用方负责 release (或交给 writeShared)
+     */
+    public static ByteBuf encode(Object payload) {
+        String json = JSONUtil.toJsonStr(payload);
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(ByteBufUtil.utf8MaxBytes(json));
+        try {
+            ByteBufUtil.writeUtf8(buf, json);
+            return buf;
+        } catch (RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 将已序列化的 UTF-8 JSON 拷贝到池化直接内存 (跨节点路由转发时使用，避免反序列化再序列化)
+     * 调用方负责 release (或交给 writeShared)
+     */
+    public static ByteBuf wrap(byte[] json) {
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(json.length);
+        return buf.writeBytes(json);
+    }
+
+    /**
+     * 将同一份内容写给多个连接
+     * 每个连接写出 retainedDuplicate (共享内存、独立读写索引)，由 Netty 写完后释放；
+     * 方法结束时释放调用方持有的那一份引用，因此 payload 在调用后不可再使用
+     *
+     * @return 实际写出的连接数
+     */
+    public static int writeShared(ByteBuf payload, Iterable<Channel> channels) {
+        int written = 0;
+        try {
+            for (Channel channel : channels) {
+                if (!channel.isActive()) {
+                    continue;
+                }
+                channel.writeAndFlush(new TextWebSocketFrame(payload.retainedDuplicate()));
+                written++;
+            }
+        } finally {
+            payload.release();
+        }
+        return written;
+    }
+}
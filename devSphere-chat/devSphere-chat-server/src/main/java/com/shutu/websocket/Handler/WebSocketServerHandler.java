@@ -1,14 +1,13 @@
 package com.shutu.websocket.Handler;
 
 import cn.hutool.extra.spring.SpringUtil;
-import cn.hutool.json.JSONUtil;
 import com.shutu.model.enums.ws.WSReqTypeEnum;
 import com.shutu.model.vo.ws.request.WSBaseReq;
+import com.shutu.websocket.WsPushDispatcher;
 import com.shutu.websocket.service.WebSocketService;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
@@ -17,7 +16,7 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @RequiredArgsConstructor
-public class WebSocketServerHandler extends SimpleChannelInboundHandler<TextWebSocketFrame> {
+public class WebSocketServerHandler extends SimpleChannelInboundHandler<WSBaseReq> {
 
     /**
      * 客户端连接
@@ -46,6 +45,9 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<TextWebS
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+            // 记录协商出的子协议 (未携带时为 null，按 JSON 处理)
+            String subprotocol = ((WebSocketServerProtocolHandler.HandshakeComplete) evt).selectedSubprotocol();
+            ctx.channel().attr(WsFrameDecoder.SUBPROTOCOL_KEY).set(subprotocol);
             // 握手成功，此时 AuthHandler 肯定已经执行过并设置了 userId
             getService().connect(ctx.channel());
         }
@@ -60,6 +62,30 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<TextWebS
         }
     }
 
+    /**
+     * 写缓冲跨过水位线，恢复可写时排空该连接的等待队列
+     *
+     * @param ctx
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            SpringUtil.getBean(WsPushDispatcher.class).onWritable(ctx.channel());
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    /**
+     * 连接关闭，释放尚未写出的帧
+     *
+     * @param ctx
+     */
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        SpringUtil.getBean(WsPushDispatcher.class).onClosed(ctx.channel());
+        super.channelInactive(ctx);
+    }
+
     /**
      * 客户端断开
      * 
@@ -73,17 +99,14 @@ public class WebSocketServerHandler extends SimpleChannelInboundHandler<TextWebS
     }
 
     /**
-     * 读取客户端报文
+     * 读取客户端报文 (已由 WsFrameDecoder 从文本 / 二进制帧解码)
      * 
      * @param channelHandlerContext
-     * @param textWebSocketFrame
+     * @param wsBaseRequest
      * @throws Exception
      */
     @Override
-    protected void channelRead0(ChannelHandlerContext channelHandlerContext, TextWebSocketFrame textWebSocketFrame) {
-        String text = textWebSocketFrame.text();
-        // 将 text 文本信息转为 java对象
-        WSBaseReq wsBaseRequest = JSONUtil.toBean(text, WSBaseReq.class);
+    protected void channelRead0(ChannelHandlerContext channelHandlerContext, WSBaseReq wsBaseRequest) {
         WSReqTypeEnum wsReqTypeEnum = WSReqTypeEnum.of(wsBaseRequest.getType());
         switch (wsReqTypeEnum) {
             case CHAT:
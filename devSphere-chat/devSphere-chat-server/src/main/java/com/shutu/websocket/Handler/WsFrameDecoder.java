@@ -0,0 +1,131 @@
+package com.shutu.websocket.Handler;
+
+import cn.hutool.json.JSONUtil;
+import com.shutu.model.enums.ws.WSReqTypeEnum;
+import com.shutu.model.vo.message.ChatMessageVo;
+import com.shutu.model.vo.ws.request.WSBaseReq;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * WebSocket 入站帧解码器
+ * 1. TextWebSocketFrame: 旧版 JSON 协议，解析为 WSBaseReq (data 仍为 JSON 字符串)
+ * 2. BinaryWebSocketFrame: 协商了 devsphere.bin.v1 子协议的客户端，定长头 + 长度前缀，
+ *    一次解析出 WSBaseReq 与 ChatMessageVo，避免嵌套 JSON 的二次解析
+ *
+ * 二进制帧布局 (大端):
+ * <pre>
+ * byte   version      协议版本，当前为 1
+ * byte   type         WSReqTypeEnum
+ * long   target       私聊对方UID / 群聊房间ID / RTC 目标UID
+ * byte   roomType     ChatMessageVo.type (非聊天帧为 0)
+ * byte   messageType  ChatMessageVo.messageType (非聊天帧为 0)
+ * short  tempIdLen    + tempId (UTF-8)
+ * int    contentLen   + content (UTF-8)，聊天帧为消息内容，RTC 帧为信令原文
+ * </pre>
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class WsFrameDecoder extends MessageToMessageDecoder<WebSocketFrame> {
+
+    /**
+     * JSON 子协议 (与不带子协议的旧客户端等价)
+     */
+    public static final String SUBPROTOCOL_JSON = "devsphere.json";
+
+    /**
+     * 二进制子协议 v1
+     */
+    public static final String SUBPROTOCOL_BINARY = "devsphere.bin.v1";
+
+    /**
+     * 握手时协商出的子协议
+     */
+    public static final AttributeKey<String> SUBPROTOCOL_KEY = AttributeKey.valueOf("subprotocol");
+
+    public static final WsFrameDecoder INSTANCE = new WsFrameDecoder();
+
+    private static final byte VERSION_1 = 1;
+
+    /**
+     * 定长头: version + type + target + roomType + messageType + tempIdLen
+     */
+    private static final int HEADER_LENGTH = 1 + 1 + 8 + 1 + 1 + 2;
+
+    /**
+     * 单帧内容上限，防止恶意长度
+     */
+    private static final int MAX_CONTENT_LENGTH = 1 << 20;
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, WebSocketFrame frame, List<Object> out) {
+        if (frame instanceof TextWebSocketFrame) {
+            out.add(JSONUtil.toBean(((TextWebSocketFrame) frame).text(), WSBaseReq.class));
+        } else if (frame instanceof BinaryWebSocketFrame) {
+            if (!SUBPROTOCOL_BINARY.equals(ctx.channel().attr(SUBPROTOCOL_KEY).get())) {
+                log.warn("未协商二进制子协议，丢弃二进制帧: {}", ctx.channel().id());
+                return;
+            }
+            out.add(decodeBinary(frame.content()));
+        }
+        // 分片帧 (Continuation) 暂不支持，直接丢弃
+    }
+
+    /**
+     * 解析二进制帧
+     */
+    public static WSBaseReq decodeBinary(ByteBuf buf) {
+        if (buf.readableBytes() < HEADER_LENGTH) {
+            throw new CorruptedFrameException("二进制帧不完整: " + buf.readableBytes());
+        }
+        byte version = buf.readByte();
+        if (version != VERSION_1) {
+            throw new CorruptedFrameException("不支持的二进制协议版本: " + version);
+        }
+        WSBaseReq req = new WSBaseReq();
+        req.setType((int) buf.readByte());
+        req.setUserId(buf.readLong());
+        int roomType = buf.readByte();
+        int messageType = buf.readByte();
+        String tempId = readString(buf, buf.readUnsignedShort());
+        if (buf.readableBytes() < Integer.BYTES) {
+            throw new CorruptedFrameException("二进制帧不完整: 缺少内容长度");
+        }
+        String content = readString(buf, buf.readInt());
+
+        if (WSReqTypeEnum.CHAT.getType().equals(req.getType())) {
+            ChatMessageVo chatMessage = new ChatMessageVo();
+            chatMessage.setType(roomType);
+            chatMessage.setMessageType(messageType != 0 ? messageType : null);
+            chatMessage.setTempId(tempId);
+            chatMessage.setContent(content);
+            req.setChatMessage(chatMessage);
+        } else {
+            req.setData(content);
+        }
+        return req;
+    }
+
+    private static String readString(ByteBuf buf, int length) {
+        if (length < 0 || length > MAX_CONTENT_LENGTH || length > buf.readableBytes()) {
+            throw new CorruptedFrameException("二进制帧长度非法: " + length);
+        }
+        if (length == 0) {
+            return null;
+        }
+        String value = buf.toString(buf.readerIndex(), length, StandardCharsets.UTF_8);
+        buf.skipBytes(length);
+        return value;
+    }
+}
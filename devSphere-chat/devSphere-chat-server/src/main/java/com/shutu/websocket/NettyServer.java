@@ -1,9 +1,19 @@
 package com.shutu.websocket;
 
+import com.shutu.config.ImNettyProperties;
+import com.shutu.config.ImPushProperties;
 import com.shutu.websocket.Handler.AuthHandler;
 import com.shutu.websocket.Handler.WebSocketServerHandler;
+import com.shutu.websocket.Handler.WsFrameDecoder;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
@@ -12,7 +22,6 @@ import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
-import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.Future;
 import jakarta.annotation.PostConstruct;
@@ -21,16 +30,27 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.function.IntFunction;
+
 @Slf4j
 @RequiredArgsConstructor
 @Component
 public class NettyServer {
 
-    private static final int PORT = 9000;
-    // 创建线程执行器
-    private static final EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-    private static final EventLoopGroup workerGroup = new NioEventLoopGroup(8);
+    private static final String TRANSPORT_AUTO = "auto";
+    private static final String TRANSPORT_IO_URING = "io_uring";
+    private static final String TRANSPORT_EPOLL = "epoll";
+    private static final String TRANSPORT_NIO = "nio";
+
+    private static final String IO_URING_PACKAGE = "io.netty.incubator.channel.uring.";
+
     private final AuthHandler authHandler;
+    private final ImPushProperties pushProperties;
+    private final ImNettyProperties nettyProperties;
+
+    // 线程执行器，按选定的传输层创建
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
 
     /**
      * 启动
@@ -51,33 +71,119 @@ public class NettyServer {
      * 创建 netty 服务端
      */
     private void startServer() throws InterruptedException {
+        Transport transport = selectTransport(nettyProperties.getTransport());
+        bossGroup = transport.groupFactory.apply(nettyProperties.getBossThreads());
+        workerGroup = transport.groupFactory.apply(nettyProperties.getWorkerThreads());
+        ByteBufAllocator allocator = nettyProperties.isPooledAllocator()
+                ? new PooledByteBufAllocator(nettyProperties.isPreferDirect())
+                : new UnpooledByteBufAllocator(nettyProperties.isPreferDirect());
+
         ServerBootstrap serverBootstrap = new ServerBootstrap();
         serverBootstrap.group(bossGroup,workerGroup)
-                .channel(NioServerSocketChannel.class) // 指定使用 NIO 非阻塞传输模型
-                .option(ChannelOption.SO_BACKLOG,128) // 设置 TCP 半连接队列大小
+                .channel(transport.channelClass) // 指定传输层实现 (io_uring / epoll / NIO)
+                .option(ChannelOption.SO_BACKLOG, nettyProperties.getBacklog()) // 设置 TCP 全连接队列大小
+                .option(ChannelOption.ALLOCATOR, allocator)
+                .childOption(ChannelOption.ALLOCATOR, allocator)
                 .childOption(ChannelOption.SO_KEEPALIVE,true) // 开启 TCP 底层心跳机制
-                .handler(new LoggingHandler(LogLevel.INFO)) // 在 Boss 线程组添加日志处理器
+                .childOption(ChannelOption.TCP_NODELAY, nettyProperties.isTcpNoDelay())
+                // 写缓冲水位线，超过高水位后连接不可写，推送进入连接自己的等待队列
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        pushProperties.getWriteBufferLowWaterMark(), pushProperties.getWriteBufferHighWaterMark()))
                 .childHandler(new ChannelInitializer<SocketChannel>() { // 配置 Worker 线程组的处理器管道
                     @Override
                     protected void initChannel(SocketChannel channel) {
                         ChannelPipeline pipeline = channel.pipeline();
-                        pipeline.addLast(new LoggingHandler("DEBUG_LOGGER", LogLevel.INFO));
-                        // 如果 50 秒内没有收到客户端的任何数据（读空闲），会触发一个 IdleStateEvent 事件。
-                        pipeline.addLast(new IdleStateHandler(50,0,0));
+                        if (nettyProperties.isWireLogging()) {
+                            pipeline.addLast(new LoggingHandler("DEBUG_LOGGER", LogLevel.DEBUG));
+                        }
+                        // 如果在读空闲时间内没有收到客户端的任何数据，会触发一个 IdleStateEvent 事件。
+                        pipeline.addLast(new IdleStateHandler(nettyProperties.getReaderIdleSeconds(),0,0));
                         pipeline.addLast(new HttpServerCodec());
-                        // 支持异步发送大数据流
-                        pipeline.addLast(new ChunkedWriteHandler());
                         // HTTP 消息聚合器，Netty 默认会将一个 HTTP 请求拆分成多个小片段（HttpRequest, HttpContent, LastHttpContent）。
                         // 这个 Handler 会把它们合并成一个完整的 FullHttpRequest 对象，方便后续处理。
-                        pipeline.addLast(new HttpObjectAggregator(8192));
+                        pipeline.addLast(new HttpObjectAggregator(nettyProperties.getMaxHttpContentLength()));
                         //websocket
                         pipeline.addLast(authHandler);
-                        pipeline.addLast(new WebSocketServerProtocolHandler("/ws"));
+                        // 子协议: 不携带或 devsphere.json 走 JSON 文本帧，devsphere.bin.v1 走二进制帧
+                        pipeline.addLast(new WebSocketServerProtocolHandler("/ws",
+                                WsFrameDecoder.SUBPROTOCOL_JSON + "," + WsFrameDecoder.SUBPROTOCOL_BINARY));
+                        pipeline.addLast(WsFrameDecoder.INSTANCE);
                         pipeline.addLast(new WebSocketServerHandler());
                     }
                 });
-            serverBootstrap.bind(PORT).sync();
-        log.info("Netty启动成功");
+        if (nettyProperties.isWireLogging()) {
+            serverBootstrap.handler(new LoggingHandler(LogLevel.DEBUG)); // 在 Boss 线程组添加日志处理器
+        }
+
+        // SO_REUSEPORT: 每个 Boss 线程绑定一个独立的监听 socket，由内核在多个 acceptor 间分发连接
+        int acceptors = 1;
+        if (nettyProperties.isReusePort() && transport.reusePortOption != null) {
+            serverBootstrap.option(transport.reusePortOption, true);
+            acceptors = Math.max(1, nettyProperties.getBossThreads());
+        }
+        for (int i = 0; i < acceptors; i++) {
+            serverBootstrap.bind(nettyProperties.getPort()).sync();
+        }
+        log.info("Netty启动成功: port={}, transport={}, acceptors={}, workers={}",
+                nettyProperties.getPort(), transport.name, acceptors,
+                nettyProperties.getWorkerThreads() > 0 ? nettyProperties.getWorkerThreads() : "default");
+    }
+
+    /**
+     * 选择传输层实现，指定的实现不可用时回退到 NIO
+     */
+    private Transport selectTransport(String configured) {
+        String name = configured == null ? TRANSPORT_AUTO : configured.trim().toLowerCase();
+        if (TRANSPORT_AUTO.equals(name) || TRANSPORT_IO_URING.equals(name)) {
+            Transport ioUring = ioUringTransport();
+            if (ioUring != null) {
+                return ioUring;
+            }
+            if (TRANSPORT_IO_URING.equals(name)) {
+                log.warn("io_uring 不可用，回退到 NIO");
+            }
+        }
+        if (TRANSPORT_AUTO.equals(name) || TRANSPORT_EPOLL.equals(name)) {
+            if (Epoll.isAvailable()) {
+                return new Transport(TRANSPORT_EPOLL, EpollEventLoopGroup::new, EpollServerSocketChannel.class,
+                        EpollChannelOption.SO_REUSEPORT);
+            }
+            if (TRANSPORT_EPOLL.equals(name)) {
+                log.warn("epoll 不可用，回退到 NIO: {}", Epoll.unavailabilityCause().getMessage());
+            }
+        }
+        return new Transport(TRANSPORT_NIO, NioEventLoopGroup::new, NioServerSocketChannel.class, null);
+    }
+
+    /**
+     * io_uring 属于 incubator 模块，通过反射加载，未引入依赖或内核不支持时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private Transport ioUringTransport() {
+        try {
+            Class<?> ioUring = Class.forName(IO_URING_PACKAGE + "IOUring");
+            if (!(Boolean) ioUring.getMethod("isAvailable").invoke(null)) {
+                return null;
+            }
+            Class<?> groupClass = Class.forName(IO_URING_PACKAGE + "IOUringEventLoopGroup");
+            Class<? extends ServerChannel> channelClass =
+                    (Class<? extends ServerChannel>) Class.forName(IO_URING_PACKAGE + "IOUringServerSocketChannel");
+            ChannelOption<Boolean> reusePort = (ChannelOption<Boolean>) Class
+                    .forName(IO_URING_PACKAGE + "IOUringChannelOption").getField("SO_REUSEPORT").get(null);
+            IntFunction<EventLoopGroup> factory = threads -> {
+                try {
+                    return (EventLoopGroup) groupClass.getConstructor(int.class).newInstance(threads);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("创建 io_uring EventLoopGroup 失败", e);
+                }
+            };
+            return new Transport(TRANSPORT_IO_URING, factory, channelClass, reusePort);
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("io_uring 加载失败，跳过: {}", e.getMessage());
+            return null;
+        }
     }
 
     /**
@@ -85,10 +191,31 @@ public class NettyServer {
      */
     @PreDestroy
     public void destroy() {
+        if (bossGroup == null || workerGroup == null) {
+            return;
+        }
         Future<?> future = bossGroup.shutdownGracefully();
         Future<?> future1 = workerGroup.shutdownGracefully();
         future.syncUninterruptibly();
         future1.syncUninterruptibly();
         log.info("关闭 ws server 成功");
     }
+
+    /**
+     * 传输层实现
+     */
+    private static class Transport {
+        private final String name;
+        private final IntFunction<EventLoopGroup> groupFactory;
+        private final Class<? extends ServerChannel> channelClass;
+        private final ChannelOption<Boolean> reusePortOption;
+
+        private Transport(String name, IntFunction<EventLoopGroup> groupFactory,
+                          Class<? extends ServerChannel> channelClass, ChannelOption<Boolean> reusePortOption) {
+            this.name = name;
+            this.groupFactory = groupFactory;
+            this.channelClass = channelClass;
+            this.reusePortOption = reusePortOption;
+        }
+    }
 }
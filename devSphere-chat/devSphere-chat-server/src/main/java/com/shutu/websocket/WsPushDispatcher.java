@@ -0,0 +1,146 @@
+package com.shutu.websocket;
+
+import com.shutu.config.ImPushProperties;
+import com.shutu.manager.metrics.ImPipelineMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 EventLoop 的推送分发器
+ * 1. 写操作直接提交到连接自己的 EventLoop，不再经过共享线程池
+ * 2. 连接不可写 (超过 WRITE_BUFFER_WATER_MARK 高水位) 时帧进入连接私有的有界队列，
+ *    可写后由 channelWritabilityChanged 触发排空
+ * 3. 队列满时按配置断开慢连接或丢弃新帧，并记录计数
+ * 队列只在所属 EventLoop 中访问，无需加锁
+ * 直接写出的帧记录提交到写出的耗时 (push_flush，反映 EventLoop 排队延迟)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WsPushDispatcher {
+
+    private static final AttributeKey<ArrayDeque<TextWebSocketFrame>> PENDING_KEY =
+            AttributeKey.valueOf("pendingFrames");
+
+    private final ImPushProperties pushProperties;
+    private final ImPipelineMetrics pipelineMetrics;
+
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+
+    /**
+     * 将共享内容写给连接
+     * 内部使用 retainedDuplicate，调用方仍持有 payload 的引用并负责释放
+     */
+    public void write(Channel channel, ByteBuf payload) {
+        TextWebSocketFrame frame = new TextWebSocketFrame(payload.retainedDuplicate());
+        long submitNanos = System.nanoTime();
+        EventLoop eventLoop = channel.eventLoop();
+        if (eventLoop.inEventLoop()) {
+            writeInLoop(channel, frame, submitNanos);
+            return;
+        }
+        try {
+            eventLoop.execute(() -> writeInLoop(channel, frame, submitNanos));
+        } catch (Exception e) {
+            // EventLoop 已关闭
+            frame.release();
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 连接恢复可写，排空等待队列 (由 WebSocketServerHandler.channelWritabilityChanged 调用)
+     */
+    public void onWritable(Channel channel) {
+        ArrayDeque<TextWebSocketFrame> pending = channel.attr(PENDING_KEY).get();
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        int count = 0;
+        while (channel.isWritable() && !pending.isEmpty()) {
+            channel.write(pending.poll());
+            count++;
+        }
+        if (count > 0) {
+            channel.flush();
+            flushed.add(count);
+        }
+    }
+
+    /**
+     * 连接关闭，释放排队中的帧 (由 WebSocketServerHandler.channelInactive 调用)
+     */
+    public void onClosed(Channel channel) {
+        ArrayDeque<TextWebSocketFrame> pending = channel.attr(PENDING_KEY).getAndSet(null);
+        if (pending == null) {
+            return;
+        }
+        dropped.add(pending.size());
+        TextWebSocketFrame frame;
+        while ((frame = pending.poll()) != null) {
+            ReferenceCountUtil.release(frame);
+        }
+    }
+
+    /**
+     * 推送计数，用于监控
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("flushed", flushed.sum());
+        stats.put("queued", queued.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("disconnected", disconnected.sum());
+        return stats;
+    }
+
+    private void writeInLoop(Channel channel, TextWebSocketFrame frame, long submitNanos) {
+        if (!channel.isActive()) {
+            frame.release();
+            dropped.increment();
+            return;
+        }
+        ArrayDeque<TextWebSocketFrame> pending = channel.attr(PENDING_KEY).get();
+        // 可写且没有积压时直接写出，保证顺序
+        if (channel.isWritable() && (pending == null || pending.isEmpty())) {
+            channel.writeAndFlush(frame, channel.voidPromise());
+            flushed.increment();
+            pipelineMetrics.recordSince(ImPipelineMetrics.STAGE_PUSH_FLUSH, submitNanos);
+            return;
+        }
+
+        if (pending == null) {
+            pending = new ArrayDeque<>();
+            channel.attr(PENDING_KEY).set(pending);
+        }
+        if (pending.size() < pushProperties.getMaxPendingFrames()) {
+            pending.offer(frame);
+            queued.increment();
+            return;
+        }
+
+        // 队列已满：慢连接
+        frame.release();
+        dropped.increment();
+        if (pushProperties.isDisconnectSlowConsumer()) {
+            disconnected.increment();
+            log.warn("[推送] 连接积压超过上限，断开慢连接: {}, pending={}", channel.id(), pending.size());
+            channel.close();
+        }
+    }
+}
@@ -4,7 +4,7 @@ import cn.hutool.extra.spring.SpringUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.shutu.commons.security.cache.TokenStoreCache;
 import com.shutu.commons.security.user.UserDetail;
-import com.shutu.commons.tools.utils.Result;
+import com.shutu.dto.SysUserDTO;
 import com.shutu.model.dto.ws.GroupMessageDTO;
 import com.shutu.model.dto.ws.PrivateMessageDTO;
 import com.shutu.model.entity.Message;
@@ -13,7 +13,7 @@ import com.shutu.model.enums.ws.WSReqTypeEnum;
 import com.shutu.model.vo.ws.response.ChatMessageResp;
 import com.shutu.model.vo.ws.response.WSBaseResp;
 import com.shutu.service.RoomFriendService;
-import com.shutu.feign.UserFeignClient;
+import com.shutu.manager.UserProfileCache;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Component;
 import javax.validation.constraints.NotNull;
@@ -28,7 +28,7 @@ public class WSAdapter {
     @Resource
     private RoomFriendService roomFriendService;
     @Resource
-    private UserFeignClient userFeignClient;
+    private UserProfileCache userProfileCache;
 
     public TokenStoreCache getTokenStoreCache() {
         return SpringUtil.getBean(TokenStoreCache.class);
@@ -99,9 +99,8 @@ public class WSAdapter {
     public ChatMessageResp getMessageVo(Message message) {
         // 创建ChatMessageResp对象
         ChatMessageResp chatMessageResp = new ChatMessageResp();
-        // 获取登录用户的信息
-        Result<UserDetail> result = userFeignClient.getById(message.getFromUid());
-        UserDetail user = result.getData();
+        // 获取发送者信息 (本地缓存)
+        SysUserDTO user = userProfileCache.get(message.getFromUid());
         // 创建UserInfo对象
         ChatMessageResp.UserInfo userInfo = new ChatMessageResp.UserInfo();
         if (user != null) {
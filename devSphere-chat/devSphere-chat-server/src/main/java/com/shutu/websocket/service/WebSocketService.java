@@ -5,6 +5,9 @@ import com.shutu.model.vo.ws.response.WSBaseResp;
 import io.netty.channel.Channel;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Map;
+
 @Service
 public interface WebSocketService {
 
@@ -48,6 +51,28 @@ public interface WebSocketService {
      */
     void sendToLocalUid(WSBaseResp<?> wsBaseResp, Long uid);
 
+    /**
+     * 推送消息给多个本机用户 (仅限本机)
+     * 用于群消息扇出
+     */
+    void sendToLocalUids(WSBaseResp<?> wsBaseResp, Collection<Long> uids);
+
+    /**
+     * 推送已序列化的内容给多个本机用户 (仅限本机)
+     * 用于跨节点路由转发，内容为 UTF-8 JSON 格式的 WSBaseResp
+     */
+    void sendEncodedToLocalUids(byte[] payloadJson, Collection<Long> uids);
+
+    /**
+     * 用户是否在本机在线
+     */
+    boolean isLocalOnline(Long uid);
+
+    /**
+     * 本机连接数 (connections) 与在线用户数 (onlineUsers)，用于监控
+     */
+    Map<String, Long> getLocalStats();
+
     void sendMessage(Channel channel, WSBaseReq req);
 
     /**
@@ -4,10 +4,13 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.IdWorker;
-import com.shutu.config.RedisStreamConfig;
+import com.shutu.common.event.UserPresenceEvent;
+import com.shutu.config.ImPushProperties;
+import com.shutu.config.ImStreamProperties;
 import com.shutu.config.ThreadPoolConfig;
-import com.shutu.constant.RedisKeyConstant;
-import com.shutu.model.dto.chat.RouteMessageDTO;
+import com.shutu.manager.MessageStreamPartitioner;
+import com.shutu.manager.metrics.ImPipelineMetrics;
+import com.shutu.manager.route.NodeRouteTransport;
 import com.shutu.model.dto.ws.GroupMessageDTO;
 import com.shutu.model.entity.UserRoomRelate;
 import com.shutu.model.enums.chat.RoomTypeEnum;
@@ -21,20 +24,28 @@ import com.shutu.model.vo.ws.response.WSMessageAck;
 import com.shutu.service.UserLocationService;
 import com.shutu.service.UserRoomRelateService;
 import com.shutu.websocket.service.WebSocketService;
+import com.shutu.util.WsFrameUtils;
+import com.shutu.websocket.WsPushDispatcher;
 import com.shutu.websocket.adapter.WSAdapter;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
-import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.util.AttributeKey;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.RedisStreamCommands;
 import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 /**
  * websocket处理类
@@ -47,11 +58,20 @@ public class WebSocketServiceImpl implements WebSocketService {
 
     private final StringRedisTemplate redisTemplate;
     private final UserLocationService userLocationService;
+    private final NodeRouteTransport nodeRouteTransport;
     @Qualifier(ThreadPoolConfig.WS_EXECUTOR)
     private final ThreadPoolTaskExecutor threadPoolTaskExecutor;
     public static final AttributeKey<Long> USER_ID_KEY = AttributeKey.valueOf("userId");
     private final WSAdapter wsAdapter;
     private final UserRoomRelateService userRoomRelateService;
+    private final WsPushDispatcher wsPushDispatcher;
+    private final ImPushProperties pushProperties;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final MessageStreamPartitioner messageStreamPartitioner;
+    private final ImStreamProperties streamProperties;
+    private final ImPipelineMetrics pipelineMetrics;
+
+    private static final String PUSH_MODE_EVENT_LOOP = "event-loop";
 
     /**
      * 所有已连接的websocket连接列表和用户 id
@@ -68,9 +88,14 @@ public class WebSocketServiceImpl implements WebSocketService {
         // 1. 维护 Channel -> UserId 映射
         ONLINE_WS_MAP.put(channel, userId);
         // 2. 维护 UserId -> Channel[] 映射
-        ONLINE_UID_MAP.computeIfAbsent(userId, k -> new CopyOnWriteArrayList<>()).add(channel);
+        CopyOnWriteArrayList<Channel> channels = ONLINE_UID_MAP.computeIfAbsent(userId, k -> new CopyOnWriteArrayList<>());
+        channels.add(channel);
         // 3. 注册用户位置到 Redis (User -> NodeID)
         userLocationService.register(userId);
+        // 4. 本节点首个连接，更新在线状态
+        if (channels.size() == 1) {
+            applicationEventPublisher.publishEvent(new UserPresenceEvent(this, userId));
+        }
 
         log.info("用户上线: {}, 当前在线人数: {}", userId, ONLINE_UID_MAP.size());
     }
@@ -89,6 +114,8 @@ public class WebSocketServiceImpl implements WebSocketService {
                     ONLINE_UID_MAP.remove(userId);
                     // 3. 从 Redis 移除用户位置
                     userLocationService.remove(userId);
+                    // 4. 本节点最后一个连接断开，更新在线状态
+                    applicationEventPublisher.publishEvent(new UserPresenceEvent(this, userId));
                 }
             }
             log.info("用户下线: {}", userId);
@@ -103,12 +130,14 @@ public class WebSocketServiceImpl implements WebSocketService {
      */
     @Override
     public void sendToAllOnline(WSBaseResp<?> wsBaseResp, Long skipUid) {
+        List<Channel> channels = new ArrayList<>(ONLINE_WS_MAP.size());
         ONLINE_WS_MAP.forEach((channel, uid) -> {
             if (skipUid != null && Objects.equals(uid, skipUid)) {
                 return; // 跳过指定用户
             }
-            threadPoolTaskExecutor.execute(() -> sendMsg(channel, wsBaseResp));
+            channels.add(channel);
         });
+        sendShared(wsBaseResp, channels);
     }
 
     @Override
@@ -135,16 +164,8 @@ public class WebSocketServiceImpl implements WebSocketService {
                 return;
             }
 
-            // 3. 目标在远程节点，进行 Pub/Sub 广播
-            // 封装路由消息
-            RouteMessageDTO routeMsg = RouteMessageDTO.builder()
-                    .targetUid(uid)
-                    .messageJson(JSONUtil.toJsonStr(wsBaseResp))
-                    .build();
-
-            // 发送到目标节点的专属 Topic
-            String topic = RedisKeyConstant.TOPIC_NODE_ROUTE_PREFIX + targetNodeId;
-            redisTemplate.convertAndSend(topic, JSONUtil.toJsonStr(routeMsg));
+            // 3. 目标在远程节点，转发到目标节点 (Pub/Sub 或路由流)
+            nodeRouteTransport.send(wsBaseResp, Collections.singletonMap(targetNodeId, Collections.singletonList(uid)));
             log.debug("消息路由转发: uid={}, targetNode={}", uid, targetNodeId);
         } else {
             // 用户彻底离线，离线消息已落库，无需处理
@@ -162,14 +183,56 @@ public class WebSocketServiceImpl implements WebSocketService {
             return;
         }
         // 推送给该用户的所有在线设备
-        channels.forEach(channel -> threadPoolTaskExecutor.execute(() -> sendMsg(channel, wsBaseResp)));
+        sendShared(wsBaseResp, channels);
     }
 
 
+    /**
+     * 推送到多个本机用户
+     */
+    @Override
+    public void sendToLocalUids(WSBaseResp<?> wsBaseResp, Collection<Long> uids) {
+        sendShared(wsBaseResp, localChannels(uids));
+    }
+
+    /**
+     * 推送已序列化的内容给多个本机用户
+     */
+    @Override
+    public void sendEncodedToLocalUids(byte[] payloadJson, Collection<Long> uids) {
+        sendShared(() -> WsFrameUtils.wrap(payloadJson), localChannels(uids));
+    }
+
+    private List<Channel> localChannels(Collection<Long> uids) {
+        List<Channel> targets = new ArrayList<>();
+        for (Long uid : uids) {
+            CopyOnWriteArrayList<Channel> channels = ONLINE_UID_MAP.get(uid);
+            if (channels != null) {
+                targets.addAll(channels);
+            }
+        }
+        return targets;
+    }
+
+    @Override
+    public boolean isLocalOnline(Long uid) {
+        return ONLINE_UID_MAP.containsKey(uid);
+    }
+
+    @Override
+    public Map<String, Long> getLocalStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("connections", (long) ONLINE_WS_MAP.size());
+        stats.put("onlineUsers", (long) ONLINE_UID_MAP.size());
+        return stats;
+    }
+
     @Override
     public void sendMessage(Channel channel, WSBaseReq req) {
-        String msg = req.getData();
-        ChatMessageVo chatMessage = JSONUtil.toBean(msg, ChatMessageVo.class);
+        // 二进制子协议已在解码时解析，JSON 协议需再解析 data
+        ChatMessageVo chatMessage = req.getChatMessage() != null
+                ? req.getChatMessage()
+                : JSONUtil.toBean(req.getData(), ChatMessageVo.class);
         String tempId = chatMessage.getTempId();
 
         if (tempId == null)
@@ -201,17 +264,26 @@ public class WebSocketServiceImpl implements WebSocketService {
         }
 
         try {
-            // 2.写入 Redis Stream 顺序写，极快
-            RecordId recordId = redisTemplate.opsForStream().add(
-                    RedisStreamConfig.IM_STREAM_KEY,
-                    streamMessage);
-            log.info("消息写入 Redis Stream 成功, StreamId: {}, TempId: {}", recordId, tempId);
+            // 2.写入 Redis Stream 顺序写，极快 (按房间选择分区，同一房间的消息在分区内保持顺序)
+            // MAXLEN ~ 只是安全阀，已消费记录由 MessageStreamRetentionTask 按 MINID 裁剪
+            byte[] streamKey = messageStreamPartitioner.streamKey(roomType.getType(), fromUserId, req.getUserId())
+                    .getBytes(StandardCharsets.UTF_8);
+            RedisStreamCommands.XAddOptions options = RedisStreamCommands.XAddOptions
+                    .maxlen(streamProperties.getMaxLen())
+                    .approximateTrimming(true);
+            long xaddStart = System.nanoTime();
+            RecordId recordId = redisTemplate.execute((RedisCallback<RecordId>) connection -> connection.streamCommands()
+                    .xAdd(StreamRecords.rawBytes(toBytes(streamMessage)).withStreamKey(streamKey), options));
+            pipelineMetrics.recordSince(ImPipelineMetrics.STAGE_XADD, xaddStart);
+            pipelineMetrics.count(ImPipelineMetrics.RESULT_SENT, 1);
+            log.debug("消息写入 Redis Stream 成功, StreamId: {}, TempId: {}", recordId, tempId);
 
             // 3.返回 ACK给发送者，这里的ACK只是告诉前端后端已经拿到数据，不需要重试发送消息
             // 此时数据库还没落库，但我们已通过 Redis 保证了可靠性
             WSMessageAck ackData = new WSMessageAck(tempId, serverMsgId, serverTs);
             sendAck(channel, ackData);
         } catch (Exception e) {
+            pipelineMetrics.count(ImPipelineMetrics.RESULT_SEND_FAILED, 1);
             log.error("消息写入 Redis 失败", e);
             sendError(channel, tempId, "服务器繁忙");
         }
@@ -232,6 +304,13 @@ public class WebSocketServiceImpl implements WebSocketService {
         sendToUid(resp, targetUid);
     }
 
+    private static Map<byte[], byte[]> toBytes(Map<String, String> fields) {
+        Map<byte[], byte[]> raw = new LinkedHashMap<>(fields.size() * 2);
+        fields.forEach((field, value) -> raw.put(field.getBytes(StandardCharsets.UTF_8),
+                value.getBytes(StandardCharsets.UTF_8)));
+        return raw;
+    }
+
     /**
      * 发送快速 ACK (只确认服务器已接收)
      */
@@ -311,7 +390,48 @@ public class WebSocketServiceImpl implements WebSocketService {
      * @param wsBaseResp WS基础研究
      */
     private void sendMsg(Channel channel, WSBaseResp<?> wsBaseResp) {
-        channel.writeAndFlush(new TextWebSocketFrame(JSONUtil.toJsonStr(wsBaseResp)));
+        if (PUSH_MODE_EVENT_LOOP.equals(pushProperties.getMode())) {
+            sendShared(wsBaseResp, Collections.singletonList(channel));
+        } else {
+            WsFrameUtils.writeShared(WsFrameUtils.encode(wsBaseResp), Collections.singletonList(channel));
+        }
+    }
+
+    /**
+     * 同一内容推送给多个连接
+     * 在推送线程中只序列化一次，各连接共享同一块池化直接内存 (retainedDuplicate)
+     * 整批作为一个任务提交，任务被拒绝时不会有已分配的内存泄漏
+     *
+     * @param wsBaseResp 推送内容
+     * @param channels   目标连接
+     */
+    private void sendShared(WSBaseResp<?> wsBaseResp, List<Channel> channels) {
+        sendShared(() -> WsFrameUtils.encode(wsBaseResp), channels);
+    }
+
+    /**
+     * 同一内容推送给多个连接
+     *
+     * @param encoder  在推送线程中生成池化内容 (只调用一次)
+     * @param channels 目标连接
+     */
+    private void sendShared(Supplier<ByteBuf> encoder, List<Channel> channels) {
+        if (channels.isEmpty()) {
+            return;
+        }
+        if (!PUSH_MODE_EVENT_LOOP.equals(pushProperties.getMode())) {
+            threadPoolTaskExecutor.execute(() -> WsFrameUtils.writeShared(encoder.get(), channels));
+            return;
+        }
+        // 直接提交到各连接的 EventLoop，由 WsPushDispatcher 负责背压
+        ByteBuf payload = encoder.get();
+        try {
+            for (Channel channel : channels) {
+                wsPushDispatcher.write(channel, payload);
+            }
+        } finally {
+            payload.release();
+        }
     }
 
     /**
@@ -331,8 +451,9 @@ public class WebSocketServiceImpl implements WebSocketService {
     public void heartbeat(Channel channel) {
         Long userId = channel.attr(USER_ID_KEY).get();
         if (userId != null) {
+            // 位置信息由 UserLocationService 按批续期，仅在批量续期停滞时由心跳兜底
+            userLocationService.touch(userId);
             log.debug("收到用户的心跳包: {}", userId);
-            userLocationService.register(userId);
         }
     }
 }
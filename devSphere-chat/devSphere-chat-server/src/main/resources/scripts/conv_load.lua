@@ -0,0 +1,16 @@
+-- 从 DB 重建用户会话列表，与已有分值取较大者合并 (重建期间消费者可能已写入更新的分值)
+-- KEYS[1]: im:conv:{uid}
+-- ARGV[1]: 完整标记 member
+-- ARGV[2]: 过期时间 (秒)
+-- ARGV[3], ARGV[4] ...: roomId, 分值 成对出现
+local key = KEYS[1]
+for i = 3, #ARGV, 2 do
+    local score = tonumber(ARGV[i + 1])
+    local current = redis.call('zscore', key, ARGV[i])
+    if not current or tonumber(current) < score then
+        redis.call('zadd', key, score, ARGV[i])
+    end
+end
+redis.call('zadd', key, -1, ARGV[1])
+redis.call('expire', key, tonumber(ARGV[2]))
+return (#ARGV - 2) / 2
@@ -0,0 +1,30 @@
+-- 房间有新消息后更新成员的会话列表与房间摘要
+-- KEYS[1]: im:room:summary:{roomId}
+-- KEYS[1 + i]: im:conv:{uid}
+-- ARGV[1]: roomId (ZSet member)
+-- ARGV[2]: 活跃时间 (毫秒，作为分值)
+-- ARGV[3]: 最后一条消息ID
+-- ARGV[4]: 最后一条消息摘要
+-- ARGV[5]: 会话列表过期时间 (秒)
+local member = ARGV[1]
+local score = tonumber(ARGV[2])
+local ttl = tonumber(ARGV[5])
+
+-- 摘要只覆盖已缓存且更旧的 (未缓存的由读取时从 DB 构建)
+local lastMsgId = redis.call('hget', KEYS[1], 'lastMsgId')
+if lastMsgId and tonumber(lastMsgId) < tonumber(ARGV[3]) then
+    redis.call('hset', KEYS[1], 'lastMsgId', ARGV[3], 'activeTime', ARGV[2], 'content', ARGV[4])
+end
+
+-- 分值只增不减，乱序到达的旧消息不会把会话挪回去
+-- 列表不存在时同样写入，读取时发现缺少完整标记会再与 DB 合并
+for i = 2, #KEYS do
+    local current = redis.call('zscore', KEYS[i], member)
+    if not current or tonumber(current) < score then
+        redis.call('zadd', KEYS[i], score, member)
+    end
+    if redis.call('ttl', KEYS[i]) < 0 then
+        redis.call('expire', KEYS[i], ttl)
+    end
+end
+return #KEYS - 1
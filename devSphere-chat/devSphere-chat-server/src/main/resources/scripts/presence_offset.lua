@@ -0,0 +1,10 @@
+-- 为用户分配在线位图的偏移量 (雪花ID过大，无法直接作为位图偏移)
+-- KEYS[1]: uid -> offset 映射 Hash, KEYS[2]: 偏移量序列
+-- ARGV[1]: uid
+local offset = redis.call('hget', KEYS[1], ARGV[1])
+if offset then
+    return tonumber(offset)
+end
+offset = redis.call('incr', KEYS[2]) - 1
+redis.call('hset', KEYS[1], ARGV[1], offset)
+return offset
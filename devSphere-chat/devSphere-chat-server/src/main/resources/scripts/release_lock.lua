@@ -0,0 +1,6 @@
+-- 释放分布式锁，只有锁仍由自己持有时才删除
+if redis.call('get', KEYS[1]) == ARGV[1] then
+    return redis.call('del', KEYS[1])
+else
+    return 0
+end
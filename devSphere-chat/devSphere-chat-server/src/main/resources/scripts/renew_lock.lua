@@ -0,0 +1,6 @@
+-- 续期分布式锁，只有锁仍由自己持有时才延长过期时间
+if redis.call('get', KEYS[1]) == ARGV[1] then
+    return redis.call('pexpire', KEYS[1], ARGV[2])
+else
+    return 0
+end
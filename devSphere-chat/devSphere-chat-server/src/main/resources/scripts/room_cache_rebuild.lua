@@ -0,0 +1,15 @@
+-- 读修复：用 DB 查询结果原子地替换房间消息缓存
+-- 只替换回填范围 (score <= 回填的最大消息ID) 内的成员，回填期间追加的新消息 (score 更大) 保留
+-- KEYS[1]: im:room:msg:{roomId}
+-- ARGV[1]: 回填消息的最大ID
+-- ARGV[2]: 保留条数
+-- ARGV[3]: 过期时间 (秒)
+-- ARGV[4..]: score, member 成对出现
+local key = KEYS[1]
+redis.call('zremrangebyscore', key, '-inf', ARGV[1])
+for i = 4, #ARGV, 2 do
+    redis.call('zadd', key, ARGV[i], ARGV[i + 1])
+end
+redis.call('zremrangebyrank', key, 0, -(tonumber(ARGV[2]) + 1))
+redis.call('expire', key, tonumber(ARGV[3]))
+return redis.call('zcard', key)
@@ -0,0 +1,4 @@
+-- 认领消费者组中闲置超时的未 ACK 消息 (不区分原消费者)
+-- KEYS[1]: 消息流，ARGV: 消费者组, 认领者, 最小闲置毫秒数, 起始游标, 条数
+-- 返回 {下一游标, {{id, {field, value, ...}}, ...}, 已删除的 ID 列表}
+return redis.call('xautoclaim', KEYS[1], ARGV[1], ARGV[2], ARGV[3], ARGV[4], 'COUNT', ARGV[5])
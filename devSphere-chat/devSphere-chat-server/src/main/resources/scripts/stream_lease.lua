@@ -0,0 +1,11 @@
+-- 获取或续期消息流分区租约: 无人持有时占有，自己持有时续期，被他人持有时失败
+local owner = redis.call('get', KEYS[1])
+if not owner then
+    redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2])
+    return 1
+end
+if owner == ARGV[1] then
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return 1
+end
+return 0
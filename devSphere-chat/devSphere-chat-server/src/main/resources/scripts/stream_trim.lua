@@ -0,0 +1,22 @@
+-- 裁剪消息流: 先按 MINID 裁掉安全点之前的记录，长度仍超过上限时再按 MAXLEN 裁剪 (均为近似裁剪)
+-- KEYS[1]: 消息流，ARGV[1]: 安全点 ID (空串表示跳过)，ARGV[2]: 长度上限
+-- 返回 {MINID 裁剪条数, MAXLEN 裁剪条数, 裁剪后长度, 内存占用字节数}
+if redis.call('exists', KEYS[1]) == 0 then
+    return {0, 0, 0, 0}
+end
+local trimmed = 0
+if ARGV[1] ~= '' then
+    trimmed = redis.call('xtrim', KEYS[1], 'MINID', '~', ARGV[1])
+end
+local capped = 0
+local len = redis.call('xlen', KEYS[1])
+if len > tonumber(ARGV[2]) then
+    capped = redis.call('xtrim', KEYS[1], 'MAXLEN', '~', ARGV[2])
+    len = redis.call('xlen', KEYS[1])
+end
+-- 部分托管 Redis 禁用了 MEMORY 命令，此时返回 -1
+local ok, memory = pcall(redis.call, 'memory', 'usage', KEYS[1])
+if not ok then
+    memory = -1
+end
+return {trimmed, capped, len, memory}
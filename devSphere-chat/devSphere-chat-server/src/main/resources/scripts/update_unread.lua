@@ -0,0 +1,24 @@
+-- 新消息落库后更新某个房间成员的未读计数
+-- 每次调用只操作一个用户的 Key，保证 Redis Cluster 下不跨槽，由调用方 Pipeline 批量发送
+-- KEYS[1]: im:unread:{uid}
+-- ARGV[1]: roomId (Hash field)
+-- ARGV[2]: 过期时间 (秒)
+-- ARGV[3]: 操作
+--   "+N": 计数已存在时增加 N (不存在说明未初始化，交给读取时从 DB 对账)
+--   "=N": 直接覆盖为 N (发送者本人，未读数即其最后一条消息之后的条数)
+-- 返回: 1 已更新，0 计数未初始化跳过
+local key = KEYS[1]
+local field = ARGV[1]
+local ttl = tonumber(ARGV[2])
+local op = ARGV[3]
+local n = tonumber(string.sub(op, 2))
+if string.sub(op, 1, 1) == '=' then
+    redis.call('hset', key, field, n)
+    redis.call('expire', key, ttl)
+    return 1
+end
+if redis.call('hexists', key, field) == 1 then
+    redis.call('hincrby', key, field, n)
+    return 1
+end
+return 0
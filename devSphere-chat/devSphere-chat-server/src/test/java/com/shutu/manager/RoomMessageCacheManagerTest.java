@@ -0,0 +1,108 @@
+package com.shutu.manager;
+
+import com.shutu.config.ImCacheProperties;
+import com.shutu.manager.codec.BinaryMessageCacheCodec;
+import com.shutu.manager.codec.JsonMessageCacheCodec;
+import com.shutu.model.entity.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RoomMessageCacheManagerTest {
+
+    private static final long ROOM_ID = 30_063L;
+    private static final int PAGE_SIZE = 3;
+
+    private final BinaryMessageCacheCodec binary = new BinaryMessageCacheCodec();
+    private final JsonMessageCacheCodec json = new JsonMessageCacheCodec();
+
+    private StringRedisTemplate redisTemplate;
+    private RoomMessageCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        cacheManager = new RoomMessageCacheManager(redisTemplate, new ImCacheProperties(), List.of(binary, json));
+        cacheManager.init();
+    }
+
+    @Test
+    void readsMixedEncodingsInScoreOrder() {
+        // ZREVRANGE 按消息ID倒序返回
+        givenMembers(binary.encode(message(104)), json.encode(message(103)),
+                binary.encode(message(102)), json.encode(message(101)));
+
+        List<Message> messages = cacheManager.getLatest(ROOM_ID, PAGE_SIZE, 0L, 104L);
+
+        assertThat(messages).extracting(Message::getId).containsExactly(104L, 103L, 102L, 101L);
+    }
+
+    @Test
+    void dedupesSameMessageStoredInBothEncodings() {
+        givenMembers(binary.encode(message(105)), json.encode(message(105)),
+                binary.encode(message(104)), binary.encode(message(103)),
+                json.encode(message(103)), binary.encode(message(102)));
+
+        List<Message> messages = cacheManager.getLatest(ROOM_ID, PAGE_SIZE, 0L, 105L);
+
+        assertThat(messages).extracting(Message::getId).containsExactly(105L, 104L, 103L, 102L);
+    }
+
+    @Test
+    void treatsPageIncompleteAfterDedupeAsMiss() {
+        // 4 个成员，去重后只有 3 条，不足 pageSize + 1
+        givenMembers(binary.encode(message(104)), json.encode(message(104)),
+                binary.encode(message(103)), binary.encode(message(102)));
+
+        assertThat(cacheManager.getLatest(ROOM_ID, PAGE_SIZE, 0L, 104L)).isNull();
+        assertThat(cacheManager.getStats()).containsEntry("miss", 1L);
+    }
+
+    @Test
+    void treatsStaleCacheAsMiss() {
+        givenMembers(binary.encode(message(104)), binary.encode(message(103)),
+                binary.encode(message(102)), binary.encode(message(101)));
+
+        assertThat(cacheManager.getLatest(ROOM_ID, PAGE_SIZE, 0L, 105L)).isNull();
+        assertThat(cacheManager.getStats()).containsEntry("stale", 1L);
+    }
+
+    @Test
+    void filtersMessagesNotVisibleToUser() {
+        givenMembers(binary.encode(message(104)), binary.encode(message(103)),
+                binary.encode(message(102)), binary.encode(message(101)));
+
+        List<Message> messages = cacheManager.getLatest(ROOM_ID, PAGE_SIZE, 102L, 104L);
+
+        assertThat(messages).extracting(Message::getId).containsExactly(104L, 103L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenMembers(byte[]... members) {
+        Set<byte[]> set = new LinkedHashSet<>(List.of(members));
+        when(redisTemplate.execute(any(RedisCallback.class))).thenReturn(set);
+    }
+
+    private static Message message(long id) {
+        Message message = new Message();
+        message.setId(id);
+        message.setRoomId(ROOM_ID);
+        message.setFromUid(1_067_246_875_800_000_001L);
+        message.setContent("消息 " + id);
+        message.setStatus(0);
+        message.setType(1);
+        message.setCreateTime(new Date(1_700_000_000_000L + id));
+        return message;
+    }
+}
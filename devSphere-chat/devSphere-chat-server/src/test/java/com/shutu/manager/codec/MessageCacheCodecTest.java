@@ -0,0 +1,132 @@
+package com.shutu.manager.codec;
+
+import com.shutu.model.entity.Message;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageCacheCodecTest {
+
+    private final BinaryMessageCacheCodec binary = new BinaryMessageCacheCodec();
+    private final JsonMessageCacheCodec json = new JsonMessageCacheCodec();
+
+    @Test
+    void binaryRoundTripKeepsAllCachedFields() {
+        Message message = fullMessage();
+
+        Message decoded = binary.decode(binary.encode(message));
+
+        assertThat(decoded).usingRecursiveComparison().ignoringFields("extra").isEqualTo(message);
+    }
+
+    @Test
+    void binaryRoundTripKeepsNullOptionalFields() {
+        Message message = new Message();
+        message.setId(1L);
+        message.setRoomId(2L);
+        message.setFromUid(3L);
+
+        Message decoded = binary.decode(binary.encode(message));
+
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(message);
+        assertThat(decoded.getContent()).isNull();
+        assertThat(decoded.getCreateTime()).isNull();
+        assertThat(decoded.getServerMsgId()).isNull();
+    }
+
+    @Test
+    void binaryWritesMissingRequiredIdsAsZero() {
+        Message decoded = binary.decode(binary.encode(new Message()));
+
+        assertThat(decoded.getId()).isZero();
+        assertThat(decoded.getRoomId()).isZero();
+        assertThat(decoded.getFromUid()).isZero();
+    }
+
+    @Test
+    void binaryHandlesExtremeValuesAndMultiByteText() {
+        Message message = fullMessage();
+        message.setId(Long.MAX_VALUE);
+        message.setServerMsgId(-1L);
+        message.setStatus(-1);
+        message.setGapCount(Integer.MIN_VALUE);
+        message.setTempId("");
+        message.setContent("表情 😀 与换行\n" + "长".repeat(10_000));
+
+        Message decoded = binary.decode(binary.encode(message));
+
+        assertThat(decoded).usingRecursiveComparison().ignoringFields("extra").isEqualTo(message);
+    }
+
+    @Test
+    void binaryIsSmallerThanJson() {
+        Message message = fullMessage();
+
+        assertThat(binary.encode(message).length).isLessThan(json.encode(message).length);
+    }
+
+    @Test
+    void binaryRejectsUnknownVersion() {
+        byte[] data = binary.encode(fullMessage());
+        data[0] = 2;
+
+        assertThat(binary.canDecode(data)).isFalse();
+        assertThatThrownBy(() -> binary.decode(data)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void binaryFailsOnTruncatedData() {
+        byte[] data = binary.encode(fullMessage());
+        byte[] truncated = Arrays.copyOf(data, data.length / 2);
+
+        assertThatThrownBy(() -> binary.decode(truncated)).isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void jsonRoundTrip() {
+        Message message = fullMessage();
+
+        Message decoded = json.decode(json.encode(message));
+
+        assertThat(decoded.getId()).isEqualTo(message.getId());
+        assertThat(decoded.getServerMsgId()).isEqualTo(message.getServerMsgId());
+        assertThat(decoded.getTempId()).isEqualTo(message.getTempId());
+        assertThat(decoded.getContent()).isEqualTo(message.getContent());
+        assertThat(decoded.getCreateTime()).isEqualTo(message.getCreateTime());
+    }
+
+    @Test
+    void firstByteSelectsExactlyOneCodec() {
+        List<MessageCacheCodec> codecs = List.of(binary, json);
+        byte[] binaryData = binary.encode(fullMessage());
+        byte[] jsonData = json.encode(fullMessage());
+
+        assertThat(codecs).filteredOn(codec -> codec.canDecode(binaryData)).containsExactly(binary);
+        assertThat(codecs).filteredOn(codec -> codec.canDecode(jsonData)).containsExactly(json);
+        assertThat(codecs).filteredOn(codec -> codec.canDecode(new byte[0])).isEmpty();
+        assertThat(codecs).filteredOn(codec -> codec.canDecode("[1]".getBytes(StandardCharsets.UTF_8))).isEmpty();
+    }
+
+    private static Message fullMessage() {
+        Message message = new Message();
+        message.setId(1_000_001L);
+        message.setServerMsgId(1_861_234_567_890_123_456L);
+        message.setTempId("temp-1700000000000-1");
+        message.setRoomId(30_063L);
+        message.setFromUid(1_067_246_875_800_000_001L);
+        message.setContent("今天下午三点开会");
+        message.setReplyMsgId(1_000_000L);
+        message.setGapCount(1);
+        message.setStatus(0);
+        message.setType(1);
+        message.setCreateTime(new Date(1_700_000_000_123L));
+        message.setUpdateTime(new Date(1_700_000_000_456L));
+        return message;
+    }
+}
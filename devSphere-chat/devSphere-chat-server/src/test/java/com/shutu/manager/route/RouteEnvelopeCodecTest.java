@@ -0,0 +1,90 @@
+package com.shutu.manager.route;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RouteEnvelopeCodecTest {
+
+    private static final byte[] PAYLOAD = "{\"type\":2,\"data\":{\"content\":\"今天下午三点开会\"}}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void roundTripKeepsUidsAndPayload() {
+        List<Long> uids = List.of(1_067_246_875_800_000_001L, 1_067_246_875_800_000_002L, 3L);
+
+        RouteEnvelopeCodec.Envelope envelope = RouteEnvelopeCodec.decode(RouteEnvelopeCodec.encode(uids, PAYLOAD));
+
+        assertThat(envelope.getUids()).containsExactlyElementsOf(uids);
+        assertThat(envelope.getPayload()).isEqualTo(PAYLOAD);
+    }
+
+    @Test
+    void roundTripHandlesEmptyUidsAndPayload() {
+        RouteEnvelopeCodec.Envelope envelope = RouteEnvelopeCodec.decode(
+                RouteEnvelopeCodec.encode(List.of(), new byte[0]));
+
+        assertThat(envelope.getUids()).isEmpty();
+        assertThat(envelope.getPayload()).isEmpty();
+    }
+
+    @Test
+    void roundTripHandlesExtremeUids() {
+        List<Long> uids = List.of(Long.MIN_VALUE, -1L, 0L, Long.MAX_VALUE);
+
+        RouteEnvelopeCodec.Envelope envelope = RouteEnvelopeCodec.decode(RouteEnvelopeCodec.encode(uids, PAYLOAD));
+
+        assertThat(envelope.getUids()).containsExactlyElementsOf(uids);
+    }
+
+    @Test
+    void encodesExpectedLayout() {
+        byte[] bytes = RouteEnvelopeCodec.encode(List.of(7L), PAYLOAD);
+
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        assertThat(buf.get()).isEqualTo(RouteEnvelopeCodec.VERSION_1);
+        assertThat(buf.getInt()).isEqualTo(1);
+        assertThat(buf.getLong()).isEqualTo(7L);
+        assertThat(bytes).hasSize(1 + 4 + 8 + PAYLOAD.length);
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] bytes = RouteEnvelopeCodec.encode(List.of(1L), PAYLOAD);
+        bytes[0] = 2;
+
+        assertThatThrownBy(() -> RouteEnvelopeCodec.decode(bytes)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsUidCountBeyondData() {
+        byte[] bytes = RouteEnvelopeCodec.encode(List.of(1L, 2L), new byte[0]);
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+
+        assertThatThrownBy(() -> RouteEnvelopeCodec.decode(truncated)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsNegativeUidCount() {
+        byte[] bytes = ByteBuffer.allocate(5).put(RouteEnvelopeCodec.VERSION_1).putInt(-1).array();
+
+        assertThatThrownBy(() -> RouteEnvelopeCodec.decode(bytes)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsTruncatedHeader() {
+        for (int length = 0; length < 5; length++) {
+            byte[] bytes = Arrays.copyOf(RouteEnvelopeCodec.encode(List.of(1L), PAYLOAD), length);
+
+            assertThatThrownBy(() -> RouteEnvelopeCodec.decode(bytes))
+                    .as("length=%d", bytes.length)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.shutu.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WindowedBloomFilterTest {
+
+    private static final long WINDOW = 60_000L;
+    private static final int INSERTIONS = 10_000;
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final WindowedBloomFilter filter = new WindowedBloomFilter(INSERTIONS, 0.01, WINDOW, now::get);
+
+    @Test
+    void hasNoFalseNegativesWithinWindow() {
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.put("temp-" + i);
+        }
+
+        for (int i = 0; i < INSERTIONS; i++) {
+            assertThat(filter.mightContain("temp-" + i)).as("temp-%d", i).isTrue();
+        }
+    }
+
+    @Test
+    void keepsFalsePositiveRateNearTarget() {
+        for (int i = 0; i < INSERTIONS; i++) {
+            filter.put("temp-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < INSERTIONS; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(INSERTIONS * 3 / 100);
+    }
+
+    @Test
+    void keepsEntriesThroughNextWindow() {
+        filter.put("a");
+        now.addAndGet(WINDOW - 1);
+        filter.put("b");
+
+        // 轮转一次：上一代仍参与查询
+        now.addAndGet(1);
+        assertThat(filter.mightContain("a")).isTrue();
+        assertThat(filter.mightContain("b")).isTrue();
+
+        filter.put("c");
+        now.addAndGet(WINDOW);
+        assertThat(filter.mightContain("a")).isFalse();
+        assertThat(filter.mightContain("b")).isFalse();
+        assertThat(filter.mightContain("c")).isTrue();
+    }
+
+    @Test
+    void expiresBothGenerationsAfterLongIdle() {
+        filter.put("a");
+
+        now.addAndGet(2 * WINDOW);
+
+        assertThat(filter.mightContain("a")).isFalse();
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        assertThat(filter.mightContain("temp-0")).isFalse();
+        assertThat(filter.mightContain("")).isFalse();
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThatThrownBy(() -> new WindowedBloomFilter(0, 0.01, WINDOW)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new WindowedBloomFilter(100, 1, WINDOW)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new WindowedBloomFilter(100, 0.01, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,164 @@
+package com.shutu.websocket.Handler;
+
+import com.shutu.model.enums.ws.WSReqTypeEnum;
+import com.shutu.model.vo.ws.request.WSBaseReq;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WsFrameDecoderTest {
+
+    private static final long TARGET_ID = 1_067_246_875_800_000_002L;
+
+    @Test
+    void decodesChatFrame() {
+        ByteBuf buf = frame(1, WSReqTypeEnum.CHAT.getType(), "temp-1700000000000-1", "今天下午三点开会 😀");
+
+        WSBaseReq req = WsFrameDecoder.decodeBinary(buf);
+
+        assertThat(req.getType()).isEqualTo(WSReqTypeEnum.CHAT.getType());
+        assertThat(req.getUserId()).isEqualTo(TARGET_ID);
+        assertThat(req.getData()).isNull();
+        assertThat(req.getChatMessage().getType()).isEqualTo(2);
+        assertThat(req.getChatMessage().getMessageType()).isEqualTo(1);
+        assertThat(req.getChatMessage().getTempId()).isEqualTo("temp-1700000000000-1");
+        assertThat(req.getChatMessage().getContent()).isEqualTo("今天下午三点开会 😀");
+        assertThat(buf.isReadable()).isFalse();
+    }
+
+    @Test
+    void decodesEmptyFieldsAsNull() {
+        ByteBuf buf = Unpooled.buffer()
+                .writeByte(1)
+                .writeByte(WSReqTypeEnum.CHAT.getType())
+                .writeLong(TARGET_ID)
+                .writeByte(2)
+                .writeByte(0)
+                .writeShort(0)
+                .writeInt(0);
+
+        WSBaseReq req = WsFrameDecoder.decodeBinary(buf);
+
+        assertThat(req.getChatMessage().getMessageType()).isNull();
+        assertThat(req.getChatMessage().getTempId()).isNull();
+        assertThat(req.getChatMessage().getContent()).isNull();
+    }
+
+    @Test
+    void putsNonChatContentIntoData() {
+        String signal = "{\"sdp\":\"v=0\"}";
+
+        WSBaseReq req = WsFrameDecoder.decodeBinary(frame(1, WSReqTypeEnum.RTC_SIGNAL.getType(), null, signal));
+
+        assertThat(req.getType()).isEqualTo(WSReqTypeEnum.RTC_SIGNAL.getType());
+        assertThat(req.getData()).isEqualTo(signal);
+        assertThat(req.getChatMessage()).isNull();
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        ByteBuf buf = frame(2, WSReqTypeEnum.CHAT.getType(), "t", "hi");
+
+        assertThatThrownBy(() -> WsFrameDecoder.decodeBinary(buf)).isInstanceOf(CorruptedFrameException.class);
+    }
+
+    @Test
+    void rejectsNegativeContentLength() {
+        ByteBuf buf = header(0).writeInt(-1);
+
+        assertThatThrownBy(() -> WsFrameDecoder.decodeBinary(buf)).isInstanceOf(CorruptedFrameException.class);
+    }
+
+    @Test
+    void rejectsContentLongerThanLimit() {
+        ByteBuf buf = header(0).writeInt((1 << 20) + 1).writeZero((1 << 20) + 1);
+
+        assertThatThrownBy(() -> WsFrameDecoder.decodeBinary(buf)).isInstanceOf(CorruptedFrameException.class);
+    }
+
+    @Test
+    void rejectsLengthBeyondReadableBytes() {
+        ByteBuf tempId = header(10).writeBytes("abc".getBytes(StandardCharsets.UTF_8));
+        ByteBuf content = header(0).writeInt(100).writeBytes("hi".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> WsFrameDecoder.decodeBinary(tempId)).isInstanceOf(CorruptedFrameException.class);
+        assertThatThrownBy(() -> WsFrameDecoder.decodeBinary(content)).isInstanceOf(CorruptedFrameException.class);
+    }
+
+    @Test
+    void rejectsTruncatedFrame() {
+        ByteBuf full = frame(1, WSReqTypeEnum.CHAT.getType(), "t", "hi");
+        // 截断在定长头 / 内容长度字段内
+        for (int length : new int[]{0, 1, 5, 13, 16}) {
+            ByteBuf truncated = full.retainedSlice(0, length);
+
+            assertThatThrownBy(() -> WsFrameDecoder.decodeBinary(truncated))
+                    .as("length=%d", length)
+                    .isInstanceOf(CorruptedFrameException.class);
+            truncated.release();
+        }
+        full.release();
+    }
+
+    @Test
+    void dropsBinaryFrameWithoutNegotiatedSubprotocol() {
+        EmbeddedChannel channel = new EmbeddedChannel(WsFrameDecoder.INSTANCE);
+
+        channel.writeInbound(new BinaryWebSocketFrame(frame(1, WSReqTypeEnum.CHAT.getType(), "t", "hi")));
+
+        assertThat((Object) channel.readInbound()).isNull();
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void decodesFramesByNegotiatedSubprotocol() {
+        EmbeddedChannel channel = new EmbeddedChannel(WsFrameDecoder.INSTANCE);
+        channel.attr(WsFrameDecoder.SUBPROTOCOL_KEY).set(WsFrameDecoder.SUBPROTOCOL_BINARY);
+
+        channel.writeInbound(new BinaryWebSocketFrame(frame(1, WSReqTypeEnum.CHAT.getType(), "t", "hi")));
+        channel.writeInbound(new TextWebSocketFrame("{\"type\":4}"));
+
+        WSBaseReq binary = channel.readInbound();
+        WSBaseReq text = channel.readInbound();
+        assertThat(binary.getChatMessage().getContent()).isEqualTo("hi");
+        assertThat(text.getType()).isEqualTo(WSReqTypeEnum.HEARTBEAT.getType());
+        channel.finishAndReleaseAll();
+    }
+
+    private static ByteBuf frame(int version, int type, String tempId, String content) {
+        byte[] tempIdBytes = tempId != null ? tempId.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+        return Unpooled.buffer()
+                .writeByte(version)
+                .writeByte(type)
+                .writeLong(TARGET_ID)
+                .writeByte(2)
+                .writeByte(1)
+                .writeShort(tempIdBytes.length)
+                .writeBytes(tempIdBytes)
+                .writeInt(contentBytes.length)
+                .writeBytes(contentBytes);
+    }
+
+    /**
+     * 定长头，tempIdLen 之后的内容由调用方写入
+     */
+    private static ByteBuf header(int tempIdLength) {
+        return Unpooled.buffer()
+                .writeByte(1)
+                .writeByte(WSReqTypeEnum.CHAT.getType())
+                .writeLong(TARGET_ID)
+                .writeByte(2)
+                .writeByte(1)
+                .writeShort(tempIdLength);
+    }
+}
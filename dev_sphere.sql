@@ -19,6 +19,8 @@ SET FOREIGN_KEY_CHECKS = 0;
 
 -- ----------------------------
 -- Table structure for dev_sphere_message
+-- 按 id 范围分区，结构与分区边界须与 dev_sphere_message_archive 一致 (已有库升级见 db/migration/V1__partition_message_tables.sql)
+-- 分区表的唯一索引必须包含 id，server_msg_id 只建普通索引，唯一性由消费端幂等检查保证
 -- ----------------------------
 DROP TABLE IF EXISTS `dev_sphere_message`;
 CREATE TABLE `dev_sphere_message`  (
@@ -36,13 +38,19 @@ CREATE TABLE `dev_sphere_message`  (
   `create_time` datetime(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '创建时间',
   `update_time` datetime(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) COMMENT '修改时间',
   PRIMARY KEY (`id`) USING BTREE,
-  UNIQUE INDEX `idx_server_msg_id`(`server_msg_id` ASC) USING BTREE,
+  INDEX `idx_server_msg_id`(`server_msg_id` ASC) USING BTREE,
   INDEX `idx_create_time`(`create_time` ASC) USING BTREE,
   INDEX `idx_from_uid`(`from_uid` ASC) USING BTREE,
   INDEX `idx_room_id`(`room_id` ASC) USING BTREE,
   INDEX `idx_update_time`(`update_time` ASC) USING BTREE,
-  INDEX `idx_room_id_id`(`room_id` ASC, `id` ASC) USING BTREE
-) ENGINE = InnoDB AUTO_INCREMENT = 637 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '消息表' ROW_FORMAT = DYNAMIC;
+  INDEX `idx_room_id_id`(`room_id` ASC, `id` ASC) USING BTREE,
+  INDEX `idx_temp_id`(`temp_id` ASC) USING BTREE
+) ENGINE = InnoDB AUTO_INCREMENT = 637 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '消息表' ROW_FORMAT = DYNAMIC
+PARTITION BY RANGE (`id`) (
+  PARTITION `p5000000` VALUES LESS THAN (5000000),
+  PARTITION `p10000000` VALUES LESS THAN (10000000),
+  PARTITION `pmax` VALUES LESS THAN MAXVALUE
+);
 
 -- ----------------------------
 -- Table structure for dev_sphere_message_error_log
@@ -70,24 +78,32 @@ CREATE TABLE `dev_sphere_message_error_log`  (
 DROP TABLE IF EXISTS `dev_sphere_message_archive`;
 CREATE TABLE `dev_sphere_message_archive`  (
   `id` bigint UNSIGNED NOT NULL AUTO_INCREMENT COMMENT 'id',
-  `server_msg_id` bigint NULL DEFAULT NULL COMMENT '唯一id',
-  `temp_id` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL COMMENT '客户端临时ID',
+  `server_msg_id` bigint NULL DEFAULT NULL COMMENT '唯一id，客户端可见',
+  `temp_id` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL COMMENT '客户端临时ID，用于幂等去重',
   `room_id` bigint NOT NULL COMMENT '会话表id',
   `from_uid` bigint NOT NULL COMMENT '消息发送者uid',
   `content` varchar(1024) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL COMMENT '消息内容',
   `reply_msg_id` bigint NULL DEFAULT NULL COMMENT '回复的消息内容',
   `status` int NOT NULL DEFAULT 0 COMMENT '消息状态 0正常 1删除',
   `gap_count` int NULL DEFAULT NULL COMMENT '与回复的消息间隔多少条',
-  `type` int NULL DEFAULT 1 COMMENT '消息类型',
+  `type` int NULL DEFAULT 1 COMMENT '消息类型 1正常文本 2.撤回消息 3.图片 4.语音 5.视频 6.文件',
   `extra` json NULL COMMENT '扩展信息',
   `create_time` datetime(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) COMMENT '创建时间',
   `update_time` datetime(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) COMMENT '修改时间',
   PRIMARY KEY (`id`) USING BTREE,
-  UNIQUE INDEX `idx_server_msg_id`(`server_msg_id` ASC) USING BTREE,
+  INDEX `idx_server_msg_id`(`server_msg_id` ASC) USING BTREE,
   INDEX `idx_create_time`(`create_time` ASC) USING BTREE,
+  INDEX `idx_from_uid`(`from_uid` ASC) USING BTREE,
   INDEX `idx_room_id`(`room_id` ASC) USING BTREE,
-  INDEX `idx_room_id_create_time`(`room_id` ASC, `create_time` DESC) USING BTREE COMMENT '归档表核心查询索引'
-) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '消息归档表(冷数据)' ROW_FORMAT = DYNAMIC;
+  INDEX `idx_update_time`(`update_time` ASC) USING BTREE,
+  INDEX `idx_room_id_id`(`room_id` ASC, `id` ASC) USING BTREE,
+  INDEX `idx_temp_id`(`temp_id` ASC) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '消息归档表(冷数据)，结构与分区边界须与消息表一致' ROW_FORMAT = DYNAMIC
+PARTITION BY RANGE (`id`) (
+  PARTITION `p5000000` VALUES LESS THAN (5000000),
+  PARTITION `p10000000` VALUES LESS THAN (10000000),
+  PARTITION `pmax` VALUES LESS THAN MAXVALUE
+);
 
 -- ----------------------------
 -- Table structure for dev_sphere_notice_message
@@ -11,6 +11,7 @@ import com.shutu.commons.tools.utils.Result;
 import com.shutu.commons.tools.validator.AssertUtils;
 import com.shutu.model.dto.LoginDTO;
 import com.shutu.model.dto.UserTokenDTO;
+import com.shutu.redis.SysMenuRedis;
 import com.shutu.service.CaptchaService;
 import com.shutu.service.SysUserService;
 import com.shutu.service.SysUserTokenService;
@@ -43,6 +44,7 @@ public class LoginController {
     private AuthenticationManager authenticationManager;
     private SysUserTokenService sysUserTokenService;
     private CaptchaService captchaService;
+    private SysMenuRedis sysMenuRedis;
 
     @GetMapping("captcha")
     @Operation(summary = "验证码")
@@ -129,8 +131,7 @@ public class LoginController {
 //        logProducer.saveLog(log);
 
         //清空菜单导航、权限标识
-        redisUtils.deleteByPattern(RedisKeys.getUserMenuNavKey(user.getId()));
-        redisUtils.delete(RedisKeys.getUserPermissionsKey(user.getId()));
+        sysMenuRedis.delete(user.getId());
 
         return new Result();
     }
@@ -8,6 +8,7 @@ import com.shutu.model.dto.SysMenuDTO;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -21,19 +22,18 @@ public class SysMenuRedis {
     private RedisUtils redisUtils;
 
     public void delete(Long userId) {
-        //清空菜单导航、权限标识
-        redisUtils.deleteByPattern(RedisKeys.getUserMenuNavKey(userId));
-        redisUtils.delete(RedisKeys.getUserPermissionsKey(userId));
+        //清空菜单导航 (各语言在同一个 Hash 内)、权限标识，一次 UNLINK
+        redisUtils.unlink(Arrays.asList(RedisKeys.getUserMenuNavKey(userId), RedisKeys.getUserPermissionsKey(userId)));
     }
 
     public void setUserMenuNavList(Long userId, List<SysMenuDTO> menuList) {
-        String key = RedisKeys.getUserMenuNavKey(userId, HttpContextUtils.getLanguage());
-        redisUtils.set(key, menuList);
+        String key = RedisKeys.getUserMenuNavKey(userId);
+        redisUtils.hSet(key, String.valueOf(HttpContextUtils.getLanguage()), menuList);
     }
 
     public List<SysMenuDTO> getUserMenuNavList(Long userId) {
-        String key = RedisKeys.getUserMenuNavKey(userId, HttpContextUtils.getLanguage());
-        return (List<SysMenuDTO>) redisUtils.get(key);
+        String key = RedisKeys.getUserMenuNavKey(userId);
+        return (List<SysMenuDTO>) redisUtils.hGet(key, String.valueOf(HttpContextUtils.getLanguage()));
     }
 
     public void setUserPermissions(Long userId, Set<String> permsSet) {
@@ -0,0 +1,57 @@
+package com.shutu.redis;
+
+import com.shutu.commons.tools.redis.RedisKeys;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * 用户资料变更广播
+ * 其他服务 (如 chat) 订阅后失效本地用户资料缓存
+ */
+@Slf4j
+@Component
+public class SysUserRedis {
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    public void publishProfileChanged(Long... userIds) {
+        publishProfileChanged(Arrays.asList(userIds));
+    }
+
+    /**
+     * 广播用户资料变更，处于事务中时在提交后再广播，避免订阅方读到旧数据
+     */
+    public void publishProfileChanged(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        String body = userIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(body);
+                }
+            });
+        } else {
+            publish(body);
+        }
+    }
+
+    private void publish(String body) {
+        try {
+            stringRedisTemplate.convertAndSend(RedisKeys.getUserProfileChangedTopic(), body);
+        } catch (Exception e) {
+            // 广播失败只影响缓存时效，订阅方缓存会按 TTL 自然过期
+            log.warn("用户资料变更广播失败: {}", body, e);
+        }
+    }
+}
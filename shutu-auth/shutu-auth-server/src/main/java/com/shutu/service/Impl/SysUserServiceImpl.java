@@ -14,6 +14,7 @@ import com.shutu.model.LoginRequest;
 import com.shutu.model.dto.SysUserDTO;
 import com.shutu.model.dto.UserTokenDTO;
 import com.shutu.model.entity.SysUserEntity;
+import com.shutu.redis.SysUserRedis;
 import com.shutu.service.*;
 import com.shutu.commons.mybatis.service.impl.BaseServiceImpl;
 import lombok.RequiredArgsConstructor;
@@ -43,6 +44,8 @@ public class SysUserServiceImpl extends BaseServiceImpl<SysUserDao, SysUserEntit
 
     private final SysUserTokenService sysUserTokenService;
 
+    private final SysUserRedis sysUserRedis;
+
     @Override
     public PageData<SysUserDTO> page(Map<String, Object> params) {
         //转换成like
@@ -136,6 +139,9 @@ public class SysUserServiceImpl extends BaseServiceImpl<SysUserDao, SysUserEntit
 
         //更新用户缓存权限
         sysUserTokenService.updateCacheAuthByUserId(entity.getId());
+
+        //广播用户资料变更
+        sysUserRedis.publishProfileChanged(entity.getId());
     }
 
     @Override
@@ -149,6 +155,9 @@ public class SysUserServiceImpl extends BaseServiceImpl<SysUserDao, SysUserEntit
         entity.setEmail(dto.getEmail());
 
         updateById(entity);
+
+        //广播用户资料变更
+        sysUserRedis.publishProfileChanged(entity.getId());
     }
 
     @Override
@@ -158,6 +167,9 @@ public class SysUserServiceImpl extends BaseServiceImpl<SysUserDao, SysUserEntit
         logicDelete(ids, SysUserEntity.class);
 
         //角色用户关系，岗位关系需要保留，不然逻辑删除就变成物理删除了
+
+        //广播用户资料变更
+        sysUserRedis.publishProfileChanged(ids);
     }
 
     @Override
@@ -0,0 +1,135 @@
+package com.shutu.commons.tools.redis;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis 命令耗时直方图
+ * 按命令分桶计数 (桶上界单位: 微秒)，记录时只做 LongAdder 累加，不加锁
+ */
+public class RedisCommandStats {
+
+    /**
+     * 桶上界 (微秒)，超过最后一个上界的计入溢出桶
+     */
+    private static final long[] BUCKET_MICROS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 1_000_000
+    };
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次命令耗时
+     *
+     * @param command 命令名，如 GET / SCAN / UNLINK
+     * @param nanos   耗时 (纳秒)
+     */
+    public void record(String command, long nanos) {
+        histograms.computeIfAbsent(command, k -> new Histogram()).record(nanos / 1_000);
+    }
+
+    /**
+     * 当前各命令的统计快照
+     *
+     * @return 命令名 -> 快照 (按命令名排序)
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> result = new TreeMap<>();
+        histograms.forEach((command, histogram) -> result.put(command, histogram.snapshot()));
+        return result;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        histograms.clear();
+    }
+
+    private static class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKET_MICROS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+        private Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long micros) {
+            int index = 0;
+            while (index < BUCKET_MICROS.length && micros > BUCKET_MICROS[index]) {
+                index++;
+            }
+            buckets[index].increment();
+            count.increment();
+            totalMicros.add(micros);
+            maxMicros.accumulate(micros);
+        }
+
+        private Snapshot snapshot() {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            long max = maxMicros.get();
+            Map<String, Long> distribution = new TreeMap<>((a, b) -> Long.compare(bound(a), bound(b)));
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    distribution.put(i < BUCKET_MICROS.length ? "le" + BUCKET_MICROS[i] : "inf", counts[i]);
+                }
+            }
+            return new Snapshot(total, total == 0 ? 0 : totalMicros.sum() / total, max,
+                    percentile(counts, total, 0.50, max), percentile(counts, total, 0.99, max), distribution);
+        }
+
+        /**
+         * 取累计计数首次达到分位的桶上界，落在溢出桶时取最大值
+         */
+        private static long percentile(long[] counts, long total, double quantile, long max) {
+            if (total == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(total * quantile);
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= threshold) {
+                    return i < BUCKET_MICROS.length ? Math.min(BUCKET_MICROS[i], max) : max;
+                }
+            }
+            return max;
+        }
+
+        private static long bound(String bucket) {
+            return "inf".equals(bucket) ? Long.MAX_VALUE : Long.parseLong(bucket.substring(2));
+        }
+    }
+
+    /**
+     * 单个命令的统计快照，时间单位均为微秒 (分位值为桶上界估算)
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Snapshot {
+        private long count;
+        private long avgMicros;
+        private long maxMicros;
+        private long p50Micros;
+        private long p99Micros;
+        /**
+         * 桶上界 ("le{微秒}" / "inf") -> 次数，只包含非空桶
+         */
+        private Map<String, Long> buckets;
+    }
+}
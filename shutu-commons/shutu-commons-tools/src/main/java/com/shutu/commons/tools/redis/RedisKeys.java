@@ -27,17 +27,10 @@ public class RedisKeys {
     }
 
     /**
-     * 用户菜单导航Key
-     */
-    public static String getUserMenuNavKey(Long userId, String language){
-        return "sys:user:nav:" + userId + "_" + language;
-    }
-
-    /**
-     * 用户菜单导航Key
+     * 用户菜单导航Key (Hash，field 为语言)
      */
     public static String getUserMenuNavKey(Long userId){
-        return "sys:user:nav:" + userId + "_*";
+        return "sys:user:nav:" + userId;
     }
 
     /**
@@ -55,4 +48,11 @@ public class RedisKeys {
     public static String getAuthCode(String emailTo){
         return "shutu:auth:code:" + emailTo;
     }
+
+    /**
+     * 用户资料变更广播 Topic (消息体为逗号分隔的用户ID)
+     */
+    public static String getUserProfileChangedTopic(){
+        return "sys:user:profile:changed";
+    }
 }
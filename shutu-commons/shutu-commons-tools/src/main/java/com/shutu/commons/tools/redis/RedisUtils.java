@@ -1,19 +1,21 @@
 package com.shutu.commons.tools.redis;
 import jakarta.annotation.Resource;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.stereotype.Component;
-import org.springframework.stereotype.Service;
 
-import java.util.Collection;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Redis工具类
- 
+ * 1. 按模式删除/查询使用 SCAN 游标分批进行，删除使用 UNLINK，不再执行阻塞整个实例的 KEYS
+ * 2. 每个命令的耗时计入 {@link RedisCommandStats}，通过 getCommandStats 查看
+
  */
 
 
@@ -23,6 +25,9 @@ public class RedisUtils {
 
     @Resource
     private  RedisTemplate<String, Object> redisTemplate;
+
+    private final RedisCommandStats commandStats = new RedisCommandStats();
+
     /**
      * 默认过期时长为24小时，单位：秒
      */
@@ -43,8 +48,17 @@ public class RedisUtils {
      * 5分钟的过期时长
      */
     public final static long FIVE_MINUTE_EXPIRE = 5 * 60L;
+    /**
+     * SCAN 每次迭代的 COUNT 提示值
+     */
+    private final static long SCAN_COUNT = 500L;
+    /**
+     * 单次 UNLINK 的最大 key 数
+     */
+    private final static int BATCH_SIZE = 500;
+
     public void set(String key, Object value, long expire) {
-        redisTemplate.opsForValue().set(key, value);
+        timedRun("SET", () -> redisTemplate.opsForValue().set(key, value));
         if (expire != NOT_EXPIRE) {
             expire(key, expire);
         }
@@ -55,7 +69,7 @@ public class RedisUtils {
     }
 
     public Object get(String key, long expire) {
-        Object value = redisTemplate.opsForValue().get(key);
+        Object value = timed("GET", () -> redisTemplate.opsForValue().get(key));
         if (expire != NOT_EXPIRE) {
             expire(key, expire);
         }
@@ -66,29 +80,54 @@ public class RedisUtils {
         return get(key, NOT_EXPIRE);
     }
 
+    /**
+     * 按模式查询 key (SCAN 游标迭代，不阻塞实例)
+     */
     public Set<String> keys(String pattern) {
-        return redisTemplate.keys(pattern);
+        Set<String> keys = new HashSet<>();
+        scan(pattern, batch -> keys.addAll(batch));
+        return keys;
     }
 
-    public void deleteByPattern(String pattern) {
-        redisTemplate.delete(keys(pattern));
+    /**
+     * 按模式删除 key: SCAN 游标迭代，每 BATCH_SIZE 个 key 一次 UNLINK (后台线程回收内存)
+     *
+     * @return 删除的 key 数
+     */
+    public long deleteByPattern(String pattern) {
+        long[] deleted = {0};
+        scan(pattern, batch -> deleted[0] += unlink(batch));
+        return deleted[0];
     }
 
     public void delete(String key) {
-        redisTemplate.delete(key);
+        timed("DEL", () -> redisTemplate.delete(key));
     }
 
     public void delete(Collection<String> keys) {
-        redisTemplate.delete(keys);
+        timed("DEL", () -> redisTemplate.delete(keys));
+    }
+
+    /**
+     * 非阻塞删除，value 的内存由 Redis 后台线程回收
+     *
+     * @return 删除的 key 数
+     */
+    public long unlink(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long count = timed("UNLINK", () -> redisTemplate.unlink(keys));
+        return count == null ? 0 : count;
     }
 
     public Object hGet(String key, String field) {
-        return redisTemplate.opsForHash().get(key, field);
+        return timed("HGET", () -> redisTemplate.opsForHash().get(key, field));
     }
 
     public Map<String, Object> hGetAll(String key) {
         HashOperations<String, String, Object> hashOperations = redisTemplate.opsForHash();
-        return hashOperations.entries(key);
+        return timed("HGETALL", () -> hashOperations.entries(key));
     }
 
     public void hMSet(String key, Map<String, Object> map) {
@@ -96,7 +135,7 @@ public class RedisUtils {
     }
 
     public void hMSet(String key, Map<String, Object> map, long expire) {
-        redisTemplate.opsForHash().putAll(key, map);
+        timedRun("HMSET", () -> redisTemplate.opsForHash().putAll(key, map));
 
         if (expire != NOT_EXPIRE) {
             expire(key, expire);
@@ -108,7 +147,7 @@ public class RedisUtils {
     }
 
     public void hSet(String key, String field, Object value, long expire) {
-        redisTemplate.opsForHash().put(key, field, value);
+        timedRun("HSET", () -> redisTemplate.opsForHash().put(key, field, value));
 
         if (expire != NOT_EXPIRE) {
             expire(key, expire);
@@ -116,15 +155,15 @@ public class RedisUtils {
     }
 
     public void expire(String key, long expire) {
-        redisTemplate.expire(key, expire, TimeUnit.SECONDS);
+        timed("EXPIRE", () -> redisTemplate.expire(key, expire, TimeUnit.SECONDS));
     }
 
     public Long getExpire(String key) {
-        return redisTemplate.getExpire(key, TimeUnit.SECONDS);
+        return timed("TTL", () -> redisTemplate.getExpire(key, TimeUnit.SECONDS));
     }
 
     public void hDel(String key, Object... fields) {
-        redisTemplate.opsForHash().delete(key, fields);
+        timed("HDEL", () -> redisTemplate.opsForHash().delete(key, fields));
     }
 
     public void leftPush(String key, Object value) {
@@ -132,7 +171,7 @@ public class RedisUtils {
     }
 
     public void leftPush(String key, Object value, long expire) {
-        redisTemplate.opsForList().leftPush(key, value);
+        timed("LPUSH", () -> redisTemplate.opsForList().leftPush(key, value));
 
         if (expire != NOT_EXPIRE) {
             expire(key, expire);
@@ -140,6 +179,58 @@ public class RedisUtils {
     }
 
     public Object rightPop(String key) {
-        return redisTemplate.opsForList().rightPop(key);
+        return timed("RPOP", () -> redisTemplate.opsForList().rightPop(key));
+    }
+
+    /**
+     * 各命令耗时统计快照 (微秒)
+     */
+    public Map<String, RedisCommandStats.Snapshot> getCommandStats() {
+        return commandStats.snapshot();
+    }
+
+    /**
+     * SCAN 游标迭代匹配的 key，每凑满 BATCH_SIZE 个回调一次
+     * 整个迭代过程 (不含回调) 计为一次 SCAN 耗时
+     */
+    private void scan(String pattern, Consumer<List<String>> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build();
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        long elapsed = 0;
+        long start = System.nanoTime();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= BATCH_SIZE) {
+                    elapsed += System.nanoTime() - start;
+                    consumer.accept(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    start = System.nanoTime();
+                }
+            }
+        } finally {
+            commandStats.record("SCAN", elapsed + System.nanoTime() - start);
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+
+    private <T> T timed(String command, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            commandStats.record(command, System.nanoTime() - start);
+        }
+    }
+
+    private void timedRun(String command, Runnable action) {
+        long start = System.nanoTime();
+        try {
+            action.run();
+        } finally {
+            commandStats.record(command, System.nanoTime() - start);
+        }
     }
-}
\ No newline at end of file
+}